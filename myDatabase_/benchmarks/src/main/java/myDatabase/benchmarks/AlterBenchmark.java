@@ -0,0 +1,86 @@
+package myDatabase.benchmarks;
+
+import myDatabase.Alter;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ALTER TABLE ADD/DROP COLUMN：改写表定义并把每一行都改写一遍
+ * 每次调用前把表恢复为rows行、不带extra列（DROP时先加上extra列），两者都在同样的表上测量。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AlterBenchmark {
+    @Param({"1000", "10000"})
+    public int rows;
+
+    @Param({"16", "128"})
+    public int width;
+
+    private BenchmarkFixture fixture;
+    private List<String> lines;
+
+    @Setup(Level.Trial)
+    public void createTable() throws IOException {
+        fixture = new BenchmarkFixture();
+        lines = fixture.createTable("t", "id int PRIMARY KEY, name varchar(" + width + "), v int", rows,
+                i -> new String[]{Integer.toString(i), BenchmarkFixture.text(i, width), Integer.toString(i % 100)});
+    }
+
+    @TearDown(Level.Trial)
+    public void cleanUp() throws IOException {
+        fixture.close();
+    }
+
+    /**
+     * ADD COLUMN的调用前状态：表中没有extra列
+     */
+    @State(Scope.Thread)
+    public static class WithoutColumn {
+        @Setup(Level.Invocation)
+        public void reset(AlterBenchmark benchmark) throws IOException {
+            benchmark.restore(false);
+        }
+    }
+
+    /**
+     * DROP COLUMN的调用前状态：表中已有extra列
+     */
+    @State(Scope.Thread)
+    public static class WithColumn {
+        @Setup(Level.Invocation)
+        public void reset(AlterBenchmark benchmark) throws IOException {
+            benchmark.restore(true);
+        }
+    }
+
+    @Benchmark
+    public String addColumn(WithoutColumn state) {
+        return Alter.processAlter("alter table t add column extra int", fixture.session);
+    }
+
+    @Benchmark
+    public String dropColumn(WithColumn state) {
+        return Alter.processAlter("alter table t drop column extra", fixture.session);
+    }
+
+    // 恢复表的初始数据，withColumn为true时再加上extra列
+    private void restore(boolean withColumn) throws IOException {
+        // 表中没有extra列时DROP返回错误，忽略即可
+        Alter.processAlter("alter table t drop column extra", fixture.session);
+        fixture.load("t", lines);
+        if (withColumn) {
+            String result = Alter.processAlter("alter table t add column extra int", fixture.session);
+            if (result.startsWith("ERROR")) {
+                throw new IllegalStateException(result);
+            }
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package myDatabase.benchmarks;
+
+import controller.DatabaseProcessor;
+import model.Database;
+import model.Session;
+import myDatabase.SQLConstant;
+import myDatabase.TableFile;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.IntFunction;
+import java.util.stream.Stream;
+
+/**
+ * 基准测试的数据环境：在临时目录中建立数据根目录和数据库bench，按行数和列宽生成表数据
+ * 每个JMH fork是独立的进程，SQLConstant中的全局数据根目录只属于本fork的fixture。
+ */
+public class BenchmarkFixture implements AutoCloseable {
+    public static final String DB_NAME = "bench";
+
+    public final Path root;
+    public final Database database;
+    public final Session session;
+
+    public BenchmarkFixture() throws IOException {
+        root = Files.createTempDirectory("myDatabase-bench");
+        SQLConstant.setRootPath(root.toString());
+        database = new Database();
+        database.initialize();
+        session = new Session("bench");
+        execute("create database " + DB_NAME + ";");
+        execute("use " + DB_NAME + ";");
+    }
+
+    /**
+     * 执行一条准备数据用的语句，出错时抛出异常，避免在错误的数据上测量
+     */
+    public String execute(String sql) {
+        String result = DatabaseProcessor.executeQuery(sql, database, session);
+        if (result.startsWith("ERROR")) {
+            throw new IllegalStateException(sql + " -> " + result);
+        }
+        return result;
+    }
+
+    /**
+     * 建表并写入rows行数据，返回表文件的全部行（3行表头 + 记录），供之后恢复表内容
+     * @param row 第i行的字段值
+     */
+    public List<String> createTable(String tableName, String columns, int rows, IntFunction<String[]> row)
+            throws IOException {
+        execute("create table " + tableName + " (" + columns + ");");
+        List<String> lines = new ArrayList<>(TableFile.readLines(tablePath(tableName)).subList(0, TableFile.HEADER_LINES));
+        for (int i = 0; i < rows; i++) {
+            lines.add(String.join(SQLConstant.getFieldSeparator(), row.apply(i)));
+        }
+        load(tableName, lines);
+        return lines;
+    }
+
+    /**
+     * 用lines替换表的全部内容（同时重建区块摘要）
+     */
+    public void load(String tableName, List<String> lines) throws IOException {
+        TableFile.writeLines(tablePath(tableName), lines);
+    }
+
+    public Path tablePath(String tableName) {
+        return Paths.get(SQLConstant.getTableRecordPath(DB_NAME, tableName));
+    }
+
+    /**
+     * 宽度为width的文本值，以行号开头，不足部分用字母补齐
+     */
+    public static String text(int i, int width) {
+        StringBuilder sb = new StringBuilder(width).append('n').append(i);
+        while (sb.length() < width) {
+            sb.append((char) ('a' + sb.length() % 26));
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try (Stream<Path> paths = Files.walk(root)) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+}
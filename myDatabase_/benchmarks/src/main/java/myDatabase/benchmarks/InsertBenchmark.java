@@ -0,0 +1,91 @@
+package myDatabase.benchmarks;
+
+import myDatabase.Insert;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * INSERT：无约束的表、有主键的表（检查主键要读一遍表）、有主键和外键的表（还要读一遍父表）
+ * 每轮迭代前把表恢复为rows行，表的大小在测量中基本不变。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class InsertBenchmark {
+    @Param({"1000", "10000"})
+    public int rows;
+
+    @Param({"16", "128"})
+    public int width;
+
+    private BenchmarkFixture fixture;
+    private List<String> plainLines;
+    private List<String> keyedLines;
+    private List<String> parentLines;
+    private List<String> childLines;
+    private int nextId;
+    private int parents;
+
+    @Setup(Level.Trial)
+    public void createTables() throws IOException {
+        fixture = new BenchmarkFixture();
+        String name = "name varchar(" + width + ")";
+        parents = Math.max(1, rows / 10);
+        plainLines = fixture.createTable("plain", "id int, " + name + ", v int", rows,
+                i -> new String[]{Integer.toString(i), BenchmarkFixture.text(i, width), Integer.toString(i % 100)});
+        keyedLines = fixture.createTable("keyed", "id int PRIMARY KEY, " + name + ", v int", rows,
+                i -> new String[]{Integer.toString(i), BenchmarkFixture.text(i, width), Integer.toString(i % 100)});
+        parentLines = fixture.createTable("parent", "id int PRIMARY KEY, " + name, parents,
+                i -> new String[]{Integer.toString(i), BenchmarkFixture.text(i, width)});
+        childLines = fixture.createTable("child", "id int PRIMARY KEY, parent_id int REFERENCES parent(id), " + name,
+                rows, i -> new String[]{Integer.toString(i), Integer.toString(i % parents), BenchmarkFixture.text(i, width)});
+        // 先各插入一行，确认语句和约束都能通过
+        nextId = rows;
+        for (String result : new String[]{insertWithoutKeys(), insertWithPrimaryKey(), insertWithForeignKey()}) {
+            if (result.startsWith("ERROR")) {
+                throw new IllegalStateException(result);
+            }
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void resetTables() throws IOException {
+        fixture.load("plain", plainLines);
+        fixture.load("keyed", keyedLines);
+        fixture.load("parent", parentLines);
+        fixture.load("child", childLines);
+        nextId = rows;
+    }
+
+    @TearDown(Level.Trial)
+    public void cleanUp() throws IOException {
+        fixture.close();
+    }
+
+    @Benchmark
+    public String insertWithoutKeys() {
+        int id = nextId++;
+        return Insert.processInsert("insert into plain values (" + id + ", '" + BenchmarkFixture.text(id, width)
+                + "', 1)", fixture.session);
+    }
+
+    @Benchmark
+    public String insertWithPrimaryKey() {
+        int id = nextId++;
+        return Insert.processInsert("insert into keyed values (" + id + ", '" + BenchmarkFixture.text(id, width)
+                + "', 1)", fixture.session);
+    }
+
+    @Benchmark
+    public String insertWithForeignKey() {
+        int id = nextId++;
+        return Insert.processInsert("insert into child values (" + id + ", " + id % parents + ", '"
+                + BenchmarkFixture.text(id, width) + "')", fixture.session);
+    }
+}
@@ -0,0 +1,221 @@
+package myDatabase.benchmarks;
+
+import controller.DatabaseProcessor;
+import model.Database;
+import model.Session;
+import myDatabase.LatencyHistogram;
+import myDatabase.QueryResult;
+import myDatabase.SQLConstant;
+import myDatabase.TableGenerator;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 混合负载压测：多个会话并发执行插入、点查、范围扫描、JOIN和更新（见Workload），
+ * 报告每类语句的吞吐量、p50/p99/p999延迟和出错率，用于在部署前发现并发扩展性的退化。
+ *
+ * 参数：
+ *   --threads N        并发会话数（默认8）
+ *   --duration 秒      测量时长（默认30）
+ *   --warmup 秒        预热时长，预热期间的结果不计入（默认5）
+ *   --scale F          数据规模因子，1对应1000个客户、10000个订单（默认1）
+ *   --theta F          客户访问的Zipf偏斜度（默认0.99）
+ *   --mix 类型=权重,...  语句混合比例，如 insert=10,point_select=45,range_scan=15,join=2,update=28
+ *   --data 目录         数据目录（默认新建临时目录）
+ * 语句经DatabaseProcessor执行，与客户端走同一条路径；引擎的调试输出在压测期间被丢弃。
+ */
+public class LoadTest {
+    // 各类语句的结果统计
+    private static class OperationStats {
+        final LatencyHistogram latency = new LatencyHistogram();
+        final LongAdder errors = new LongAdder();
+    }
+
+    private final Database database;
+    private final Workload workload;
+    private final Workload.Operation[] schedule;
+    private final Map<Workload.Operation, OperationStats> stats = new EnumMap<>(Workload.Operation.class);
+    private volatile boolean measuring;
+    private volatile boolean stopped;
+
+    private LoadTest(Database database, Workload workload, Map<Workload.Operation, Integer> mix) {
+        this.database = database;
+        this.workload = workload;
+        // 按权重展开成一张表，每次随机取一项
+        List<Workload.Operation> entries = new ArrayList<>();
+        for (Map.Entry<Workload.Operation, Integer> entry : mix.entrySet()) {
+            entries.addAll(Collections.nCopies(entry.getValue(), entry.getKey()));
+        }
+        if (entries.isEmpty()) {
+            throw new IllegalArgumentException("语句混合比例的权重之和为0");
+        }
+        this.schedule = entries.toArray(new Workload.Operation[0]);
+        for (Workload.Operation operation : Workload.Operation.values()) {
+            stats.put(operation, new OperationStats());
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int threads = 8;
+        int duration = 30;
+        int warmup = 5;
+        double scale = 1;
+        double theta = 0.99;
+        String dataDir = null;
+        Map<Workload.Operation, Integer> mix = new EnumMap<>(Workload.Operation.class);
+        for (Workload.Operation operation : Workload.Operation.values()) {
+            mix.put(operation, operation.weight);
+        }
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--threads":
+                    threads = Integer.parseInt(args[++i]);
+                    break;
+                case "--duration":
+                    duration = Integer.parseInt(args[++i]);
+                    break;
+                case "--warmup":
+                    warmup = Integer.parseInt(args[++i]);
+                    break;
+                case "--scale":
+                    scale = Double.parseDouble(args[++i]);
+                    break;
+                case "--theta":
+                    theta = Double.parseDouble(args[++i]);
+                    break;
+                case "--data":
+                    dataDir = args[++i];
+                    break;
+                case "--mix":
+                    mix = parseMix(args[++i]);
+                    break;
+                default:
+                    System.err.println("未知参数: " + args[i]);
+                    System.exit(2);
+            }
+        }
+
+        SQLConstant.setRootPath(dataDir != null ? dataDir : Files.createTempDirectory("myDatabase-load").toString());
+        PrintStream out = System.out;
+        out.printf("数据目录 %s，规模 %.2f，Zipf theta %.2f%n", SQLConstant.getRootPath(), scale, theta);
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            Database database = new Database();
+            database.initialize();
+            long started = System.nanoTime();
+            Workload workload = Workload.create(database, new Session("load"), scale, theta);
+            out.printf("生成 %d 个客户、%d 个订单，耗时 %.1f s%n", workload.getCustomers(), workload.getCustomers() * 10,
+                    (System.nanoTime() - started) / 1e9);
+
+            LoadTest test = new LoadTest(database, workload, mix);
+            out.printf("%d 个会话，预热 %d s，测量 %d s%n", threads, warmup, duration);
+            out.println(test.run(threads, warmup, duration));
+        } finally {
+            System.setOut(out);
+        }
+        System.exit(0);
+    }
+
+    // 运行负载并返回报告
+    private String run(int threads, int warmup, int duration) throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(threads);
+        for (int i = 0; i < threads; i++) {
+            Session session = new Session("load" + i);
+            session.setCurrentDatabase(Workload.DB_NAME);
+            Thread thread = new Thread(() -> {
+                try {
+                    drive(session);
+                } finally {
+                    done.countDown();
+                }
+            }, "load-" + i);
+            thread.setDaemon(true);
+            thread.start();
+        }
+        Thread.sleep(warmup * 1000L);
+        measuring = true;
+        long started = System.nanoTime();
+        Thread.sleep(duration * 1000L);
+        measuring = false;
+        double seconds = (System.nanoTime() - started) / 1e9;
+        stopped = true;
+        done.await();
+        return report(seconds);
+    }
+
+    // 一个会话：不停地按混合比例选取语句执行
+    private void drive(Session session) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (!stopped) {
+            Workload.Operation operation = schedule[random.nextInt(schedule.length)];
+            String sql = workload.statement(operation);
+            long start = System.nanoTime();
+            boolean error;
+            try {
+                QueryResult result = DatabaseProcessor.execute(sql, database, session);
+                error = result.isError();
+            } catch (RuntimeException e) {
+                error = true;
+            }
+            long elapsed = System.nanoTime() - start;
+            if (measuring) {
+                OperationStats operationStats = stats.get(operation);
+                operationStats.latency.record(elapsed);
+                if (error) {
+                    operationStats.errors.increment();
+                }
+            }
+        }
+    }
+
+    private String report(double seconds) {
+        List<List<String>> rows = new ArrayList<>();
+        long totalCount = 0;
+        long totalErrors = 0;
+        for (Map.Entry<Workload.Operation, OperationStats> entry : stats.entrySet()) {
+            OperationStats operationStats = entry.getValue();
+            long count = operationStats.latency.getCount();
+            long errors = operationStats.errors.sum();
+            totalCount += count;
+            totalErrors += errors;
+            if (count == 0) {
+                continue;
+            }
+            LatencyHistogram latency = operationStats.latency;
+            rows.add(Arrays.asList(entry.getKey().name().toLowerCase(),
+                    String.valueOf(count),
+                    String.format("%.1f", count / seconds),
+                    String.format("%.2f%%", 100.0 * errors / count),
+                    String.format("%.3f", latency.getMeanMillis()),
+                    String.format("%.3f", latency.getPercentileMillis(0.50)),
+                    String.format("%.3f", latency.getPercentileMillis(0.99)),
+                    String.format("%.3f", latency.getPercentileMillis(0.999)),
+                    String.format("%.3f", latency.getMaxMillis())));
+        }
+        rows.add(Arrays.asList("total", String.valueOf(totalCount), String.format("%.1f", totalCount / seconds),
+                String.format("%.2f%%", totalCount == 0 ? 0 : 100.0 * totalErrors / totalCount),
+                "", "", "", "", ""));
+        List<String> headers = Arrays.asList("Operation", "Count", "Ops_per_sec", "Errors", "Avg_ms", "P50_ms",
+                "P99_ms", "P999_ms", "Max_ms");
+        return TableGenerator.generateTable(headers, rows);
+    }
+
+    // 解析 类型=权重,... ，没有列出的类型权重为0
+    private static Map<Workload.Operation, Integer> parseMix(String spec) {
+        Map<Workload.Operation, Integer> mix = new EnumMap<>(Workload.Operation.class);
+        for (String part : spec.split(",")) {
+            String[] pair = part.trim().split("=");
+            if (pair.length != 2) {
+                throw new IllegalArgumentException("语句混合比例格式应为 类型=权重,...: " + spec);
+            }
+            mix.put(Workload.Operation.valueOf(pair[0].trim().toUpperCase()), Integer.parseInt(pair[1].trim()));
+        }
+        return mix;
+    }
+}
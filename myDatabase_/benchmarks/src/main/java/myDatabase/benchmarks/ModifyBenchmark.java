@@ -0,0 +1,61 @@
+package myDatabase.benchmarks;
+
+import myDatabase.Delete;
+import myDatabase.Update;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * UPDATE和带条件的DELETE：都要读整表、对命中行加行锁，再在表闩锁内重读并写回整表
+ * 每次调用前都把表恢复为rows行，两者测量的都是在同样大小的表上改写一行。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ModifyBenchmark {
+    @Param({"1000", "10000"})
+    public int rows;
+
+    @Param({"16", "128"})
+    public int width;
+
+    private BenchmarkFixture fixture;
+    private List<String> lines;
+    private String updateSql;
+    private String deleteSql;
+
+    @Setup(Level.Trial)
+    public void createTable() throws IOException {
+        fixture = new BenchmarkFixture();
+        lines = fixture.createTable("t", "id int PRIMARY KEY, name varchar(" + width + "), v int", rows,
+                i -> new String[]{Integer.toString(i), BenchmarkFixture.text(i, width), Integer.toString(i % 100)});
+        updateSql = "update t set v = 7 where id = " + rows / 2;
+        deleteSql = "delete from t where id = " + rows / 2;
+    }
+
+    @Setup(Level.Invocation)
+    public void resetTable() throws IOException {
+        fixture.load("t", lines);
+    }
+
+    @TearDown(Level.Trial)
+    public void cleanUp() throws IOException {
+        fixture.close();
+    }
+
+    @Benchmark
+    public String update() {
+        return Update.processUpdate(updateSql, fixture.session);
+    }
+
+    @Benchmark
+    public String deleteWithCondition() {
+        return Delete.processDelete(deleteSql, fixture.session);
+    }
+}
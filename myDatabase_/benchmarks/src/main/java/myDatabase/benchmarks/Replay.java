@@ -0,0 +1,257 @@
+package myDatabase.benchmarks;
+
+import controller.DatabaseProcessor;
+import model.Database;
+import model.Session;
+import myDatabase.ExecutionMonitor;
+import myDatabase.LatencyHistogram;
+import myDatabase.RowCursor;
+import myDatabase.SQLConstant;
+import myDatabase.SlowQueryLog;
+import myDatabase.TableGenerator;
+import myDatabase.WorkloadCapture;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.stream.Stream;
+
+/**
+ * 重放语句捕获文件（见WorkloadCapture、App --capture），比较每类语句在重放时与捕获时的延迟
+ * 用法：Replay 捕获文件 --data 数据目录 [--fast] [--work 目录] [--keep]
+ * 数据目录先复制到工作目录再重放，原数据不受影响；数据目录应是捕获开始时数据的副本（如备份），
+ * 否则依赖已有数据的语句结果会不同。默认新建临时目录，重放后删除（--keep 保留）；--work 指定的目录必须不存在或为空，
+ * 重放后保留。
+ * 捕获时打开游标的SELECT（图形界面的查询）重放时同样只打开游标，计时不含取结果。
+ * 每个捕获的会话一个线程，按开始时间顺序执行该会话的语句，会话之间的并发关系得以保留；
+ * 默认按原始时间间隔发出语句，--fast 则不等待，尽快执行。
+ * 报告按规范化语句（见SlowQueryLog.normalize）汇总捕获时和重放时的平均/p99延迟，以及出错情况与捕获时不同的语句数。
+ */
+public class Replay {
+    // 一类规范化语句的对比
+    private static class Comparison {
+        final String statement;
+        final LatencyHistogram original = new LatencyHistogram();
+        final LatencyHistogram replayed = new LatencyHistogram();
+        long outcomeChanged;
+
+        Comparison(String statement) {
+            this.statement = statement;
+        }
+    }
+
+    private final Database database;
+    private final boolean fast;
+    // 重放结果，下标与捕获记录一致
+    private final long[] replayedNanos;
+    private final boolean[] replayedError;
+
+    private Replay(Database database, boolean fast, int statements) {
+        this.database = database;
+        this.fast = fast;
+        this.replayedNanos = new long[statements];
+        this.replayedError = new boolean[statements];
+    }
+
+    public static void main(String[] args) throws Exception {
+        String capturePath = null;
+        String dataDir = null;
+        String workDir = null;
+        boolean fast = false;
+        boolean keep = false;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--data":
+                    dataDir = args[++i];
+                    break;
+                case "--work":
+                    workDir = args[++i];
+                    break;
+                case "--fast":
+                    fast = true;
+                    break;
+                case "--keep":
+                    keep = true;
+                    break;
+                default:
+                    if (args[i].startsWith("--") || capturePath != null) {
+                        System.err.println("未知参数: " + args[i]);
+                        System.exit(2);
+                    }
+                    capturePath = args[i];
+            }
+        }
+        if (capturePath == null || dataDir == null) {
+            System.err.println("用法: Replay 捕获文件 --data 数据目录 [--fast] [--work 目录] [--keep]");
+            System.exit(2);
+        }
+
+        List<WorkloadCapture.Entry> entries = WorkloadCapture.read(Paths.get(capturePath));
+        Path work;
+        if (workDir != null) {
+            work = Paths.get(workDir);
+            if (Files.exists(work) && !isEmptyDirectory(work)) {
+                System.err.println("工作目录不是空目录: " + work);
+                System.exit(2);
+            }
+            // 用户指定的目录不删除
+            keep = true;
+        } else {
+            work = Files.createTempDirectory("myDatabase-replay");
+        }
+        copyDirectory(Paths.get(dataDir), work);
+        SQLConstant.setRootPath(work.toString());
+
+        PrintStream out = System.out;
+        out.printf("重放 %d 条语句，数据副本 %s，%s%n", entries.size(), work, fast ? "尽快执行" : "按原始时间间隔");
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            Database database = new Database();
+            database.initialize();
+            Replay replay = new Replay(database, fast, entries.size());
+            long started = System.nanoTime();
+            replay.run(entries);
+            double seconds = (System.nanoTime() - started) / 1e9;
+            out.println(replay.report(entries, seconds));
+        } finally {
+            System.setOut(out);
+            if (!keep) {
+                deleteDirectory(work);
+            }
+        }
+        System.exit(0);
+    }
+
+    // 按会话分组，每个会话一个线程
+    private void run(List<WorkloadCapture.Entry> entries) throws InterruptedException {
+        Map<Long, List<Integer>> sessions = new LinkedHashMap<>();
+        for (int i = 0; i < entries.size(); i++) {
+            sessions.computeIfAbsent(entries.get(i).sessionId, id -> new ArrayList<>()).add(i);
+        }
+        CountDownLatch done = new CountDownLatch(sessions.size());
+        long origin = System.nanoTime();
+        for (List<Integer> indexes : sessions.values()) {
+            indexes.sort(Comparator.comparingLong(i -> entries.get(i).startMicros));
+            Session session = new Session(entries.get(indexes.get(0)).user);
+            Thread thread = new Thread(() -> {
+                try {
+                    replaySession(session, entries, indexes, origin);
+                } finally {
+                    done.countDown();
+                }
+            }, "replay-" + session.getId());
+            thread.start();
+        }
+        done.await();
+    }
+
+    private void replaySession(Session session, List<WorkloadCapture.Entry> entries, List<Integer> indexes,
+                               long origin) {
+        for (int index : indexes) {
+            WorkloadCapture.Entry entry = entries.get(index);
+            if (!fast) {
+                long wait = origin + entry.startMicros * 1000 - System.nanoTime();
+                if (wait > 0) {
+                    try {
+                        Thread.sleep(wait / 1_000_000, (int) (wait % 1_000_000));
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            }
+            // 捕获开始前会话可能已经选择了数据库，以捕获时语句开始时的当前数据库为准
+            session.setCurrentDatabase(entry.database);
+            long start = System.nanoTime();
+            boolean error;
+            RowCursor cursor = null;
+            try {
+                if (entry.cursor) {
+                    cursor = DatabaseProcessor.openCursor(entry.sql, session, new ExecutionMonitor());
+                    error = false;
+                } else {
+                    error = DatabaseProcessor.executeQuery(entry.sql, database, session).startsWith("ERROR");
+                }
+            } catch (RuntimeException e) {
+                error = true;
+            }
+            replayedNanos[index] = System.nanoTime() - start;
+            replayedError[index] = error;
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+    }
+
+    private String report(List<WorkloadCapture.Entry> entries, double seconds) {
+        Map<String, Comparison> comparisons = new HashMap<>();
+        Comparison total = new Comparison("total");
+        long originalSpan = 0;
+        for (int i = 0; i < entries.size(); i++) {
+            WorkloadCapture.Entry entry = entries.get(i);
+            Comparison comparison = comparisons.computeIfAbsent(SlowQueryLog.normalize(entry.sql), Comparison::new);
+            for (Comparison target : new Comparison[]{comparison, total}) {
+                target.original.record(entry.durationMicros * 1000);
+                target.replayed.record(replayedNanos[i]);
+                if (entry.error != replayedError[i]) {
+                    target.outcomeChanged++;
+                }
+            }
+            originalSpan = Math.max(originalSpan, entry.startMicros + entry.durationMicros);
+        }
+
+        List<Comparison> sorted = new ArrayList<>(comparisons.values());
+        sorted.sort(Comparator.comparingDouble(
+                (Comparison comparison) -> comparison.replayed.getMeanMillis() * comparison.replayed.getCount()).reversed());
+        sorted.add(total);
+        List<List<String>> rows = new ArrayList<>();
+        for (Comparison comparison : sorted) {
+            double originalMean = comparison.original.getMeanMillis();
+            double replayedMean = comparison.replayed.getMeanMillis();
+            rows.add(Arrays.asList(comparison.statement,
+                    String.valueOf(comparison.original.getCount()),
+                    String.format("%.3f", originalMean),
+                    String.format("%.3f", replayedMean),
+                    originalMean > 0 ? String.format("%.2f", replayedMean / originalMean) : "-",
+                    String.format("%.3f", comparison.original.getPercentileMillis(0.99)),
+                    String.format("%.3f", comparison.replayed.getPercentileMillis(0.99)),
+                    String.valueOf(comparison.outcomeChanged)));
+        }
+        List<String> headers = Arrays.asList("Statement", "Count", "Orig_avg_ms", "Replay_avg_ms", "Ratio",
+                "Orig_p99_ms", "Replay_p99_ms", "Outcome_changed");
+        return TableGenerator.generateTable(headers, rows)
+                + String.format("%n捕获时长 %.1f s，重放时长 %.1f s", originalSpan / 1e6, seconds);
+    }
+
+    private static void copyDirectory(Path source, Path target) throws IOException {
+        try (Stream<Path> paths = Files.walk(source)) {
+            for (Path path : (Iterable<Path>) paths::iterator) {
+                Path destination = target.resolve(source.relativize(path).toString());
+                if (Files.isDirectory(path)) {
+                    Files.createDirectories(destination);
+                } else {
+                    Files.copy(path, destination, StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+        }
+    }
+
+    private static boolean isEmptyDirectory(Path path) throws IOException {
+        if (!Files.isDirectory(path)) {
+            return false;
+        }
+        try (Stream<Path> children = Files.list(path)) {
+            return !children.findAny().isPresent();
+        }
+    }
+
+    private static void deleteDirectory(Path root) throws IOException {
+        try (Stream<Path> paths = Files.walk(root)) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+}
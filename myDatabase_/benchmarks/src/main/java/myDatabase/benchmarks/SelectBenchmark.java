@@ -0,0 +1,68 @@
+package myDatabase.benchmarks;
+
+import myDatabase.QueryResult;
+import myDatabase.Select;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SELECT：单表扫描（只命中一行的条件、命中所有行的条件）和两表等值JOIN
+ * 只测执行，不含结果的表格格式化（见TableGeneratorBenchmark）。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SelectBenchmark {
+    @Param({"1000", "10000", "100000"})
+    public int rows;
+
+    @Param({"16", "128"})
+    public int width;
+
+    private BenchmarkFixture fixture;
+    private String selectiveSql;
+
+    @Setup(Level.Trial)
+    public void createTables() throws IOException {
+        fixture = new BenchmarkFixture();
+        String name = "name varchar(" + width + ")";
+        int parents = Math.max(1, rows / 10);
+        fixture.createTable("t", "id int PRIMARY KEY, " + name + ", v int", rows,
+                i -> new String[]{Integer.toString(i), BenchmarkFixture.text(i, width), Integer.toString(i % 100)});
+        fixture.createTable("parent", "id int PRIMARY KEY, " + name, parents,
+                i -> new String[]{Integer.toString(i), BenchmarkFixture.text(i, width)});
+        fixture.createTable("child", "id int PRIMARY KEY, parent_id int, " + name, rows,
+                i -> new String[]{Integer.toString(i), Integer.toString(i % parents), BenchmarkFixture.text(i, width)});
+        selectiveSql = "select * from t where id = " + rows / 2;
+        for (QueryResult result : new QueryResult[]{scanSelective(), scanNonSelective(), join()}) {
+            if (result.isError()) {
+                throw new IllegalStateException(result.getMessage());
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void cleanUp() throws IOException {
+        fixture.close();
+    }
+
+    @Benchmark
+    public QueryResult scanSelective() {
+        return Select.executeSelect(selectiveSql, fixture.session);
+    }
+
+    @Benchmark
+    public QueryResult scanNonSelective() {
+        return Select.executeSelect("select id, name from t where v >= 0", fixture.session);
+    }
+
+    @Benchmark
+    public QueryResult join() {
+        return Select.executeSelect("select * from parent join child on parent.id = child.parent_id", fixture.session);
+    }
+}
@@ -0,0 +1,44 @@
+package myDatabase.benchmarks;
+
+import myDatabase.TableGenerator;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 把查询结果格式化为文本表格（SELECT、SHOW等语句的输出都经过这里）
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TableGeneratorBenchmark {
+    @Param({"1000", "10000", "100000"})
+    public int rows;
+
+    @Param({"16", "128"})
+    public int width;
+
+    private List<String> headers;
+    private List<List<String>> data;
+
+    @Setup(Level.Trial)
+    public void createRows() {
+        headers = Arrays.asList("id", "name", "v", "price", "note");
+        data = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            data.add(Arrays.asList(Integer.toString(i), BenchmarkFixture.text(i, width), Integer.toString(i % 100),
+                    Double.toString(i * 0.25), BenchmarkFixture.text(rows - i, width / 2)));
+        }
+    }
+
+    @Benchmark
+    public String generateTable() {
+        return TableGenerator.generateTable(headers, data);
+    }
+}
@@ -0,0 +1,120 @@
+package myDatabase.benchmarks;
+
+import model.Database;
+import model.Session;
+import myDatabase.Create;
+import myDatabase.SQLConstant;
+import myDatabase.TableFile;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 压测的数据和语句：类似TPC-C的客户/订单两张表
+ * customer(id, name, region, balance) 有scale * 1000行，orders(id, customer_id, amount, status) 有scale * 10000行，
+ * 订单的客户和各语句选中的客户都服从Zipf分布，少数热门客户集中了大部分访问（也集中了行锁竞争）。
+ * 表结构通过Create建立，数据直接写入表文件（逐条INSERT装载时每条都要做主键检查，装载时间是行数的平方）。
+ */
+public class Workload {
+    public static final String DB_NAME = "loadtest";
+
+    /**
+     * 语句类型，weight为默认混合比例中的权重
+     */
+    public enum Operation {
+        INSERT(10), POINT_SELECT(45), RANGE_SCAN(15), JOIN(2), UPDATE(28);
+
+        final int weight;
+
+        Operation(int weight) {
+            this.weight = weight;
+        }
+    }
+
+    private final long customers;
+    private final AtomicLong nextOrderId;
+    private final ZipfianGenerator customerKeys;
+
+    private Workload(long customers, long orders, double theta) {
+        this.customers = customers;
+        this.nextOrderId = new AtomicLong(orders);
+        this.customerKeys = new ZipfianGenerator(customers, theta);
+    }
+
+    /**
+     * 建库建表并生成数据
+     * @param scale 规模因子，1对应1000个客户、10000个订单
+     * @param theta 客户访问的Zipf偏斜度
+     */
+    public static Workload create(Database database, Session session, double scale, double theta) throws IOException {
+        long customers = Math.max(10, Math.round(scale * 1000));
+        long orders = customers * 10;
+        check(Create.processCreateDatabase("create database " + DB_NAME + ";", database));
+        session.setCurrentDatabase(DB_NAME);
+        check(Create.processCreateTable("create table customer (id int PRIMARY KEY, name varchar(32), "
+                + "region varchar(8), balance int);", database, session));
+        check(Create.processCreateTable("create table orders (id int PRIMARY KEY, "
+                + "customer_id int REFERENCES customer(id), amount int, status varchar(8));", database, session));
+
+        Workload workload = new Workload(customers, orders, theta);
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        load("customer", customers, i -> new String[]{Long.toString(i), BenchmarkFixture.text((int) i, 32),
+                "r" + i % 10, Integer.toString(random.nextInt(100_000))});
+        load("orders", orders, i -> new String[]{Long.toString(i), Long.toString(workload.customerKeys.next()),
+                Integer.toString(1 + random.nextInt(1000)), i % 3 == 0 ? "paid" : "new"});
+        return workload;
+    }
+
+    /**
+     * 生成一条该类型的语句，参数随机选取
+     */
+    public String statement(Operation operation) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        switch (operation) {
+            case INSERT:
+                return "insert into orders values (" + nextOrderId.getAndIncrement() + ", " + customerKeys.next()
+                        + ", " + (1 + random.nextInt(1000)) + ", 'new')";
+            case POINT_SELECT:
+                return "select * from customer where id = " + customerKeys.next();
+            case RANGE_SCAN:
+                // WHERE只支持 = != > <，amount是整数，用 > low-1 表示 >= low
+                int low = 1 + random.nextInt(990);
+                return "select id, amount from orders where amount > " + (low - 1) + " and amount < " + (low + 10);
+            case JOIN:
+                return "select customer.name, orders.amount from customer join orders "
+                        + "on customer.id = orders.customer_id";
+            case UPDATE:
+                return "update customer set balance = " + random.nextInt(100_000) + " where id = " + customerKeys.next();
+            default:
+                throw new IllegalArgumentException(operation.name());
+        }
+    }
+
+    public long getCustomers() {
+        return customers;
+    }
+
+    private interface RowGenerator {
+        String[] row(long i);
+    }
+
+    private static void load(String tableName, long rows, RowGenerator generator) throws IOException {
+        Path path = Paths.get(SQLConstant.getTableRecordPath(DB_NAME, tableName));
+        List<String> lines = new ArrayList<>(TableFile.readLines(path).subList(0, TableFile.HEADER_LINES));
+        for (long i = 0; i < rows; i++) {
+            lines.add(String.join(SQLConstant.getFieldSeparator(), generator.row(i)));
+        }
+        TableFile.writeLines(path, lines);
+    }
+
+    private static void check(String result) {
+        if (result.startsWith("ERROR")) {
+            throw new IllegalStateException(result);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package myDatabase.benchmarks;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Zipf分布的整数生成器，取值[0, n)，0最热门
+ * 按Gray等人"Quickly Generating Billion-Record Synthetic Databases"中的方法，只需预先计算zeta(n)，
+ * 每次生成O(1)；随机数取自ThreadLocalRandom，可被多个线程共用。
+ */
+public class ZipfianGenerator {
+    private final long n;
+    private final double theta;
+    private final double alpha;
+    private final double zetaN;
+    private final double eta;
+
+    /**
+     * @param theta 偏斜度，0为均匀分布，越接近1越集中在少数热门值上（YCSB默认0.99），不能等于1
+     */
+    public ZipfianGenerator(long n, double theta) {
+        if (n <= 0 || theta < 0 || theta >= 1) {
+            throw new IllegalArgumentException("需要 n > 0 且 0 <= theta < 1");
+        }
+        this.n = n;
+        this.theta = theta;
+        this.alpha = 1 / (1 - theta);
+        this.zetaN = zeta(n, theta);
+        double zeta2 = zeta(2, theta);
+        this.eta = (1 - Math.pow(2.0 / n, 1 - theta)) / (1 - zeta2 / zetaN);
+    }
+
+    public long next() {
+        double u = ThreadLocalRandom.current().nextDouble();
+        double uz = u * zetaN;
+        if (uz < 1) {
+            return 0;
+        }
+        if (uz < 1 + Math.pow(0.5, theta)) {
+            return Math.min(1, n - 1);
+        }
+        return Math.min(n - 1, (long) (n * Math.pow(eta * u - eta + 1, alpha)));
+    }
+
+    private static double zeta(long n, double theta) {
+        double sum = 0;
+        for (long i = 1; i <= n; i++) {
+            sum += 1 / Math.pow(i, theta);
+        }
+        return sum;
+    }
+}
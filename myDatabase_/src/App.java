@@ -1,17 +1,183 @@
+import cli.CommandLine;
+import cli.OutputFormat;
 import controller.AuthController;
+import controller.DatabaseProcessor;
 import model.Database;
+import myDatabase.BackupManifest;
+import myDatabase.BackupRestore;
+import myDatabase.Migrate;
+import myDatabase.SQLConstant;
+
+import server.DatabaseServer;
 import view.AuthView;
 
+import java.io.File;
 import java.io.IOException;
+import java.nio.file.Paths;
 
 public class App {
     public static void main(String[] args) throws IOException {
+        boolean serverMode = false;
+        boolean cliMode = false;
+        int port = DatabaseServer.DEFAULT_PORT;
+        String scriptPath = null;
+        String format = null;
+        String username = null;
+        String password = null;
+        String dbName = null;
+        int parallelism = 1;
+        boolean continueOnError = false;
+        String migrateFormat = null;
+        String capturePath = null;
+        String[] backup = null;
+        String backupType = "full";
+        String[] restore = null;
+
+        // 解析启动参数: --server 以无界面服务端方式运行, --port 端口, --data 数据目录
+        // --exec 脚本 执行SQL脚本, --cli 交互式命令行, 二者可配合 --user --password --database --format
+        // --parallel 连续查询的流水线并发数, --continue-on-error 语句出错后继续执行
+        // --migrate-storage binary|text 把所有表转换为指定的存储格式后退出
+        // --capture 文件 把执行的每条语句捕获到文件，供benchmarks中的Replay重放
+        // --backup 库名 文件 [--backup-type full|incremental|differential] 备份数据库后退出，--restore 库名 文件 还原后退出
+        // 这两项在本进程中直接操作数据目录，正在运行的服务端应改为通过客户端执行BACKUP/RESTORE语句
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--server":
+                    serverMode = true;
+                    break;
+                case "--port":
+                    port = Integer.parseInt(args[++i]);
+                    break;
+                case "--data":
+                    SQLConstant.setRootPath(args[++i]);
+                    break;
+                case "--exec":
+                    cliMode = true;
+                    scriptPath = args[++i];
+                    break;
+                case "--cli":
+                    cliMode = true;
+                    break;
+                case "--format":
+                    format = args[++i];
+                    break;
+                case "--user":
+                    username = args[++i];
+                    break;
+                case "--password":
+                    password = args[++i];
+                    break;
+                case "--database":
+                    dbName = args[++i];
+                    break;
+                case "--parallel":
+                    parallelism = Integer.parseInt(args[++i]);
+                    break;
+                case "--continue-on-error":
+                    continueOnError = true;
+                    break;
+                case "--migrate-storage":
+                    migrateFormat = args[++i];
+                    break;
+                case "--capture":
+                    capturePath = args[++i];
+                    break;
+                case "--backup":
+                    backup = new String[]{args[++i], args[++i]};
+                    break;
+                case "--backup-type":
+                    backupType = args[++i];
+                    break;
+                case "--restore":
+                    restore = new String[]{args[++i], args[++i]};
+                    break;
+                default:
+                    System.err.println("未知参数: " + args[i]);
+                    System.err.println("用法: App [--server] [--port 端口] [--data 数据目录] [--capture 捕获文件]");
+                    System.err.println("      App --exec 脚本文件|- | --cli  --user 用户名 [--password 密码] [--database 库名]");
+                    System.err.println("          [--format table|tsv|json] [--parallel N] [--continue-on-error]");
+                    System.err.println("      App [--data 数据目录] --migrate-storage binary|text");
+                    System.err.println("      App [--data 数据目录] --backup 库名 文件.zip [--backup-type full|incremental|differential]");
+                    System.err.println("      App [--data 数据目录] --restore 库名 文件.zip");
+                    return;
+            }
+        }
+
+        if (migrateFormat != null) {
+            if (!migrateFormat.equalsIgnoreCase("binary") && !migrateFormat.equalsIgnoreCase("text")) {
+                System.err.println("未知的存储格式: " + migrateFormat + "（可选 binary、text）");
+                System.exit(CommandLine.EXIT_USAGE);
+            }
+            Migrate.migrateAll(migrateFormat.equalsIgnoreCase("binary"));
+            return;
+        }
+
+        if (backup != null || restore != null) {
+            System.setProperty("java.awt.headless", "true");
+            String result;
+            if (backup != null) {
+                BackupManifest.Type type;
+                try {
+                    type = BackupManifest.Type.valueOf(backupType.toUpperCase());
+                } catch (IllegalArgumentException e) {
+                    System.err.println("未知的备份类型: " + backupType + "（可选 full、incremental、differential）");
+                    System.exit(CommandLine.EXIT_USAGE);
+                    return;
+                }
+                result = BackupRestore.backupDatabase(backup[0], new File(backup[1]), type);
+            } else {
+                Database db = new Database();
+                db.initialize();
+                result = BackupRestore.restoreDatabase(db, restore[0], new File(restore[1]));
+            }
+            System.out.println(result);
+            System.exit(result.startsWith("ERROR") ? CommandLine.EXIT_STATEMENT_FAILED : CommandLine.EXIT_OK);
+        }
+
+        if (serverMode || cliMode) {
+            // 服务端与命令行模式不初始化任何界面组件
+            System.setProperty("java.awt.headless", "true");
+        } else {
+            System.setProperty("sun.java2d.png.disableGamma", "true");
+        }
 
-        System.setProperty("sun.java2d.png.disableGamma", "true");
         //初始化,连接数据库
         Database db = new Database();
         db.initialize();
 
+        if (capturePath != null) {
+            try {
+                DatabaseProcessor.startCapture(Paths.get(capturePath));
+            } catch (IOException e) {
+                System.err.println("无法创建语句捕获文件: " + e.getMessage());
+                System.exit(CommandLine.EXIT_USAGE);
+            }
+        }
+
+        if (serverMode) {
+            new DatabaseServer(db, port).start();
+            return;
+        }
+
+        if (cliMode) {
+            CommandLine commandLine = new CommandLine(db);
+            commandLine.setScriptPath(scriptPath);
+            commandLine.setUsername(username);
+            commandLine.setPassword(password);
+            commandLine.setInitialDatabase(dbName);
+            commandLine.setParallelism(parallelism);
+            commandLine.setContinueOnError(continueOnError);
+            try {
+                if (format != null) {
+                    commandLine.setFormat(OutputFormat.of(format));
+                }
+            } catch (IllegalArgumentException e) {
+                System.err.println(e.getMessage());
+                System.exit(CommandLine.EXIT_USAGE);
+            }
+            System.exit(commandLine.run());
+        }
+
         //创建登录界面和控制器
         AuthView authView = new AuthView();
         new AuthController(authView, db);
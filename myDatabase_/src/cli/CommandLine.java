@@ -0,0 +1,150 @@
+package cli;
+
+import controller.DatabaseProcessor;
+import model.Database;
+import model.Session;
+import model.User;
+import myDatabase.QueryResult;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 命令行模式入口：--exec 执行SQL脚本，--cli 进入交互式命令行
+ * 结果写到标准输出；引擎的调试输出改写到标准错误，不会混入结果。
+ */
+public class CommandLine {
+    // 退出码
+    public static final int EXIT_OK = 0;
+    public static final int EXIT_STATEMENT_FAILED = 1;
+    public static final int EXIT_USAGE = 2;
+
+    private final Database database;
+    private String scriptPath;
+    private OutputFormat format;
+    private String username;
+    private String password;
+    private String initialDatabase;
+    private int parallelism = 1;
+    private boolean continueOnError;
+
+    public CommandLine(Database database) {
+        this.database = database;
+    }
+
+    /**
+     * 设置要执行的脚本，"-" 表示从标准输入读取；不设置时进入交互模式
+     */
+    public void setScriptPath(String scriptPath) {
+        this.scriptPath = scriptPath;
+    }
+
+    public void setFormat(OutputFormat format) {
+        this.format = format;
+    }
+
+    public void setUsername(String username) {
+        this.username = username;
+    }
+
+    public void setPassword(String password) {
+        this.password = password;
+    }
+
+    public void setInitialDatabase(String initialDatabase) {
+        this.initialDatabase = initialDatabase;
+    }
+
+    public void setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    public void setContinueOnError(boolean continueOnError) {
+        this.continueOnError = continueOnError;
+    }
+
+    /**
+     * 运行命令行模式，返回进程退出码
+     */
+    public int run() throws IOException {
+        boolean interactive = scriptPath == null;
+        PrintStream out = new PrintStream(new BufferedOutputStream(new FileOutputStream(FileDescriptor.out), 1 << 16),
+                false, StandardCharsets.UTF_8);
+        PrintStream err = new PrintStream(new FileOutputStream(FileDescriptor.err), true, StandardCharsets.UTF_8);
+        System.setOut(System.err);
+
+        Session session = login(err);
+        if (session == null) {
+            return EXIT_USAGE;
+        }
+        try {
+            return run(session, interactive, out, err);
+        } finally {
+            // 释放脚本中没有关闭的游标
+            session.close();
+        }
+    }
+
+    private int run(Session session, boolean interactive, PrintStream out, PrintStream err) throws IOException {
+        if (initialDatabase != null) {
+            QueryResult result = DatabaseProcessor.execute("use " + initialDatabase + ";", database, session);
+            if (result.isError()) {
+                err.println(result.getMessage());
+                return EXIT_USAGE;
+            }
+        }
+
+        OutputFormat outputFormat = format != null ? format : interactive ? OutputFormat.TABLE : OutputFormat.TSV;
+        ResultPrinter printer = new ResultPrinter(out, err, outputFormat);
+
+        if (interactive) {
+            // 交互模式逐条执行，出错后继续
+            ScriptRunner runner = new ScriptRunner(database, session, printer, 1, true);
+            StatementReader reader = new StatementReader(
+                    new InputStreamReader(System.in, StandardCharsets.UTF_8), continuation -> {
+                printer.flush();
+                err.print(continuation ? "        -> " : "myDatabase> ");
+                err.flush();
+            });
+            err.println("已登录为 " + session.getUsername() + "，输入 help; 查看帮助，quit; 退出");
+            runner.run(reader);
+            printer.flush();
+            return EXIT_OK;
+        }
+
+        ScriptRunner runner = new ScriptRunner(database, session, printer, parallelism, continueOnError);
+        int errors;
+        try (Reader input = openScript()) {
+            errors = runner.run(new StatementReader(input));
+        } catch (FileNotFoundException e) {
+            err.println("ERROR: 无法打开脚本文件 " + scriptPath);
+            return EXIT_USAGE;
+        }
+        return errors == 0 ? EXIT_OK : EXIT_STATEMENT_FAILED;
+    }
+
+    private Reader openScript() throws IOException {
+        if (scriptPath.equals("-")) {
+            return new InputStreamReader(System.in, StandardCharsets.UTF_8);
+        }
+        return new InputStreamReader(new FileInputStream(scriptPath), StandardCharsets.UTF_8);
+    }
+
+    // 校验登录用户；交互模式下未给出密码时从控制台读取
+    private Session login(PrintStream err) {
+        if (username == null) {
+            err.println("ERROR: 请用 --user 用户名 --password 密码 指定登录用户");
+            return null;
+        }
+        if (password == null && System.console() != null) {
+            char[] input = System.console().readPassword("密码: ");
+            password = input == null ? null : new String(input);
+        }
+        User user = password == null ? null : database.authenticateUser(username, password);
+        if (user == null) {
+            err.println("ERROR: 用户名或密码错误");
+            return null;
+        }
+        return new Session(user.getUsername());
+    }
+}
@@ -0,0 +1,22 @@
+package cli;
+
+/**
+ * 命令行模式的结果输出格式
+ */
+public enum OutputFormat {
+    // 框线表格，交互模式默认
+    TABLE,
+    // 制表符分隔，脚本模式默认
+    TSV,
+    // 每条语句输出一行JSON
+    JSON;
+
+    public static OutputFormat of(String name) {
+        for (OutputFormat format : values()) {
+            if (format.name().equalsIgnoreCase(name)) {
+                return format;
+            }
+        }
+        throw new IllegalArgumentException("未知的输出格式: " + name + "（可选 table、tsv、json）");
+    }
+}
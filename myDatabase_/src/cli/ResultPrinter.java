@@ -0,0 +1,197 @@
+package cli;
+
+import myDatabase.QueryResult;
+import myDatabase.TableGenerator;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 按输出格式打印每条语句的结果与耗时
+ * TSV格式下标准输出只有结果集（表头 + 数据行，结果集之间空一行），状态与耗时写到状态流；
+ * JSON与表格格式把所有内容写到标准输出。
+ */
+public class ResultPrinter {
+    private final PrintStream out;
+    private final PrintStream status;
+    private final OutputFormat format;
+    private boolean firstResultSet = true;
+
+    public ResultPrinter(PrintStream out, PrintStream status, OutputFormat format) {
+        this.out = out;
+        this.status = status;
+        this.format = format;
+    }
+
+    /**
+     * 打印一条语句的执行结果
+     * @param index 语句在脚本中的序号，从1开始
+     * @param line 语句在脚本中的起始行号
+     */
+    public void print(int index, int line, String sql, QueryResult result, long elapsedNanos) {
+        switch (format) {
+            case TSV:
+                printTsv(index, line, result, elapsedNanos);
+                break;
+            case JSON:
+                printJson(index, line, sql, result, elapsedNanos);
+                break;
+            default:
+                printTable(result, elapsedNanos);
+                break;
+        }
+    }
+
+    public void flush() {
+        out.flush();
+        status.flush();
+    }
+
+    private void printTable(QueryResult result, long elapsedNanos) {
+        if (result.isResultSet()) {
+            // 结果已在内存中，列宽按全部行计算，表格直接流式写出，不拼成一个大字符串
+            try {
+                TableGenerator.writeTable(out, result.getHeaders(), result.getRows().iterator(),
+                        TableGenerator.columnWidths(result.getHeaders(), result.getRows()), -1);
+            } catch (IOException e) {
+                // PrintStream不抛出IOException
+                throw new UncheckedIOException(e);
+            }
+            out.println();
+            out.println(result.getRows().size() + " rows in set (" + formatMillis(elapsedNanos) + " ms)");
+        } else {
+            out.println(result.getMessage() + " (" + formatMillis(elapsedNanos) + " ms)");
+        }
+        out.println();
+    }
+
+    private void printTsv(int index, int line, QueryResult result, long elapsedNanos) {
+        String summary;
+        if (result.isResultSet()) {
+            if (!firstResultSet) {
+                out.println();
+            }
+            firstResultSet = false;
+            out.println(joinTsv(result.getHeaders()));
+            for (List<String> row : result.getRows()) {
+                out.println(joinTsv(row));
+            }
+            summary = result.getRows().size() + " rows";
+        } else {
+            summary = result.getMessage().replace('\n', ' ');
+        }
+        status.println("-- #" + index + " line " + line + ": " + summary + " (" + formatMillis(elapsedNanos) + " ms)");
+    }
+
+    private static String joinTsv(List<String> values) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < values.size(); i++) {
+            if (i > 0) {
+                sb.append('\t');
+            }
+            String value = values.get(i);
+            // 与MySQL导出格式一致：\N表示NULL，特殊字符用反斜杠转义
+            if (value == null || value.equalsIgnoreCase("null")) {
+                sb.append("\\N");
+            } else {
+                for (int j = 0; j < value.length(); j++) {
+                    char c = value.charAt(j);
+                    switch (c) {
+                        case '\\': sb.append("\\\\"); break;
+                        case '\t': sb.append("\\t"); break;
+                        case '\n': sb.append("\\n"); break;
+                        case '\r': sb.append("\\r"); break;
+                        default: sb.append(c);
+                    }
+                }
+            }
+        }
+        return sb.toString();
+    }
+
+    private void printJson(int index, int line, String sql, QueryResult result, long elapsedNanos) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\"statement\":").append(index);
+        sb.append(",\"line\":").append(line);
+        sb.append(",\"sql\":");
+        appendJsonString(sb, sql);
+        sb.append(",\"status\":\"").append(result.isError() ? "error" : "ok").append('"');
+        if (result.isResultSet()) {
+            sb.append(",\"columns\":[");
+            List<String> headers = result.getHeaders();
+            for (int i = 0; i < headers.size(); i++) {
+                if (i > 0) {
+                    sb.append(',');
+                }
+                appendJsonString(sb, headers.get(i));
+            }
+            sb.append("],\"rows\":[");
+            for (int r = 0; r < result.getRows().size(); r++) {
+                if (r > 0) {
+                    sb.append(',');
+                }
+                sb.append('[');
+                for (int c = 0; c < headers.size(); c++) {
+                    if (c > 0) {
+                        sb.append(',');
+                    }
+                    appendJsonValue(sb, result.getValue(r, c));
+                }
+                sb.append(']');
+            }
+            sb.append(']');
+        } else {
+            sb.append(",\"message\":");
+            appendJsonString(sb, result.getMessage());
+            if (!result.isError()) {
+                sb.append(",\"updateCount\":").append(result.getUpdateCount());
+            }
+        }
+        sb.append(",\"elapsedMs\":").append(formatMillis(elapsedNanos)).append('}');
+        out.println(sb);
+    }
+
+    private static void appendJsonValue(StringBuilder sb, Object value) {
+        if (value == null) {
+            sb.append("null");
+        } else if (value instanceof Boolean || value instanceof Long) {
+            sb.append(value);
+        } else if (value instanceof Double && Double.isFinite((Double) value)) {
+            sb.append(value);
+        } else {
+            appendJsonString(sb, value.toString());
+        }
+    }
+
+    private static void appendJsonString(StringBuilder sb, String text) {
+        if (text == null) {
+            sb.append("null");
+            return;
+        }
+        sb.append('"');
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '"': sb.append("\\\""); break;
+                case '\\': sb.append("\\\\"); break;
+                case '\n': sb.append("\\n"); break;
+                case '\r': sb.append("\\r"); break;
+                case '\t': sb.append("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+        sb.append('"');
+    }
+
+    private static String formatMillis(long nanos) {
+        return String.format(Locale.ROOT, "%.3f", nanos / 1_000_000.0);
+    }
+}
@@ -0,0 +1,139 @@
+package cli;
+
+import controller.DatabaseProcessor;
+import model.Database;
+import model.Session;
+import myDatabase.QueryResult;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * 无界面地依次执行SQL语句
+ * 连续的SELECT互不影响，可以流水线方式并发执行（最多parallelism条同时执行），输出仍按语句顺序；
+ * 其他语句会修改数据或会话状态，执行前先等待前面的查询全部输出完毕。
+ */
+public class ScriptRunner {
+    private static final ExecutorService PIPELINE_EXECUTOR = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final Database database;
+    private final Session session;
+    private final ResultPrinter printer;
+    private final int parallelism;
+    private final boolean continueOnError;
+    // 已提交但尚未输出的查询，按语句顺序排列
+    private final Deque<PendingStatement> inFlight = new ArrayDeque<>();
+    private int statementCount;
+    private int errorCount;
+    private boolean stopped;
+
+    public ScriptRunner(Database database, Session session, ResultPrinter printer,
+                        int parallelism, boolean continueOnError) {
+        this.database = database;
+        this.session = session;
+        this.printer = printer;
+        this.parallelism = Math.max(1, parallelism);
+        this.continueOnError = continueOnError;
+    }
+
+    /**
+     * 执行读取到的所有语句，遇到 quit; / exit; 时停止
+     * @return 执行失败的语句数
+     */
+    public int run(StatementReader reader) throws IOException {
+        String sql;
+        while (!stopped && (sql = reader.next()) != null) {
+            String normalized = sql.toLowerCase().replaceAll(";\\s*$", "").trim();
+            if (normalized.equals("quit") || normalized.equals("exit")) {
+                break;
+            }
+
+            PendingStatement statement = new PendingStatement(++statementCount, reader.getStatementLine(), sql);
+            if (parallelism > 1 && normalized.startsWith("select")) {
+                if (inFlight.size() >= parallelism) {
+                    printNext();
+                }
+                statement.future = PIPELINE_EXECUTOR.submit(() -> execute(statement.sql));
+                inFlight.add(statement);
+            } else {
+                drain();
+                if (stopped) {
+                    break;
+                }
+                report(statement, execute(sql));
+            }
+        }
+        drain();
+        printer.flush();
+        return errorCount;
+    }
+
+    private TimedResult execute(String sql) {
+        long start = System.nanoTime();
+        QueryResult result = DatabaseProcessor.execute(sql, database, session);
+        return new TimedResult(result, System.nanoTime() - start);
+    }
+
+    // 按顺序输出所有已提交的查询
+    private void drain() {
+        while (!inFlight.isEmpty()) {
+            printNext();
+        }
+    }
+
+    private void printNext() {
+        PendingStatement statement = inFlight.poll();
+        TimedResult timed;
+        try {
+            timed = statement.future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            timed = new TimedResult(QueryResult.error("ERROR: 执行被中断"), 0);
+        } catch (ExecutionException e) {
+            timed = new TimedResult(QueryResult.error("ERROR: " + e.getCause().getMessage()), 0);
+        }
+        if (stopped) {
+            // 出错停止后，已提交的查询不再输出
+            return;
+        }
+        report(statement, timed);
+    }
+
+    private void report(PendingStatement statement, TimedResult timed) {
+        printer.print(statement.index, statement.line, statement.sql, timed.result, timed.elapsedNanos);
+        if (timed.result.isError()) {
+            errorCount++;
+            if (!continueOnError) {
+                stopped = true;
+            }
+        }
+    }
+
+    private static class PendingStatement {
+        final int index;
+        final int line;
+        final String sql;
+        Future<TimedResult> future;
+
+        PendingStatement(int index, int line, String sql) {
+            this.index = index;
+            this.line = line;
+            this.sql = sql;
+        }
+    }
+
+    private static class TimedResult {
+        final QueryResult result;
+        final long elapsedNanos;
+
+        TimedResult(QueryResult result, long elapsedNanos) {
+            this.result = result;
+            this.elapsedNanos = elapsedNanos;
+        }
+    }
+}
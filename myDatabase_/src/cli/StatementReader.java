@@ -0,0 +1,100 @@
+package cli;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.function.Consumer;
+
+/**
+ * 从脚本或终端逐条读取SQL语句
+ * 引号外的分号结束一条语句（分号保留在语句中），引号外 -- 之后到行尾为注释。
+ */
+public class StatementReader {
+    private final BufferedReader reader;
+    // 每次读取新行前回调，参数表示是否处于未结束的语句中（交互模式用于显示提示符）
+    private final Consumer<Boolean> prompt;
+    private final Deque<String> pending = new ArrayDeque<>();
+    private final Deque<Integer> pendingLines = new ArrayDeque<>();
+    private final StringBuilder current = new StringBuilder();
+    private char quote;
+    private int lineNumber;
+    private int currentStartLine;
+    private int statementLine;
+
+    public StatementReader(Reader reader) {
+        this(reader, null);
+    }
+
+    public StatementReader(Reader reader, Consumer<Boolean> prompt) {
+        this.reader = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+        this.prompt = prompt;
+    }
+
+    /**
+     * 读取下一条语句，输入结束时返回null；末尾没有分号的语句也会返回
+     */
+    public String next() throws IOException {
+        while (pending.isEmpty()) {
+            if (prompt != null) {
+                prompt.accept(current.length() > 0);
+            }
+            String line = reader.readLine();
+            if (line == null) {
+                String rest = current.toString().trim();
+                current.setLength(0);
+                if (rest.isEmpty()) {
+                    return null;
+                }
+                statementLine = currentStartLine;
+                return rest;
+            }
+            lineNumber++;
+            scan(line);
+        }
+        statementLine = pendingLines.poll();
+        return pending.poll();
+    }
+
+    /**
+     * 最近一次返回的语句在输入中的起始行号
+     */
+    public int getStatementLine() {
+        return statementLine;
+    }
+
+    private void scan(String line) {
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '\'' || c == '"') {
+                quote = c;
+            } else if (c == '-' && i + 1 < line.length() && line.charAt(i + 1) == '-') {
+                break;
+            } else if (c == ';') {
+                current.append(c);
+                String statement = current.toString().trim();
+                current.setLength(0);
+                if (!statement.equals(";")) {
+                    pending.add(statement);
+                    pendingLines.add(currentStartLine);
+                }
+                continue;
+            }
+            if (current.length() == 0) {
+                if (Character.isWhitespace(c)) {
+                    continue;
+                }
+                currentStartLine = lineNumber;
+            }
+            current.append(c);
+        }
+        if (current.length() > 0) {
+            current.append('\n');
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package controller;
 
 import model.Database;
+import model.Session;
 import model.User;
 import view.AuthView;
 import view.MainView;
@@ -48,7 +49,7 @@ public class AuthController {
                 // 打开主界面
                 MainView mainView = new MainView(user.getUsername());
                 try {
-                    new MainController(mainView, database, authView);
+                    new MainController(mainView, database, authView, new Session(user.getUsername()));
                 } catch (IOException ex) {
                     throw new RuntimeException(ex);
                 }
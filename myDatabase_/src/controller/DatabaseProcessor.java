@@ -1,60 +1,287 @@
 package controller;
 
 import model.Database;
+import model.Session;
 import myDatabase.*;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
 
 /**
  * DatabaseProcessor类。解析不同类型的SQL语句，分发到相应的处理类
+ * 语句总是在某个会话中执行，当前数据库等状态都取自会话，多个会话可以并发执行。
  */
 public class DatabaseProcessor {
-    public static String executeQuery(String sql, Database database) {
-        System.out.println("[DEBUG][Processor] Received SQL: " + sql);
+    // 需要先选择数据库才能执行的语句
+    private static final String[] DATABASE_STATEMENTS = {
+            "select", "insert", "update", "delete", "alter table", "describe", "create bloom filter", "drop bloom filter",
+            "analyze", "explain", "declare"
+    };
+    // 统计指标用的语句类型，与executeQuery的分发分支对应，较长的前缀在前
+    private static final String[] STATEMENT_TYPES = {
+            "create bloom filter", "drop bloom filter", "create table", "create database", "drop table",
+            "drop database", "alter table", "backup database", "restore database", "select", "insert", "update",
+            "delete", "describe", "show", "use", "set", "migrate", "analyze", "explain", "declare", "fetch", "close",
+            "help"
+    };
+    // 修改数据库目录中文件的语句，执行期间持有写入闸门（见WriteGate），热备份取快照时暂停这些语句
+    // RESTORE DATABASE替换目录时自己持有闸门的排他锁（见BackupRestore），不在这里
+    private static final String[] WRITE_STATEMENTS = {
+            "insert", "update", "delete", "create table", "alter table", "drop table", "create database",
+            "drop database", "migrate", "analyze", "create bloom filter", "drop bloom filter"
+    };
+
+    /**
+     * 在指定的执行监视器下执行语句，调用方可借此查看扫描进度或取消语句
+     */
+    public static String executeQuery(String sql, Database database, Session session, ExecutionMonitor monitor) {
+        ExecutionMonitor.bind(monitor);
+        try {
+            return executeQuery(sql, database, session);
+        } finally {
+            ExecutionMonitor.unbind();
+        }
+    }
+
+    /**
+     * 在指定的执行监视器下执行语句并返回结构化结果
+     */
+    public static QueryResult execute(String sql, Database database, Session session, ExecutionMonitor monitor) {
+        ExecutionMonitor.bind(monitor);
+        try {
+            return execute(sql, database, session);
+        } finally {
+            ExecutionMonitor.unbind();
+        }
+    }
+
+    /**
+     * 执行语句并返回结构化结果：SELECT、EXPLAIN、FETCH、SHOW和DESCRIBE不经过表格格式化，其余语句返回提示信息与受影响行数
+     */
+    public static QueryResult execute(String sql, Database database, Session session) {
+        String normalizedSql = sql.toLowerCase().trim();
+        if (normalizedSql.startsWith("select") || normalizedSql.startsWith("explain")
+                || normalizedSql.startsWith("fetch") || normalizedSql.startsWith("show")
+                || normalizedSql.startsWith("describe")) {
+            String type = statementType(normalizedSql);
+            String currentDatabase = session.getCurrentDatabase();
+            EngineEvents.StatementEvent event = new EngineEvents.StatementEvent();
+            event.begin();
+            Metrics.StatementTimer timer = Metrics.start(type);
+            QueryResult result = null;
+            try {
+                if (normalizedSql.startsWith("fetch")) {
+                    result = Cursors.executeFetch(sql, session);
+                } else if (normalizedSql.startsWith("show")) {
+                    result = Show.executeShow(sql, session);
+                } else if (session.getCurrentDatabase() == null) {
+                    result = QueryResult.error("ERROR: 请先选择数据库");
+                } else if (normalizedSql.startsWith("select")) {
+                    result = Select.executeSelect(sql, session);
+                } else if (normalizedSql.startsWith("describe")) {
+                    result = Describe.executeDescribe(sql, session);
+                } else {
+                    result = Explain.executeExplain(sql, session);
+                }
+                return result;
+            } finally {
+                finishStatement(sql, session, currentDatabase, type, timer, event,
+                        result == null || result.isError(), 0, false);
+            }
+        }
+        // INSERT成功时的提示信息中不带行数
+        return QueryResult.fromMessage(executeQuery(sql, database, session), normalizedSql.startsWith("insert") ? 1 : 0);
+    }
+
+    /**
+     * 在指定的执行监视器下打开SELECT的结果游标（见RowCursor），由调用方按需分段取行并负责关闭
+     * 指标与慢查询日志记录的是打开游标的耗时；语句有错时抛出IllegalArgumentException（信息以ERROR开头）
+     */
+    public static RowCursor openCursor(String sql, Session session, ExecutionMonitor monitor) {
+        String normalizedSql = sql.toLowerCase().trim();
+        String type = statementType(normalizedSql);
+        String currentDatabase = session.getCurrentDatabase();
+        EngineEvents.StatementEvent event = new EngineEvents.StatementEvent();
+        event.begin();
+        ExecutionMonitor.bind(monitor);
+        Metrics.StatementTimer timer = Metrics.start(type);
+        boolean error = true;
+        try {
+            if (currentDatabase == null) {
+                throw new IllegalArgumentException("ERROR: 请先选择数据库");
+            }
+            if (!normalizedSql.startsWith("select")) {
+                throw new IllegalArgumentException("ERROR: 只有SELECT语句可以打开游标");
+            }
+            RowCursor cursor = Select.openCursor(sql, session);
+            error = false;
+            return cursor;
+        } finally {
+            finishStatement(sql, session, currentDatabase, type, timer, event, error, 0, true);
+            ExecutionMonitor.unbind();
+        }
+    }
+
+    /**
+     * 执行语句并返回提示信息或格式化好的结果表，同时按语句类型记录指标（见Metrics）
+     */
+    public static String executeQuery(String sql, Database database, Session session) {
         String normalizedSql = sql.toLowerCase().trim();
+        String type = statementType(normalizedSql);
+        String currentDatabase = session.getCurrentDatabase();
+        EngineEvents.StatementEvent event = new EngineEvents.StatementEvent();
+        event.begin();
+        Metrics.StatementTimer timer = Metrics.start(type);
+        String result = null;
+        boolean write = isWriteStatement(normalizedSql);
+        if (write) {
+            WriteGate.enter();
+        }
+        try {
+            result = dispatch(sql, normalizedSql, database, session);
+            return result;
+        } finally {
+            if (write) {
+                WriteGate.exit();
+            }
+            boolean error = result == null || result.startsWith("ERROR");
+            long affected = 0;
+            // 查询结果可能很大，只有修改数据的语句才从信息中提取受影响行数
+            if (!error && (normalizedSql.startsWith("insert") || normalizedSql.startsWith("update")
+                    || normalizedSql.startsWith("delete"))) {
+                affected = QueryResult.fromMessage(result, normalizedSql.startsWith("insert") ? 1 : 0).getUpdateCount();
+            }
+            finishStatement(sql, session, currentDatabase, type, timer, event, error, affected, false);
+        }
+    }
+
+    /**
+     * 开始把执行的每条语句捕获到文件（见WorkloadCapture），用于之后重放
+     */
+    public static void startCapture(Path path) throws IOException {
+        WorkloadCapture.start(path);
+    }
+
+    /**
+     * 结束语句捕获，返回捕获的语句数
+     */
+    public static long stopCapture() {
+        return WorkloadCapture.stop();
+    }
+
+    // 语句结束：记录指标、慢查询日志、语句捕获和JFR事件；currentDatabase为语句开始时的当前数据库，
+    // cursor表示语句只是打开了游标
+    private static void finishStatement(String sql, Session session, String currentDatabase, String type,
+                                        Metrics.StatementTimer timer, EngineEvents.StatementEvent event,
+                                        boolean error, long affected, boolean cursor) {
+        timer.finish(error, affected);
+        SlowQueryLog.log(sql, session, timer);
+        WorkloadCapture.record(sql, session, currentDatabase, timer.getElapsedNanos(), error, cursor);
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.sql = sql;
+            event.statementType = type;
+            event.user = session.getUsername();
+            event.database = session.getCurrentDatabase();
+            event.error = error;
+            event.rowsExamined = timer.getRowsExamined();
+            event.rowsReturned = timer.getRowsReturned();
+            event.rowsAffected = affected;
+            event.commit();
+        }
+    }
 
+    private static String dispatch(String sql, String normalizedSql, Database database, Session session) {
         try {
-            String result = null;
+            if (session.getCurrentDatabase() == null && requiresDatabase(normalizedSql)) {
+                return "ERROR: 请先选择数据库";
+            }
             if (normalizedSql.equals("help;")) {
-                result = Help.getHelpText();
                 return Help.getHelpText();
             } else if (normalizedSql.startsWith("select")) {
-                return Select.processSelect(sql);
+                return Select.processSelect(sql, session);
             } else if (normalizedSql.startsWith("insert")) {
-                return Insert.processInsert(sql);
+                return Insert.processInsert(sql, session);
             } else if (normalizedSql.startsWith("update")) {
-                System.out.println("[DEBUG][Processor] Routing to Update processor");
-                result = Update.processUpdate(sql, database);
-                return Update.processUpdate(sql, database);
+                return Update.processUpdate(sql, session);
             } else if (normalizedSql.startsWith("delete")) {
-                return Delete.processDelete(sql);
+                return Delete.processDelete(sql, session);
             } else if (normalizedSql.startsWith("create table")) {
-                return Create.processCreateTable(sql, database);
+                return Create.processCreateTable(sql, database, session);
             } else if (normalizedSql.startsWith("alter table")) {
-                return Alter.processAlter(sql);
+                return Alter.processAlter(sql, session);
             } else if (normalizedSql.startsWith("describe")) {
-                return Describe.describeSql(sql);
+                return Describe.describeSql(sql, session);
             } else if (normalizedSql.startsWith("show")) {
-                return Show.processShow(sql);
+                return Show.processShow(sql, session);
             } else if (normalizedSql.startsWith("drop table")) {
-                return Drop.processDropTable(sql, database);
+                return Drop.processDropTable(sql, database, session);
             } else if (normalizedSql.startsWith("use")) {
-                return Use.useSql(sql, database);
+                return Use.useSql(sql, database, session);
             } else if (normalizedSql.startsWith("create database")) {
                 return Create.processCreateDatabase(sql, database);
             } else if (normalizedSql.startsWith("drop database")) {
-                return Drop.processDropDatabase(sql, database);
+                return Drop.processDropDatabase(sql, database, session);
             } else if (normalizedSql.startsWith("backup database")) {
-                return BackupRestore.backupDatabase(database);
+                return BackupRestore.processBackup(sql, session);
             } else if (normalizedSql.startsWith("restore database")) {
-                return BackupRestore.restoreDatabase(database);
+                return BackupRestore.processRestore(sql, database);
+            } else if (normalizedSql.matches("(?s)set\\s.*")) {
+                return SetVariable.processSet(sql, session);
+            } else if (normalizedSql.startsWith("migrate")) {
+                return Migrate.processMigrate(sql, session);
+            } else if (normalizedSql.startsWith("create bloom filter")) {
+                return BloomIndex.processCreateBloomFilter(sql, session);
+            } else if (normalizedSql.startsWith("drop bloom filter")) {
+                return BloomIndex.processDropBloomFilter(sql, session);
+            } else if (normalizedSql.startsWith("analyze")) {
+                return Analyze.processAnalyze(sql, database, session);
+            } else if (normalizedSql.startsWith("explain")) {
+                return Explain.processExplain(sql, session);
+            } else if (normalizedSql.startsWith("declare")) {
+                return Cursors.processDeclare(sql, session);
+            } else if (normalizedSql.startsWith("fetch")) {
+                return Cursors.processFetch(sql, session);
+            } else if (normalizedSql.matches("(?s)close\\s.*")) {
+                return Cursors.processClose(sql, session);
             } else {
-                System.out.println("[DEBUG][Processor] Execution result: " + result);
                 return "ERROR: 不支持的SQL语句类型";
             }
         } catch (Exception e) {
-            String error = "ERROR: " + e.getMessage();
-            System.out.println("[DEBUG][Processor] Error: " + error);
-            return error;
+            return "ERROR: " + e.getMessage();
+        }
+    }
+
+    private static String statementType(String normalizedSql) {
+        for (String type : STATEMENT_TYPES) {
+            if (normalizedSql.startsWith(type)) {
+                return type;
+            }
+        }
+        return "other";
+    }
+
+    // 按空白切出开头的关键字逐个比较，关键字之间多余的空白或换行不会绕过闸门
+    private static boolean isWriteStatement(String normalizedSql) {
+        String[] words = normalizedSql.split("[\\s;(]+", 4);
+        for (String statement : WRITE_STATEMENTS) {
+            String[] keywords = statement.split(" ");
+            if (keywords.length <= words.length
+                    && Arrays.equals(keywords, 0, keywords.length, words, 0, keywords.length)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean requiresDatabase(String normalizedSql) {
+        for (String prefix : DATABASE_STATEMENTS) {
+            if (normalizedSql.startsWith(prefix)) {
+                return true;
+            }
         }
+        return false;
     }
 }
\ No newline at end of file
@@ -1,8 +1,11 @@
 package controller;
 
 import model.Database;
+import model.Session;
 import view.AuthView;
 import view.MainView;
+import view.ResultTableModel;
+
 import myDatabase.*;
 
 import javax.swing.*;
@@ -14,27 +17,50 @@ import java.awt.event.KeyAdapter;
 import java.awt.event.KeyEvent;
 import java.io.IOException;
 import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
 
 public class MainController {
+    // 语句在虚拟线程上执行，事件分发线程只负责界面更新
+    private static final ExecutorService QUERY_EXECUTOR = Executors.newVirtualThreadPerTaskExecutor();
+    // 进度刷新间隔（毫秒）
+    private static final int PROGRESS_INTERVAL_MILLIS = 200;
+    private static final Pattern ORDER_BY = Pattern.compile("(?is)\\s+ORDER\\s+BY\\s+.*$");
+
     private MainView mainView;
     private Database database;
     private AuthView authView;
+    // 图形界面用户的会话，保存当前数据库等状态
+    private final Session session;
+    // 正在执行的语句的监视器，空闲时为null
+    private ExecutionMonitor runningMonitor;
+    // 结果表格当前显示的SELECT（去掉ORDER BY）及按列头排序的状态
+    private String sortBaseQuery;
+    private String sortColumn;
+    private boolean sortDescending;
 
-    public MainController(MainView mainView, Database database, AuthView authView) throws IOException {
+    public MainController(MainView mainView, Database database, AuthView authView, Session session) throws IOException {
         this.mainView = mainView;
         this.database = database;
         this.authView = authView;
+        this.session = session;
+
+        if (session.getCurrentDatabase() == null && database.canUseDatabase("defaultdb")) {
+            session.setCurrentDatabase("defaultdb");
+        }
 
         // 初始化数据库列表
         refreshDatabaseList();
         refreshTableList();
 
-        if (!database.validateCurrentDatabase()) {
-            database.setCurrentDatabase("defaultdb");
-        }
-
         // 添加监听器
         mainView.addExecuteListener(new ExecuteListener());
+        mainView.addCancelListener(new CancelListener());
+        mainView.addResultSortListener(new SortListener());
         mainView.addLogoutListener(new LogoutListener());
         mainView.addHelpListener(new HelpListener());
         mainView.addRefreshDbListener(new RefreshDbListener());
@@ -47,10 +73,11 @@ public class MainController {
         mainView.addTableSelectionListener(new TableSelectionListener());
 
         // 添加数据库切换监听
-        database.addDatabaseChangeListener(dbName -> {
+        // 语句在工作线程上执行，切换数据库的通知需转回事件分发线程
+        database.addDatabaseChangeListener(dbName -> SwingUtilities.invokeLater(() -> {
             refreshTableList();
             mainView.appendResult("切换到数据库: " + dbName);
-        });
+        }));
 
         // 添加回车键绑定
         bindEnterKeyToExecute();
@@ -63,9 +90,9 @@ public class MainController {
 
     private void refreshTableList() {
         try {
-            String currentDb = database.getCurrentDatabase();
+            String currentDb = session.getCurrentDatabase();
             if (currentDb != null && !currentDb.isEmpty()) {
-                List<String> tables = Utils.getAllTables(SQLConstant.getCurrentDbPath());
+                List<String> tables = Utils.getAllTables(SQLConstant.getDatabasePath(currentDb));
                 mainView.updateTableList(tables);
             }
         } catch (Exception e) {
@@ -120,6 +147,11 @@ public class MainController {
 
     // 带参数的executeQuery方法（直接执行指定查询）
     private void executeQuery(String query) {
+        if (runningMonitor != null) {
+            mainView.appendResult("ERROR: 上一条语句仍在执行，请等待完成或取消");
+            return;
+        }
+
         mainView.appendQueryToResult(query);
 
         if (query.isEmpty()) {
@@ -127,11 +159,119 @@ public class MainController {
             return;
         }
 
-        String result = DatabaseProcessor.executeQuery(query, database);
-        mainView.appendResult(result);
-        mainView.clearQuery();
-        refreshDatabaseList();
-        refreshTableList();
+        ExecutionMonitor monitor = new ExecutionMonitor();
+        runningMonitor = monitor;
+        mainView.setExecuting(true);
+
+        // 定时刷新已扫描行数
+        Timer progressTimer = new Timer(PROGRESS_INTERVAL_MILLIS,
+                e -> mainView.updateProgress(monitor.getRowsScanned()));
+        progressTimer.start();
+
+        if (query.toLowerCase().startsWith("select")) {
+            executeSelect(query, monitor, progressTimer);
+            return;
+        }
+
+        SwingWorker<QueryResult, Void> worker = new SwingWorker<QueryResult, Void>() {
+            @Override
+            protected QueryResult doInBackground() {
+                return DatabaseProcessor.execute(query, database, session, monitor);
+            }
+
+            @Override
+            protected void done() {
+                progressTimer.stop();
+                runningMonitor = null;
+                mainView.setExecuting(false);
+
+                QueryResult result;
+                try {
+                    result = get();
+                } catch (InterruptedException | CancellationException e) {
+                    result = QueryResult.error("ERROR: 语句已被取消");
+                } catch (ExecutionException e) {
+                    result = QueryResult.error("ERROR: " + e.getCause().getMessage());
+                }
+                if (!result.isResultSet()) {
+                    mainView.appendResult(result.getMessage());
+                } else {
+                    // 结果表流式写入消息区，超过显示行数上限的行只计数
+                    mainView.appendResultSet(result.getHeaders(), result.getRows(), result.getMessage());
+                }
+                mainView.showMessages();
+
+                mainView.clearQuery();
+                refreshDatabaseList();
+                refreshTableList();
+            }
+        };
+        QUERY_EXECUTOR.execute(worker);
+    }
+
+    // SELECT：打开游标后在结果表格中显示，游标在后台继续查找结果，表格随之增长
+    private void executeSelect(String query, ExecutionMonitor monitor, Timer progressTimer) {
+        // 点击列头排序时在去掉ORDER BY的语句上重新查询，换了语句后排序状态重置
+        String base = ORDER_BY.matcher(query).replaceFirst("").replaceAll(";\\s*$", "").trim();
+        if (!base.equals(sortBaseQuery)) {
+            sortBaseQuery = base;
+            sortColumn = null;
+        }
+
+        SwingWorker<RowCursor, Void> worker = new SwingWorker<RowCursor, Void>() {
+            @Override
+            protected RowCursor doInBackground() {
+                return DatabaseProcessor.openCursor(query, session, monitor);
+            }
+
+            @Override
+            protected void done() {
+                progressTimer.stop();
+                runningMonitor = null;
+                mainView.setExecuting(false);
+                mainView.clearQuery();
+
+                RowCursor cursor;
+                try {
+                    cursor = get();
+                } catch (InterruptedException | CancellationException e) {
+                    mainView.appendResult("ERROR: 语句已被取消");
+                    mainView.showMessages();
+                    return;
+                } catch (ExecutionException e) {
+                    String message = e.getCause().getMessage();
+                    mainView.appendResult(message != null && message.startsWith("ERROR") ? message : "ERROR: " + message);
+                    mainView.showMessages();
+                    return;
+                }
+                ResultTableModel model = new ResultTableModel(cursor);
+                mainView.showResultTable(model);
+                Timer rowCountTimer = new Timer(PROGRESS_INTERVAL_MILLIS, null);
+                rowCountTimer.addActionListener(e -> {
+                    if (model.refreshRowCount()) {
+                        rowCountTimer.stop();
+                        mainView.appendResult("Query OK: " + model.getRowCount() + " rows returned");
+                    }
+                });
+                rowCountTimer.start();
+            }
+        };
+        QUERY_EXECUTOR.execute(worker);
+    }
+
+    class SortListener implements Consumer<String> {
+        @Override
+        public void accept(String column) {
+            if (sortBaseQuery == null || runningMonitor != null) {
+                return;
+            }
+            sortDescending = column.equals(sortColumn) && !sortDescending;
+            String base = sortBaseQuery;
+            String sorted = base + " ORDER BY " + column + (sortDescending ? " DESC" : "");
+            executeQuery(sorted);
+            sortColumn = column;
+            sortBaseQuery = base;
+        }
     }
 
     class ExecuteListener implements ActionListener {
@@ -141,6 +281,17 @@ public class MainController {
         }
     }
 
+    class CancelListener implements ActionListener {
+        @Override
+        public void actionPerformed(ActionEvent e) {
+            ExecutionMonitor monitor = runningMonitor;
+            if (monitor != null) {
+                monitor.cancel();
+                mainView.appendResult("正在取消...");
+            }
+        }
+    }
+
     class LogoutListener implements ActionListener {
         @Override
         public void actionPerformed(ActionEvent e) {
@@ -172,7 +323,7 @@ public class MainController {
             String dbName = JOptionPane.showInputDialog(mainView, "请输入数据库名称:");
             if (dbName != null && !dbName.trim().isEmpty()) {
                 String sql = "CREATE DATABASE " + dbName + ";";
-                String result = DatabaseProcessor.executeQuery(sql, database);
+                String result = DatabaseProcessor.executeQuery(sql, database, session);
                 mainView.appendResult(result);
                 refreshDatabaseList();
             }
@@ -189,7 +340,7 @@ public class MainController {
                         JOptionPane.YES_NO_OPTION);
                 if (confirm == JOptionPane.YES_OPTION) {
                     String sql = "DROP DATABASE " + dbName + ";";
-                    String result = DatabaseProcessor.executeQuery(sql, database);
+                    String result = DatabaseProcessor.executeQuery(sql, database, session);
                     mainView.appendResult(result);
                     refreshDatabaseList();
                 }
@@ -202,7 +353,8 @@ public class MainController {
     class BackupListener implements ActionListener {
         @Override
         public void actionPerformed(ActionEvent e) {
-            String result = BackupRestore.backupDatabase(database);
+            String result = BackupRestore.backupDatabase(session);
+
             mainView.appendResult(result);
         }
     }
@@ -0,0 +1,125 @@
+package jdbc;
+
+import controller.DatabaseProcessor;
+import model.Database;
+import model.Session;
+import model.User;
+import myDatabase.QueryResult;
+import myDatabase.SQLConstant;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.*;
+import java.util.Properties;
+import java.util.logging.Logger;
+
+/**
+ * 嵌入式JDBC驱动，在当前进程内直接调用引擎，结果不经过表格格式化
+ * URL格式：jdbc:myDatabase:<数据库目录>，如 jdbc:myDatabase:/data/DATA/shop，
+ * 数据库目录的上一级即数据根目录；只写库名（jdbc:myDatabase:shop）时使用默认数据根目录。
+ * 连接时需提供已注册的用户名和密码（user/password属性）。
+ */
+public class MyDatabaseDriver implements Driver {
+    public static final String URL_PREFIX = "jdbc:myDatabase:";
+    private static final int MAJOR_VERSION = 1;
+    private static final int MINOR_VERSION = 0;
+
+    // 同一进程内的所有连接共用一个引擎实例
+    private static Database database;
+
+    static {
+        try {
+            DriverManager.registerDriver(new MyDatabaseDriver());
+        } catch (SQLException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    @Override
+    public Connection connect(String url, Properties info) throws SQLException {
+        if (!acceptsURL(url)) {
+            return null;
+        }
+
+        // 解析数据根目录与库名
+        String target = url.substring(URL_PREFIX.length()).trim();
+        String rootPath = null;
+        String dbName = target;
+        if (target.contains("/") || target.contains("\\")) {
+            File dbDir = new File(target);
+            rootPath = dbDir.getParent();
+            dbName = dbDir.getName();
+        }
+
+        Database db = openDatabase(rootPath);
+        String username = info == null ? null : info.getProperty("user");
+        String password = info == null ? null : info.getProperty("password");
+        User user = username == null || password == null ? null : db.authenticateUser(username, password);
+        if (user == null) {
+            throw new SQLException("用户名或密码错误", "28000");
+        }
+
+        Session session = new Session(user.getUsername());
+        if (!dbName.isEmpty()) {
+            QueryResult result = DatabaseProcessor.execute("use " + dbName + ";", db, session);
+            if (result.isError()) {
+                throw new SQLException(result.getMessage(), "3D000");
+            }
+        }
+        return new MyDatabaseConnection(db, session);
+    }
+
+    private static synchronized Database openDatabase(String rootPath) throws SQLException {
+        if (database == null) {
+            if (rootPath != null) {
+                SQLConstant.setRootPath(rootPath);
+            }
+            try {
+                Database db = new Database();
+                db.initialize();
+                database = db;
+            } catch (IOException e) {
+                throw new SQLException("打开数据目录失败: " + e.getMessage(), e);
+            }
+        } else if (rootPath != null && !new File(rootPath).equals(new File(SQLConstant.getRootPath()))) {
+            throw new SQLException("同一进程只能打开一个数据目录，当前为: " + SQLConstant.getRootPath());
+        }
+        return database;
+    }
+
+    @Override
+    public boolean acceptsURL(String url) {
+        return url != null && url.startsWith(URL_PREFIX);
+    }
+
+    @Override
+    public DriverPropertyInfo[] getPropertyInfo(String url, Properties info) {
+        DriverPropertyInfo user = new DriverPropertyInfo("user", info == null ? null : info.getProperty("user"));
+        user.required = true;
+        user.description = "用户名";
+        DriverPropertyInfo password = new DriverPropertyInfo("password", null);
+        password.required = true;
+        password.description = "密码";
+        return new DriverPropertyInfo[]{user, password};
+    }
+
+    @Override
+    public int getMajorVersion() {
+        return MAJOR_VERSION;
+    }
+
+    @Override
+    public int getMinorVersion() {
+        return MINOR_VERSION;
+    }
+
+    @Override
+    public boolean jdbcCompliant() {
+        return false;
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        throw new SQLFeatureNotSupportedException("不支持java.util.logging");
+    }
+}
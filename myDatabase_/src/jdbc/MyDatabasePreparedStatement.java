@@ -0,0 +1,427 @@
+package jdbc;
+
+import java.io.InputStream;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.net.URL;
+import java.sql.*;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.List;
+
+/**
+ * 预编译语句。引擎没有参数化执行接口，执行前把 ? 占位符替换为对应的字面量
+ */
+public class MyDatabasePreparedStatement extends MyDatabaseStatement implements PreparedStatement {
+    // 按 ? 切分后的SQL片段，片段数 = 参数个数 + 1
+    private final List<String> fragments;
+    private final String[] parameters;
+    private final List<String> batchSql = new ArrayList<>();
+    private ResultSetMetaData metaData;
+
+    MyDatabasePreparedStatement(MyDatabaseConnection connection, String sql) {
+        super(connection);
+        this.fragments = split(sql);
+        this.parameters = new String[fragments.size() - 1];
+    }
+
+    /**
+     * 按引号外的 ? 切分SQL
+     */
+    private static List<String> split(String sql) {
+        List<String> parts = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        char quote = 0;
+        for (int i = 0; i < sql.length(); i++) {
+            char c = sql.charAt(i);
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                }
+                current.append(c);
+            } else if (c == '\'' || c == '"') {
+                quote = c;
+                current.append(c);
+            } else if (c == '?') {
+                parts.add(current.toString());
+                current.setLength(0);
+            } else {
+                current.append(c);
+            }
+        }
+        parts.add(current.toString());
+        return parts;
+    }
+
+    /**
+     * 用已绑定的参数拼出最终执行的SQL
+     */
+    private String bind() throws SQLException {
+        StringBuilder sql = new StringBuilder(fragments.get(0));
+        for (int i = 0; i < parameters.length; i++) {
+            if (parameters[i] == null) {
+                throw new SQLException("参数 " + (i + 1) + " 未设置", "07001");
+            }
+            sql.append(parameters[i]).append(fragments.get(i + 1));
+        }
+        return sql.toString();
+    }
+
+    private void setParameter(int index, String literal) throws SQLException {
+        checkOpen();
+        if (index < 1 || index > parameters.length) {
+            throw new SQLException("参数序号越界: " + index + "，共 " + parameters.length + " 个参数");
+        }
+        parameters[index - 1] = literal;
+    }
+
+    // 引擎的字符串字面量不支持转义，也不能包含行分隔符和字段分隔符
+    private static String quote(String value) throws SQLException {
+        if (value.indexOf('\'') >= 0 || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0
+                || value.indexOf('\u0001') >= 0) {
+            throw new SQLException("字符串参数中不能包含单引号或换行: " + value);
+        }
+        return "'" + value + "'";
+    }
+
+    @Override
+    public ResultSet executeQuery() throws SQLException {
+        return super.executeQuery(bind());
+    }
+
+    @Override
+    public int executeUpdate() throws SQLException {
+        return super.executeUpdate(bind());
+    }
+
+    @Override
+    public boolean execute() throws SQLException {
+        return super.execute(bind());
+    }
+
+    @Override
+    public void addBatch() throws SQLException {
+        checkOpen();
+        batchSql.add(bind());
+    }
+
+    @Override
+    public void clearBatch() throws SQLException {
+        checkOpen();
+        batchSql.clear();
+    }
+
+    @Override
+    public int[] executeBatch() throws SQLException {
+        checkOpen();
+        super.clearBatch();
+        for (String sql : batchSql) {
+            super.addBatch(sql);
+        }
+        batchSql.clear();
+        return super.executeBatch();
+    }
+
+    @Override
+    public void clearParameters() throws SQLException {
+        checkOpen();
+        Arrays.fill(parameters, null);
+    }
+
+    /**
+     * 查询结果的元数据要执行后才能得到，这里只返回已执行过的结果集的元数据
+     */
+    @Override
+    public ResultSetMetaData getMetaData() throws SQLException {
+        checkOpen();
+        ResultSet resultSet = getResultSet();
+        if (resultSet != null) {
+            metaData = resultSet.getMetaData();
+        }
+        return metaData;
+    }
+
+    @Override
+    public ParameterMetaData getParameterMetaData() throws SQLException {
+        throw new SQLFeatureNotSupportedException("不支持ParameterMetaData");
+    }
+
+    @Override
+    public void setNull(int parameterIndex, int sqlType) throws SQLException {
+        setParameter(parameterIndex, "null");
+    }
+
+    @Override
+    public void setNull(int parameterIndex, int sqlType, String typeName) throws SQLException {
+        setParameter(parameterIndex, "null");
+    }
+
+    @Override
+    public void setBoolean(int parameterIndex, boolean x) throws SQLException {
+        setParameter(parameterIndex, String.valueOf(x));
+    }
+
+    @Override
+    public void setByte(int parameterIndex, byte x) throws SQLException {
+        setParameter(parameterIndex, String.valueOf(x));
+    }
+
+    @Override
+    public void setShort(int parameterIndex, short x) throws SQLException {
+        setParameter(parameterIndex, String.valueOf(x));
+    }
+
+    @Override
+    public void setInt(int parameterIndex, int x) throws SQLException {
+        setParameter(parameterIndex, String.valueOf(x));
+    }
+
+    @Override
+    public void setLong(int parameterIndex, long x) throws SQLException {
+        setParameter(parameterIndex, String.valueOf(x));
+    }
+
+    @Override
+    public void setFloat(int parameterIndex, float x) throws SQLException {
+        setParameter(parameterIndex, String.valueOf(x));
+    }
+
+    @Override
+    public void setDouble(int parameterIndex, double x) throws SQLException {
+        setParameter(parameterIndex, String.valueOf(x));
+    }
+
+    @Override
+    public void setBigDecimal(int parameterIndex, BigDecimal x) throws SQLException {
+        setParameter(parameterIndex, x == null ? "null" : x.toPlainString());
+    }
+
+    @Override
+    public void setString(int parameterIndex, String x) throws SQLException {
+        setParameter(parameterIndex, x == null ? "null" : quote(x));
+    }
+
+    @Override
+    public void setNString(int parameterIndex, String value) throws SQLException {
+        setString(parameterIndex, value);
+    }
+
+    @Override
+    public void setDate(int parameterIndex, Date x) throws SQLException {
+        setParameter(parameterIndex, x == null ? "null" : quote(x.toLocalDate().toString()));
+    }
+
+    @Override
+    public void setDate(int parameterIndex, Date x, Calendar cal) throws SQLException {
+        setDate(parameterIndex, x);
+    }
+
+    /**
+     * 按Java类型选择字面量写法，不认识的类型按字符串处理
+     */
+    @Override
+    public void setObject(int parameterIndex, Object x) throws SQLException {
+        if (x == null) {
+            setParameter(parameterIndex, "null");
+        } else if (x instanceof Boolean || x instanceof Number && !(x instanceof BigDecimal)) {
+            setParameter(parameterIndex, x.toString());
+        } else if (x instanceof BigDecimal) {
+            setBigDecimal(parameterIndex, (BigDecimal) x);
+        } else if (x instanceof Date) {
+            setDate(parameterIndex, (Date) x);
+        } else if (x instanceof LocalDate) {
+            setParameter(parameterIndex, quote(x.toString()));
+        } else {
+            setString(parameterIndex, x.toString());
+        }
+    }
+
+    @Override
+    public void setObject(int parameterIndex, Object x, int targetSqlType) throws SQLException {
+        setObject(parameterIndex, x);
+    }
+
+    @Override
+    public void setObject(int parameterIndex, Object x, int targetSqlType, int scaleOrLength) throws SQLException {
+        setObject(parameterIndex, x);
+    }
+
+    @Override
+    public void setTime(int parameterIndex, Time x) throws SQLException {
+        throw new SQLFeatureNotSupportedException("不支持TIME类型");
+    }
+
+    @Override
+    public void setTime(int parameterIndex, Time x, Calendar cal) throws SQLException {
+        throw new SQLFeatureNotSupportedException("不支持TIME类型");
+    }
+
+    @Override
+    public void setTimestamp(int parameterIndex, Timestamp x) throws SQLException {
+        throw new SQLFeatureNotSupportedException("不支持TIMESTAMP类型");
+    }
+
+    @Override
+    public void setTimestamp(int parameterIndex, Timestamp x, Calendar cal) throws SQLException {
+        throw new SQLFeatureNotSupportedException("不支持TIMESTAMP类型");
+    }
+
+    @Override
+    public void setBytes(int parameterIndex, byte[] x) throws SQLException {
+        throw new SQLFeatureNotSupportedException("不支持二进制类型");
+    }
+
+    @Override
+    public void setAsciiStream(int parameterIndex, InputStream x) throws SQLException {
+        throw new SQLFeatureNotSupportedException("不支持流参数");
+    }
+
+    @Override
+    public void setAsciiStream(int parameterIndex, InputStream x, int length) throws SQLException {
+        throw new SQLFeatureNotSupportedException("不支持流参数");
+    }
+
+    @Override
+    public void setAsciiStream(int parameterIndex, InputStream x, long length) throws SQLException {
+        throw new SQLFeatureNotSupportedException("不支持流参数");
+    }
+
+    @Override
+    @Deprecated
+    public void setUnicodeStream(int parameterIndex, InputStream x, int length) throws SQLException {
+        throw new SQLFeatureNotSupportedException("不支持流参数");
+    }
+
+    @Override
+    public void setBinaryStream(int parameterIndex, InputStream x) throws SQLException {
+        throw new SQLFeatureNotSupportedException("不支持流参数");
+    }
+
+    @Override
+    public void setBinaryStream(int parameterIndex, InputStream x, int length) throws SQLException {
+        throw new SQLFeatureNotSupportedException("不支持流参数");
+    }
+
+    @Override
+    public void setBinaryStream(int parameterIndex, InputStream x, long length) throws SQLException {
+        throw new SQLFeatureNotSupportedException("不支持流参数");
+    }
+
+    @Override
+    public void setCharacterStream(int parameterIndex, Reader reader) throws SQLException {
+        throw new SQLFeatureNotSupportedException("不支持流参数");
+    }
+
+    @Override
+    public void setCharacterStream(int parameterIndex, Reader reader, int length) throws SQLException {
+        throw new SQLFeatureNotSupportedException("不支持流参数");
+    }
+
+    @Override
+    public void setCharacterStream(int parameterIndex, Reader reader, long length) throws SQLException {
+        throw new SQLFeatureNotSupportedException("不支持流参数");
+    }
+
+    @Override
+    public void setNCharacterStream(int parameterIndex, Reader value) throws SQLException {
+        throw new SQLFeatureNotSupportedException("不支持流参数");
+    }
+
+    @Override
+    public void setNCharacterStream(int parameterIndex, Reader value, long length) throws SQLException {
+        throw new SQLFeatureNotSupportedException("不支持流参数");
+    }
+
+    @Override
+    public void setRef(int parameterIndex, Ref x) throws SQLException {
+        throw new SQLFeatureNotSupportedException("不支持Ref类型");
+    }
+
+    @Override
+    public void setBlob(int parameterIndex, Blob x) throws SQLException {
+        throw new SQLFeatureNotSupportedException("不支持Blob");
+    }
+
+    @Override
+    public void setBlob(int parameterIndex, InputStream inputStream) throws SQLException {
+        throw new SQLFeatureNotSupportedException("不支持Blob");
+    }
+
+    @Override
+    public void setBlob(int parameterIndex, InputStream inputStream, long length) throws SQLException {
+        throw new SQLFeatureNotSupportedException("不支持Blob");
+    }
+
+    @Override
+    public void setClob(int parameterIndex, Clob x) throws SQLException {
+        throw new SQLFeatureNotSupportedException("不支持Clob");
+    }
+
+    @Override
+    public void setClob(int parameterIndex, Reader reader) throws SQLException {
+        throw new SQLFeatureNotSupportedException("不支持Clob");
+    }
+
+    @Override
+    public void setClob(int parameterIndex, Reader reader, long length) throws SQLException {
+        throw new SQLFeatureNotSupportedException("不支持Clob");
+    }
+
+    @Override
+    public void setNClob(int parameterIndex, NClob value) throws SQLException {
+        throw new SQLFeatureNotSupportedException("不支持NClob");
+    }
+
+    @Override
+    public void setNClob(int parameterIndex, Reader reader) throws SQLException {
+        throw new SQLFeatureNotSupportedException("不支持NClob");
+    }
+
+    @Override
+    public void setNClob(int parameterIndex, Reader reader, long length) throws SQLException {
+        throw new SQLFeatureNotSupportedException("不支持NClob");
+    }
+
+    @Override
+    public void setArray(int parameterIndex, Array x) throws SQLException {
+        throw new SQLFeatureNotSupportedException("不支持数组类型");
+    }
+
+    @Override
+    public void setURL(int parameterIndex, URL x) throws SQLException {
+        throw new SQLFeatureNotSupportedException("不支持URL类型");
+    }
+
+    @Override
+    public void setRowId(int parameterIndex, RowId x) throws SQLException {
+        throw new SQLFeatureNotSupportedException("不支持RowId");
+    }
+
+    @Override
+    public void setSQLXML(int parameterIndex, SQLXML xmlObject) throws SQLException {
+        throw new SQLFeatureNotSupportedException("不支持SQLXML");
+    }
+
+    // 预编译语句不能再直接执行其他SQL文本
+    @Override
+    public ResultSet executeQuery(String sql) throws SQLException {
+        throw new SQLException("PreparedStatement不能执行其他SQL文本");
+    }
+
+    @Override
+    public int executeUpdate(String sql) throws SQLException {
+        throw new SQLException("PreparedStatement不能执行其他SQL文本");
+    }
+
+    @Override
+    public boolean execute(String sql) throws SQLException {
+        throw new SQLException("PreparedStatement不能执行其他SQL文本");
+    }
+
+    @Override
+    public void addBatch(String sql) throws SQLException {
+        throw new SQLException("PreparedStatement不能执行其他SQL文本");
+    }
+}
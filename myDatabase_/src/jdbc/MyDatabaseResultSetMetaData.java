@@ -0,0 +1,198 @@
+package jdbc;
+
+import myDatabase.ColumnType;
+
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+
+/**
+ * 结果集元数据，列类型来自表定义文件
+ */
+public class MyDatabaseResultSetMetaData implements ResultSetMetaData {
+    private final MyDatabaseResultSet resultSet;
+
+    MyDatabaseResultSetMetaData(MyDatabaseResultSet resultSet) {
+        this.resultSet = resultSet;
+    }
+
+    private void checkColumn(int column) throws SQLException {
+        if (column < 1 || column > resultSet.headers().size()) {
+            throw new SQLException("列序号越界: " + column);
+        }
+    }
+
+    private ColumnType type(int column) throws SQLException {
+        checkColumn(column);
+        return resultSet.columnType(column);
+    }
+
+    @Override
+    public int getColumnCount() {
+        return resultSet.headers().size();
+    }
+
+    @Override
+    public String getColumnLabel(int column) throws SQLException {
+        checkColumn(column);
+        return resultSet.headers().get(column - 1);
+    }
+
+    /**
+     * 连接查询的列名带表名前缀，这里返回去掉前缀的列名
+     */
+    @Override
+    public String getColumnName(int column) throws SQLException {
+        String label = getColumnLabel(column);
+        int dot = label.lastIndexOf('.');
+        return dot >= 0 ? label.substring(dot + 1) : label;
+    }
+
+    @Override
+    public String getTableName(int column) throws SQLException {
+        String label = getColumnLabel(column);
+        int dot = label.lastIndexOf('.');
+        return dot >= 0 ? label.substring(0, dot) : "";
+    }
+
+    @Override
+    public int getColumnType(int column) throws SQLException {
+        switch (type(column)) {
+            case INTEGER:
+                return Types.BIGINT;
+            case DOUBLE:
+                return Types.DOUBLE;
+            case BOOL:
+                return Types.BOOLEAN;
+            case DATE:
+                return Types.DATE;
+            default:
+                return Types.VARCHAR;
+        }
+    }
+
+    @Override
+    public String getColumnTypeName(int column) throws SQLException {
+        return type(column).name();
+    }
+
+    @Override
+    public String getColumnClassName(int column) throws SQLException {
+        switch (type(column)) {
+            case INTEGER:
+                return Long.class.getName();
+            case DOUBLE:
+                return Double.class.getName();
+            case BOOL:
+                return Boolean.class.getName();
+            case DATE:
+                return java.time.LocalDate.class.getName();
+            default:
+                return String.class.getName();
+        }
+    }
+
+    @Override
+    public int getColumnDisplaySize(int column) throws SQLException {
+        switch (type(column)) {
+            case INTEGER:
+                return 20;
+            case DOUBLE:
+                return 24;
+            case BOOL:
+                return 5;
+            case DATE:
+                return 10;
+            default:
+                return 255;
+        }
+    }
+
+    @Override
+    public int getPrecision(int column) throws SQLException {
+        return getColumnDisplaySize(column);
+    }
+
+    @Override
+    public int getScale(int column) throws SQLException {
+        return 0;
+    }
+
+    @Override
+    public boolean isSigned(int column) throws SQLException {
+        ColumnType type = type(column);
+        return type == ColumnType.INTEGER || type == ColumnType.DOUBLE;
+    }
+
+    @Override
+    public int isNullable(int column) throws SQLException {
+        checkColumn(column);
+        return ResultSetMetaData.columnNullableUnknown;
+    }
+
+    @Override
+    public boolean isCaseSensitive(int column) throws SQLException {
+        return type(column) == ColumnType.VARCHAR;
+    }
+
+    @Override
+    public boolean isAutoIncrement(int column) throws SQLException {
+        checkColumn(column);
+        return false;
+    }
+
+    @Override
+    public boolean isSearchable(int column) throws SQLException {
+        checkColumn(column);
+        return true;
+    }
+
+    @Override
+    public boolean isCurrency(int column) throws SQLException {
+        checkColumn(column);
+        return false;
+    }
+
+    @Override
+    public boolean isReadOnly(int column) throws SQLException {
+        checkColumn(column);
+        return true;
+    }
+
+    @Override
+    public boolean isWritable(int column) throws SQLException {
+        checkColumn(column);
+        return false;
+    }
+
+    @Override
+    public boolean isDefinitelyWritable(int column) throws SQLException {
+        checkColumn(column);
+        return false;
+    }
+
+    @Override
+    public String getSchemaName(int column) throws SQLException {
+        checkColumn(column);
+        return "";
+    }
+
+    @Override
+    public String getCatalogName(int column) throws SQLException {
+        checkColumn(column);
+        return "";
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) {
+            return iface.cast(this);
+        }
+        throw new SQLException("不是 " + iface.getName() + " 的包装");
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) {
+        return iface.isInstance(this);
+    }
+}
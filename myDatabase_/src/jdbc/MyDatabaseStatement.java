@@ -0,0 +1,399 @@
+package jdbc;
+
+import myDatabase.QueryResult;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 语句对象，支持批量执行和fetch size设置
+ * fetch size大于0时查询在引擎中声明游标（DECLARE），结果集按fetch size分批取回，不一次性物化全部结果。
+ */
+public class MyDatabaseStatement implements Statement {
+    private static final AtomicLong NEXT_CURSOR = new AtomicLong(1);
+
+    protected final MyDatabaseConnection connection;
+    private final List<String> batch = new ArrayList<>();
+    private MyDatabaseResultSet currentResultSet;
+    private long updateCount = -1;
+    private int fetchSize;
+    private int maxRows;
+    private int queryTimeout;
+    private boolean poolable;
+    private boolean closeOnCompletion;
+    private boolean closed;
+
+    MyDatabaseStatement(MyDatabaseConnection connection) {
+        this.connection = connection;
+    }
+
+    /**
+     * 执行语句并记录结果：查询保存结果集，其余语句保存受影响行数
+     */
+    protected QueryResult run(String sql) throws SQLException {
+        checkOpen();
+        closeCurrentResultSet();
+        updateCount = -1;
+
+        if (fetchSize > 0 && sql.trim().toLowerCase().startsWith("select")) {
+            String cursorName = "jdbc_cursor_" + NEXT_CURSOR.getAndIncrement();
+            connection.execute("DECLARE " + cursorName + " CURSOR FOR " + sql);
+            QueryResult first;
+            try {
+                first = connection.execute("FETCH " + fetchSize + " FROM " + cursorName);
+            } catch (SQLException e) {
+                connection.execute("CLOSE " + cursorName);
+                throw e;
+            }
+            currentResultSet = new MyDatabaseResultSet(this, first, maxRows, fetchSize, cursorName);
+            return first;
+        }
+
+        QueryResult result = connection.execute(sql);
+        if (result.isResultSet()) {
+            currentResultSet = new MyDatabaseResultSet(this, result, maxRows, fetchSize);
+        } else {
+            updateCount = result.getUpdateCount();
+        }
+        return result;
+    }
+
+    void checkOpen() throws SQLException {
+        if (closed) {
+            throw new SQLException("语句已关闭");
+        }
+        connection.checkOpen();
+    }
+
+    private void closeCurrentResultSet() throws SQLException {
+        if (currentResultSet != null) {
+            MyDatabaseResultSet resultSet = currentResultSet;
+            currentResultSet = null;
+            resultSet.close();
+        }
+    }
+
+    // 结果集关闭时回调，closeOnCompletion开启时一并关闭语句
+    void resultSetClosed(MyDatabaseResultSet resultSet) throws SQLException {
+        if (resultSet == currentResultSet) {
+            currentResultSet = null;
+            if (closeOnCompletion) {
+                close();
+            }
+        }
+    }
+
+    @Override
+    public ResultSet executeQuery(String sql) throws SQLException {
+        QueryResult result = run(sql);
+        if (!result.isResultSet()) {
+            throw new SQLException("语句没有返回结果集: " + sql);
+        }
+        return currentResultSet;
+    }
+
+    @Override
+    public int executeUpdate(String sql) throws SQLException {
+        QueryResult result = run(sql);
+        if (result.isResultSet()) {
+            closeCurrentResultSet();
+            throw new SQLException("查询语句不能用executeUpdate执行: " + sql);
+        }
+        return (int) Math.min(Integer.MAX_VALUE, updateCount);
+    }
+
+    @Override
+    public boolean execute(String sql) throws SQLException {
+        return run(sql).isResultSet();
+    }
+
+    @Override
+    public ResultSet getResultSet() throws SQLException {
+        checkOpen();
+        return currentResultSet;
+    }
+
+    @Override
+    public int getUpdateCount() throws SQLException {
+        checkOpen();
+        return (int) Math.min(Integer.MAX_VALUE, updateCount);
+    }
+
+    @Override
+    public boolean getMoreResults() throws SQLException {
+        return getMoreResults(Statement.CLOSE_CURRENT_RESULT);
+    }
+
+    @Override
+    public boolean getMoreResults(int current) throws SQLException {
+        checkOpen();
+        closeCurrentResultSet();
+        updateCount = -1;
+        return false;
+    }
+
+    @Override
+    public void addBatch(String sql) throws SQLException {
+        checkOpen();
+        batch.add(sql);
+    }
+
+    @Override
+    public void clearBatch() throws SQLException {
+        checkOpen();
+        batch.clear();
+    }
+
+    /**
+     * 依次执行批中的语句；某条失败时抛出BatchUpdateException，其中包含已成功语句的行数
+     */
+    @Override
+    public int[] executeBatch() throws SQLException {
+        checkOpen();
+        int[] counts = new int[batch.size()];
+        try {
+            for (int i = 0; i < batch.size(); i++) {
+                QueryResult result;
+                try {
+                    result = run(batch.get(i));
+                } catch (SQLException e) {
+                    int[] done = new int[i];
+                    System.arraycopy(counts, 0, done, 0, i);
+                    throw new BatchUpdateException(e.getMessage(), e.getSQLState(), done, e);
+                }
+                if (result.isResultSet()) {
+                    closeCurrentResultSet();
+                    int[] done = new int[i];
+                    System.arraycopy(counts, 0, done, 0, i);
+                    throw new BatchUpdateException("批处理中不能包含查询语句: " + batch.get(i), done);
+                }
+                counts[i] = (int) Math.min(Integer.MAX_VALUE, result.getUpdateCount());
+            }
+            return counts;
+        } finally {
+            batch.clear();
+        }
+    }
+
+    @Override
+    public void setFetchSize(int rows) throws SQLException {
+        checkOpen();
+        if (rows < 0) {
+            throw new SQLException("fetch size不能为负数");
+        }
+        fetchSize = rows;
+    }
+
+    @Override
+    public int getFetchSize() throws SQLException {
+        checkOpen();
+        return fetchSize;
+    }
+
+    @Override
+    public void setMaxRows(int max) throws SQLException {
+        checkOpen();
+        if (max < 0) {
+            throw new SQLException("最大行数不能为负数");
+        }
+        maxRows = max;
+    }
+
+    @Override
+    public int getMaxRows() throws SQLException {
+        checkOpen();
+        return maxRows;
+    }
+
+    @Override
+    public void setFetchDirection(int direction) throws SQLException {
+        checkOpen();
+        if (direction != ResultSet.FETCH_FORWARD) {
+            throw new SQLFeatureNotSupportedException("只支持向前读取");
+        }
+    }
+
+    @Override
+    public int getFetchDirection() throws SQLException {
+        checkOpen();
+        return ResultSet.FETCH_FORWARD;
+    }
+
+    @Override
+    public int getResultSetConcurrency() throws SQLException {
+        checkOpen();
+        return ResultSet.CONCUR_READ_ONLY;
+    }
+
+    @Override
+    public int getResultSetType() throws SQLException {
+        checkOpen();
+        return ResultSet.TYPE_FORWARD_ONLY;
+    }
+
+    @Override
+    public int getResultSetHoldability() throws SQLException {
+        checkOpen();
+        return ResultSet.HOLD_CURSORS_OVER_COMMIT;
+    }
+
+    /**
+     * 记录超时设置，引擎目前不会因超时中止语句
+     */
+    @Override
+    public void setQueryTimeout(int seconds) throws SQLException {
+        checkOpen();
+        if (seconds < 0) {
+            throw new SQLException("超时时间不能为负数");
+        }
+        queryTimeout = seconds;
+    }
+
+    @Override
+    public int getQueryTimeout() throws SQLException {
+        checkOpen();
+        return queryTimeout;
+    }
+
+    @Override
+    public void setMaxFieldSize(int max) throws SQLException {
+        checkOpen();
+    }
+
+    @Override
+    public int getMaxFieldSize() throws SQLException {
+        checkOpen();
+        return 0;
+    }
+
+    @Override
+    public void setEscapeProcessing(boolean enable) throws SQLException {
+        checkOpen();
+    }
+
+    @Override
+    public void setCursorName(String name) throws SQLException {
+        throw new SQLFeatureNotSupportedException("不支持命名游标");
+    }
+
+    @Override
+    public void cancel() throws SQLException {
+        throw new SQLFeatureNotSupportedException("不支持取消语句");
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        checkOpen();
+        return connection;
+    }
+
+    @Override
+    public SQLWarning getWarnings() throws SQLException {
+        checkOpen();
+        return null;
+    }
+
+    @Override
+    public void clearWarnings() throws SQLException {
+        checkOpen();
+    }
+
+    @Override
+    public void close() throws SQLException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        batch.clear();
+        if (currentResultSet != null) {
+            MyDatabaseResultSet resultSet = currentResultSet;
+            currentResultSet = null;
+            resultSet.close();
+        }
+    }
+
+    @Override
+    public boolean isClosed() {
+        return closed;
+    }
+
+    @Override
+    public void setPoolable(boolean poolable) throws SQLException {
+        checkOpen();
+        this.poolable = poolable;
+    }
+
+    @Override
+    public boolean isPoolable() throws SQLException {
+        checkOpen();
+        return poolable;
+    }
+
+    @Override
+    public void closeOnCompletion() throws SQLException {
+        checkOpen();
+        closeOnCompletion = true;
+    }
+
+    @Override
+    public boolean isCloseOnCompletion() throws SQLException {
+        checkOpen();
+        return closeOnCompletion;
+    }
+
+    @Override
+    public ResultSet getGeneratedKeys() throws SQLException {
+        throw new SQLFeatureNotSupportedException("不支持自动生成键");
+    }
+
+    @Override
+    public int executeUpdate(String sql, int autoGeneratedKeys) throws SQLException {
+        if (autoGeneratedKeys != Statement.NO_GENERATED_KEYS) {
+            throw new SQLFeatureNotSupportedException("不支持自动生成键");
+        }
+        return executeUpdate(sql);
+    }
+
+    @Override
+    public int executeUpdate(String sql, int[] columnIndexes) throws SQLException {
+        throw new SQLFeatureNotSupportedException("不支持自动生成键");
+    }
+
+    @Override
+    public int executeUpdate(String sql, String[] columnNames) throws SQLException {
+        throw new SQLFeatureNotSupportedException("不支持自动生成键");
+    }
+
+    @Override
+    public boolean execute(String sql, int autoGeneratedKeys) throws SQLException {
+        if (autoGeneratedKeys != Statement.NO_GENERATED_KEYS) {
+            throw new SQLFeatureNotSupportedException("不支持自动生成键");
+        }
+        return execute(sql);
+    }
+
+    @Override
+    public boolean execute(String sql, int[] columnIndexes) throws SQLException {
+        throw new SQLFeatureNotSupportedException("不支持自动生成键");
+    }
+
+    @Override
+    public boolean execute(String sql, String[] columnNames) throws SQLException {
+        throw new SQLFeatureNotSupportedException("不支持自动生成键");
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) {
+            return iface.cast(this);
+        }
+        throw new SQLException("不是 " + iface.getName() + " 的包装");
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) {
+        return iface.isInstance(this);
+    }
+}
@@ -11,7 +11,6 @@ import java.util.*;
  * Database类，管理数据库连接和状态
  */
 public class Database {
-    private String currentDatabase;
     private Map<String, List<String>> databaseTables = new HashMap<>();
     private Map<String, User> users = new HashMap<>();
     private List<DatabaseChangeListener> databaseChangeListeners = new ArrayList<>();
@@ -63,32 +62,19 @@ public class Database {
         }
     }
 
-    public String getCurrentDatabase() {
-        return currentDatabase;
-    }
-
-    public boolean setCurrentDatabase(String dbName) throws IOException {
+    /**
+     * 数据库能否被会话切换使用（USE），当前数据库保存在各自的会话中
+     */
+    public boolean canUseDatabase(String dbName) {
         // 直接检查数据库目录是否存在
-        File dbDir = new File(SQLConstant.getRootPath() + "\\" + dbName);
+        File dbDir = new File(SQLConstant.getDatabasePath(dbName));
         if (!dbDir.exists() || !dbDir.isDirectory()) {
             return false;
         }
 
         // 检查是否有表描述文件
         File tableDescFile = new File(SQLConstant.getTableDescPath(dbName));
-        if (!tableDescFile.exists()) {
-            return false;
-        }
-
-        this.currentDatabase = dbName;
-        SQLConstant.setCurrentDbPath(dbName);
-        notifyDatabaseChanged(dbName); // 通知监听器数据库已变更
-        return true;
-    }
-
-    // 添加验证方法
-    public boolean validateCurrentDatabase() {
-        return currentDatabase != null && !currentDatabase.isEmpty();
+        return tableDescFile.exists();
     }
 
     public User authenticateUser(String username, String password) {
@@ -169,7 +155,7 @@ public class Database {
         }
 
         // 检查文件系统
-        File dbDir = new File(SQLConstant.getRootPath() + "\\" + dbName);
+        File dbDir = new File(SQLConstant.getDatabasePath(dbName));
         if (!dbDir.exists() || !dbDir.isDirectory()) {
             return false;
         }
@@ -236,7 +222,7 @@ public class Database {
         // 创建系统数据库
         if (!isDatabaseExists(SQLConstant.getSystemDirName())) {
             addDatabase(SQLConstant.getSystemDirName());
-            File systemDir = new File(SQLConstant.getRootPath() + "\\" + SQLConstant.getSystemDirName());
+            File systemDir = new File(SQLConstant.getDatabasePath(SQLConstant.getSystemDirName()));
             systemDir.mkdir();
 
             // 创建系统表描述文件
@@ -0,0 +1,107 @@
+package model;
+
+import myDatabase.Cursors;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Session类，保存一个客户端（图形界面、网络连接或驱动连接）的会话状态
+ * 处理类从会话取得当前数据库，多个会话可以同时使用不同的数据库。
+ * 会话同时是行锁的持有者：引擎没有多语句事务，每条语句自动提交，语句结束时释放会话持有的行锁，因此会话不保存事务状态。
+ * 驱动的PreparedStatement在客户端绑定参数后按普通语句执行，会话也不保存预编译语句。
+ * 会话结束时调用close，释放会话中还打开着的游标。
+ */
+public class Session {
+    private static final AtomicLong NEXT_ID = new AtomicLong(1);
+
+    // 进程内唯一的会话编号，用于区分同一用户的多个会话（如语句捕获，见WorkloadCapture）
+    private final long id = NEXT_ID.getAndIncrement();
+    private final String username;
+    private volatile String currentDatabase;
+    // 会话级设置，名称不区分大小写
+    private final Map<String, String> settings = new ConcurrentHashMap<>();
+    // 会话内用DECLARE打开的游标：名称（小写） -> 游标
+    private final Map<String, Cursors.Declared> cursors = new ConcurrentHashMap<>();
+
+    public Session(String username) {
+        this.username = username;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public String getCurrentDatabase() {
+        return currentDatabase;
+    }
+
+    public void setCurrentDatabase(String currentDatabase) {
+        this.currentDatabase = currentDatabase;
+    }
+
+    public String getSetting(String name) {
+        return settings.get(name.toLowerCase());
+    }
+
+    public String getSetting(String name, String defaultValue) {
+        return settings.getOrDefault(name.toLowerCase(), defaultValue);
+    }
+
+    public void setSetting(String name, String value) {
+        settings.put(name.toLowerCase(), value);
+    }
+
+    public Map<String, String> getSettings() {
+        return Collections.unmodifiableMap(settings);
+    }
+
+    /**
+     * 登记游标，同名游标已存在时返回false
+     */
+    public boolean addCursor(String name, Cursors.Declared cursor) {
+        return cursors.putIfAbsent(name, cursor) == null;
+    }
+
+    public Cursors.Declared getCursor(String name) {
+        return cursors.get(name);
+    }
+
+    public void removeCursor(String name, Cursors.Declared cursor) {
+        cursors.remove(name, cursor);
+    }
+
+    /**
+     * 关闭会话中所有打开的游标，返回关闭的个数
+     */
+    public int closeCursors() {
+        List<Cursors.Declared> open = new ArrayList<>(cursors.values());
+        for (Cursors.Declared cursor : open) {
+            cursor.close();
+        }
+        return open.size();
+    }
+
+    /**
+     * 会话结束，释放会话持有的资源
+     */
+    public void close() {
+        closeCursors();
+    }
+
+    @Override
+    public String toString() {
+        return "Session{" +
+                "username='" + username + '\'' +
+                ", currentDatabase='" + currentDatabase + '\'' +
+                '}';
+    }
+}
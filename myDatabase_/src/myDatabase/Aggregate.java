@@ -0,0 +1,247 @@
+package myDatabase;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 聚合函数 COUNT / SUM / MIN / MAX / AVG（不支持GROUP BY，整张表聚合成一行）
+ * 在向量化执行中逐批累加：数值列直接在long[]/double[]上计算，跳过NULL；
+ * 各批（可能来自不同线程）的中间结果最后按顺序合并。
+ */
+public class Aggregate {
+    private static final Pattern AGGREGATE_PATTERN =
+            Pattern.compile("(?i)^(count|sum|min|max|avg)\\s*\\(\\s*(\\*|[\\w.]+)\\s*\\)$");
+
+    private enum Function { COUNT, SUM, MIN, MAX, AVG }
+
+    private final Function function;
+    // COUNT(*) 时为-1
+    private final int column;
+    private final ColumnType type;
+    private final String label;
+
+    private Aggregate(Function function, int column, ColumnType type, String label) {
+        this.function = function;
+        this.column = column;
+        this.type = type;
+        this.label = label;
+    }
+
+    /**
+     * 判断选择列表中的一项是否为聚合函数
+     */
+    public static boolean isAggregate(String expression) {
+        return AGGREGATE_PATTERN.matcher(expression.trim()).matches();
+    }
+
+    /**
+     * 解析一个聚合函数，列不存在或类型不支持时抛出IllegalArgumentException
+     */
+    public static Aggregate parse(String expression, String[] headers, ColumnType[] types) {
+        Matcher matcher = AGGREGATE_PATTERN.matcher(expression.trim());
+        if (!matcher.matches()) {
+            throw new IllegalArgumentException("无法识别的聚合函数: " + expression);
+        }
+        Function function = Function.valueOf(matcher.group(1).toUpperCase());
+        String argument = matcher.group(2);
+        if (argument.equals("*")) {
+            if (function != Function.COUNT) {
+                throw new IllegalArgumentException(function + "(*) 不受支持");
+            }
+            return new Aggregate(function, -1, ColumnType.INTEGER, expression.trim());
+        }
+
+        String columnName = argument.replaceAll(".*\\.", "");
+        for (int i = 0; i < headers.length; i++) {
+            if (headers[i].equalsIgnoreCase(columnName)) {
+                boolean numeric = types[i] == ColumnType.INTEGER || types[i] == ColumnType.DOUBLE;
+                if ((function == Function.SUM || function == Function.AVG) && !numeric) {
+                    throw new IllegalArgumentException(function + " 只能用于数值列: " + columnName);
+                }
+                return new Aggregate(function, i, types[i], expression.trim());
+            }
+        }
+        throw new IllegalArgumentException("列不存在: " + columnName);
+    }
+
+    /**
+     * 按表头解析选择列表，列表中没有聚合函数时返回空列表
+     */
+    public static List<Aggregate> parseAll(List<String> columns, String[] headers, ColumnType[] types) {
+        List<Aggregate> aggregates = new ArrayList<>();
+        for (String column : columns) {
+            if (isAggregate(column)) {
+                aggregates.add(parse(column, headers, types));
+            }
+        }
+        return aggregates;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    /**
+     * 结果列的类型
+     */
+    public ColumnType getResultType() {
+        switch (function) {
+            case COUNT: return ColumnType.INTEGER;
+            case AVG: return ColumnType.DOUBLE;
+            default: return type;
+        }
+    }
+
+    public State newState() {
+        return new State();
+    }
+
+    /**
+     * 把一批中被选中的行累加到state
+     */
+    public void accumulate(RowBatch batch, State state) {
+        int[] selection = batch.selection();
+        int count = batch.getSelectedCount();
+        if (column < 0) {
+            state.count += count;
+            return;
+        }
+        ColumnVector vector = batch.vector(column);
+        if (vector instanceof ColumnVector.LongVector) {
+            long[] values = ((ColumnVector.LongVector) vector).values();
+            for (int k = 0; k < count; k++) {
+                int row = selection[k];
+                if (vector.isException(row)) {
+                    accumulateText(batch.text(column, row), state);
+                } else {
+                    state.addLong(values[row]);
+                }
+            }
+        } else if (vector instanceof ColumnVector.DoubleVector) {
+            double[] values = ((ColumnVector.DoubleVector) vector).values();
+            for (int k = 0; k < count; k++) {
+                int row = selection[k];
+                if (vector.isException(row)) {
+                    accumulateText(batch.text(column, row), state);
+                } else {
+                    state.addDouble(values[row]);
+                }
+            }
+        } else {
+            for (int k = 0; k < count; k++) {
+                accumulateText(batch.text(column, selection[k]), state);
+            }
+        }
+    }
+
+    // 按文本累加：NULL跳过，数值列中的非规范写法尽量按数字处理，其他类型只参与COUNT/MIN/MAX
+    private void accumulateText(String text, State state) {
+        if (text == null || text.equalsIgnoreCase("null")) {
+            return;
+        }
+        if (type == ColumnType.INTEGER || type == ColumnType.DOUBLE) {
+            try {
+                state.addDouble(Double.parseDouble(VectorPredicate.stripQuotes(text).trim()));
+                return;
+            } catch (NumberFormatException ignored) {
+                // 无法解析的值按文本参与MIN/MAX
+            }
+        }
+        state.addText(text);
+    }
+
+    /**
+     * 计算最终结果的文本，没有参与聚合的值时除COUNT外返回 NULL
+     */
+    public String result(State state) {
+        if (function == Function.COUNT) {
+            return String.valueOf(state.count);
+        }
+        if (state.count == 0) {
+            return "NULL";
+        }
+        switch (function) {
+            case SUM:
+                return state.integral ? String.valueOf(state.longSum) : formatDouble(state.longSum + state.doubleSum);
+            case AVG:
+                return formatDouble((state.longSum + state.doubleSum) / state.count);
+            case MIN:
+                return state.minText != null ? state.minText
+                        : state.integral ? String.valueOf(state.minLong) : formatDouble(state.min);
+            default:
+                return state.maxText != null ? state.maxText
+                        : state.integral ? String.valueOf(state.maxLong) : formatDouble(state.max);
+        }
+    }
+
+    // 不使用科学计数法，与表中数值的写法一致
+    private static String formatDouble(double value) {
+        if (!Double.isFinite(value)) {
+            return String.valueOf(value);
+        }
+        return BigDecimal.valueOf(value).toPlainString();
+    }
+
+    /**
+     * 一个聚合函数的中间结果
+     */
+    public static class State {
+        long count;
+        // 规范写法的整数单独用long累加，避免精度损失
+        long longSum;
+        double doubleSum;
+        boolean integral = true;
+        long minLong = Long.MAX_VALUE;
+        long maxLong = Long.MIN_VALUE;
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        // 非数值列（或无法解析的值）的最小、最大值按字符串比较
+        String minText;
+        String maxText;
+
+        void addLong(long value) {
+            count++;
+            longSum += value;
+            if (value < minLong) minLong = value;
+            if (value > maxLong) maxLong = value;
+            if (value < min) min = value;
+            if (value > max) max = value;
+        }
+
+        void addDouble(double value) {
+            count++;
+            integral = false;
+            doubleSum += value;
+            if (value < min) min = value;
+            if (value > max) max = value;
+        }
+
+        void addText(String value) {
+            count++;
+            if (minText == null || value.compareTo(minText) < 0) minText = value;
+            if (maxText == null || value.compareTo(maxText) > 0) maxText = value;
+        }
+
+        /**
+         * 合并另一个中间结果
+         */
+        public void merge(State other) {
+            count += other.count;
+            longSum += other.longSum;
+            doubleSum += other.doubleSum;
+            integral &= other.integral;
+            minLong = Math.min(minLong, other.minLong);
+            maxLong = Math.max(maxLong, other.maxLong);
+            min = Math.min(min, other.min);
+            max = Math.max(max, other.max);
+            if (other.minText != null && (minText == null || other.minText.compareTo(minText) < 0)) {
+                minText = other.minText;
+            }
+            if (other.maxText != null && (maxText == null || other.maxText.compareTo(maxText) > 0)) {
+                maxText = other.maxText;
+            }
+        }
+    }}
@@ -1,23 +1,28 @@
 package myDatabase;
 
+import model.Session;
+
 import java.io.*;
 import java.nio.file.*;
 import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.regex.*;
 
 public class Alter {
-    public static String processAlter(String sql) {
+    public static String processAlter(String sql, Session session) {
         try {
             // 统一去除语句末尾的分号（如果存在）
             sql = sql.replaceAll(";\\s*$", "").trim();
 
+            String dbName = session.getCurrentDatabase();
+
             // 解析ALTER语句类型
             if (sql.matches("(?i)^alter\\s+table\\s+\\w+\\s+add\\s+column\\s+\\w+\\s+\\w+.*$")) {
-                return handleAddColumn(sql);
+                return handleAddColumn(sql, dbName);
             } else if (sql.matches("(?i)^alter\\s+table\\s+\\w+\\s+modify\\s+column\\s+\\w+\\s+\\w+.*$")) {
-                return handleModifyColumn(sql);
+                return handleModifyColumn(sql, dbName);
             } else if (sql.matches("(?i)^alter\\s+table\\s+\\w+\\s+drop\\s+column\\s+\\w+$")) {
-                return handleDropColumn(sql);
+                return handleDropColumn(sql, dbName);
             } else {
                 return "ERROR: 不支持的ALTER TABLE语法\n支持的格式：\n"
                         + "ALTER TABLE 表名 ADD COLUMN 列名 类型 [约束]\n"
@@ -29,7 +34,7 @@ public class Alter {
         }
     }
 
-    private static String handleAddColumn(String sql) throws IOException {
+    private static String handleAddColumn(String sql, String dbName) throws IOException {
         Matcher matcher = Pattern.compile(
                 "(?i)^alter\\s+table\\s+(\\w+)\\s+add\\s+column\\s+(\\w+)\\s+((?:\\w+)(?:\\([^)]+\\))?)(.*)$",
                 Pattern.CASE_INSENSITIVE).matcher(sql);
@@ -43,10 +48,17 @@ public class Alter {
         String columnType = matcher.group(3).toUpperCase();
         String constraints = matcher.group(4).trim().replaceAll(";\\s*$", "");
 
-        return addColumnToTable(tableName, columnName, columnType, constraints);
+        // 改写表结构和记录期间持有表闩锁，与并发的INSERT/UPDATE/DELETE互斥
+        ReentrantLock latch = LockManager.getTableLatch(dbName, tableName);
+        latch.lock();
+        try {
+            return addColumnToTable(dbName, tableName, columnName, columnType, constraints);
+        } finally {
+            latch.unlock();
+        }
     }
 
-    private static String handleModifyColumn(String sql) throws IOException {
+    private static String handleModifyColumn(String sql, String dbName) throws IOException {
         Matcher matcher = Pattern.compile(
                 "(?i)^alter\\s+table\\s+(\\w+)\\s+modify\\s+column\\s+(\\w+)\\s+((?:\\w+)(?:\\([^)]+\\))?)(.*)$",
                 Pattern.CASE_INSENSITIVE).matcher(sql);
@@ -60,10 +72,16 @@ public class Alter {
         String newType = matcher.group(3).toUpperCase();
         String newConstraints = matcher.group(4).trim().replaceAll(";\\s*$", "");
 
-        return modifyColumnInTable(tableName, columnName, newType, newConstraints);
+        ReentrantLock latch = LockManager.getTableLatch(dbName, tableName);
+        latch.lock();
+        try {
+            return modifyColumnInTable(dbName, tableName, columnName, newType, newConstraints);
+        } finally {
+            latch.unlock();
+        }
     }
 
-    private static String handleDropColumn(String sql) throws IOException {
+    private static String handleDropColumn(String sql, String dbName) throws IOException {
         Matcher matcher = Pattern.compile(
                 "(?i)^alter\\s+table\\s+(\\w+)\\s+drop\\s+column\\s+(\\w+)$",
                 Pattern.CASE_INSENSITIVE).matcher(sql);
@@ -75,12 +93,17 @@ public class Alter {
         String tableName = matcher.group(1);
         String columnName = matcher.group(2);
 
-        return dropColumnFromTable(tableName, columnName);
+        ReentrantLock latch = LockManager.getTableLatch(dbName, tableName);
+        latch.lock();
+        try {
+            return dropColumnFromTable(dbName, tableName, columnName);
+        } finally {
+            latch.unlock();
+        }
     }
 
-    private static String addColumnToTable(String tableName, String columnName, String columnType, String constraints)
+    private static String addColumnToTable(String currentDbName, String tableName, String columnName, String columnType, String constraints)
             throws IOException {
-        String currentDbName = SQLConstant.getCurrentDbPath().substring(SQLConstant.getRootPath().length() + 1);
         String tdfPath = SQLConstant.getTableDefinitionPath(currentDbName, tableName);
         String trdPath = SQLConstant.getTableRecordPath(currentDbName, tableName);
 
@@ -102,21 +125,20 @@ public class Alter {
         tdfLines.set(0, tdfLines.get(0) + SQLConstant.getFieldSeparator() + columnName);
         tdfLines.set(1, tdfLines.get(1) + SQLConstant.getFieldSeparator() + columnType);
         tdfLines.set(2, tdfLines.get(2) + SQLConstant.getFieldSeparator() + constraints);
-        Files.write(Paths.get(tdfPath), tdfLines);
+        TableFile.writeDefinition(Paths.get(tdfPath), tdfLines);
 
         //更新表记录文件
-        List<String> trdLines = Files.readAllLines(Paths.get(trdPath));
+        List<String> trdLines = TableFile.readLines(Paths.get(trdPath));
         for (int i = 3; i < trdLines.size(); i++) {
             trdLines.set(i, trdLines.get(i) + SQLConstant.getFieldSeparator() + "null");
         }
-        Files.write(Paths.get(trdPath), trdLines);
+        TableFile.writeLines(Paths.get(trdPath), trdLines);
 
         return "操作成功: 成功添加列 " + columnName;
     }
 
-    private static String modifyColumnInTable(String tableName, String columnName, String newType, String newConstraints)
+    private static String modifyColumnInTable(String currentDbName, String tableName, String columnName, String newType, String newConstraints)
             throws IOException {
-        String currentDbName = SQLConstant.getCurrentDbPath().substring(SQLConstant.getRootPath().length() + 1);
         String tdfPath = SQLConstant.getTableDefinitionPath(currentDbName, tableName);
 
         //读取表结构
@@ -148,13 +170,12 @@ public class Alter {
 
         tdfLines.set(1, String.join(SQLConstant.getFieldSeparator(), types));
         tdfLines.set(2, String.join(SQLConstant.getFieldSeparator(), constraints));
-        Files.write(Paths.get(tdfPath), tdfLines);
+        TableFile.writeDefinition(Paths.get(tdfPath), tdfLines);
 
         return "操作成功: 成功修改列 " + columnName;
     }
 
-    private static String dropColumnFromTable(String tableName, String columnName) throws IOException {
-        String currentDbName = SQLConstant.getCurrentDbPath().substring(SQLConstant.getRootPath().length() + 1);
+    private static String dropColumnFromTable(String currentDbName, String tableName, String columnName) throws IOException {
         String tdfPath = SQLConstant.getTableDefinitionPath(currentDbName, tableName);
         String trdPath = SQLConstant.getTableRecordPath(currentDbName, tableName);
 
@@ -192,10 +213,10 @@ public class Alter {
             }
             tdfLines.set(i, newLine.toString());
         }
-        Files.write(Paths.get(tdfPath), tdfLines);
+        TableFile.writeDefinition(Paths.get(tdfPath), tdfLines);
 
         //更新表记录文件
-        List<String> trdLines = Files.readAllLines(Paths.get(trdPath));
+        List<String> trdLines = TableFile.readLines(Paths.get(trdPath));
         for (int i = 3; i < trdLines.size(); i++) {
             String[] values = trdLines.get(i).split(Pattern.quote(SQLConstant.getFieldSeparator()));
             StringBuilder newLine = new StringBuilder();
@@ -209,7 +230,7 @@ public class Alter {
             }
             trdLines.set(i, newLine.toString());
         }
-        Files.write(Paths.get(trdPath), trdLines);
+        TableFile.writeLines(Paths.get(trdPath), trdLines);
 
         return "操作成功: 成功删除列 " + columnName;
     }
@@ -0,0 +1,216 @@
+package myDatabase;
+
+import model.Database;
+import model.Session;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * ANALYZE TABLE：扫描一遍表，收集表和列的统计信息（见TableStatistics）供查询规划使用
+ * 表中增删改的行数超过上次统计行数的一定比例（SQLConstant.getStatsRefreshFraction）后，在后台线程中自动重新收集。
+ */
+public class Analyze {
+    private static final Pattern ANALYZE_PATTERN = Pattern.compile("^ANALYZE\\s+TABLE\\s+(\\w+)\\s*;?$",
+            Pattern.CASE_INSENSITIVE);
+    // 直方图的桶数
+    private static final int HISTOGRAM_BUCKETS = 32;
+    // 用于生成直方图的数值样本（蓄水池抽样）大小
+    private static final int SAMPLE_SIZE = 10000;
+    // 上次统计以来各表（库名.表名）变化的行数
+    private static final Map<String, AtomicLong> CHANGED_ROWS = new ConcurrentHashMap<>();
+    // 正在后台重新统计的表
+    private static final Set<String> REFRESHING = ConcurrentHashMap.newKeySet();
+    private static final ExecutorService REFRESHER = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "stats-refresher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public static String processAnalyze(String sql, Database database, Session session) {
+        Matcher matcher = ANALYZE_PATTERN.matcher(sql.trim());
+        if (!matcher.find()) {
+            return "ERROR: 语法错误，正确格式：ANALYZE TABLE 表名";
+        }
+        String tableName = matcher.group(1);
+        String dbName = session.getCurrentDatabase();
+        try {
+            TableStatistics stats = analyzeTable(dbName, tableName, database);
+            if (stats == null) {
+                return "ERROR: 表 '" + tableName + "' 不存在";
+            }
+            return "Query OK: 已收集表 '" + tableName + "' 的统计信息（" + stats.getRowCount() + " 行）";
+        } catch (IOException e) {
+            return "ERROR: 收集统计信息失败: " + e.getMessage();
+        }
+    }
+
+    /**
+     * 收集并保存一张表的统计信息，表不存在时返回null；表的区块摘要无效时顺便重建
+     */
+    public static TableStatistics analyzeTable(String dbName, String tableName, Database database)
+            throws IOException {
+        String key = (dbName + "." + tableName).toLowerCase();
+        // 从这里开始的修改计入下一轮
+        CHANGED_ROWS.remove(key);
+        Path tablePath = Paths.get(SQLConstant.getTableRecordPath(dbName, tableName));
+        TableScanner scanner = TableScanner.open(tablePath.toString());
+        if (scanner == null) {
+            return null;
+        }
+        String[] headers = scanner.getHeaders();
+        ColumnCollector[] collectors = new ColumnCollector[headers.length];
+        for (int i = 0; i < headers.length; i++) {
+            collectors[i] = new ColumnCollector(i);
+        }
+        long[] rows = new long[1];
+        // 按批扫描，字段文本按列取出，不为每行拆出字段数组；缺少的字段为null
+        scanner.scanBatches(1, batch -> {
+            rows[0] += batch.size();
+            for (int i = 0; i < collectors.length; i++) {
+                for (int row = 0; row < batch.size(); row++) {
+                    collectors[i].add(batch.text(i, row));
+                }
+            }
+            return Collections.emptyList();
+        });
+
+        String analyzedAt = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new Date());
+        TableStatistics stats = new TableStatistics(rows[0], analyzedAt);
+        for (int i = 0; i < headers.length; i++) {
+            stats.addColumn(collectors[i].finish(headers[i], rows[0]));
+        }
+        stats.save(dbName, tableName, database);
+
+        if (scanner.getZoneMap() == null) {
+            ReentrantLock latch = LockManager.getTableLatch(dbName, tableName);
+            latch.lock();
+            try {
+                TableFile.rebuildIndexes(tablePath);
+            } finally {
+                latch.unlock();
+            }
+        }
+        return stats;
+    }
+
+    /**
+     * 删除表（tableName为null时为整个库）后清除其统计信息和变化计数；清除失败只影响查询规划，不影响删除本身
+     */
+    public static void tableDropped(String dbName, String tableName) {
+        String prefix = (dbName + "." + (tableName == null ? "" : tableName)).toLowerCase();
+        CHANGED_ROWS.keySet().removeIf(key -> tableName == null ? key.startsWith(prefix) : key.equals(prefix));
+        try {
+            TableStatistics.remove(dbName, tableName);
+        } catch (IOException e) {
+            System.err.println("清除统计信息失败: " + prefix + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * 记录表中有count行发生了变化，累计超过阈值时在后台重新收集统计信息；没有统计过的表不处理
+     */
+    public static void rowsChanged(String dbName, String tableName, long count) {
+        TableStatistics stats = TableStatistics.get(dbName, tableName);
+        if (stats == null || count <= 0) {
+            return;
+        }
+        String key = (dbName + "." + tableName).toLowerCase();
+        long changed = CHANGED_ROWS.computeIfAbsent(key, k -> new AtomicLong()).addAndGet(count);
+        double threshold = Math.max(1, stats.getRowCount() * SQLConstant.getStatsRefreshFraction());
+        if (changed < threshold || !REFRESHING.add(key)) {
+            return;
+        }
+        REFRESHER.execute(() -> {
+            // 重新统计会改写系统库的统计表和区块摘要，与写入语句一样经过写入闸门，不与热备份的快照交错
+            WriteGate.enter();
+            try {
+                analyzeTable(dbName, tableName, null);
+            } catch (IOException | RuntimeException e) {
+                System.err.println("自动更新统计信息失败: " + dbName + "." + tableName + ": " + e.getMessage());
+            } finally {
+                WriteGate.exit();
+                REFRESHING.remove(key);
+            }
+        });
+    }
+
+    // 一列的统计收集器
+    private static class ColumnCollector {
+        private final HyperLogLog distinct = new HyperLogLog();
+        private final Random random;
+        private final double[] sample = new double[SAMPLE_SIZE];
+        private int sampled;
+        private long nulls;
+        private long numeric;
+        private double min = Double.NaN;
+        private double max = Double.NaN;
+
+        ColumnCollector(int column) {
+            // 固定种子，同样的数据得到同样的直方图
+            this.random = new Random(column);
+        }
+
+        void add(String value) {
+            if (value == null || value.equalsIgnoreCase("null")) {
+                nulls++;
+                return;
+            }
+            String text = VectorPredicate.stripQuotes(value);
+            distinct.add(BloomIndex.key(text));
+            if (!VectorPredicate.isNumeric(text)) {
+                return;
+            }
+            double number = Double.parseDouble(text);
+            if (numeric++ == 0) {
+                min = max = number;
+            } else {
+                min = Math.min(min, number);
+                max = Math.max(max, number);
+            }
+            if (sampled < SAMPLE_SIZE) {
+                sample[sampled++] = number;
+            } else {
+                long slot = (long) (random.nextDouble() * numeric);
+                if (slot < SAMPLE_SIZE) {
+                    sample[(int) slot] = number;
+                }
+            }
+        }
+
+        TableStatistics.ColumnStatistics finish(String name, long rows) {
+            double[] histogram = new double[0];
+            if (sampled > 0) {
+                double[] sorted = Arrays.copyOf(sample, sampled);
+                Arrays.sort(sorted);
+                int buckets = Math.min(HISTOGRAM_BUCKETS, sampled);
+                histogram = new double[buckets + 1];
+                for (int b = 1; b < buckets; b++) {
+                    histogram[b] = sorted[(int) ((long) b * sampled / buckets)];
+                }
+                // 两端用精确的最小/最大值，样本可能没有抽到
+                histogram[0] = min;
+                histogram[buckets] = max;
+            }
+            double total = Math.max(1, rows);
+            long ndv = Math.min(distinct.estimate(), rows - nulls);
+            return new TableStatistics.ColumnStatistics(name, Math.max(0, ndv), nulls / total, numeric / total,
+                    min, max, histogram);
+        }
+    }
+}
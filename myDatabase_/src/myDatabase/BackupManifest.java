@@ -0,0 +1,216 @@
+package myDatabase;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 备份清单：记录一次备份完成时数据库目录中每个文件的大小、修改时间和按块计算的SHA-256摘要
+ * 全量备份包含所有文件；增量备份只包含与上一次备份（差异备份为上一次全量备份）相比摘要不同的块，
+ * 清单中的parent指向它所依赖的备份，还原时从全量备份开始依次应用整条备份链。
+ * 大小和修改时间都没变的文件直接沿用上一份清单中的摘要，不读取内容。
+ * 清单以MANIFEST_ENTRY为名存放在备份文件中，最近一次备份和最近一次全量备份的清单另存在系统目录下，供下一次增量备份比较。
+ */
+public class BackupManifest {
+    public static final String MANIFEST_ENTRY = "MANIFEST.mdb";
+    // 块的条目名：BLOCK_PREFIX + 文件相对路径 + "/" + 块号，块内容gzip压缩时再加COMPRESSED_SUFFIX
+    public static final String BLOCK_PREFIX = "blocks/";
+    public static final String COMPRESSED_SUFFIX = ".gz";
+
+    public static final int BLOCK_SIZE = 256 * 1024;
+    private static final String HEADER = "MDBBACKUP 1";
+
+    public enum Type { FULL, INCREMENTAL, DIFFERENTIAL }
+
+    /**
+     * 一个文件在备份时的状态
+     */
+    public static class FileState {
+        public final long size;
+        public final long modified;
+        public final String[] blockHashes;
+
+        FileState(long size, long modified, String[] blockHashes) {
+            this.size = size;
+            this.modified = modified;
+            this.blockHashes = blockHashes;
+        }
+
+        /**
+         * 第block块的摘要，文件在该处没有数据时返回null
+         */
+        String hash(int block) {
+            return block < blockHashes.length ? blockHashes[block] : null;
+        }
+    }
+
+    final Type type;
+    final String database;
+    final String id;
+    final long created;
+    // 依赖的备份，全量备份为null
+    final String parentId;
+    final String parentArchive;
+    // 备份文件的绝对路径
+    String archive;
+    // 相对路径（用/分隔） -> 状态
+    final Map<String, FileState> files = new LinkedHashMap<>();
+
+    BackupManifest(Type type, String database, BackupManifest parent) {
+        this(type, database, System.currentTimeMillis() + "-" + Integer.toHexString(ThreadLocalRandom.current().nextInt()),
+                System.currentTimeMillis(), parent == null ? null : parent.id, parent == null ? null : parent.archive);
+    }
+
+    private BackupManifest(Type type, String database, String id, long created, String parentId, String parentArchive) {
+        this.type = type;
+        this.database = database;
+        this.id = id;
+        this.created = created;
+        this.parentId = parentId;
+        this.parentArchive = parentArchive;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public Map<String, FileState> getFiles() {
+        return files;
+    }
+
+    void write(OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        writer.write(HEADER + "\n");
+        writer.write("type\t" + type.name().toLowerCase() + "\n");
+        writer.write("database\t" + database + "\n");
+        writer.write("id\t" + id + "\n");
+        writer.write("created\t" + created + "\n");
+        writer.write("blockSize\t" + BLOCK_SIZE + "\n");
+        if (parentId != null) {
+            writer.write("parent\t" + parentId + "\t" + parentArchive + "\n");
+        }
+        if (archive != null) {
+            writer.write("archive\t" + archive + "\n");
+        }
+        for (Map.Entry<String, FileState> entry : files.entrySet()) {
+            FileState state = entry.getValue();
+            writer.write("file\t" + entry.getKey() + "\t" + state.size + "\t" + state.modified + "\t"
+                    + String.join(",", state.blockHashes) + "\n");
+        }
+        writer.flush();
+    }
+
+    static BackupManifest read(InputStream in) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        if (!HEADER.equals(reader.readLine())) {
+            throw new IOException("备份清单格式错误");
+        }
+        Map<String, String[]> fields = new LinkedHashMap<>();
+        Map<String, FileState> files = new LinkedHashMap<>();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            String[] parts = line.split("\t", -1);
+            if (parts[0].equals("file")) {
+                if (parts.length != 5) {
+                    throw new IOException("备份清单中的文件记录格式错误: " + line);
+                }
+                String[] hashes = parts[4].isEmpty() ? new String[0] : parts[4].split(",");
+                files.put(parts[1], new FileState(Long.parseLong(parts[2]), Long.parseLong(parts[3]), hashes));
+            } else {
+                fields.put(parts[0], parts);
+            }
+        }
+        String[] blockSize = fields.get("blockSize");
+        if (blockSize == null || Integer.parseInt(blockSize[1]) != BLOCK_SIZE) {
+            throw new IOException("不支持的备份块大小");
+        }
+        String[] parent = fields.get("parent");
+        try {
+            BackupManifest manifest = new BackupManifest(Type.valueOf(field(fields, "type").toUpperCase()),
+                    field(fields, "database"), field(fields, "id"), Long.parseLong(field(fields, "created")),
+                    parent == null ? null : parent[1], parent == null ? null : parent[2]);
+            String[] archive = fields.get("archive");
+            manifest.archive = archive == null ? null : archive[1];
+            manifest.files.putAll(files);
+            return manifest;
+        } catch (IllegalArgumentException e) {
+            throw new IOException("备份清单格式错误: " + e.getMessage());
+        }
+    }
+
+    private static String field(Map<String, String[]> fields, String name) throws IOException {
+        String[] values = fields.get(name);
+        if (values == null || values.length < 2) {
+            throw new IOException("备份清单缺少 " + name);
+        }
+        return values[1];
+    }
+
+    /**
+     * 读取系统目录下保存的某个库最近一次备份（full为true时为最近一次全量备份）的清单，没有时返回null
+     */
+    static BackupManifest loadLast(String dbName, boolean full) {
+        Path path = statePath(dbName, full);
+        if (!Files.isRegularFile(path)) {
+            return null;
+        }
+        try (InputStream in = Files.newInputStream(path)) {
+            return read(in);
+        } catch (IOException | RuntimeException e) {
+            System.err.println("读取备份状态失败，将做全量备份: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 备份完成后保存清单，作为下一次增量（全量备份时也作为差异）备份的比较基准
+     */
+    void saveAsLast() throws IOException {
+        Path path = statePath(database, false);
+        Files.createDirectories(path.getParent());
+        writeAtomically(path);
+        if (type == Type.FULL) {
+            writeAtomically(statePath(database, true));
+        }
+    }
+
+    private void writeAtomically(Path path) throws IOException {
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (OutputStream out = Files.newOutputStream(temp)) {
+            write(out);
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static Path statePath(String dbName, boolean full) {
+        return Paths.get(SQLConstant.getRootPath(), SQLConstant.getSystemDirName(), "backup",
+                dbName + (full ? ".full" : ".last"));
+    }
+
+    static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static String hash(MessageDigest digest, byte[] bytes, int length) {
+        digest.reset();
+        digest.update(bytes, 0, length);
+        return HexFormat.of().formatHex(digest.digest());
+    }
+}
@@ -1,17 +1,78 @@
 package myDatabase;
 
 import model.Database;
+import model.Session;
 import javax.swing.*;
+import java.awt.GraphicsEnvironment;
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.*;
+import java.security.MessageDigest;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import java.util.zip.*;
 
+/**
+ * 备份与还原数据库
+ * 备份文件是zip：全量备份存放所有文件的所有块，增量/差异备份只存放变化的块（见BackupManifest），每块单独gzip压缩，
+ * 两者都带有记录各文件状态的清单，还原增量备份时按清单找到整条备份链依次应用，最后逐块校验摘要。
+ * 早先的全量备份按原路径存放整个文件、块不压缩，还原时同样支持。
+ */
 public class BackupRestore {
+    // BACKUP DATABASE [库名] [INCREMENTAL|DIFFERENTIAL] TO '文件' [INCREMENTAL|DIFFERENTIAL]，省略库名时备份当前数据库
+    private static final Pattern BACKUP_PATTERN = Pattern.compile("(?i)^backup\\s+database"
+            + "(?:\\s+(?!(?:incremental|differential|to)\\b)(\\w+))?(?:\\s+(incremental|differential))?"
+            + "\\s+to\\s+'([^']+)'(?:\\s+(incremental|differential))?\\s*;?$");
+    // RESTORE DATABASE [库名] FROM '文件'，省略库名时取清单中的库名，旧备份取文件名
+    private static final Pattern RESTORE_PATTERN =
+            Pattern.compile("(?i)^restore\\s+database(?:\\s+(\\w+))?\\s+from\\s+'([^']+)'\\s*;?$");
 
-    public static String backupDatabase(Database database) {
+    /**
+     * 处理BACKUP语句：指定了文件时直接备份，否则在图形界面中弹出保存对话框
+     */
+    public static String processBackup(String sql, Session session) {
+        Matcher matcher = BACKUP_PATTERN.matcher(sql.trim());
+        if (matcher.matches()) {
+            String dbName = matcher.group(1) != null ? matcher.group(1) : session.getCurrentDatabase();
+            if (dbName == null || dbName.isEmpty()) {
+                return "ERROR: 请先选择要备份的数据库";
+            }
+            String mode = matcher.group(2) != null ? matcher.group(2) : matcher.group(4);
+            BackupManifest.Type type = mode == null ? BackupManifest.Type.FULL
+                    : BackupManifest.Type.valueOf(mode.toUpperCase());
+            return backupDatabase(dbName, new File(matcher.group(3)), type);
+        }
+        if (GraphicsEnvironment.isHeadless()) {
+            return "ERROR: 无界面模式下请指定备份文件：BACKUP DATABASE [库名] TO '文件路径'";
+        }
+        return backupDatabase(session);
+    }
+
+    /**
+     * 处理RESTORE语句：指定了文件时直接还原，否则在图形界面中弹出选择对话框
+     */
+    public static String processRestore(String sql, Database database) {
+        Matcher matcher = RESTORE_PATTERN.matcher(sql.trim());
+        if (matcher.matches()) {
+            File backupFile = new File(matcher.group(2));
+            return restoreDatabase(database, matcher.group(1), backupFile);
+        }
+        if (GraphicsEnvironment.isHeadless()) {
+            return "ERROR: 无界面模式下请指定备份文件：RESTORE DATABASE [库名] FROM '文件路径'";
+        }
+        return restoreDatabase(database);
+    }
+
+    public static String backupDatabase(Session session) {
         try {
             // 获取当前数据库名
-            String dbName = database.getCurrentDatabase();
+            String dbName = session.getCurrentDatabase();
+
             if (dbName == null || dbName.isEmpty()) {
                 return "ERROR: 请先选择要备份的数据库";
             }
@@ -26,8 +87,29 @@ public class BackupRestore {
                 return "备份已取消";
             }
 
-            File backupFile = fileChooser.getSelectedFile();
+            return backupDatabase(dbName, fileChooser.getSelectedFile());
+        } catch (Exception e) {
+            return "ERROR: 备份失败 - " + e.getMessage();
+        }
+    }
+
+    /**
+     * 把数据库目录完整压缩到指定的备份文件
+     */
+    public static String backupDatabase(String dbName, File backupFile) {
+        return backupDatabase(dbName, backupFile, BackupManifest.Type.FULL);
+    }
 
+    /**
+     * 备份数据库：全量备份压缩所有文件；增量备份只写入自上一次备份以来变化的块，差异备份则相对上一次全量备份
+     * 没有可作基准的备份（或基准备份文件已不在原处）时改做全量备份。
+     * 备份可以在有写入时进行：先短暂暂停写入语句取一个一致的快照（见takeSnapshot），随即放行，
+     * 之后由多个线程并行计算各块的摘要并压缩，按顺序写入备份文件。
+     */
+    public static String backupDatabase(String dbName, File backupFile, BackupManifest.Type type) {
+        Path snapshotDir = null;
+        Path tempFile = null;
+        try {
             String backupPath = backupFile.getAbsolutePath();
             if (!backupPath.toLowerCase().endsWith(".zip")) {
                 backupPath += ".zip";
@@ -40,29 +122,238 @@ public class BackupRestore {
                 return "ERROR: 数据库目录不存在: " + dbFolder;
             }
 
-            // 执行压缩
-            try (ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(backupFile))) {
-                Files.walk(dbFolder)
-                        .filter(path -> !Files.isDirectory(path))
-                        .forEach(path -> {
-                            try {
-                                String entryName = dbFolder.relativize(path).toString()
-                                        .replace(File.separator, "/");
-                                zos.putNextEntry(new ZipEntry(entryName));
-                                Files.copy(path, zos);
-                                zos.closeEntry();
-                            } catch (IOException e) {
-                                throw new RuntimeException("压缩文件失败: " + path, e);
-                            }
-                        });
+            BackupManifest parent = null;
+            String note = "";
+            if (type != BackupManifest.Type.FULL) {
+                parent = BackupManifest.loadLast(dbName, type == BackupManifest.Type.DIFFERENTIAL);
+                if (parent == null || parent.archive == null || !Files.isRegularFile(Paths.get(parent.archive))
+                        || parent.archive.equals(backupPath)) {
+                    type = BackupManifest.Type.FULL;
+                    parent = null;
+                    note = "（没有可作基准的备份，已改为全量备份）";
+                }
             }
+            BackupManifest manifest = new BackupManifest(type, dbName, parent);
+            manifest.archive = backupPath;
 
-            return "Query OK: 备份成功 -> " + backupPath;
+            snapshotDir = Paths.get(SQLConstant.getRootPath(), SQLConstant.getSystemDirName(), "backup",
+                    "snapshot-" + manifest.id);
+            long pauseStarted = System.nanoTime();
+            if (!WriteGate.pause(SQLConstant.getBackupPauseTimeoutMillis())) {
+                return "ERROR: 备份失败 - 等待正在执行的写入语句结束超时";
+            }
+            List<SnapshotFile> changed;
+            try {
+                changed = takeSnapshot(dbFolder, snapshotDir, parent, manifest);
+            } finally {
+                WriteGate.resume();
+            }
+            long pausedMillis = (System.nanoTime() - pauseStarted) / 1_000_000;
+
+            // 先写到临时文件，完整写完才替换为备份文件
+            tempFile = backupFile.toPath().resolveSibling(backupFile.getName() + ".tmp");
+            long[] written = new long[2];
+            try (ZipOutputStream zos = new ZipOutputStream(new BufferedOutputStream(
+                    Files.newOutputStream(tempFile), 1 << 16))) {
+                compressBlocks(changed, parent, manifest, zos, written);
+                zos.putNextEntry(new ZipEntry(BackupManifest.MANIFEST_ENTRY));
+                manifest.write(zos);
+                zos.closeEntry();
+            }
+            Files.move(tempFile, backupFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            tempFile = null;
+            manifest.saveAsLast();
+
+            String paused = "（写入暂停 " + pausedMillis + " ms，" + SQLConstant.getBackupThreads() + " 个线程压缩）";
+            if (type == BackupManifest.Type.FULL) {
+                return "Query OK: 备份成功 -> " + backupPath + note + paused;
+            }
+            return "Query OK: " + (type == BackupManifest.Type.INCREMENTAL ? "增量" : "差异") + "备份成功 -> "
+                    + backupPath + "（" + changed.size() + " 个文件有变化，写入 " + written[0] + " 块共 "
+                    + written[1] + " 字节）" + paused;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return "ERROR: 备份失败 - 备份被中断";
         } catch (Exception e) {
             return "ERROR: 备份失败 - " + e.getMessage();
+        } finally {
+            try {
+                if (tempFile != null) {
+                    Files.deleteIfExists(tempFile);
+                }
+                if (snapshotDir != null) {
+                    deleteDirectory(snapshotDir.toFile());
+                }
+            } catch (IOException e) {
+                System.err.println("清理备份临时文件失败: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 快照中的一个文件：path是快照目录中的硬链接或副本，只读取前size字节
+     */
+    private static class SnapshotFile {
+        final String name;
+        final Path path;
+        final long size;
+        final long modified;
+
+        SnapshotFile(String name, Path path, long size, long modified) {
+            this.name = name;
+            this.path = path;
+            this.size = size;
+            this.modified = modified;
+        }
+    }
+
+    /**
+     * 在写入暂停期间为数据库目录取快照，返回需要读取内容的文件；大小和修改时间都没变的文件直接沿用基准清单中的摘要
+     * 记录文件（.trd）只在末尾追加或整个写好后原子替换，硬链接并记下当前大小即可，之后的写入不影响快照中的前size字节；
+     * 其余文件（表定义、完整性、索引、日志等）会被原地改写，复制一份。不支持硬链接的文件系统上也改为复制。
+     */
+    private static List<SnapshotFile> takeSnapshot(Path dbFolder, Path snapshotDir, BackupManifest parent,
+                                                   BackupManifest manifest) throws IOException {
+        List<Path> files;
+        try (Stream<Path> walk = Files.walk(dbFolder)) {
+            files = walk.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+        }
+        List<SnapshotFile> changed = new ArrayList<>();
+        for (Path path : files) {
+            String name = dbFolder.relativize(path).toString().replace(File.separator, "/");
+            long size = Files.size(path);
+            long modified = TableFile.lastModified(path);
+            BackupManifest.FileState previous = parent == null ? null : parent.files.get(name);
+            if (previous != null && previous.size == size && previous.modified == modified) {
+                manifest.files.put(name, previous);
+                continue;
+            }
+            Path copy = resolve(snapshotDir, name);
+            Files.createDirectories(copy.getParent());
+            if (!name.endsWith(".trd") || !createLink(copy, path)) {
+                Files.copy(path, copy);
+                size = Files.size(copy);
+            }
+            changed.add(new SnapshotFile(name, copy, size, modified));
+        }
+        return changed;
+    }
+
+    private static boolean createLink(Path link, Path existing) {
+        try {
+            Files.createLink(link, existing);
+            return true;
+        } catch (IOException | UnsupportedOperationException e) {
+            return false;
         }
     }
 
+    /**
+     * 压缩好的一个块，entryName为null表示与基准相同、不需要写入
+     */
+    private static class CompressedBlock {
+        final String entryName;
+        final byte[] data;
+        final long crc;
+        final int length;
+
+        CompressedBlock(String entryName, byte[] data, long crc, int length) {
+            this.entryName = entryName;
+            this.data = data;
+            this.crc = crc;
+            this.length = length;
+        }
+    }
+
+    private static final ThreadLocal<MessageDigest> BLOCK_DIGEST = ThreadLocal.withInitial(BackupManifest::newDigest);
+
+    /**
+     * 按块读取快照中的文件，交给线程池计算SHA-256摘要并各自gzip压缩，再按提交顺序把块写成不再压缩（STORED）的条目
+     * 每个条目带有zip的CRC-32，解压时gzip也会校验，清单中的摘要在还原后再逐块核对。
+     * 全量备份写入所有块，增量和差异备份只写入摘要与基准不同的块；同时在途的块数有上限，内存占用与文件大小无关。
+     * @param written 累计写入的块数和原始字节数
+     */
+    private static void compressBlocks(List<SnapshotFile> files, BackupManifest parent, BackupManifest manifest,
+                                       ZipOutputStream zos, long[] written) throws IOException, InterruptedException {
+        int threads = SQLConstant.getBackupThreads();
+        ExecutorService pool = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "backup-compress");
+            thread.setDaemon(true);
+            return thread;
+        });
+        Deque<Future<CompressedBlock>> pending = new ArrayDeque<>();
+        try {
+            for (SnapshotFile file : files) {
+                BackupManifest.FileState previous = parent == null ? null : parent.files.get(file.name);
+                String[] hashes = new String[(int) ((file.size + BackupManifest.BLOCK_SIZE - 1) / BackupManifest.BLOCK_SIZE)];
+                try (InputStream in = Files.newInputStream(file.path)) {
+                    for (int i = 0; i < hashes.length; i++) {
+                        int length = (int) Math.min(BackupManifest.BLOCK_SIZE, file.size - (long) i * BackupManifest.BLOCK_SIZE);
+                        byte[] block = in.readNBytes(length);
+                        if (block.length < length) {
+                            throw new IOException("快照中的文件 " + file.name + " 比预期短");
+                        }
+                        int index = i;
+                        String expected = previous == null ? null : previous.hash(i);
+                        pending.add(pool.submit(() -> compressBlock(file.name, index, block, expected, hashes)));
+                        while (pending.size() >= threads * 4) {
+                            writeBlock(zos, pending.poll(), written);
+                        }
+                    }
+                }
+                // 摘要由压缩线程填入，写清单之前所有块都已取回
+                manifest.files.put(file.name, new BackupManifest.FileState(file.size, file.modified, hashes));
+            }
+            while (!pending.isEmpty()) {
+                writeBlock(zos, pending.poll(), written);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static CompressedBlock compressBlock(String name, int index, byte[] block, String expected,
+                                                 String[] hashes) throws IOException {
+        String hash = BackupManifest.hash(BLOCK_DIGEST.get(), block, block.length);
+        hashes[index] = hash;
+        if (hash.equals(expected)) {
+            return new CompressedBlock(null, null, 0, block.length);
+        }
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(block.length / 2 + 64);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(buffer, 8192)) {
+            gzip.write(block);
+        }
+        byte[] data = buffer.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        return new CompressedBlock(BackupManifest.BLOCK_PREFIX + name + "/" + index + BackupManifest.COMPRESSED_SUFFIX,
+                data, crc.getValue(), block.length);
+    }
+
+    private static void writeBlock(ZipOutputStream zos, Future<CompressedBlock> future, long[] written)
+            throws IOException, InterruptedException {
+        CompressedBlock block;
+        try {
+            block = future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof IOException ? (IOException) cause : new IOException(cause);
+        }
+        if (block.entryName == null) {
+            return;
+        }
+        ZipEntry entry = new ZipEntry(block.entryName);
+        entry.setMethod(ZipEntry.STORED);
+        entry.setSize(block.data.length);
+        entry.setCompressedSize(block.data.length);
+        entry.setCrc(block.crc);
+        zos.putNextEntry(entry);
+        zos.write(block.data);
+        zos.closeEntry();
+        written[0]++;
+        written[1] += block.length;
+    }
+
     public static String restoreDatabase(Database database) {
         try {
             // 弹出文件选择对话框
@@ -75,45 +366,294 @@ public class BackupRestore {
             }
 
             File backupFile = fileChooser.getSelectedFile();
-            String backupPath = backupFile.getAbsolutePath();
-
-            // 从文件名获取数据库名
-            String dbName = backupFile.getName().replace(".zip", "");
-
-            // 准备解压路径
-            Path dbPath = Paths.get(SQLConstant.getRootPath(), dbName);
+            return restoreDatabase(database, null, backupFile);
+        } catch (Exception e) {
+            return "ERROR: 还原失败 - " + e.getMessage();
+        }
+    }
 
-            // 如果数据库已存在，先删除
-            if (Files.exists(dbPath)) {
-                deleteDirectory(dbPath.toFile());
+    /**
+     * 从备份文件还原数据库，已存在的同名数据库会被覆盖
+     * 带清单的备份先在临时目录中按备份链还原并校验，成功后才替换原数据库；没有清单的旧备份直接解压。
+     * @param dbName 还原成的库名，为null时取清单中的库名，旧备份取文件名
+     */
+    public static String restoreDatabase(Database database, String dbName, File backupFile) {
+        try {
+            if (!backupFile.isFile()) {
+                return "ERROR: 备份文件不存在: " + backupFile.getAbsolutePath();
+            }
+            BackupManifest manifest = readManifest(backupFile);
+            if (manifest != null) {
+                return restoreChain(database, dbName != null ? dbName : manifest.database, backupFile, manifest);
+            }
+            if (dbName == null) {
+                // 从文件名获取数据库名
+                dbName = backupFile.getName().replace(".zip", "");
             }
 
-            // 创建目标目录
-            Files.createDirectories(dbPath);
-
-            // 执行解压
-            try (ZipInputStream zis = new ZipInputStream(new FileInputStream(backupFile))) {
-                ZipEntry entry;
-                while ((entry = zis.getNextEntry()) != null) {
-                    if (entry.isDirectory()) continue;
-
-                    Path newPath = dbPath.resolve(entry.getName());
-                    // 确保父目录存在
-                    Files.createDirectories(newPath.getParent());
-                    // 写入文件
-                    Files.copy(zis, newPath, StandardCopyOption.REPLACE_EXISTING);
-                }
+            // 旧格式的备份直接解压到数据库目录，期间暂停所有写入语句
+            if (!WriteGate.pause(SQLConstant.getBackupPauseTimeoutMillis())) {
+                return "ERROR: 还原失败 - 等待正在执行的写入语句结束超时";
+            }
+            try {
+                extractArchive(backupFile, dbName);
+            } finally {
+                WriteGate.resume();
             }
 
             // 刷新数据库列表
             database.refreshDatabaseList();
 
             return "Query OK: 数据库 '" + dbName + "' 还原成功";
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return "ERROR: 还原失败 - 还原被中断";
         } catch (Exception e) {
             return "ERROR: 还原失败 - " + e.getMessage();
         }
     }
 
+    // 把没有清单的旧备份整个解压为数据库目录
+    private static void extractArchive(File backupFile, String dbName) throws IOException {
+        // 准备解压路径
+        Path dbPath = Paths.get(SQLConstant.getRootPath(), dbName);
+
+        // 如果数据库已存在，先删除
+        if (Files.exists(dbPath)) {
+            deleteDirectory(dbPath.toFile());
+        }
+
+        // 创建目标目录
+        Files.createDirectories(dbPath);
+
+        // 执行解压
+        try (ZipInputStream zis = new ZipInputStream(new FileInputStream(backupFile))) {
+            ZipEntry entry;
+            while ((entry = zis.getNextEntry()) != null) {
+                if (entry.isDirectory()) continue;
+
+                Path newPath = dbPath.resolve(entry.getName());
+                // 还原为其他库名时，库级的表描述文件和日志文件随库名改名
+                if (!entry.getName().contains("/")) {
+                    if (entry.getName().endsWith(".tb")) {
+                        newPath = Paths.get(SQLConstant.getTableDescPath(dbName));
+                    } else if (entry.getName().endsWith(".log")) {
+                        newPath = Paths.get(SQLConstant.getLogFilePath(dbName));
+                    }
+                }
+
+                // 确保父目录存在
+                Files.createDirectories(newPath.getParent());
+                // 写入文件
+                Files.copy(zis, newPath, StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+    }
+
+    // 备份文件中的清单，没有清单的旧备份返回null
+    private static BackupManifest readManifest(File backupFile) throws IOException {
+        try (ZipFile zip = new ZipFile(backupFile)) {
+            ZipEntry entry = zip.getEntry(BackupManifest.MANIFEST_ENTRY);
+            if (entry == null) {
+                return null;
+            }
+            try (InputStream in = zip.getInputStream(entry)) {
+                return BackupManifest.read(in);
+            }
+        }
+    }
+
+    // 依赖的备份优先在当前备份文件所在目录中按文件名查找，其次找备份时记录的路径
+    private static File findParent(File backupFile, BackupManifest manifest) {
+        File sibling = new File(backupFile.getAbsoluteFile().getParentFile(), new File(manifest.parentArchive).getName());
+        return sibling.isFile() ? sibling : new File(manifest.parentArchive);
+    }
+
+    /**
+     * 按备份链还原：找到链头的全量备份，在临时目录中依次应用各个备份，校验后替换原数据库
+     */
+    private static String restoreChain(Database database, String dbName, File backupFile, BackupManifest manifest)
+            throws IOException, InterruptedException {
+        Deque<File> archives = new ArrayDeque<>();
+        Deque<BackupManifest> manifests = new ArrayDeque<>();
+        archives.addFirst(backupFile);
+        manifests.addFirst(manifest);
+        while (manifests.peekFirst().parentId != null) {
+            BackupManifest child = manifests.peekFirst();
+            File parentFile = findParent(archives.peekFirst(), child);
+            BackupManifest parent = parentFile.isFile() ? readManifest(parentFile) : null;
+            if (parent == null || !parent.id.equals(child.parentId)) {
+                return "ERROR: 还原失败 - 备份链不完整，找不到 " + archives.peekFirst().getName() + " 所依赖的备份 "
+                        + new File(child.parentArchive).getName();
+            }
+            archives.addFirst(parentFile);
+            manifests.addFirst(parent);
+        }
+        if (manifests.peekFirst().type != BackupManifest.Type.FULL) {
+            return "ERROR: 还原失败 - 备份链的起点不是全量备份";
+        }
+
+        Path backupState = Paths.get(SQLConstant.getRootPath(), SQLConstant.getSystemDirName(), "backup");
+        Files.createDirectories(backupState);
+        Path staging = Files.createTempDirectory(backupState, "restore-");
+        try {
+            Iterator<BackupManifest> layers = manifests.iterator();
+            for (File archive : archives) {
+                applyLayer(archive, layers.next(), staging);
+            }
+            String error = verify(staging, manifest);
+            if (error != null) {
+                return "ERROR: 还原失败 - 校验不通过: " + error;
+            }
+            // 还原为其他库名时，库级的表描述文件和日志文件随库名改名
+            renameDatabaseFiles(staging, manifest.database, dbName);
+
+            // 替换数据库目录时暂停所有写入语句，之前在临时目录中的解压和校验不影响写入
+            Path dbPath = Paths.get(SQLConstant.getRootPath(), dbName);
+            if (!WriteGate.pause(SQLConstant.getBackupPauseTimeoutMillis())) {
+                return "ERROR: 还原失败 - 等待正在执行的写入语句结束超时";
+            }
+            try {
+                if (Files.exists(dbPath)) {
+                    deleteDirectory(dbPath.toFile());
+                }
+                Files.move(staging, dbPath);
+            } finally {
+                WriteGate.resume();
+            }
+        } finally {
+            if (Files.exists(staging)) {
+                deleteDirectory(staging.toFile());
+            }
+        }
+        database.refreshDatabaseList();
+
+        if (archives.size() == 1) {
+            return "Query OK: 数据库 '" + dbName + "' 还原成功";
+        }
+        return "Query OK: 数据库 '" + dbName + "' 还原成功（应用了备份链中的 " + archives.size() + " 个备份）";
+    }
+
+    /**
+     * 应用备份链中的一个备份：全量备份的条目是整个文件，增量备份的条目是某个文件的一块；
+     * 之后按清单截断各文件并删除清单中没有的文件
+     */
+    private static void applyLayer(File archive, BackupManifest manifest, Path staging) throws IOException {
+        try (ZipFile zip = new ZipFile(archive)) {
+            Enumeration<? extends ZipEntry> entries = zip.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                String name = entry.getName();
+                if (entry.isDirectory() || name.equals(BackupManifest.MANIFEST_ENTRY)) {
+                    continue;
+                }
+                String blockFile = blockFileName(name, manifest);
+                try (InputStream in = zip.getInputStream(entry)) {
+                    if (blockFile != null) {
+                        Path target = resolve(staging, blockFile);
+                        String blockName = name.substring(name.lastIndexOf('/') + 1);
+                        boolean compressed = blockName.endsWith(BackupManifest.COMPRESSED_SUFFIX);
+                        long block = Long.parseLong(compressed ? blockName.substring(0,
+                                blockName.length() - BackupManifest.COMPRESSED_SUFFIX.length()) : blockName);
+                        Files.createDirectories(target.getParent());
+                        try (FileChannel channel = FileChannel.open(target, StandardOpenOption.CREATE,
+                                StandardOpenOption.WRITE)) {
+                            ByteBuffer buffer = ByteBuffer.wrap(compressed
+                                    ? new GZIPInputStream(in).readAllBytes() : in.readAllBytes());
+                            long position = block * BackupManifest.BLOCK_SIZE;
+                            while (buffer.hasRemaining()) {
+                                position += channel.write(buffer, position);
+                            }
+                        }
+                    } else if (manifest.type == BackupManifest.Type.FULL) {
+                        Path target = resolve(staging, name);
+                        Files.createDirectories(target.getParent());
+                        Files.copy(in, target, StandardCopyOption.REPLACE_EXISTING);
+                    }
+                }
+            }
+        }
+        for (Map.Entry<String, BackupManifest.FileState> file : manifest.files.entrySet()) {
+            Path target = resolve(staging, file.getKey());
+            Files.createDirectories(target.getParent());
+            try (FileChannel channel = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+                channel.truncate(file.getValue().size);
+            }
+        }
+        try (Stream<Path> walk = Files.walk(staging)) {
+            for (Path path : walk.filter(Files::isRegularFile).collect(Collectors.toList())) {
+                String name = staging.relativize(path).toString().replace(File.separator, "/");
+                if (!manifest.files.containsKey(name)) {
+                    Files.delete(path);
+                }
+            }
+        }
+    }
+
+    // 块条目所属文件的相对路径，不是块条目时返回null；早先的全量备份中整个文件的条目名不会被当作块
+    private static String blockFileName(String name, BackupManifest manifest) {
+        int slash = name.lastIndexOf('/');
+        if (!name.startsWith(BackupManifest.BLOCK_PREFIX) || slash < BackupManifest.BLOCK_PREFIX.length()
+                || manifest.files.containsKey(name)) {
+            return null;
+        }
+        String file = name.substring(BackupManifest.BLOCK_PREFIX.length(), slash);
+        return manifest.files.containsKey(file) ? file : null;
+    }
+
+    // 条目名解析为临时目录下的路径，拒绝指向目录外的条目
+    private static Path resolve(Path staging, String name) throws IOException {
+        Path target = staging.resolve(name).normalize();
+        if (!target.startsWith(staging)) {
+            throw new IOException("备份中的条目路径非法: " + name);
+        }
+        return target;
+    }
+
+    /**
+     * 逐块比较还原出的文件与清单中的摘要，全部一致时返回null，否则返回第一处不一致的说明
+     */
+    private static String verify(Path staging, BackupManifest manifest) throws IOException {
+        MessageDigest digest = BackupManifest.newDigest();
+        byte[] block = new byte[BackupManifest.BLOCK_SIZE];
+        for (Map.Entry<String, BackupManifest.FileState> file : manifest.files.entrySet()) {
+            BackupManifest.FileState state = file.getValue();
+            Path path = resolve(staging, file.getKey());
+            if (Files.size(path) != state.size) {
+                return file.getKey() + " 大小不符";
+            }
+            try (InputStream in = Files.newInputStream(path)) {
+                int index = 0;
+                int length;
+                while ((length = in.readNBytes(block, 0, block.length)) > 0) {
+                    if (!BackupManifest.hash(digest, block, length).equals(state.hash(index))) {
+                        return file.getKey() + " 第 " + index + " 块摘要不符";
+                    }
+                    index++;
+                }
+                if (index != state.blockHashes.length) {
+                    return file.getKey() + " 块数不符";
+                }
+            }
+        }
+        return null;
+    }
+
+    private static void renameDatabaseFiles(Path staging, String fromName, String toName) throws IOException {
+        if (fromName.equals(toName)) {
+            return;
+        }
+        for (Path target : new Path[]{Paths.get(SQLConstant.getTableDescPath(toName)),
+                Paths.get(SQLConstant.getLogFilePath(toName))}) {
+            String fileName = target.getFileName().toString();
+            String extension = fileName.substring(toName.length());
+            Path source = staging.resolve(fromName + extension);
+            if (Files.exists(source)) {
+                Files.move(source, staging.resolve(fileName), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+    }
+
     private static boolean deleteDirectory(File directory) {
         if (!directory.exists()) return true;
 
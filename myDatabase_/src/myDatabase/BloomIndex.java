@@ -0,0 +1,512 @@
+package myDatabase;
+
+import model.Session;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 表数据文件的分段布隆过滤器，保存在表的 .tid 文件中
+ * CREATE BLOOM FILTER ON 表名(列名) [FPP 误判率]; 为选定的列建立，DROP BLOOM FILTER ON 表名(列名); 删除。
+ * 数据区按与ZoneMap相同的规则分段，每段每个选定列一个位图，等值查询和主键/外键检查跳过肯定不含该值的段。
+ * 文件由表头（格式标记、对应的 .trd 大小和修改时间、各列的名称/误判率/位图长度/哈希次数）和定长的段记录组成：
+ * 追加记录时就地更新最后一段或在末尾新增一段，整表改写时重新生成；与数据文件不一致时不使用，但列的配置保留。
+ */
+public class BloomIndex {
+    public static final double DEFAULT_FPP = 0.01;
+    private static final int MAGIC = 0x424C4D31; // "BLM1"
+    // 表头中 .trd 大小字段的位置，失效时写入-1
+    private static final long SIZE_OFFSET = 4;
+    // 段记录开头：起止位置和行数
+    private static final int SEGMENT_HEADER_BYTES = 8 + 8 + 4;
+
+    private static final Pattern CREATE_PATTERN = Pattern.compile(
+            "(?i)^CREATE\\s+BLOOM\\s+FILTER\\s+ON\\s+(\\w+)\\s*\\(\\s*(\\w+)\\s*\\)(?:\\s+FPP\\s+([0-9.]+))?\\s*;?\\s*$");
+    private static final Pattern DROP_PATTERN = Pattern.compile(
+            "(?i)^DROP\\s+BLOOM\\s+FILTER\\s+ON\\s+(\\w+)\\s*\\(\\s*(\\w+)\\s*\\)\\s*;?\\s*$");
+
+    private final List<Column> columns;
+    // 段记录的字节数，由各列的位图长度决定
+    private final int segmentBytes;
+    private final List<Segment> segments = new ArrayList<>();
+
+    private BloomIndex(List<Column> columns) {
+        this.columns = columns;
+        int bytes = SEGMENT_HEADER_BYTES;
+        for (Column column : columns) {
+            bytes += column.words * 8;
+        }
+        this.segmentBytes = bytes;
+    }
+
+    /**
+     * 建有过滤器的一列；每段按最多ZoneMap.BLOCK_ROWS个值和要求的误判率确定位图长度和哈希次数
+     */
+    private static class Column {
+        final String name;
+        final double fpp;
+        final int words;
+        final int hashes;
+        // 列在表中的位置，列已不存在时为-1
+        int index = -1;
+
+        Column(String name, double fpp, int words, int hashes) {
+            this.name = name;
+            this.fpp = fpp;
+            this.words = words;
+            this.hashes = hashes;
+        }
+
+        static Column of(String name, double fpp) {
+            double n = ZoneMap.BLOCK_ROWS;
+            double bits = -n * Math.log(fpp) / (Math.log(2) * Math.log(2));
+            int words = (int) Math.max(1, Math.ceil(bits / 64));
+            int hashes = (int) Math.max(1, Math.round(words * 64 / n * Math.log(2)));
+            return new Column(name, fpp, words, hashes);
+        }
+    }
+
+    /**
+     * 一段数据：数据文件中[start, end)范围内的rows行，bits[i]是第i个过滤列的位图（读取时未要求的列为null）
+     */
+    public static class Segment {
+        public final long start;
+        long end;
+        int rows;
+        final long[][] bits;
+
+        Segment(long start, long end, int rows, long[][] bits) {
+            this.start = start;
+            this.end = end;
+            this.rows = rows;
+            this.bits = bits;
+        }
+
+        public long getEnd() {
+            return end;
+        }
+    }
+
+    public static String processCreateBloomFilter(String sql, Session session) {
+        Matcher matcher = CREATE_PATTERN.matcher(sql.trim());
+        if (!matcher.find()) {
+            return "ERROR: 语法错误，正确格式：CREATE BLOOM FILTER ON 表名(列名) [FPP 误判率]";
+        }
+        double fpp = DEFAULT_FPP;
+        if (matcher.group(3) != null) {
+            try {
+                fpp = Double.parseDouble(matcher.group(3));
+            } catch (NumberFormatException e) {
+                fpp = -1;
+            }
+            if (!(fpp > 0 && fpp <= 0.5)) {
+                return "ERROR: 误判率必须在0到0.5之间";
+            }
+        }
+        return alter(session, matcher.group(1), matcher.group(2), fpp);
+    }
+
+    public static String processDropBloomFilter(String sql, Session session) {
+        Matcher matcher = DROP_PATTERN.matcher(sql.trim());
+        if (!matcher.find()) {
+            return "ERROR: 语法错误，正确格式：DROP BLOOM FILTER ON 表名(列名)";
+        }
+        return alter(session, matcher.group(1), matcher.group(2), 0);
+    }
+
+    // 增加（fpp > 0）或删除（fpp == 0）一列的过滤器，在表闩锁内修改配置并重建
+    private static String alter(Session session, String tableName, String columnName, double fpp) {
+        String dbName = session.getCurrentDatabase();
+        Path tablePath = Paths.get(SQLConstant.getTableRecordPath(dbName, tableName));
+        ReentrantLock latch = LockManager.getTableLatch(dbName, tableName);
+        latch.lock();
+        try {
+            TableFile.Header header = Files.exists(tablePath) ? TableFile.readHeader(tablePath) : null;
+            if (header == null) {
+                return "ERROR: 表 '" + tableName + "' 不存在";
+            }
+            String[] headers = header.lines[0].split(Pattern.quote(SQLConstant.getFieldSeparator()));
+            String matched = null;
+            for (String name : headers) {
+                if (name.equalsIgnoreCase(columnName)) {
+                    matched = name;
+                }
+            }
+            if (matched == null) {
+                return "ERROR: 列 '" + columnName + "' 不存在";
+            }
+
+            List<Column> configured = readColumns(tablePath);
+            boolean existed = configured.removeIf(column -> column.name.equalsIgnoreCase(columnName));
+            if (fpp == 0 && !existed) {
+                return "ERROR: 列 '" + matched + "' 上没有布隆过滤器";
+            }
+            if (fpp > 0) {
+                configured.add(Column.of(matched, fpp));
+            }
+            // 先保存配置（此时无效），再扫描一遍表重建区块摘要和过滤器
+            new BloomIndex(configured).write(tablePath, -1, -1);
+            TableFile.rebuildIndexes(tablePath);
+            return fpp > 0
+                    ? "Query OK: 已在 " + tableName + "(" + matched + ") 上建立布隆过滤器，误判率 " + fpp
+                    : "Query OK: 已删除 " + tableName + "(" + matched + ") 上的布隆过滤器";
+        } catch (IOException e) {
+            return "ERROR: 布隆过滤器操作失败 - " + e.getMessage();
+        } finally {
+            latch.unlock();
+        }
+    }
+
+    /**
+     * 按已保存的配置准备一个空的过滤器，用于整表改写时重新生成；没有配置任何列时返回null
+     */
+    public static BloomIndex forRewrite(Path tablePath, String[] headers) throws IOException {
+        List<Column> configured = readColumns(tablePath);
+        List<Column> present = new ArrayList<>();
+        for (Column column : configured) {
+            column.index = indexOf(headers, column.name);
+            if (column.index >= 0) {
+                present.add(column);
+            }
+        }
+        return present.isEmpty() ? null : new BloomIndex(present);
+    }
+
+    /**
+     * 读取与数据文件一致的过滤器，只载入columns（表中的列号）对应的位图；没有可用的过滤器时返回null
+     */
+    public static BloomIndex load(Path tablePath, String[] headers, Set<Integer> wanted) {
+        Path indexPath = pathFor(tablePath);
+        try {
+            if (!Files.exists(indexPath) || Files.size(indexPath) == 0) {
+                return null;
+            }
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexPath)))) {
+                if (in.readInt() != MAGIC) {
+                    return null;
+                }
+                long size = in.readLong();
+                long modified = in.readLong();
+                if (size != Files.size(tablePath) || modified != TableFile.lastModified(tablePath)) {
+                    return null;
+                }
+                List<Column> configured = readColumnList(in);
+                boolean any = false;
+                for (Column column : configured) {
+                    column.index = indexOf(headers, column.name);
+                    any |= wanted.contains(column.index);
+                }
+                if (!any) {
+                    return null;
+                }
+                BloomIndex index = new BloomIndex(configured);
+                long segmentCount = (Files.size(indexPath) - headerBytes(configured)) / index.segmentBytes;
+                for (long s = 0; s < segmentCount; s++) {
+                    long start = in.readLong();
+                    long end = in.readLong();
+                    int rows = in.readInt();
+                    long[][] bits = new long[configured.size()][];
+                    for (int c = 0; c < configured.size(); c++) {
+                        Column column = configured.get(c);
+                        if (wanted.contains(column.index)) {
+                            bits[c] = new long[column.words];
+                            for (int w = 0; w < column.words; w++) {
+                                bits[c][w] = in.readLong();
+                            }
+                        } else {
+                            in.skipNBytes(column.words * 8L);
+                        }
+                    }
+                    index.segments.add(new Segment(start, end, rows, bits));
+                }
+                return index;
+            }
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    public List<Segment> getSegments() {
+        return segments;
+    }
+
+    /**
+     * 段中第col列（表中的列号）是否可能含有值key（见key方法）；该列没有载入过滤器时返回true
+     */
+    public boolean mightContain(Segment segment, int col, String key) {
+        for (int c = 0; c < columns.size(); c++) {
+            Column column = columns.get(c);
+            if (column.index == col && segment.bits[c] != null) {
+                return mightContain(segment.bits[c], column, key);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 去掉引号后的值在过滤器中的规范形式：数字按数值表示（"5"、"5.0" 相同），与WHERE等值比较的规则一致
+     */
+    public static String key(String text) {
+        if (VectorPredicate.isNumeric(text)) {
+            double number = Double.parseDouble(text);
+            return Double.toString(number == 0 ? 0.0 : number);
+        }
+        return text;
+    }
+
+    /**
+     * 追加一行，行在数据文件中占[start, end)（含换行符）
+     */
+    public void add(String[] values, long start, long end) {
+        Segment segment = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+        if (segment == null || segment.rows >= ZoneMap.BLOCK_ROWS || segment.end != start) {
+            segment = newSegment(start);
+            segments.add(segment);
+        }
+        addValues(segment, values);
+        segment.rows++;
+        segment.end = end;
+    }
+
+    /**
+     * 保存过滤器，记下数据文件当前的大小和修改时间
+     */
+    public void save(Path tablePath) throws IOException {
+        write(tablePath, Files.size(tablePath), TableFile.lastModified(tablePath));
+    }
+
+    /**
+     * 标记过滤器失效（保留列的配置），在改写数据文件之前调用
+     */
+    public static void invalidate(Path tablePath) throws IOException {
+        Path indexPath = pathFor(tablePath);
+        if (!Files.exists(indexPath) || Files.size(indexPath) < SIZE_OFFSET + 8) {
+            return;
+        }
+        try (RandomAccessFile file = new RandomAccessFile(indexPath.toFile(), "rw")) {
+            if (file.readInt() == MAGIC) {
+                file.seek(SIZE_OFFSET);
+                file.writeLong(-1);
+            }
+        }
+    }
+
+    /**
+     * 追加一行后就地更新过滤器：oldSize、oldModified是追加前数据文件的大小和修改时间，
+     * 过滤器与追加前的数据文件不一致时不更新（之后仍不可用，直到整表改写或重建）
+     */
+    public static void appendRow(Path tablePath, String[] headers, long oldSize, long oldModified,
+                                 String[] values, long start, long end) throws IOException {
+        Path indexPath = pathFor(tablePath);
+        if (!Files.exists(indexPath) || Files.size(indexPath) == 0) {
+            return;
+        }
+        try (RandomAccessFile file = new RandomAccessFile(indexPath.toFile(), "rw")) {
+            if (file.readInt() != MAGIC || file.readLong() != oldSize || file.readLong() != oldModified) {
+                return;
+            }
+            List<Column> configured = readColumnList(file);
+            for (Column column : configured) {
+                column.index = indexOf(headers, column.name);
+            }
+            BloomIndex index = new BloomIndex(configured);
+            long dataStart = headerBytes(configured);
+            long segmentCount = (file.length() - dataStart) / index.segmentBytes;
+            long segmentPosition = dataStart + (segmentCount - 1) * index.segmentBytes;
+            boolean appendToLast = false;
+            if (segmentCount > 0) {
+                file.seek(segmentPosition + 8);
+                long lastEnd = file.readLong();
+                int rows = file.readInt();
+                appendToLast = rows < ZoneMap.BLOCK_ROWS && lastEnd == start;
+                if (appendToLast) {
+                    // 最后一段还有空位：逐个置位，并更新段的结束位置和行数
+                    for (int c = 0; c < configured.size(); c++) {
+                        Column column = configured.get(c);
+                        String value = column.index >= 0 && column.index < values.length ? values[column.index] : null;
+                        if (value != null) {
+                            long bitsPosition = segmentPosition + SEGMENT_HEADER_BYTES + wordOffset(configured, c) * 8L;
+                            for (int bit : positions(column, key(VectorPredicate.stripQuotes(value)))) {
+                                long wordPosition = bitsPosition + (bit >>> 6) * 8L;
+                                file.seek(wordPosition);
+                                long word = file.readLong();
+                                file.seek(wordPosition);
+                                file.writeLong(word | (1L << bit));
+                            }
+                        }
+                    }
+                    file.seek(segmentPosition + 8);
+                    file.writeLong(end);
+                    file.writeInt(rows + 1);
+                }
+            }
+            if (!appendToLast) {
+                Segment segment = index.newSegment(start);
+                index.addValues(segment, values);
+                segment.rows = 1;
+                segment.end = end;
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream(index.segmentBytes);
+                index.writeSegment(new DataOutputStream(bytes), segment);
+                file.seek(dataStart + segmentCount * index.segmentBytes);
+                file.write(bytes.toByteArray());
+            }
+            file.seek(SIZE_OFFSET);
+            file.writeLong(Files.size(tablePath));
+            file.writeLong(TableFile.lastModified(tablePath));
+        }
+    }
+
+    /**
+     * 表数据文件对应的过滤器文件（同名的 .tid 文件）
+     */
+    public static Path pathFor(Path tablePath) {
+        String name = tablePath.toString();
+        String extension = SQLConstant.getTableRecordExtension();
+        if (name.endsWith(extension)) {
+            name = name.substring(0, name.length() - extension.length());
+        }
+        return Paths.get(name + SQLConstant.getTableIndexExtension());
+    }
+
+    private Segment newSegment(long start) {
+        long[][] bits = new long[columns.size()][];
+        for (int c = 0; c < columns.size(); c++) {
+            bits[c] = new long[columns.get(c).words];
+        }
+        return new Segment(start, start, 0, bits);
+    }
+
+    private void addValues(Segment segment, String[] values) {
+        for (int c = 0; c < columns.size(); c++) {
+            Column column = columns.get(c);
+            if (column.index >= 0 && column.index < values.length && values[column.index] != null) {
+                for (int bit : positions(column, key(VectorPredicate.stripQuotes(values[column.index])))) {
+                    segment.bits[c][bit >>> 6] |= 1L << bit;
+                }
+            }
+        }
+    }
+
+    private static boolean mightContain(long[] bits, Column column, String key) {
+        for (int bit : positions(column, key)) {
+            if ((bits[bit >>> 6] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // 双重哈希：第i个位置为 h1 + i * h2，h1、h2取自64位FNV-1a哈希的高低32位
+    private static int[] positions(Column column, String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xFF;
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        int bitCount = column.words * 64;
+        int[] positions = new int[column.hashes];
+        for (int i = 0; i < column.hashes; i++) {
+            int combined = h1 + i * h2;
+            positions[i] = (combined & Integer.MAX_VALUE) % bitCount;
+        }
+        return positions;
+    }
+
+    private void write(Path tablePath, long size, long modified) throws IOException {
+        Path indexPath = pathFor(tablePath);
+        Path tempPath = Paths.get(indexPath + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempPath)))) {
+            out.writeInt(MAGIC);
+            out.writeLong(size);
+            out.writeLong(modified);
+            out.writeInt(columns.size());
+            for (Column column : columns) {
+                out.writeUTF(column.name);
+                out.writeDouble(column.fpp);
+                out.writeInt(column.words);
+                out.writeInt(column.hashes);
+            }
+            for (Segment segment : segments) {
+                writeSegment(out, segment);
+            }
+        }
+        Files.move(tempPath, indexPath, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private void writeSegment(DataOutputStream out, Segment segment) throws IOException {
+        out.writeLong(segment.start);
+        out.writeLong(segment.end);
+        out.writeInt(segment.rows);
+        for (long[] bits : segment.bits) {
+            for (long word : bits) {
+                out.writeLong(word);
+            }
+        }
+        out.flush();
+    }
+
+    // 读取已保存的列配置，不检查是否与数据文件一致
+    private static List<Column> readColumns(Path tablePath) throws IOException {
+        Path indexPath = pathFor(tablePath);
+        if (!Files.exists(indexPath) || Files.size(indexPath) == 0) {
+            return new ArrayList<>();
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexPath)))) {
+            if (in.readInt() != MAGIC) {
+                return new ArrayList<>();
+            }
+            in.readLong();
+            in.readLong();
+            return readColumnList(in);
+        }
+    }
+
+    private static List<Column> readColumnList(DataInput in) throws IOException {
+        int count = in.readInt();
+        List<Column> columns = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            columns.add(new Column(in.readUTF(), in.readDouble(), in.readInt(), in.readInt()));
+        }
+        return columns;
+    }
+
+    private static long headerBytes(List<Column> columns) {
+        long bytes = 4 + 8 + 8 + 4;
+        for (Column column : columns) {
+            bytes += 2 + column.name.getBytes(StandardCharsets.UTF_8).length + 8 + 4 + 4;
+        }
+        return bytes;
+    }
+
+    private static int wordOffset(List<Column> columns, int c) {
+        int offset = 0;
+        for (int i = 0; i < c; i++) {
+            offset += columns.get(i).words;
+        }
+        return offset;
+    }
+
+    private static int indexOf(String[] headers, String name) {
+        for (int i = 0; i < headers.length; i++) {
+            if (headers[i].equalsIgnoreCase(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
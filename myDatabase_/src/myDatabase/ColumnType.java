@@ -0,0 +1,80 @@
+package myDatabase;
+
+import java.time.LocalDate;
+
+/**
+ * 列类型，对应表定义文件(.tdf)第二行中的类型声明
+ */
+public enum ColumnType {
+    INTEGER(1),
+    DOUBLE(2),
+    BOOL(3),
+    DATE(4),
+    VARCHAR(5);
+
+    // 网络协议与驱动中使用的类型编号
+    private final int code;
+
+    ColumnType(int code) {
+        this.code = code;
+    }
+
+    public int getCode() {
+        return code;
+    }
+
+    public static ColumnType fromCode(int code) {
+        for (ColumnType type : values()) {
+            if (type.code == code) {
+                return type;
+            }
+        }
+        throw new IllegalArgumentException("未知的类型编号: " + code);
+    }
+
+    /**
+     * 根据类型声明解析列类型，如 INTEGER、VARCHAR(20)，无法识别的类型按字符串处理
+     */
+    public static ColumnType of(String declaration) {
+        String type = declaration == null ? "" : declaration.trim().toUpperCase();
+        if (type.equals("INTEGER") || type.equals("INT")) {
+            return INTEGER;
+        } else if (type.equals("DOUBLE")) {
+            return DOUBLE;
+        } else if (type.equals("BOOL")) {
+            return BOOL;
+        } else if (type.equals("DATE")) {
+            return DATE;
+        }
+        return VARCHAR;
+    }
+
+    /**
+     * 把表文件中的文本值转换为对应的Java值，"null"返回null
+     * INTEGER -> Long, DOUBLE -> Double, BOOL -> Boolean, DATE -> LocalDate, VARCHAR -> String
+     */
+    public Object decode(String text) {
+        if (text == null || text.equalsIgnoreCase("null")) {
+            return null;
+        }
+        String value = text.trim();
+        try {
+            switch (this) {
+                case INTEGER:
+                    // UPDATE的算术表达式会写回 "6.0" 这样的值
+                    return value.contains(".") ? (long) Double.parseDouble(value) : Long.parseLong(value);
+                case DOUBLE:
+                    return Double.parseDouble(value);
+                case BOOL:
+                    return value.equalsIgnoreCase("true") || value.equals("1");
+                case DATE:
+                    return LocalDate.parse(value);
+                default:
+                    return text;
+            }
+        } catch (RuntimeException e) {
+            // 文件中的值与声明类型不符时退回原文本
+            return text;
+        }
+    }
+}
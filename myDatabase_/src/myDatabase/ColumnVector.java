@@ -0,0 +1,234 @@
+package myDatabase;
+
+import java.util.Arrays;
+
+/**
+ * 基本类型列向量，从扫描缓冲区的字节直接解码，不创建字符串（二进制格式的表只需读出编码好的值）
+ * INTEGER -> long[]，DOUBLE -> double[]，BOOL -> 位图；另有两个位图：
+ * nulls 标记NULL（字段缺失或文本为null），exceptions 标记NULL以及文本不是该类型规范写法的行
+ * （如INTEGER列中UPDATE写回的 "6.0"、带引号的值），这些行由调用方退回按文本处理，保证结果与逐行执行一致。
+ */
+public abstract class ColumnVector {
+    private static final int WORDS = RowBatch.CAPACITY / 64;
+    // 小数部分位数不超过此值且总位数不超过15位时，尾数除以10的幂得到的就是正确舍入的结果
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15
+    };
+    private static final int MAX_EXACT_DIGITS = 15;
+
+    private final long[] nulls = new long[WORDS];
+    private final long[] exceptions = new long[WORDS];
+    private boolean hasExceptions;
+    private int nullCount;
+
+    /**
+     * 按列类型创建向量，非基本类型返回null
+     */
+    public static ColumnVector create(ColumnType type) {
+        switch (type) {
+            case INTEGER: return new LongVector();
+            case DOUBLE: return new DoubleVector();
+            case BOOL: return new BoolVector();
+            default: return null;
+        }
+    }
+
+    /**
+     * 解码一批字段：第row个字段是data中的[starts[row], ends[row])，编码标记为codes[row]（见RowCodec）
+     */
+    final void decode(byte[] data, byte[] codes, int[] starts, int[] ends, int size) {
+        Arrays.fill(nulls, 0);
+        Arrays.fill(exceptions, 0);
+        hasExceptions = false;
+        nullCount = 0;
+        for (int row = 0; row < size; row++) {
+            int code = codes[row];
+            int start = starts[row];
+            boolean isNull;
+            switch (code) {
+                case RowCodec.CODE_TYPED:
+                case RowCodec.CODE_INTEGRAL:
+                    decodeBinary(row, data, start, code);
+                    continue;
+                case RowCodec.CODE_TEXT:
+                    isNull = isNullText(data, start, ends[row]);
+                    if (!isNull && !decodeValue(row, data, start, ends[row])) {
+                        markException(row);
+                    }
+                    break;
+                case RowCodec.CODE_RAW:
+                    int textStart = RowCodec.textStart(data, start);
+                    isNull = isNullText(data, textStart, ends[row]);
+                    if (!isNull) {
+                        markException(row);
+                    }
+                    break;
+                default:
+                    isNull = true;
+                    break;
+            }
+            if (isNull) {
+                nulls[row >>> 6] |= 1L << row;
+                markException(row);
+                nullCount++;
+            }
+        }
+    }
+
+    // 解码一个非NULL的文本字段，文本不是规范写法时返回false
+    abstract boolean decodeValue(int row, byte[] data, int start, int end);
+
+    // 读出二进制格式中按类型编码的值
+    abstract void decodeBinary(int row, byte[] data, int start, int code);
+
+    private void markException(int row) {
+        exceptions[row >>> 6] |= 1L << row;
+        hasExceptions = true;
+    }
+
+    public boolean isNull(int row) {
+        return (nulls[row >>> 6] & (1L << row)) != 0;
+    }
+
+    /**
+     * 该行是否需要按文本处理（NULL或非规范写法）
+     */
+    public boolean isException(int row) {
+        return (exceptions[row >>> 6] & (1L << row)) != 0;
+    }
+
+    public boolean hasExceptions() {
+        return hasExceptions;
+    }
+
+    public int getNullCount() {
+        return nullCount;
+    }
+
+    private static boolean isNullText(byte[] data, int start, int end) {
+        return end - start == 4
+                && (data[start] | 0x20) == 'n' && (data[start + 1] | 0x20) == 'u'
+                && (data[start + 2] | 0x20) == 'l' && (data[start + 3] | 0x20) == 'l';
+    }
+
+    /**
+     * INTEGER列：规范写法为可选负号加1到18位数字
+     */
+    public static final class LongVector extends ColumnVector {
+        private final long[] values = new long[RowBatch.CAPACITY];
+
+        public long[] values() {
+            return values;
+        }
+
+        @Override
+        boolean decodeValue(int row, byte[] data, int start, int end) {
+            boolean negative = start < end && data[start] == '-';
+            int i = negative ? start + 1 : start;
+            int digits = end - i;
+            if (digits <= 0 || digits > 18) {
+                return false;
+            }
+            long value = 0;
+            for (; i < end; i++) {
+                int digit = data[i] - '0';
+                if (digit < 0 || digit > 9) {
+                    return false;
+                }
+                value = value * 10 + digit;
+            }
+            values[row] = negative ? -value : value;
+            return true;
+        }
+
+        @Override
+        void decodeBinary(int row, byte[] data, int start, int code) {
+            values[row] = RowCodec.readZigzag(data, start);
+        }
+    }
+
+    /**
+     * DOUBLE列：规范写法与 -?\d+(\.\d+)? 相同，且有效位数不超过15位（能精确解码）
+     */
+    public static final class DoubleVector extends ColumnVector {
+        private final double[] values = new double[RowBatch.CAPACITY];
+
+        public double[] values() {
+            return values;
+        }
+
+        @Override
+        boolean decodeValue(int row, byte[] data, int start, int end) {
+            boolean negative = start < end && data[start] == '-';
+            int i = negative ? start + 1 : start;
+            long mantissa = 0;
+            int digits = 0;
+            int fractionDigits = -1;
+            for (; i < end; i++) {
+                byte b = data[i];
+                if (b == '.') {
+                    if (fractionDigits >= 0 || digits == 0) {
+                        return false;
+                    }
+                    fractionDigits = 0;
+                    continue;
+                }
+                int digit = b - '0';
+                if (digit < 0 || digit > 9 || ++digits > MAX_EXACT_DIGITS) {
+                    return false;
+                }
+                mantissa = mantissa * 10 + digit;
+                if (fractionDigits >= 0) {
+                    fractionDigits++;
+                }
+            }
+            if (digits == 0 || fractionDigits == 0) {
+                return false;
+            }
+            double value = fractionDigits > 0 ? mantissa / POWERS_OF_TEN[fractionDigits] : mantissa;
+            values[row] = negative ? -value : value;
+            return true;
+        }
+
+        @Override
+        void decodeBinary(int row, byte[] data, int start, int code) {
+            values[row] = code == RowCodec.CODE_INTEGRAL ? RowCodec.readZigzag(data, start) : RowCodec.readDouble(data, start);
+        }
+    }
+
+    /**
+     * BOOL列：规范写法为 true 或 false（小写）
+     */
+    public static final class BoolVector extends ColumnVector {
+        private final long[] bits = new long[WORDS];
+
+        public boolean get(int row) {
+            return (bits[row >>> 6] & (1L << row)) != 0;
+        }
+
+        @Override
+        boolean decodeValue(int row, byte[] data, int start, int end) {
+            int length = end - start;
+            if (length == 4 && data[start] == 't' && data[start + 1] == 'r'
+                    && data[start + 2] == 'u' && data[start + 3] == 'e') {
+                bits[row >>> 6] |= 1L << row;
+                return true;
+            }
+            if (length == 5 && data[start] == 'f' && data[start + 1] == 'a' && data[start + 2] == 'l'
+                    && data[start + 3] == 's' && data[start + 4] == 'e') {
+                bits[row >>> 6] &= ~(1L << row);
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        void decodeBinary(int row, byte[] data, int start, int code) {
+            if (data[start] != 0) {
+                bits[row >>> 6] |= 1L << row;
+            } else {
+                bits[row >>> 6] &= ~(1L << row);
+            }
+        }
+    }
+}
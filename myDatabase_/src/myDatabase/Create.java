@@ -1,6 +1,7 @@
 package myDatabase;
 
 import model.Database;
+import model.Session;
 import java.io.*;
 import java.nio.file.*;
 import java.util.*;
@@ -21,7 +22,7 @@ public class Create {
             }
 
             // 创建数据库目录
-            File dbDir = new File(SQLConstant.getRootPath() + "\\" + dbName);
+            File dbDir = new File(SQLConstant.getDatabasePath(dbName));
             if (!dbDir.mkdir()) {
                 return "ERROR: 无法创建数据库目录";
             }
@@ -50,7 +51,7 @@ public class Create {
         }
     }
 
-    public static String processCreateTable(String sql, Database database) {
+    public static String processCreateTable(String sql, Database database, Session session) {
         if (!Utils.bracketMatch(sql)) {
             return "ERROR: 括号不匹配";
         }
@@ -61,7 +62,8 @@ public class Create {
             return "ERROR: 表名不合法";
         }
 
-        String dbName = database.getCurrentDatabase();
+        String dbName = session.getCurrentDatabase();
+
         if (dbName == null || dbName.isEmpty()) {
             return "ERROR: 请先选择数据库";
         }
@@ -97,23 +99,16 @@ public class Create {
 
     private static void initializeRecordFile(String dbName, String tableName, TableSchema schema) throws IOException {
         String trdPath = SQLConstant.getTableRecordPath(dbName, tableName);
-        try (BufferedWriter writer = Files.newBufferedWriter(Paths.get(trdPath))) {
-            // 写入列标题行
-            writer.write(String.join(SQLConstant.getFieldSeparator(),
-                    schema.columns.stream().map(c -> c.name).collect(Collectors.toList())));
-            writer.newLine();
-
-            // 写入类型行
-            writer.write(String.join(SQLConstant.getFieldSeparator(),
-                    schema.columns.stream().map(c -> c.type).collect(Collectors.toList())));
-            writer.newLine();
-
-            // 写入约束行
-            writer.write(String.join(SQLConstant.getFieldSeparator(),
-                    schema.columns.stream().map(c -> String.join(" ", c.constraints)).collect(Collectors.toList())));
-            writer.newLine();
-        }
+        // 列标题行、类型行、约束行，记录格式取默认设置
+        TableFile.create(Paths.get(trdPath),
+                String.join(SQLConstant.getFieldSeparator(),
+                        schema.columns.stream().map(c -> c.name).collect(Collectors.toList())),
+                String.join(SQLConstant.getFieldSeparator(),
+                        schema.columns.stream().map(c -> c.type).collect(Collectors.toList())),
+                String.join(SQLConstant.getFieldSeparator(),
+                        schema.columns.stream().map(c -> String.join(" ", c.constraints)).collect(Collectors.toList())));
     }
+
     private static boolean isTableExists(String dbName, String tableName) throws IOException {
         String tableDescPath = SQLConstant.getTableDescPath(dbName);
         File tableDescFile = new File(tableDescPath);
@@ -142,7 +137,7 @@ public class Create {
         };
 
         for (String ext : extensions) {
-            File file = new File(SQLConstant.getRootPath() + "\\" + dbName + "\\" + tableName + ext);
+            File file = new File(SQLConstant.getDatabasePath(dbName) + File.separator + tableName + ext);
             if (!file.createNewFile()) {
                 throw new IOException("无法创建文件: " + file.getPath());
             }
@@ -158,7 +153,7 @@ public class Create {
         };
 
         for (String ext : extensions) {
-            File file = new File(SQLConstant.getRootPath() + "\\" + dbName + "\\" + tableName + ext);
+            File file = new File(SQLConstant.getDatabasePath(dbName) + File.separator + tableName + ext);
             file.delete();
         }
     }
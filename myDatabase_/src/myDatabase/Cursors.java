@@ -0,0 +1,240 @@
+package myDatabase;
+
+import model.Session;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 实现游标语句，结果很大的查询可以分批取出：
+ * DECLARE 名称 CURSOR FOR SELECT ...; 打开SELECT的结果游标（见RowCursor），保存在当前会话中
+ * FETCH [n | NEXT | ALL] [FROM] 名称; 从游标当前位置取出下一批行，省略行数时取会话设置fetch_size行
+ * 一次FETCH最多取出MAX_FETCH_SIZE行，FETCH ALL和更大的行数按fetch_size分批从游标读取，超出上限的行留给下一次FETCH
+ * CLOSE 名称 | ALL; 关闭游标
+ * 游标只向前读取，取出的行随即释放，单表查询的扫描只领先读取位置一个窗口。
+ * 会话结束（Session.close）或空闲超过SQLConstant.getCursorIdleTimeoutMillis时游标自动关闭。
+ */
+public class Cursors {
+    public static final String FETCH_SIZE_SETTING = "fetch_size";
+    public static final int DEFAULT_FETCH_SIZE = 100;
+    public static final int MAX_FETCH_SIZE = 1_000_000;
+
+    private static final Pattern DECLARE_PATTERN =
+            Pattern.compile("(?is)^DECLARE\\s+(\\w+)\\s+CURSOR\\s+FOR\\s+(SELECT\\s.+?)\\s*;?\\s*$");
+    private static final Pattern FETCH_PATTERN =
+            Pattern.compile("(?i)^FETCH\\s+(?:(NEXT|ALL|\\d+)\\s+)?(?:(?:FROM|IN)\\s+)?(\\w+)\\s*;?\\s*$");
+    private static final Pattern CLOSE_PATTERN = Pattern.compile("(?i)^CLOSE\\s+(\\w+)\\s*;?\\s*$");
+
+    // 所有会话中打开的游标，供空闲超时检查
+    private static final Set<Declared> OPEN = ConcurrentHashMap.newKeySet();
+    private static ScheduledExecutorService sweeper;
+
+    /**
+     * 会话中用DECLARE打开的一个游标，记录读取位置和最后一次使用的时间
+     */
+    public static class Declared implements AutoCloseable {
+        private final String name;
+        private final String sql;
+        private final Session session;
+        private final RowCursor cursor;
+        // 下一次FETCH的起始行号
+        private int position;
+        private volatile long lastUsed = System.currentTimeMillis();
+        private volatile boolean busy;
+        private boolean closed;
+
+        Declared(String name, String sql, Session session, RowCursor cursor) {
+            this.name = name;
+            this.sql = sql;
+            this.session = session;
+            this.cursor = cursor;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getSql() {
+            return sql;
+        }
+
+        public synchronized int getPosition() {
+            return position;
+        }
+
+        /**
+         * 从当前位置取出最多count行并前移，每次从游标读取batchSize行，之前取出的行随即释放
+         */
+        synchronized List<List<String>> fetch(int count, int batchSize) throws IOException {
+            if (closed) {
+                throw new IOException("游标 " + name + " 已关闭");
+            }
+            busy = true;
+            try {
+                List<List<String>> rows = new ArrayList<>();
+                while (rows.size() < count) {
+                    cursor.release(position);
+                    int wanted = Math.min(batchSize, count - rows.size());
+                    List<List<String>> batch = cursor.fetch(position, wanted);
+                    rows.addAll(batch);
+                    position += batch.size();
+                    if (batch.size() < wanted) {
+                        break;
+                    }
+                }
+                return rows;
+            } finally {
+                busy = false;
+                lastUsed = System.currentTimeMillis();
+            }
+        }
+
+        // 空闲超时：正在取行的游标不算空闲
+        boolean isIdle(long now, long timeout) {
+            return !busy && now - lastUsed > timeout;
+        }
+
+        @Override
+        public synchronized void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            cursor.close();
+            session.removeCursor(name, this);
+            OPEN.remove(this);
+        }
+    }
+
+    public static String processDeclare(String sql, Session session) {
+        Matcher matcher = DECLARE_PATTERN.matcher(sql.trim());
+        if (!matcher.find()) {
+            return "ERROR: 语法错误，正确格式：DECLARE 游标名 CURSOR FOR SELECT ...";
+        }
+        String name = matcher.group(1).toLowerCase();
+        if (session.getCursor(name) != null) {
+            return "ERROR: 游标 " + name + " 已存在";
+        }
+        String selectSql = matcher.group(2);
+        RowCursor cursor;
+        try {
+            cursor = Select.openCursor(selectSql, session);
+        } catch (IllegalArgumentException e) {
+            return e.getMessage();
+        }
+        Declared declared = new Declared(name, selectSql, session, cursor);
+        if (!session.addCursor(name, declared)) {
+            // 同一会话并发声明了同名游标
+            cursor.close();
+            return "ERROR: 游标 " + name + " 已存在";
+        }
+        OPEN.add(declared);
+        startSweeper();
+        return "Query OK: 游标 " + name + " 已打开";
+    }
+
+    /**
+     * 执行FETCH并返回结构化结果，表头与DECLARE中的查询一致；游标已读完时返回空结果集
+     */
+    public static QueryResult executeFetch(String sql, Session session) {
+        Matcher matcher = FETCH_PATTERN.matcher(sql.trim());
+        if (!matcher.find()) {
+            return QueryResult.error("ERROR: 语法错误，正确格式：FETCH [行数 | NEXT | ALL] [FROM] 游标名");
+        }
+        String name = matcher.group(2).toLowerCase();
+        Declared declared = session.getCursor(name);
+        if (declared == null) {
+            return QueryResult.error("ERROR: 游标 " + name + " 不存在（可能已空闲超时关闭）");
+        }
+        String count = matcher.group(1);
+        int rows;
+        if (count == null) {
+            rows = getFetchSize(session);
+        } else if (count.equalsIgnoreCase("next")) {
+            rows = 1;
+        } else if (count.equalsIgnoreCase("all")) {
+            rows = MAX_FETCH_SIZE;
+        } else {
+            try {
+                rows = Math.min(Integer.parseInt(count), MAX_FETCH_SIZE);
+            } catch (NumberFormatException e) {
+                // 超出int范围的行数
+                rows = MAX_FETCH_SIZE;
+            }
+        }
+        try {
+            List<List<String>> fetched = declared.fetch(rows, getFetchSize(session));
+            ExecutionMonitor.current().rowsReturned(fetched.size());
+            return QueryResult.resultSet(declared.cursor.getHeaders(), declared.cursor.getColumnTypes(), fetched);
+        } catch (IOException e) {
+            return QueryResult.error("ERROR: 读取游标失败 - " + e.getMessage());
+        }
+    }
+
+    public static String processFetch(String sql, Session session) {
+        QueryResult result = executeFetch(sql, session);
+        if (result.isError()) {
+            return result.getMessage();
+        }
+        return Select.formatResult(result);
+    }
+
+    public static String processClose(String sql, Session session) {
+        Matcher matcher = CLOSE_PATTERN.matcher(sql.trim());
+        if (!matcher.find()) {
+            return "ERROR: 语法错误，正确格式：CLOSE 游标名 | ALL";
+        }
+        String name = matcher.group(1).toLowerCase();
+        if (name.equals("all")) {
+            int closed = session.closeCursors();
+            return "Query OK: 关闭了 " + closed + " 个游标";
+        }
+        Declared declared = session.getCursor(name);
+        if (declared == null) {
+            return "ERROR: 游标 " + name + " 不存在";
+        }
+        declared.close();
+        return "Query OK: 游标 " + name + " 已关闭";
+    }
+
+    /**
+     * 会话设置的fetch_size，未设置时为DEFAULT_FETCH_SIZE
+     */
+    public static int getFetchSize(Session session) {
+        String value = session.getSetting(FETCH_SIZE_SETTING);
+        return value == null ? DEFAULT_FETCH_SIZE : Integer.parseInt(value);
+    }
+
+    // 第一次声明游标时启动空闲检查线程，超时设置为0或负数时不检查
+    private static synchronized void startSweeper() {
+        long timeout = SQLConstant.getCursorIdleTimeoutMillis();
+        if (sweeper != null || timeout <= 0) {
+            return;
+        }
+        sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "cursor-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(1000, timeout / 4);
+        sweeper.scheduleWithFixedDelay(Cursors::closeIdle, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    private static void closeIdle() {
+        long now = System.currentTimeMillis();
+        long timeout = SQLConstant.getCursorIdleTimeoutMillis();
+        for (Declared declared : OPEN) {
+            if (declared.isIdle(now, timeout)) {
+                declared.close();
+            }
+        }
+    }
+}
@@ -1,21 +1,33 @@
 package myDatabase;
 
+import model.Session;
+
 import java.io.*;
 import java.nio.file.*;
 import java.util.*;
 import java.util.regex.*;
 
 public class Delete {
-    public static String processDelete(String sql) {
+    public static String processDelete(String sql, Session session) {
         try {
+            EngineEvents.ParseEvent parseEvent = new EngineEvents.ParseEvent();
+            parseEvent.begin();
             // 统一去除语句末尾的分号（如果存在）
             sql = sql.replaceAll(";\\s*$", "").trim();
 
+            parseEvent.end();
+            if (parseEvent.shouldCommit()) {
+                Matcher tableMatcher = Pattern.compile("(?i)^delete\\s+from\\s+(\\w+)").matcher(sql);
+                parseEvent.statementType = "delete";
+                parseEvent.table = tableMatcher.find() ? tableMatcher.group(1) : null;
+                parseEvent.commit();
+            }
+
             // 解析DELETE语句
             if (sql.matches("(?i)^delete\\s+from\\s+\\w+\\s*$")) {
-                return deleteAllRecords(sql);
+                return deleteAllRecords(sql, session);
             } else if (sql.matches("(?i)^delete\\s+from\\s+\\w+\\s+where\\s+.+$")) {
-                return deleteWithCondition(sql);
+                return deleteWithCondition(sql, session);
             } else {
                 return "ERROR: 语法错误，正确格式：DELETE FROM 表名 [WHERE 条件]";
             }
@@ -24,32 +36,36 @@ public class Delete {
         }
     }
 
-    private static String deleteAllRecords(String sql) throws IOException {
+    private static String deleteAllRecords(String sql, Session session) throws IOException, LockManager.LockException {
         // 解析表名
         String tableName = sql.replaceAll("(?i)^delete\\s+from\\s+(\\w+)\\s*$", "$1");
-        String tablePath = SQLConstant.getCurrentTableRecordPath(tableName);
+        String dbName = session.getCurrentDatabase();
+        String tablePath = SQLConstant.getTableRecordPath(dbName, tableName);
 
         if (!Files.exists(Paths.get(tablePath))) {
             return "ERROR: 表 '" + tableName + "' 不存在";
         }
 
         // 读取表结构
-        List<String> lines = Files.readAllLines(Paths.get(tablePath));
+        TableFile.Header header = TableFile.readHeader(Paths.get(tablePath));
 
-        if (lines.size() <= 3) {
+        if (header == null || Files.size(Paths.get(tablePath)) <= header.dataStart) {
             return "Query OK: 表中无记录可删除";
         }
 
-        // 保留表结构，删除所有记录
-        List<String> newLines = new ArrayList<>(lines.subList(0, 3));
-
-        // 写回文件
-        Files.write(Paths.get(tablePath), newLines);
+        // 保留表结构，对所有记录加行锁后删除
+        Object owner = session;
+        try {
+            LockManager.rewriteMatchingRows(owner, dbName, tableName,
+                    Paths.get(tablePath), values -> true, values -> null);
+        } finally {
+            LockManager.releaseAll(owner);
+        }
 
         return "Query OK: 已删除所有记录";
     }
 
-    private static String deleteWithCondition(String sql) throws IOException {
+    private static String deleteWithCondition(String sql, Session session) throws IOException, LockManager.LockException {
         // 修改正则表达式，确保正确截取WHERE条件
         Matcher matcher = Pattern.compile(
                 "(?i)^delete\\s+from\\s+(\\w+)\\s+where\\s+(.+)$",
@@ -62,48 +78,32 @@ public class Delete {
         String tableName = matcher.group(1);
         String condition = matcher.group(2).trim();
 
-        String tablePath = SQLConstant.getCurrentTableRecordPath(tableName);
+        String dbName = session.getCurrentDatabase();
+        String tablePath = SQLConstant.getTableRecordPath(dbName, tableName);
         if (!Files.exists(Paths.get(tablePath))) {
             return "ERROR: 表 '" + tableName + "' 不存在";
         }
 
-        // 读取表数据
-        List<String> lines = Files.readAllLines(Paths.get(tablePath));
+        // 只读取表头，记录由rewriteMatchingRows在表闩锁内读取
+        TableFile.Header header = TableFile.readHeader(Paths.get(tablePath));
 
-        if (lines.size() <= 3) {
+        if (header == null || Files.size(Paths.get(tablePath)) <= header.dataStart) {
             return "Query OK: 表中无记录可删除";
         }
 
         // 获取列名
-        String[] columns = lines.get(0).split(Pattern.quote(SQLConstant.getFieldSeparator()));
-
-        // 创建临时文件
-        Path tempPath = Paths.get(tablePath + ".tmp");
-        int deletedCount = 0;
+        String[] columns = header.lines[0].split(Pattern.quote(SQLConstant.getFieldSeparator()));
 
-        try (BufferedWriter writer = Files.newBufferedWriter(tempPath)) {
-            // 保留表结构
-            for (int i = 0; i < 3; i++) {
-                writer.write(lines.get(i));
-                writer.newLine();
-            }
-
-            // 处理记录
-            for (int i = 3; i < lines.size(); i++) {
-                String[] values = lines.get(i).split(Pattern.quote(SQLConstant.getFieldSeparator()), -1);
-
-                if (!matchesCondition(condition, columns, values)) {
-                    writer.write(lines.get(i));
-                    writer.newLine();
-                } else {
-                    deletedCount++;
-                }
-            }
+        // 对命中行加行锁后删除，只有最后写回表文件时按表串行
+        Object owner = session;
+        int deletedCount;
+        try {
+            deletedCount = LockManager.rewriteMatchingRows(owner, dbName, tableName,
+                    Paths.get(tablePath), values -> matchesCondition(condition, columns, values), values -> null);
+        } finally {
+            LockManager.releaseAll(owner);
         }
 
-        // 替换原文件
-        Files.move(tempPath, Paths.get(tablePath), StandardCopyOption.REPLACE_EXISTING);
-
         return "Query OK: 删除了 " + deletedCount + " 条记录";
     }
 
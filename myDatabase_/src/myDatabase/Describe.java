@@ -1,5 +1,7 @@
 package myDatabase;
 
+import model.Session;
+
 import java.io.*;
 import java.nio.file.Files;
 import java.nio.file.Paths;
@@ -7,16 +9,26 @@ import java.util.*;
 import java.util.regex.Pattern;
 
 public class Describe {
-    public static String describeSql(String sql) {
+    public static String describeSql(String sql, Session session) {
+        QueryResult result = executeDescribe(sql, session);
+        if (!result.isResultSet()) {
+            return result.getMessage();
+        }
+        return TableGenerator.generateTable(result.headers, result.rows);
+    }
+
+    /**
+     * 返回表结构的结构化结果：每列一行，依次为列名、类型和约束
+     */
+    public static QueryResult executeDescribe(String sql, Session session) {
         try {
             String tableName = sql.replaceAll("(?i)^describe\\s+(\\w+)\\s*;?\\s*$", "$1").trim();
-            String tablePath = SQLConstant.getCurrentDbPath() + File.separator +
-                    tableName + SQLConstant.getTableDefinitionExtension();
+            String tablePath = SQLConstant.getTableDefinitionPath(session.getCurrentDatabase(), tableName);
 
             // 读取表结构文件
             List<String> lines = Files.readAllLines(Paths.get(tablePath));
             if (lines.size() < 3) {
-                return "ERROR: 表结构不完整";
+                return QueryResult.error("ERROR: 表结构不完整");
             }
 
             // 使用严格的分隔符解析
@@ -35,12 +47,12 @@ public class Describe {
                 rows.add(row);
             }
 
-            return TableGenerator.generateTable(
+            return QueryResult.textResultSet(
                     Arrays.asList("Field", "Type", "Constraints"),
                     rows
             );
         } catch (Exception e) {
-            return "ERROR: 描述表失败 - " + e.getMessage();
+            return QueryResult.error("ERROR: 描述表失败 - " + e.getMessage());
         }
     }
 }
\ No newline at end of file
@@ -1,12 +1,14 @@
 package myDatabase;
 
 import model.Database;
+import model.Session;
 import java.io.*;
 import java.nio.file.*;
 import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
 
 public class Drop {
-    public static String processDropDatabase(String sql, Database database) {
+    public static String processDropDatabase(String sql, Database database, Session session) {
         String dbName = sql.replaceAll("(?i)^drop\\s+database\\s+(\\w+)\\s*;$", "$1").trim();
 
         // 系统数据库保护
@@ -23,14 +25,14 @@ public class Drop {
                 return "ERROR: 数据库 '" + dbName + "' 不存在";
             }
 
-            // 检查是否正在使用
-            if (database.getCurrentDatabase() != null &&
-                    database.getCurrentDatabase().equalsIgnoreCase(dbName)) {
+            // 检查当前会话是否正在使用
+            if (session.getCurrentDatabase() != null &&
+                    session.getCurrentDatabase().equalsIgnoreCase(dbName)) {
                 return "ERROR: 不能删除当前正在使用的数据库";
             }
 
             // 删除数据库目录
-            String dbPath = SQLConstant.getRootPath() + "\\" + dbName;
+            String dbPath = SQLConstant.getDatabasePath(dbName);
             File dbDir = new File(dbPath);
 
             if (!dbDir.exists()) {
@@ -56,16 +58,18 @@ public class Drop {
             // 从数据库描述文件中移除
             database.removeDatabase(dbName);
             database.refreshDatabaseList();
+            Analyze.tableDropped(dbName, null);
 
             return "Query OK: 数据库 '" + dbName + "' 删除成功";
         } catch (Exception e) {
             return "ERROR: 删除数据库失败 - " + e.getMessage();
         }
     }
-    public static String processDropTable(String sql, Database database) {
+    public static String processDropTable(String sql, Database database, Session session) {
         String tableName = sql.replaceAll("(?i)^drop\\s+table\\s+(\\w+)\\s*;$", "$1").trim();
 
-        String dbName = database.getCurrentDatabase();
+        String dbName = session.getCurrentDatabase();
+
         if (dbName == null || dbName.isEmpty()) {
             return "ERROR: 请先选择数据库";
         }
@@ -75,11 +79,19 @@ public class Drop {
                 return "ERROR: 表 '" + tableName + "' 不存在";
             }
 
-            // 删除表文件
-            deleteTableFiles(dbName, tableName);
-
-            // 从表描述文件中移除
-            database.removeTable(dbName, tableName);
+            // 持有表闩锁删除，不会与正在追加或改写该表的语句交错
+            ReentrantLock latch = LockManager.getTableLatch(dbName, tableName);
+            latch.lock();
+            try {
+                // 删除表文件
+                deleteTableFiles(dbName, tableName);
+
+                // 从表描述文件中移除
+                database.removeTable(dbName, tableName);
+            } finally {
+                latch.unlock();
+            }
+            Analyze.tableDropped(dbName, tableName);
 
             return "Query OK: 表 '" + tableName + "' 删除成功";
         } catch (IOException e) {
@@ -115,7 +127,7 @@ public class Drop {
         };
 
         for (String ext : extensions) {
-            File file = new File(SQLConstant.getRootPath() + "\\" + dbName + "\\" + tableName + ext);
+            File file = new File(SQLConstant.getDatabasePath(dbName) + File.separator + tableName + ext);
             file.delete();
         }
     }
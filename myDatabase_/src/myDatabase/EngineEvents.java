@@ -0,0 +1,150 @@
+package myDatabase;
+
+import jdk.jfr.*;
+
+/**
+ * 引擎的JFR（Java Flight Recorder）自定义事件，覆盖语句执行的各个阶段
+ * 所有事件默认关闭：关闭时begin/shouldCommit几乎没有开销，事件对象也会被JIT消除。
+ * 需要时在录制配置中打开，如
+ *   jfr configure +myDatabase.Statement#enabled=true +myDatabase.Scan#enabled=true ... --output engine.jfc
+ *   java -XX:StartFlightRecording:settings=engine.jfc ...
+ * 阶段事件与其所属语句的Statement事件在同一线程上、时间上被其包含，可借此把GC停顿和I/O对应到具体的SQL。
+ *
+ * 用法：event.begin() -> 执行该阶段 -> event.shouldCommit()为true时再填字段并commit()。
+ */
+public class EngineEvents {
+
+    @Name("myDatabase.Statement")
+    @Label("Statement")
+    @Category({"myDatabase"})
+    @Description("一条SQL语句从分发到返回")
+    @Enabled(false)
+    @StackTrace(false)
+    public static class StatementEvent extends Event {
+        @Label("SQL")
+        public String sql;
+        @Label("Statement Type")
+        public String statementType;
+        @Label("User")
+        public String user;
+        @Label("Database")
+        public String database;
+        @Label("Error")
+        public boolean error;
+        @Label("Rows Examined")
+        public long rowsExamined;
+        @Label("Rows Returned")
+        public long rowsReturned;
+        @Label("Rows Affected")
+        public long rowsAffected;
+    }
+
+    @Name("myDatabase.Parse")
+    @Label("Parse")
+    @Category({"myDatabase"})
+    @Description("解析语句")
+    @Enabled(false)
+    @StackTrace(false)
+    public static class ParseEvent extends Event {
+        @Label("Statement Type")
+        public String statementType;
+        @Label("Table")
+        public String table;
+    }
+
+    @Name("myDatabase.Plan")
+    @Label("Plan")
+    @Category({"myDatabase"})
+    @Description("查询规划（读取统计信息、排列条件、选择扫描或连接方式）")
+    @Enabled(false)
+    @StackTrace(false)
+    public static class PlanEvent extends Event {
+        @Label("Table")
+        public String table;
+        @Label("Plan")
+        public String plan;
+    }
+
+    @Name("myDatabase.Scan")
+    @Label("Scan")
+    @Category({"myDatabase"})
+    @Description("扫描或整表读入一张表")
+    @Enabled(false)
+    @StackTrace(false)
+    public static class ScanEvent extends Event {
+        @Label("Table")
+        public String table;
+        @Label("Rows")
+        public long rows;
+        @Label("Bytes")
+        @DataAmount
+        public long bytes;
+        @Label("Blocks Skipped")
+        public long blocksSkipped;
+        @Label("Parallelism")
+        public int parallelism;
+    }
+
+    @Name("myDatabase.ConstraintCheck")
+    @Label("Constraint Check")
+    @Category({"myDatabase"})
+    @Description("插入前检查主键、非空、CHECK和外键约束")
+    @Enabled(false)
+    @StackTrace(false)
+    public static class ConstraintCheckEvent extends Event {
+        @Label("Table")
+        public String table;
+        @Label("Passed")
+        public boolean passed;
+        @Label("Failure")
+        public String failure;
+    }
+
+    @Name("myDatabase.Write")
+    @Label("Write")
+    @Category({"myDatabase"})
+    @Description("写表文件：追加一行，或写临时文件后替换整个表")
+    @Enabled(false)
+    @StackTrace(false)
+    public static class WriteEvent extends Event {
+        @Label("Table")
+        public String table;
+        @Label("Rows")
+        public long rows;
+        @Label("Bytes")
+        @DataAmount
+        public long bytes;
+        @Label("Full Rewrite")
+        public boolean fullRewrite;
+    }
+
+    @Name("myDatabase.LockWait")
+    @Label("Lock Wait")
+    @Category({"myDatabase"})
+    @Description("等待行锁")
+    @Enabled(false)
+    @StackTrace(false)
+    public static class LockWaitEvent extends Event {
+        @Label("Table")
+        public String table;
+        @Label("Row Key")
+        public String rowKey;
+        @Label("Outcome")
+        public String outcome;
+    }
+
+    @Name("myDatabase.ResultFormat")
+    @Label("Result Format")
+    @Category({"myDatabase"})
+    @Description("把查询结果格式化为文本表格")
+    @Enabled(false)
+    @StackTrace(false)
+    public static class ResultFormatEvent extends Event {
+        @Label("Rows")
+        public long rows;
+        @Label("Columns")
+        public int columns;
+        @Label("Characters")
+        public long characters;
+    }
+}
@@ -0,0 +1,204 @@
+package myDatabase;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 语句执行监视器
+ * 记录当前语句已扫描的行数和跳过的区块数，并允许其他线程（如界面上的取消按钮）取消正在进行的扫描。
+ * 另外记录读取的字节数、扫描耗时和扫描缓冲区的内存峰值，供EXPLAIN ANALYZE报告；
+ * 返回的行数、写入的字节数和访问过的表供Metrics按语句类型和按表统计，计划摘要供慢查询日志记录。
+ * 执行线程通过bind绑定监视器，扫描代码用current()取得后每处理一行调用rowScanned()。
+ */
+public class ExecutionMonitor {
+    // 未绑定监视器时使用的空实现，不计数也不会被取消
+    private static final ExecutionMonitor NONE = new ExecutionMonitor();
+    private static final ThreadLocal<ExecutionMonitor> CURRENT = new ThreadLocal<>();
+
+    private final LongAdder rowsScanned = new LongAdder();
+    private final LongAdder blocksSkipped = new LongAdder();
+    private final LongAdder bytesRead = new LongAdder();
+    private final LongAdder rowsReturned = new LongAdder();
+    private final LongAdder bytesWritten = new LongAdder();
+    private final Set<Metrics.TableMetrics> tablesTouched = ConcurrentHashMap.newKeySet();
+    private volatile String planSummary;
+    // 各扫描线程处理字节范围的耗时之和（纳秒），含范围内各行的过滤和投影
+    private final LongAdder scanNanos = new LongAdder();
+    private final AtomicLong bufferBytes = new AtomicLong();
+    private final AtomicLong bufferPeak = new AtomicLong();
+    private volatile boolean cancelled;
+
+    /**
+     * 获取当前线程绑定的监视器
+     */
+    public static ExecutionMonitor current() {
+        ExecutionMonitor monitor = CURRENT.get();
+        return monitor != null ? monitor : NONE;
+    }
+
+    public static void bind(ExecutionMonitor monitor) {
+        CURRENT.set(monitor);
+    }
+
+    public static void unbind() {
+        CURRENT.remove();
+    }
+
+    /**
+     * 当前线程是否绑定了监视器
+     */
+    public static boolean isBound() {
+        return CURRENT.get() != null;
+    }
+
+    /**
+     * 扫描一行后调用，语句已被取消时抛出StatementCancelledException
+     */
+    public void rowScanned() {
+        if (this == NONE) {
+            return;
+        }
+        rowsScanned.increment();
+        if (cancelled) {
+            throw new StatementCancelledException();
+        }
+    }
+
+    /**
+     * 不计数，只检查是否已被取消
+     */
+    public void checkCancelled() {
+        if (cancelled) {
+            throw new StatementCancelledException();
+        }
+    }
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public long getRowsScanned() {
+        return rowsScanned.sum();
+    }
+
+    /**
+     * 记录按区块摘要跳过的区块数
+     */
+    public void blocksSkipped(int count) {
+        if (this != NONE) {
+            blocksSkipped.add(count);
+        }
+    }
+
+    public long getBlocksSkipped() {
+        return blocksSkipped.sum();
+    }
+
+    /**
+     * 记录从表文件读取的字节数
+     */
+    public void bytesRead(long count) {
+        if (this != NONE) {
+            bytesRead.add(count);
+        }
+    }
+
+    public long getBytesRead() {
+        return bytesRead.sum();
+    }
+
+    /**
+     * 记录返回给客户端的结果行数
+     */
+    public void rowsReturned(long count) {
+        if (this != NONE) {
+            rowsReturned.add(count);
+        }
+    }
+
+    public long getRowsReturned() {
+        return rowsReturned.sum();
+    }
+
+    /**
+     * 记录写入表文件的字节数
+     */
+    public void bytesWritten(long count) {
+        if (this != NONE) {
+            bytesWritten.add(count);
+        }
+    }
+
+    public long getBytesWritten() {
+        return bytesWritten.sum();
+    }
+
+    /**
+     * 记录语句访问了某张表，语句结束时其耗时计入该表的延迟直方图
+     */
+    public void tableTouched(Metrics.TableMetrics table) {
+        if (this != NONE) {
+            tablesTouched.add(table);
+        }
+    }
+
+    public Set<Metrics.TableMetrics> getTablesTouched() {
+        return tablesTouched;
+    }
+
+    /**
+     * 记录语句实际采用的执行计划（一行摘要），语句中有多次规划时保留最后一次
+     */
+    public void planSummary(String summary) {
+        if (this != NONE) {
+            planSummary = summary;
+        }
+    }
+
+    public String getPlanSummary() {
+        return planSummary;
+    }
+
+    /**
+     * 分配了size字节的扫描缓冲区，更新内存峰值
+     */
+    public void bufferAllocated(long size) {
+        if (this != NONE) {
+            long current = bufferBytes.addAndGet(size);
+            bufferPeak.accumulateAndGet(current, Math::max);
+        }
+    }
+
+    /**
+     * 扫描完一个字节范围：释放其缓冲区并累计耗时
+     */
+    public void rangeScanned(long size, long nanos) {
+        if (this != NONE) {
+            bufferBytes.addAndGet(-size);
+            scanNanos.add(nanos);
+        }
+    }
+
+    public long getScanNanos() {
+        return scanNanos.sum();
+    }
+
+    public long getBufferPeak() {
+        return bufferPeak.get();
+    }
+
+    // 自定义异常类：语句已被用户取消
+    public static class StatementCancelledException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        StatementCancelledException() {
+            super("语句已被取消");
+        }
+    }
+}
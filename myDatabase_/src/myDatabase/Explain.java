@@ -0,0 +1,235 @@
+package myDatabase;
+
+import model.Session;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * EXPLAIN [ANALYZE] 语句：显示语句的算子树，以及每个算子的估计行数和估计代价（见QueryPlanner的代价模型）
+ * EXPLAIN ANALYZE 会真正执行语句（UPDATE/DELETE/INSERT会修改数据），并报告每个算子的实际行数、耗时、
+ * 读取字节数、过滤掉的行数、溢出到磁盘的字节数和内存峰值。所有算子都在内存中执行，溢出总是0。
+ */
+public class Explain {
+    private static final Pattern EXPLAIN_PATTERN = Pattern.compile("^EXPLAIN\\s+(ANALYZE\\s+)?(.+?)\\s*;?\\s*$",
+            Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+    private static final Pattern UPDATE_PATTERN = Pattern.compile("^UPDATE\\s+(\\w+)\\s+SET\\s+.+?(?:\\bWHERE\\b(.+))?$",
+            Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+    private static final Pattern DELETE_PATTERN = Pattern.compile("^DELETE\\s+FROM\\s+(\\w+)(?:\\s+WHERE\\s+(.+))?$",
+            Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+    private static final Pattern INSERT_PATTERN = Pattern.compile("^INSERT\\s+INTO\\s+(\\w+).*$",
+            Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+
+    public static String processExplain(String sql, Session session) {
+        QueryResult result = executeExplain(sql, session);
+        if (result.isError()) {
+            return result.getMessage();
+        }
+        String table = TableGenerator.generateTable(result.headers, result.rows);
+        return result.getMessage() == null ? table : table + "\n" + result.getMessage();
+    }
+
+    /**
+     * 执行EXPLAIN并返回结构化结果：每个算子一行，EXPLAIN ANALYZE时信息中带总执行时间
+     */
+    public static QueryResult executeExplain(String sql, Session session) {
+        Matcher matcher = EXPLAIN_PATTERN.matcher(sql.trim());
+        if (!matcher.find()) {
+            return QueryResult.error("ERROR: 语法错误，正确格式：EXPLAIN [ANALYZE] 语句");
+        }
+        boolean analyze = matcher.group(1) != null;
+        String statement = matcher.group(2).trim();
+        String keyword = statement.split("\\s+", 2)[0].toLowerCase();
+
+        // EXPLAIN ANALYZE需要监视器计数，调用方没有绑定时临时绑定一个
+        boolean bind = analyze && !ExecutionMonitor.isBound();
+        if (bind) {
+            ExecutionMonitor.bind(new ExecutionMonitor());
+        }
+        try {
+            long started = System.nanoTime();
+            PlanNode plan;
+            switch (keyword) {
+                case "select":
+                    plan = Select.explainSelect(statement, session, analyze);
+                    break;
+                case "update":
+                case "delete":
+                    plan = explainRewrite(statement, keyword, session, analyze);
+                    break;
+                case "insert":
+                    plan = explainInsert(statement, session, analyze);
+                    break;
+                default:
+                    return QueryResult.error("ERROR: EXPLAIN只支持SELECT、UPDATE、DELETE和INSERT语句");
+            }
+            long elapsed = System.nanoTime() - started;
+            QueryResult result = render(plan, analyze);
+            if (analyze) {
+                result.setMessage(String.format("Query OK: 执行时间 %.3f ms，结果 %d 行",
+                        elapsed / 1e6, Math.max(0, plan.actualRows)));
+            }
+            return result;
+        } catch (IllegalArgumentException e) {
+            return QueryResult.error(e.getMessage());
+        } catch (IOException e) {
+            return QueryResult.error("ERROR: 生成执行计划失败: " + e.getMessage());
+        } finally {
+            if (bind) {
+                ExecutionMonitor.unbind();
+            }
+        }
+    }
+
+    // UPDATE/DELETE：整表读入 -> 过滤 -> 改写，三步在同一遍循环中完成，只能整体计时
+    private static PlanNode explainRewrite(String statement, String keyword, Session session, boolean analyze)
+            throws IOException {
+        Matcher matcher = (keyword.equals("update") ? UPDATE_PATTERN : DELETE_PATTERN).matcher(statement);
+        if (!matcher.find()) {
+            throw new IllegalArgumentException("ERROR: 无法解析" + keyword.toUpperCase() + "语句");
+        }
+        String dbName = session.getCurrentDatabase();
+        String tableName = matcher.group(1);
+        String where = matcher.group(2) == null ? null : matcher.group(2).trim();
+        TableFile.Header header = TableFile.readHeader(Paths.get(SQLConstant.getTableRecordPath(dbName, tableName)));
+        if (header == null) {
+            throw new IllegalArgumentException("ERROR: 表 '" + tableName + "' 不存在");
+        }
+        String[] headers = header.lines[0].split(Pattern.quote(SQLConstant.getFieldSeparator()));
+        TableStatistics stats = TableStatistics.get(dbName, tableName);
+        long rows = QueryPlanner.estimateRows(dbName, tableName, stats);
+        VectorPredicate predicate = VectorPredicate.compile(where, headers);
+        long matched = Math.round(rows * predicate.selectivity(stats, headers));
+
+        PlanNode read = new PlanNode("TableRead", tableName + " locks=row", rows, rows * 2);
+        // 写回整表的代价算在改写上，其余算在读取和过滤上
+        PlanNode filter = where == null ? null : new PlanNode("Filter", where, matched,
+                QueryPlanner.rewriteCost(rows, predicate.size()) - rows);
+
+        PlanNode modify = new PlanNode(keyword.equals("update") ? "Update" : "Delete", tableName, matched,
+                QueryPlanner.rewriteCost(rows, predicate.size()));
+        modify.add(filter != null ? filter.add(read) : read);
+        if (!analyze) {
+            return modify;
+        }
+
+        ExecutionMonitor monitor = ExecutionMonitor.current();
+        long scannedBefore = monitor.getRowsScanned();
+        long bytesBefore = monitor.getBytesRead();
+        long started = System.nanoTime();
+        String message;
+        // EXPLAIN ANALYZE真正执行语句，与直接执行的写入语句一样经过写入闸门
+        WriteGate.enter();
+        try {
+            message = keyword.equals("update") ? Update.processUpdate(statement, session)
+                    : Delete.processDelete(statement, session);
+        } finally {
+            WriteGate.exit();
+        }
+        long elapsed = System.nanoTime() - started;
+        QueryResult outcome = QueryResult.fromMessage(message, 0);
+        if (outcome.isError()) {
+            throw new IllegalArgumentException(message);
+        }
+        long scanned = monitor.getRowsScanned() - scannedBefore;
+        read.actualRows = scanned;
+        read.bytesRead = monitor.getBytesRead() - bytesBefore;
+        read.spillBytes = 0;
+        if (filter != null) {
+            filter.actualRows = outcome.getUpdateCount();
+            filter.rowsFiltered = Math.max(0, scanned - outcome.getUpdateCount());
+            filter.spillBytes = 0;
+        }
+        modify.actualRows = outcome.getUpdateCount();
+        modify.timeNanos = elapsed;
+        modify.spillBytes = 0;
+        return modify;
+    }
+
+    private static PlanNode explainInsert(String statement, Session session, boolean analyze) {
+        Matcher matcher = INSERT_PATTERN.matcher(statement);
+        if (!matcher.find()) {
+            throw new IllegalArgumentException("ERROR: 无法解析INSERT语句");
+        }
+        PlanNode insert = new PlanNode("Insert", matcher.group(1), 1, 1);
+        if (!analyze) {
+            return insert;
+        }
+        ExecutionMonitor monitor = ExecutionMonitor.current();
+        long bytesBefore = monitor.getBytesRead();
+        long started = System.nanoTime();
+        String message;
+        WriteGate.enter();
+        try {
+            message = Insert.processInsert(statement, session);
+        } finally {
+            WriteGate.exit();
+        }
+        if (message.startsWith("ERROR")) {
+            throw new IllegalArgumentException(message);
+        }
+        insert.timeNanos = System.nanoTime() - started;
+        // 主键、外键检查时读取的字节
+        insert.bytesRead = monitor.getBytesRead() - bytesBefore;
+        insert.actualRows = 1;
+        insert.spillBytes = 0;
+        return insert;
+    }
+
+    // 每个算子一行，算子名前按深度缩进
+    private static QueryResult render(PlanNode plan, boolean analyze) {
+        QueryResult result = new QueryResult();
+        result.headers.addAll(Arrays.asList("operator", "detail", "est_rows", "est_cost"));
+        if (analyze) {
+            result.headers.addAll(Arrays.asList("actual_rows", "time_ms", "bytes_read", "rows_filtered",
+                    "spill", "mem_peak"));
+        }
+        for (int i = 0; i < result.headers.size(); i++) {
+            result.columnTypes.add(ColumnType.VARCHAR);
+        }
+        addRows(plan, 0, analyze, result.rows);
+        return result;
+    }
+
+    private static void addRows(PlanNode node, int depth, boolean analyze, List<List<String>> rows) {
+        List<String> row = new ArrayList<>();
+        StringBuilder indent = new StringBuilder();
+        for (int i = 1; i < depth; i++) {
+            indent.append("   ");
+        }
+        row.add(depth == 0 ? node.operator : indent + "-> " + node.operator);
+        row.add(node.detail);
+        row.add(Long.toString(node.estimatedRows));
+        row.add(String.format("%.1f", node.estimatedCost));
+        if (analyze) {
+            row.add(node.actualRows < 0 ? "-" : Long.toString(node.actualRows));
+            row.add(node.timeNanos < 0 ? "-" : String.format("%.3f", node.timeNanos / 1e6));
+            row.add(formatBytes(node.bytesRead));
+            row.add(node.rowsFiltered < 0 ? "-" : Long.toString(node.rowsFiltered));
+            row.add(formatBytes(node.spillBytes));
+            row.add(formatBytes(node.memoryPeak));
+        }
+        rows.add(row);
+        for (PlanNode child : node.children) {
+            addRows(child, depth + 1, analyze, rows);
+        }
+    }
+
+    private static String formatBytes(long bytes) {
+        if (bytes < 0) {
+            return "-";
+        }
+        if (bytes < 1024) {
+            return bytes + " B";
+        }
+        if (bytes < 1024 * 1024) {
+            return String.format("%.1f KB", bytes / 1024.0);
+        }
+        return String.format("%.1f MB", bytes / (1024.0 * 1024));
+    }
+}
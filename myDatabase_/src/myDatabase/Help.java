@@ -11,7 +11,10 @@ public class Help {
         sb.append("   create database 数据库名; - 创建数据库\n");
         sb.append("   show databases; - 列出所有数据库\n");
         sb.append("   use 数据库名; - 切换当前数据库\n");
-        sb.append("   drop database 数据库名; - 删除数据库\n\n");
+        sb.append("   drop database 数据库名; - 删除数据库\n");
+        sb.append("   backup database [数据库名] to '文件.zip'; - 备份数据库，写入语句只在取快照时短暂暂停\n");
+        sb.append("   backup database [数据库名] incremental|differential to '文件.zip'; - 只备份自上次备份（或上次全量备份）以来变化的块\n");
+        sb.append("   restore database [数据库名] from '文件.zip'; - 从备份还原数据库，增量备份会按备份链依次应用\n\n");
 
         sb.append("2. 表操作:\n");
         sb.append("   create table 表名(字段1 类型 约束, ...); - 创建表\n");
@@ -19,15 +22,35 @@ public class Help {
         sb.append("   describe 表名; - 显示表结构\n");
         sb.append("   drop table 表名; - 删除表\n");
         sb.append("   alter table 表名 add column 列名 类型 [约束]; - 添加列\n");
-        sb.append("   alter table 表名 drop column 列名; - 删除列\n\n");
+        sb.append("   alter table 表名 drop column 列名; - 删除列\n");
+        sb.append("   migrate table 表名 to binary|text; - 转换表数据文件的存储格式\n");
+        sb.append("   migrate database [数据库名] to binary|text; - 转换整个数据库的存储格式\n");
+        sb.append("   create bloom filter on 表名(列名) [fpp 误判率]; - 为列建立分段布隆过滤器（默认误判率0.01）\n");
+        sb.append("   drop bloom filter on 表名(列名); - 删除列上的布隆过滤器\n");
+        sb.append("   analyze table 表名; - 收集表和列的统计信息（保存在system.statistics中），供查询规划使用\n\n");
 
         sb.append("3. 数据操作:\n");
         sb.append("   insert into 表名(字段1,...) values(值1,...); - 插入数据\n");
         sb.append("   select * from 表名; - 查询表中所有数据\n");
+        sb.append("   select 列 from 表名 [where 条件] order by 列 [asc|desc], ...; - 按列排序（图形界面中点击结果表格的列头）\n");
+        sb.append("   select count(*), sum(列), avg(列), min(列), max(列) from 表名 [where 条件]; - 聚合查询\n");
+        sb.append("   declare 游标名 cursor for select ...; - 打开查询游标，结果留在服务端分批取出\n");
+        sb.append("   fetch [行数|next|all] [from] 游标名; - 从游标取出下一批行（默认fetch_size行，最多1000000行）\n");
+        sb.append("   close 游标名|all; - 关闭游标（会话结束或空闲超时时自动关闭）\n");
         sb.append("   update 表名 set 字段=值 where 条件; - 更新数据\n");
-        sb.append("   delete from 表名 [where 条件]; - 删除数据\n\n");
+        sb.append("   delete from 表名 [where 条件]; - 删除数据\n");
+        sb.append("   explain 语句; - 显示语句的算子树、估计行数和估计代价\n");
+        sb.append("   explain analyze 语句; - 执行语句并报告各算子的实际行数、耗时、读取字节数和内存峰值\n\n");
 
         sb.append("4. 其他命令:\n");
+        sb.append("   show lock status; - 查看各表行锁竞争统计\n");
+        sb.append("   show status; - 查看引擎运行指标及各类语句的延迟（也通过JMX导出）\n");
+        sb.append("   show table status; - 查看各表的读写指标\n");
+        sb.append("   show slow queries; - 按语句汇总慢查询日志\n");
+        sb.append("   set parallelism = N; - 设置本会话的表扫描并行度\n");
+        sb.append("   set execution_mode = vectorized|row; - 按批向量化执行或逐行执行查询\n");
+        sb.append("   set fetch_size = N; - 设置FETCH省略行数时每批取出的行数\n");
+        sb.append("   show settings; - 查看本会话的设置\n");
         sb.append("   help; - 显示本帮助信息\n");
         sb.append("   quit; - 退出系统\n");
         sb.append("====================================\n");
@@ -1,15 +1,20 @@
 package myDatabase;
 
+import model.Session;
+
 import java.io.*;
 import java.nio.file.*;
 import java.time.LocalDate;
 import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.regex.*;
 import java.util.function.Predicate;
 
 public class Insert {
-    public static String processInsert(String sql) {
+    public static String processInsert(String sql, Session session) {
         try {
+            EngineEvents.ParseEvent parseEvent = new EngineEvents.ParseEvent();
+            parseEvent.begin();
             Pattern pattern = Pattern.compile(
                     "(?i)^insert\\s+into\\s+(\\w+)\\s*(?:\\(([^)]+)\\))?\\s*values\\s*\\(([^)]+)\\)\\s*;?$");
             Matcher matcher = pattern.matcher(sql.trim());
@@ -22,7 +27,7 @@ public class Insert {
             String columnsPart = matcher.group(2);
             String valuesPart = matcher.group(3);
 
-            String currentDbName = SQLConstant.getCurrentDbPath().substring(SQLConstant.getRootPath().length() + 1);
+            String currentDbName = session.getCurrentDatabase();
             String tablePath = SQLConstant.getTableRecordPath(currentDbName, tableName);
 
             // 读取表结构
@@ -49,15 +54,50 @@ public class Insert {
             if (record == null) {
                 return "ERROR: 记录构建失败";
             }
-
-            // 验证所有约束
-            String validationResult = validateConstraints(tablePath, columnNames, columnTypes, constraints, record);
-            if (validationResult != null) {
-                return validationResult;
+            parseEvent.end();
+            if (parseEvent.shouldCommit()) {
+                parseEvent.statementType = "insert";
+                parseEvent.table = tableName;
+                parseEvent.commit();
             }
 
-            // 写入记录
-            writeRecord(tablePath, String.join(SQLConstant.getFieldSeparator(), record));
+            // 主键值加行锁后检查约束：插入或改写成同一主键的语句都要先拿到这把锁，主键检查不必在表闩锁内做；
+            // 表闩锁只在追加记录时持有，与改写整个表文件的语句互斥
+            Object owner = session;
+            int pkIndex = LockManager.findPrimaryKeyIndex(tableStructure.get(2));
+            try {
+                if (pkIndex >= 0) {
+                    LockManager.lockRow(owner, currentDbName, tableName, record[pkIndex]);
+                }
+                // 验证所有约束
+                EngineEvents.ConstraintCheckEvent checkEvent = new EngineEvents.ConstraintCheckEvent();
+                checkEvent.begin();
+                String validationResult = validateConstraints(currentDbName, tablePath, columnNames, columnTypes,
+                        constraints, record);
+                checkEvent.end();
+                if (checkEvent.shouldCommit()) {
+                    checkEvent.table = currentDbName + "." + tableName;
+                    checkEvent.passed = validationResult == null;
+                    checkEvent.failure = validationResult;
+                    checkEvent.commit();
+                }
+
+                if (validationResult != null) {
+                    return validationResult;
+                }
+
+                // 写入记录
+                ReentrantLock latch = LockManager.getTableLatch(currentDbName, tableName);
+                latch.lock();
+                try {
+                    TableFile.appendRow(Paths.get(tablePath), record);
+                } finally {
+                    latch.unlock();
+                }
+            } finally {
+                LockManager.releaseAll(owner);
+            }
+            Analyze.rowsChanged(currentDbName, tableName, 1);
             return "Query OK: 插入成功";
 
         } catch (Exception e) {
@@ -107,7 +147,7 @@ public class Insert {
         return record;
     }
 
-    private static String validateConstraints(String tablePath, String[] columnNames,
+    private static String validateConstraints(String dbName, String tablePath, String[] columnNames,
                                               String[] columnTypes, String[] constraints, String[] record) throws IOException {
         // 1. 检查主键约束
         for (int i = 0; i < constraints.length; i++) {
@@ -145,7 +185,7 @@ public class Insert {
             if (fkMatcher.find()) {
                 String refTable = fkMatcher.group(1);
                 String refColumn = fkMatcher.group(2).isEmpty() ? columnNames[i] : fkMatcher.group(2);
-                if (!validateForeignKeyConstraint(refTable, refColumn, record[i])) {
+                if (!validateForeignKeyConstraint(dbName, refTable, refColumn, record[i])) {
                     return "ERROR: 外键约束失败 - 表" + refTable + "中不存在" + refColumn + "=" + record[i];
                 }
             }
@@ -159,15 +199,29 @@ public class Insert {
         if ("null".equalsIgnoreCase(value)) {
             return false;
         }
+        return !containsValue(tablePath, columnIndex, value);
+    }
 
-        List<String> lines = Files.readAllLines(Paths.get(tablePath));
-        for (int i = 3; i < lines.size(); i++) {
-            String[] values = lines.get(i).split(Pattern.quote(SQLConstant.getFieldSeparator()));
-            if (values.length > columnIndex && value.equals(values[columnIndex])) {
-                return false;
-            }
+    // 表中第columnIndex列是否有与value相同的值，按区块摘要和布隆过滤器跳过肯定不含该值的区块；
+    // 按批扫描，先用宽松的等值条件过滤，只有留下的行才取出该列的文本逐个比较，不为每行拆出全部字段
+    private static boolean containsValue(String tablePath, int columnIndex, String value) throws IOException {
+        TableScanner scanner = TableScanner.open(tablePath);
+        if (scanner == null || columnIndex >= scanner.getHeaders().length) {
+            return false;
         }
-        return true;
+        VectorPredicate predicate = VectorPredicate.equalTo(columnIndex, value);
+        scanner.setBlockFilter(predicate);
+        List<Boolean> matches = scanner.scanBatches(1, batch -> {
+            predicate.filter(batch);
+            int[] selection = batch.selection();
+            for (int k = 0; k < batch.getSelectedCount(); k++) {
+                if (value.equals(batch.text(columnIndex, selection[k]))) {
+                    return Collections.singletonList(Boolean.TRUE);
+                }
+            }
+            return Collections.emptyList();
+        });
+        return !matches.isEmpty();
     }
 
     private static boolean validateCheckConstraint(String condition, String[] columnNames, String[] record) {
@@ -259,22 +313,23 @@ public class Insert {
 
 
 
-    private static boolean validateForeignKeyConstraint(String refTable, String refColumn, String value)
+    private static boolean validateForeignKeyConstraint(String dbName, String refTable, String refColumn, String value)
             throws IOException {
         if ("null".equalsIgnoreCase(value)) {
             return true; // 允许外键为NULL
         }
 
-        String refTablePath = SQLConstant.getCurrentTableRecordPath(refTable);
+        String refTablePath = SQLConstant.getTableRecordPath(dbName, refTable);
+
         if (!Files.exists(Paths.get(refTablePath))) {
             return false;
         }
 
-        List<String> lines = Files.readAllLines(Paths.get(refTablePath));
-        if (lines.size() < 4) return false;
+        TableFile.Header header = TableFile.readHeader(Paths.get(refTablePath));
+        if (header == null) return false;
 
         // 查找引用列索引
-        String[] headers = lines.get(0).split(Pattern.quote(SQLConstant.getFieldSeparator()));
+        String[] headers = header.lines[0].split(Pattern.quote(SQLConstant.getFieldSeparator()));
         int refColIndex = -1;
         for (int i = 0; i < headers.length; i++) {
             if (headers[i].equalsIgnoreCase(refColumn)) {
@@ -285,14 +340,7 @@ public class Insert {
         if (refColIndex == -1) return false;
 
         // 检查值是否存在
-        for (int i = 3; i < lines.size(); i++) {
-            String[] values = lines.get(i).split(Pattern.quote(SQLConstant.getFieldSeparator()));
-            if (values.length > refColIndex && value.equals(values[refColIndex])) {
-                return true;
-            }
-        }
-
-        return false;
+        return containsValue(refTablePath, refColIndex, value);
     }
 
     // 辅助方法
@@ -394,13 +442,6 @@ public class Insert {
         return lines;
     }
 
-    private static void writeRecord(String tablePath, String record) throws IOException {
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(tablePath, true))) {
-            writer.write(record);
-            writer.newLine();
-        }
-    }
-
     private static String processValue(String value, String type) {
         value = value.trim();
         try {
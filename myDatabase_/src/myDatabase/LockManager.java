@@ -0,0 +1,356 @@
+package myDatabase;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+import java.util.regex.Pattern;
+
+/**
+ * 行级锁管理器
+ * 以 "库.表" + 行键(主键值，无主键的表为整行内容) 为粒度加排他锁，维护等待图(wait-for graph)检测死锁，
+ * 锁等待超时可配置，并按表统计锁竞争情况。行锁在语句结束时释放。
+ * 写入语句在表闩锁(latch)外读取表、判断条件并等待行锁，改写不同行的语句在这一阶段并发执行；
+ * 表文件是整体替换的，所以只有最后的读改写在闩锁内按表串行，闩锁内不会等待行锁。
+ */
+public class LockManager {
+    // 等待期间重新检测死锁的间隔
+    private static final long DEADLOCK_CHECK_INTERVAL_MILLIS = 50;
+
+    private static final Map<String, TableLocks> tables = new ConcurrentHashMap<>();
+    // 持有者 -> 正在等待的行
+    private static final Map<Object, RowRef> waiting = new ConcurrentHashMap<>();
+    // 持有者 -> 已持有的行
+    private static final Map<Object, Set<RowRef>> held = new ConcurrentHashMap<>();
+
+    private static volatile long lockTimeoutMillis = SQLConstant.getLockTimeoutMillis();
+
+    public static long getLockTimeoutMillis() {
+        return lockTimeoutMillis;
+    }
+
+    public static void setLockTimeoutMillis(long millis) {
+        if (millis < 0) {
+            throw new IllegalArgumentException("锁超时时间不能为负数");
+        }
+        lockTimeoutMillis = millis;
+    }
+
+    /**
+     * 对一行加排他锁，必要时等待；超时或检测到死锁时抛出LockException，本次请求者作为牺牲者
+     */
+    public static void lockRow(Object owner, String dbName, String tableName, String rowKey) throws LockException {
+        TableLocks table = getTable(dbName, tableName);
+        synchronized (table) {
+            if (grant(table, owner, rowKey)) {
+                return;
+            }
+
+            table.waits.increment();
+            EngineEvents.LockWaitEvent event = new EngineEvents.LockWaitEvent();
+            event.begin();
+            String outcome = "granted";
+            RowRef wanted = new RowRef(table, rowKey);
+            long start = System.nanoTime();
+            long deadline = start + lockTimeoutMillis * 1_000_000L;
+            waiting.put(owner, wanted);
+            try {
+                while (true) {
+                    if (grant(table, owner, rowKey)) {
+                        return;
+                    }
+                    if (detectDeadlock(owner)) {
+                        table.deadlocks.increment();
+                        outcome = "deadlock";
+                        throw new LockException("检测到死锁，本语句已中止: 表 " + table.name + " 行 " + rowKey);
+                    }
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        table.timeouts.increment();
+                        outcome = "timeout";
+                        throw new LockException("等待行锁超时(" + lockTimeoutMillis + "ms): 表 "
+                                + table.name + " 行 " + rowKey);
+                    }
+                    table.wait(Math.max(1, Math.min(remaining / 1_000_000L, DEADLOCK_CHECK_INTERVAL_MILLIS)));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                outcome = "interrupted";
+                throw new LockException("等待行锁时被中断");
+            } finally {
+                waiting.remove(owner);
+                long waited = System.nanoTime() - start;
+                table.waitNanos.add(waited);
+                Metrics.TableMetrics metrics = Metrics.table(dbName, tableName);
+                metrics.lockWaits.increment();
+                metrics.lockWaitNanos.add(waited);
+                event.end();
+                if (event.shouldCommit()) {
+                    event.table = table.name;
+                    event.rowKey = rowKey;
+                    event.outcome = outcome;
+                    event.commit();
+                }
+            }
+        }
+    }
+
+    /**
+     * 尝试加锁，不等待
+     */
+    public static boolean tryLockRow(Object owner, String dbName, String tableName, String rowKey) {
+        TableLocks table = getTable(dbName, tableName);
+        synchronized (table) {
+            return grant(table, owner, rowKey);
+        }
+    }
+
+    /**
+     * 释放持有者的全部行锁（语句或事务结束时调用）
+     */
+    public static void releaseAll(Object owner) {
+        Set<RowRef> rows = held.remove(owner);
+        if (rows == null) {
+            return;
+        }
+        for (RowRef row : rows) {
+            synchronized (row.table) {
+                if (row.table.holders.remove(row.key, owner)) {
+                    row.table.notifyAll();
+                }
+            }
+        }
+    }
+
+    /**
+     * 获取表的物理写闩锁，只在读改写表文件的短时间内持有，持有期间不等待行锁
+     */
+    public static ReentrantLock getTableLatch(String dbName, String tableName) {
+        return getTable(dbName, tableName).latch;
+    }
+
+    /**
+     * 改写满足条件的行并写回表文件，分两个阶段：
+     * 1. 闩锁外读取表文件，对满足条件的行加行锁，必要时等待（参与死锁检测），并记下不满足条件的行；
+     * 2. 闩锁内重新读取表文件，第一阶段之后没有变化的不满足条件的行直接保留，其余行重新判断，
+     *    新命中的行（以及UPDATE改写后的新主键）只尝试加锁，加不上时放开闩锁等待后重试。
+     * 条件判断只依赖行的内容，所以内容没变的行不必在闩锁内重新判断。rewriter返回null表示删除该行。
+     * 记录按字段读写（见TableFile.readRecords），不拼接成文本行，matcher和rewriter直接处理字段数组。
+     * @return 受影响的行数
+     */
+    public static int rewriteMatchingRows(Object owner, String dbName, String tableName, Path tablePath,
+                                          Predicate<String[]> matcher, UnaryOperator<String[]> rewriter)
+            throws IOException, LockException {
+        ExecutionMonitor monitor = ExecutionMonitor.current();
+        TableFile.Records snapshot = TableFile.readRecords(tablePath);
+        if (snapshot.header.size() < 3) {
+            return 0;
+        }
+        int pkIndex = findPrimaryKeyIndex(snapshot.header.get(2));
+        // 按字段内容比较的不满足条件的行
+        Set<List<String>> unmatched = new HashSet<>();
+        for (String[] values : snapshot.rows) {
+            monitor.checkCancelled();
+            monitor.rowScanned();
+            if (matcher.test(values)) {
+                lockRow(owner, dbName, tableName, rowKey(values, pkIndex));
+            } else {
+                unmatched.add(Arrays.asList(values));
+            }
+        }
+
+        ReentrantLock latch = getTableLatch(dbName, tableName);
+        while (true) {
+            List<String> pending = new ArrayList<>();
+            latch.lock();
+            try {
+                TableFile.Records records = TableFile.readRecords(tablePath);
+                if (records.header.size() < 3) {
+                    return 0;
+                }
+                monitor.planSummary("rewrite " + tableName + " rows=" + records.rows.size() + " locks=row");
+                List<String[]> newRows = new ArrayList<>(records.rows.size());
+                int affected = 0;
+                for (String[] values : records.rows) {
+                    if (unmatched.contains(Arrays.asList(values))) {
+                        newRows.add(values);
+                        continue;
+                    }
+                    monitor.checkCancelled();
+                    if (!matcher.test(values)) {
+                        newRows.add(values);
+                        continue;
+                    }
+                    String key = rowKey(values, pkIndex);
+                    if (!tryLockRow(owner, dbName, tableName, key)) {
+                        pending.add(key);
+                        continue;
+                    }
+                    String[] rewritten = rewriter.apply(values);
+                    if (rewritten != null) {
+                        String newKey = rowKey(rewritten, pkIndex);
+                        if (pkIndex >= 0 && !newKey.equals(key) && !tryLockRow(owner, dbName, tableName, newKey)) {
+                            pending.add(newKey);
+                            continue;
+                        }
+                        newRows.add(rewritten);
+                    }
+                    affected++;
+                }
+
+                if (pending.isEmpty()) {
+                    if (affected > 0) {
+                        TableFile.writeRecords(tablePath, records.header, newRows);
+                        Metrics.table(dbName, tableName).written(affected, 0);
+                    }
+                    // 只登记变化行数，需要时在后台线程中重新统计
+                    Analyze.rowsChanged(dbName, tableName, affected);
+                    return affected;
+                }
+            } finally {
+                latch.unlock();
+            }
+            // 闩锁外等待其他写者释放行锁，然后重试
+            for (String key : pending) {
+                lockRow(owner, dbName, tableName, key);
+            }
+        }
+    }
+
+    /**
+     * 行键：有主键时取主键值，否则取整行内容，不随其他行的增删而变化（内容完全相同的行共用一把锁）
+     */
+    public static String rowKey(String[] values, int pkIndex) {
+        if (pkIndex >= 0 && pkIndex < values.length) {
+            return values[pkIndex];
+        }
+        return "#" + String.join(SQLConstant.getFieldSeparator(), values);
+    }
+
+    /**
+     * 从约束行中找出主键列下标，没有主键返回-1
+     */
+    public static int findPrimaryKeyIndex(String constraintsLine) {
+        String[] constraints = constraintsLine.split(Pattern.quote(SQLConstant.getFieldSeparator()), -1);
+        for (int i = 0; i < constraints.length; i++) {
+            if (constraints[i].toUpperCase().contains("PRIMARY KEY")) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 按表输出锁竞争统计
+     */
+    public static List<List<String>> getLockStatistics() {
+        List<List<String>> rows = new ArrayList<>();
+        List<TableLocks> sorted = new ArrayList<>(tables.values());
+        sorted.sort(Comparator.comparing(t -> t.name));
+        for (TableLocks table : sorted) {
+            long waits = table.waits.sum();
+            double avgWaitMillis = waits == 0 ? 0 : table.waitNanos.sum() / 1_000_000.0 / waits;
+            rows.add(Arrays.asList(
+                    table.name,
+                    String.valueOf(table.acquired.sum()),
+                    String.valueOf(waits),
+                    String.format("%.2f", avgWaitMillis),
+                    String.valueOf(table.timeouts.sum()),
+                    String.valueOf(table.deadlocks.sum()),
+                    String.valueOf(table.holders.size())));
+        }
+        return rows;
+    }
+
+    private static boolean grant(TableLocks table, Object owner, String rowKey) {
+        Object holder = table.holders.putIfAbsent(rowKey, owner);
+        if (holder != null && holder != owner) {
+            return false;
+        }
+        if (holder == null) {
+            table.acquired.increment();
+            held.computeIfAbsent(owner, k -> ConcurrentHashMap.newKeySet()).add(new RowRef(table, rowKey));
+        }
+        return true;
+    }
+
+    // 沿等待图前进，若回到自身则存在死锁
+    private static boolean detectDeadlock(Object owner) {
+        Set<Object> visited = new HashSet<>();
+        Object current = owner;
+        while (true) {
+            RowRef wanted = waiting.get(current);
+            if (wanted == null) {
+                return false;
+            }
+            Object holder = wanted.table.holders.get(wanted.key);
+            if (holder == null) {
+                return false;
+            }
+            if (holder == owner) {
+                return true;
+            }
+            if (!visited.add(holder)) {
+                return false;
+            }
+            current = holder;
+        }
+    }
+
+    private static TableLocks getTable(String dbName, String tableName) {
+        String name = (dbName + "." + tableName).toLowerCase();
+        return tables.computeIfAbsent(name, TableLocks::new);
+    }
+
+    // 辅助类：一张表的锁表与统计
+    private static class TableLocks {
+        final String name;
+        final Map<String, Object> holders = new ConcurrentHashMap<>();
+        final ReentrantLock latch = new ReentrantLock();
+        final LongAdder acquired = new LongAdder();
+        final LongAdder waits = new LongAdder();
+        final LongAdder waitNanos = new LongAdder();
+        final LongAdder timeouts = new LongAdder();
+        final LongAdder deadlocks = new LongAdder();
+
+        TableLocks(String name) {
+            this.name = name;
+        }
+    }
+
+    // 辅助类：表示一行
+    private static class RowRef {
+        final TableLocks table;
+        final String key;
+
+        RowRef(TableLocks table, String key) {
+            this.table = table;
+            this.key = key;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof RowRef)) return false;
+            RowRef other = (RowRef) o;
+            return table == other.table && key.equals(other.key);
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(table) * 31 + key.hashCode();
+        }
+    }
+
+    // 自定义异常类：锁超时或死锁
+    public static class LockException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        LockException(String message) {
+            super(message);
+        }
+    }
+}
@@ -0,0 +1,409 @@
+package myDatabase;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 引擎运行指标：按语句类型和按表累计的计数器（LongAdder）与延迟直方图
+ * 语句级指标在DatabaseProcessor分发语句时记录（扫描行数、读写字节数等取自语句的ExecutionMonitor），
+ * 表级指标在读写表文件、等待行锁的地方直接累加。
+ * 可通过 SHOW STATUS / SHOW TABLE STATUS 查看，也以JMX MBean（域 myDatabase）导出。
+ */
+public class Metrics {
+    private static final String JMX_DOMAIN = "myDatabase";
+    private static final long STARTED = System.currentTimeMillis();
+
+    private static final Map<String, StatementMetrics> STATEMENTS = new ConcurrentHashMap<>();
+    private static final Map<String, TableMetrics> TABLES = new ConcurrentHashMap<>();
+    private static final LongAdder STATS_CACHE_HITS = new LongAdder();
+    private static final LongAdder STATS_CACHE_MISSES = new LongAdder();
+
+    static {
+        register("type=Server", new Server());
+    }
+
+    /**
+     * 通过JMX导出的引擎总体指标
+     */
+    public interface ServerMXBean {
+        long getUptimeSeconds();
+        long getStatements();
+        long getStatementErrors();
+        long getRowsScanned();
+        long getRowsReturned();
+        long getRowsAffected();
+        long getBytesRead();
+        long getBytesWritten();
+        long getBlocksSkipped();
+        long getLockWaits();
+        long getStatsCacheHits();
+        long getStatsCacheMisses();
+    }
+
+    /**
+     * 通过JMX导出的一类语句的指标
+     */
+    public interface StatementMXBean {
+        long getCount();
+        long getErrors();
+        long getRowsScanned();
+        long getRowsReturned();
+        long getRowsAffected();
+        long getBytesRead();
+        long getBytesWritten();
+        double getMeanMillis();
+        double getP50Millis();
+        double getP95Millis();
+        double getP99Millis();
+        double getMaxMillis();
+    }
+
+    /**
+     * 通过JMX导出的一张表的指标
+     */
+    public interface TableMXBean {
+        long getStatements();
+        long getReads();
+        long getRowsRead();
+        long getBytesRead();
+        long getRowsWritten();
+        long getBytesWritten();
+        long getBlocksSkipped();
+        long getLockWaits();
+        double getLockWaitMillis();
+        double getP50Millis();
+        double getP99Millis();
+    }
+
+    /**
+     * 一类语句（DatabaseProcessor的一个分发分支）的指标
+     */
+    public static class StatementMetrics implements StatementMXBean {
+        final String type;
+        final LongAdder errors = new LongAdder();
+        final LongAdder rowsScanned = new LongAdder();
+        final LongAdder rowsReturned = new LongAdder();
+        final LongAdder rowsAffected = new LongAdder();
+        final LongAdder bytesRead = new LongAdder();
+        final LongAdder bytesWritten = new LongAdder();
+        final LatencyHistogram latency = new LatencyHistogram();
+
+        StatementMetrics(String type) {
+            this.type = type;
+        }
+
+        @Override public long getCount() { return latency.getCount(); }
+        @Override public long getErrors() { return errors.sum(); }
+        @Override public long getRowsScanned() { return rowsScanned.sum(); }
+        @Override public long getRowsReturned() { return rowsReturned.sum(); }
+        @Override public long getRowsAffected() { return rowsAffected.sum(); }
+        @Override public long getBytesRead() { return bytesRead.sum(); }
+        @Override public long getBytesWritten() { return bytesWritten.sum(); }
+        @Override public double getMeanMillis() { return latency.getMeanMillis(); }
+        @Override public double getP50Millis() { return latency.getPercentileMillis(0.50); }
+        @Override public double getP95Millis() { return latency.getPercentileMillis(0.95); }
+        @Override public double getP99Millis() { return latency.getPercentileMillis(0.99); }
+        @Override public double getMaxMillis() { return latency.getMaxMillis(); }
+    }
+
+    /**
+     * 一张表（库名.表名）的指标
+     */
+    public static class TableMetrics implements TableMXBean {
+        final String name;
+        // 访问过该表的语句的延迟
+        final LatencyHistogram latency = new LatencyHistogram();
+        // 扫描或整表读入的次数
+        final LongAdder reads = new LongAdder();
+        final LongAdder rowsRead = new LongAdder();
+        final LongAdder bytesRead = new LongAdder();
+        final LongAdder rowsWritten = new LongAdder();
+        final LongAdder bytesWritten = new LongAdder();
+        final LongAdder blocksSkipped = new LongAdder();
+        final LongAdder lockWaits = new LongAdder();
+        final LongAdder lockWaitNanos = new LongAdder();
+
+        TableMetrics(String name) {
+            this.name = name;
+        }
+
+        public void read(long rows, long bytes) {
+            rowsRead.add(rows);
+            bytesRead.add(bytes);
+        }
+
+        public void written(long rows, long bytes) {
+            rowsWritten.add(rows);
+            bytesWritten.add(bytes);
+        }
+
+        @Override public long getStatements() { return latency.getCount(); }
+        @Override public long getReads() { return reads.sum(); }
+        @Override public long getRowsRead() { return rowsRead.sum(); }
+        @Override public long getBytesRead() { return bytesRead.sum(); }
+        @Override public long getRowsWritten() { return rowsWritten.sum(); }
+        @Override public long getBytesWritten() { return bytesWritten.sum(); }
+        @Override public long getBlocksSkipped() { return blocksSkipped.sum(); }
+        @Override public long getLockWaits() { return lockWaits.sum(); }
+        @Override public double getLockWaitMillis() { return lockWaitNanos.sum() / 1e6; }
+        @Override public double getP50Millis() { return latency.getPercentileMillis(0.50); }
+        @Override public double getP99Millis() { return latency.getPercentileMillis(0.99); }
+    }
+
+    private static class Server implements ServerMXBean {
+        @Override public long getUptimeSeconds() { return (System.currentTimeMillis() - STARTED) / 1000; }
+        @Override public long getStatements() { return sum(StatementMetrics::getCount); }
+        @Override public long getStatementErrors() { return sum(StatementMetrics::getErrors); }
+        @Override public long getRowsScanned() { return sum(StatementMetrics::getRowsScanned); }
+        @Override public long getRowsReturned() { return sum(StatementMetrics::getRowsReturned); }
+        @Override public long getRowsAffected() { return sum(StatementMetrics::getRowsAffected); }
+        @Override public long getBytesRead() { return sum(StatementMetrics::getBytesRead); }
+        @Override public long getBytesWritten() { return sum(StatementMetrics::getBytesWritten); }
+        @Override public long getStatsCacheHits() { return STATS_CACHE_HITS.sum(); }
+        @Override public long getStatsCacheMisses() { return STATS_CACHE_MISSES.sum(); }
+
+        @Override
+        public long getBlocksSkipped() {
+            long total = 0;
+            for (TableMetrics table : TABLES.values()) {
+                total += table.getBlocksSkipped();
+            }
+            return total;
+        }
+
+        @Override
+        public long getLockWaits() {
+            long total = 0;
+            for (TableMetrics table : TABLES.values()) {
+                total += table.getLockWaits();
+            }
+            return total;
+        }
+
+        private static long sum(java.util.function.ToLongFunction<StatementMetrics> getter) {
+            long total = 0;
+            for (StatementMetrics statement : STATEMENTS.values()) {
+                total += getter.applyAsLong(statement);
+            }
+            return total;
+        }
+    }
+
+    /**
+     * 一条正在执行的语句：开始时记下监视器的计数，结束时把差值和耗时计入该类语句
+     */
+    public static class StatementTimer {
+        private final StatementMetrics metrics;
+        private final ExecutionMonitor monitor;
+        // 调用方没有绑定监视器时由本计时器临时绑定
+        private final boolean bound;
+        private final long started = System.nanoTime();
+        private final long rowsScanned;
+        private final long rowsReturned;
+        private final long bytesRead;
+        private final long bytesWritten;
+        // 语句结束时的测量值，供慢查询日志使用
+        private long elapsedNanos;
+        private long rowsExamined;
+        private long rowsSent;
+        private String planSummary;
+
+        StatementTimer(StatementMetrics metrics) {
+            this.metrics = metrics;
+            this.bound = !ExecutionMonitor.isBound();
+            if (bound) {
+                ExecutionMonitor.bind(new ExecutionMonitor());
+            }
+            this.monitor = ExecutionMonitor.current();
+            this.rowsScanned = monitor.getRowsScanned();
+            this.rowsReturned = monitor.getRowsReturned();
+            this.bytesRead = monitor.getBytesRead();
+            this.bytesWritten = monitor.getBytesWritten();
+            monitor.planSummary(null);
+        }
+
+        /**
+         * 语句结束
+         * @param rowsAffected INSERT/UPDATE/DELETE影响的行数，其他语句为0
+         */
+        public void finish(boolean error, long rowsAffected) {
+            long nanos = System.nanoTime() - started;
+            elapsedNanos = nanos;
+            rowsExamined = monitor.getRowsScanned() - rowsScanned;
+            rowsSent = monitor.getRowsReturned() - rowsReturned;
+            planSummary = monitor.getPlanSummary();
+            try {
+                metrics.latency.record(nanos);
+                if (error) {
+                    metrics.errors.increment();
+                }
+                metrics.rowsScanned.add(rowsExamined);
+                metrics.rowsReturned.add(rowsSent);
+                metrics.rowsAffected.add(Math.max(0, rowsAffected));
+                metrics.bytesRead.add(monitor.getBytesRead() - bytesRead);
+                metrics.bytesWritten.add(monitor.getBytesWritten() - bytesWritten);
+                for (TableMetrics table : monitor.getTablesTouched()) {
+                    table.latency.record(nanos);
+                }
+            } finally {
+                if (bound) {
+                    ExecutionMonitor.unbind();
+                }
+            }
+        }
+
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        public long getRowsExamined() {
+            return rowsExamined;
+        }
+
+        public long getRowsReturned() {
+            return rowsSent;
+        }
+
+        /**
+         * 语句采用的执行计划摘要，没有经过规划器的语句为null
+         */
+        public String getPlanSummary() {
+            return planSummary;
+        }
+    }
+
+    /**
+     * 开始记录一条语句
+     * @param type 语句类型，即DatabaseProcessor的分发分支
+     */
+    public static StatementTimer start(String type) {
+        return new StatementTimer(STATEMENTS.computeIfAbsent(type, t -> {
+            StatementMetrics metrics = new StatementMetrics(t);
+            register("type=Statement,name=" + t, metrics);
+            return metrics;
+        }));
+    }
+
+    /**
+     * 表的指标，同时记下当前语句访问了这张表
+     */
+    public static TableMetrics table(String dbName, String tableName) {
+        TableMetrics metrics = TABLES.computeIfAbsent((dbName + "." + tableName).toLowerCase(), name -> {
+            TableMetrics created = new TableMetrics(name);
+            register("type=Table,name=" + ObjectName.quote(name), created);
+            return created;
+        });
+        ExecutionMonitor.current().tableTouched(metrics);
+        return metrics;
+    }
+
+    /**
+     * 按表数据文件的路径（库目录/表名.trd）取得表的指标
+     */
+    public static TableMetrics table(Path tablePath) {
+        String fileName = tablePath.getFileName().toString();
+        int dot = fileName.lastIndexOf('.');
+        Path dbDir = tablePath.toAbsolutePath().getParent();
+        return table(dbDir == null || dbDir.getFileName() == null ? "" : dbDir.getFileName().toString(),
+                dot > 0 ? fileName.substring(0, dot) : fileName);
+    }
+
+    public static void statsCacheHit() {
+        STATS_CACHE_HITS.increment();
+    }
+
+    public static void statsCacheMiss() {
+        STATS_CACHE_MISSES.increment();
+    }
+
+    /**
+     * SHOW STATUS 的总体指标，每行为 名称、值
+     */
+    public static List<List<String>> getStatus() {
+        Server server = new Server();
+        long uptime = Math.max(1, server.getUptimeSeconds());
+        List<List<String>> rows = new ArrayList<>();
+        rows.add(Arrays.asList("Uptime_seconds", String.valueOf(server.getUptimeSeconds())));
+        rows.add(Arrays.asList("Statements", String.valueOf(server.getStatements())));
+        rows.add(Arrays.asList("Statement_errors", String.valueOf(server.getStatementErrors())));
+        rows.add(Arrays.asList("Statements_per_second", String.format("%.2f", (double) server.getStatements() / uptime)));
+        rows.add(Arrays.asList("Rows_scanned", String.valueOf(server.getRowsScanned())));
+        rows.add(Arrays.asList("Rows_returned", String.valueOf(server.getRowsReturned())));
+        rows.add(Arrays.asList("Rows_affected", String.valueOf(server.getRowsAffected())));
+        rows.add(Arrays.asList("Bytes_read", String.valueOf(server.getBytesRead())));
+        rows.add(Arrays.asList("Bytes_written", String.valueOf(server.getBytesWritten())));
+        rows.add(Arrays.asList("Blocks_skipped", String.valueOf(server.getBlocksSkipped())));
+        rows.add(Arrays.asList("Lock_waits", String.valueOf(server.getLockWaits())));
+        rows.add(Arrays.asList("Stats_cache_hits", String.valueOf(server.getStatsCacheHits())));
+        rows.add(Arrays.asList("Stats_cache_misses", String.valueOf(server.getStatsCacheMisses())));
+        return rows;
+    }
+
+    /**
+     * SHOW STATUS 的按语句类型的指标，按类型名排序
+     */
+    public static List<List<String>> getStatementStatus() {
+        List<StatementMetrics> sorted = new ArrayList<>(STATEMENTS.values());
+        sorted.sort(Comparator.comparing(metrics -> metrics.type));
+        List<List<String>> rows = new ArrayList<>();
+        for (StatementMetrics metrics : sorted) {
+            rows.add(Arrays.asList(metrics.type,
+                    String.valueOf(metrics.getCount()),
+                    String.valueOf(metrics.getErrors()),
+                    String.valueOf(metrics.getRowsScanned()),
+                    String.valueOf(metrics.getRowsReturned()),
+                    String.valueOf(metrics.getRowsAffected()),
+                    String.format("%.3f", metrics.getMeanMillis()),
+                    String.format("%.3f", metrics.getP50Millis()),
+                    String.format("%.3f", metrics.getP95Millis()),
+                    String.format("%.3f", metrics.getP99Millis()),
+                    String.format("%.3f", metrics.getMaxMillis())));
+        }
+        return rows;
+    }
+
+    /**
+     * SHOW TABLE STATUS 的按表指标；dbName不为null时只列出该库的表
+     */
+    public static List<List<String>> getTableStatus(String dbName) {
+        List<TableMetrics> sorted = new ArrayList<>(TABLES.values());
+        sorted.sort(Comparator.comparing(metrics -> metrics.name));
+        String prefix = dbName == null ? null : dbName.toLowerCase() + ".";
+        List<List<String>> rows = new ArrayList<>();
+        for (TableMetrics metrics : sorted) {
+            if (prefix != null && !metrics.name.startsWith(prefix)) {
+                continue;
+            }
+            rows.add(Arrays.asList(metrics.name,
+                    String.valueOf(metrics.getStatements()),
+                    String.valueOf(metrics.getReads()),
+                    String.valueOf(metrics.getRowsRead()),
+                    String.valueOf(metrics.getBytesRead()),
+                    String.valueOf(metrics.getRowsWritten()),
+                    String.valueOf(metrics.getBytesWritten()),
+                    String.valueOf(metrics.getBlocksSkipped()),
+                    String.valueOf(metrics.getLockWaits()),
+                    String.format("%.3f", metrics.getP50Millis()),
+                    String.format("%.3f", metrics.getP99Millis())));
+        }
+        return rows;
+    }
+
+    // 注册MBean；没有平台MBeanServer或名字冲突（如同一进程中重复加载）时只是不导出
+    private static void register(String properties, Object bean) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(JMX_DOMAIN + ":" + properties);
+            if (!server.isRegistered(name)) {
+                server.registerMBean(bean, name);
+            }
+        } catch (Exception | LinkageError e) {
+            System.err.println("注册JMX指标失败: " + properties + ": " + e.getMessage());
+        }
+    }
+}
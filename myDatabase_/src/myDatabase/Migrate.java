@@ -0,0 +1,112 @@
+package myDatabase;
+
+import model.Session;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 表数据文件格式迁移：在文本格式与二进制格式（见RowCodec）之间转换
+ * MIGRATE TABLE 表名 TO BINARY|TEXT;
+ * MIGRATE DATABASE [数据库名] TO BINARY|TEXT;
+ * 也可以用启动参数 --migrate-storage binary|text 离线转换数据目录下的所有数据库。
+ */
+public class Migrate {
+    private static final Pattern TABLE_PATTERN =
+            Pattern.compile("(?i)^MIGRATE\\s+TABLE\\s+(\\w+)\\s+TO\\s+(BINARY|TEXT)\\s*;?\\s*$");
+    private static final Pattern DATABASE_PATTERN =
+            Pattern.compile("(?i)^MIGRATE\\s+DATABASE(?:\\s+(\\w+))?\\s+TO\\s+(BINARY|TEXT)\\s*;?\\s*$");
+
+    public static String processMigrate(String sql, Session session) {
+        try {
+            Matcher matcher = TABLE_PATTERN.matcher(sql.trim());
+            if (matcher.find()) {
+                String dbName = session.getCurrentDatabase();
+                if (dbName == null) {
+                    return "ERROR: 请先选择数据库";
+                }
+                boolean binary = matcher.group(2).equalsIgnoreCase("binary");
+                String tableName = matcher.group(1);
+                if (!Files.exists(Paths.get(SQLConstant.getTableRecordPath(dbName, tableName)))) {
+                    return "ERROR: 表 '" + tableName + "' 不存在";
+                }
+                boolean converted = migrateTable(dbName, tableName, binary);
+                return "Query OK: 表 " + tableName + (converted ? " 已转换为" : " 已经是") + formatName(binary) + "格式";
+            }
+
+            matcher = DATABASE_PATTERN.matcher(sql.trim());
+            if (matcher.find()) {
+                String dbName = matcher.group(1) != null ? matcher.group(1) : session.getCurrentDatabase();
+                if (dbName == null) {
+                    return "ERROR: 请指定数据库名或先选择数据库";
+                }
+                if (!Files.isDirectory(Paths.get(SQLConstant.getDatabasePath(dbName)))) {
+                    return "ERROR: 数据库 '" + dbName + "' 不存在";
+                }
+                boolean binary = matcher.group(2).equalsIgnoreCase("binary");
+                int converted = migrateDatabase(dbName, binary);
+                return "Query OK: 数据库 " + dbName + " 中 " + converted + " 张表已转换为" + formatName(binary) + "格式";
+            }
+            return "ERROR: 语法错误，正确格式：MIGRATE TABLE 表名 TO BINARY|TEXT 或 MIGRATE DATABASE [数据库名] TO BINARY|TEXT";
+        } catch (IOException e) {
+            return "ERROR: 转换失败 - " + e.getMessage();
+        }
+    }
+
+    /**
+     * 转换数据库中的所有表，返回实际转换的表数
+     */
+    public static int migrateDatabase(String dbName, boolean binary) throws IOException {
+        int converted = 0;
+        List<String> tables = Utils.getAllTables(SQLConstant.getDatabasePath(dbName));
+        for (String tableName : tables) {
+            if (Files.exists(Paths.get(SQLConstant.getTableRecordPath(dbName, tableName)))
+                    && migrateTable(dbName, tableName, binary)) {
+                converted++;
+            }
+        }
+        return converted;
+    }
+
+    /**
+     * 转换一张表，在表闩锁内重写文件，与并发的插入、更新互斥；已是目标格式时返回false
+     */
+    public static boolean migrateTable(String dbName, String tableName, boolean binary) throws IOException {
+        Path path = Paths.get(SQLConstant.getTableRecordPath(dbName, tableName));
+        ReentrantLock latch = LockManager.getTableLatch(dbName, tableName);
+        latch.lock();
+        try {
+            return TableFile.convert(path, binary);
+        } finally {
+            latch.unlock();
+        }
+    }
+
+    /**
+     * 离线转换数据目录下的所有数据库，把每张表的结果输出到控制台
+     */
+    public static void migrateAll(boolean binary) throws IOException {
+        for (String dbName : Utils.getAllDatabase(SQLConstant.getRootPath())) {
+            if (!Files.isDirectory(Paths.get(SQLConstant.getDatabasePath(dbName)))) {
+                continue;
+            }
+            for (String tableName : Utils.getAllTables(SQLConstant.getDatabasePath(dbName))) {
+                if (!Files.exists(Paths.get(SQLConstant.getTableRecordPath(dbName, tableName)))) {
+                    continue;
+                }
+                boolean converted = migrateTable(dbName, tableName, binary);
+                System.out.println(dbName + "." + tableName + ": " + (converted ? "已转换为" : "已经是") + formatName(binary) + "格式");
+            }
+        }
+    }
+
+    private static String formatName(boolean binary) {
+        return binary ? "二进制" : "文本";
+    }
+}
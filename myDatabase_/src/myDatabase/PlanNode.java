@@ -0,0 +1,81 @@
+package myDatabase;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 执行计划中的一个算子：规划时填入估计行数和代价（累计到该算子为止），EXPLAIN ANALYZE执行后填入实际值
+ * 实际值为-1表示该项没有测量或不适用。
+ */
+public class PlanNode {
+    final String operator;
+    final String detail;
+    final long estimatedRows;
+    final double estimatedCost;
+    final List<PlanNode> children = new ArrayList<>();
+
+    long actualRows = -1;
+    // 算子自身的耗时（纳秒），并行扫描时为各线程之和
+    long timeNanos = -1;
+    long bytesRead = -1;
+    long rowsFiltered = -1;
+    // 所有算子都在内存中执行，没有溢出到磁盘的数据
+    long spillBytes = -1;
+    long memoryPeak = -1;
+
+    public PlanNode(String operator, String detail, long estimatedRows, double estimatedCost) {
+        this.operator = operator;
+        this.detail = detail;
+        this.estimatedRows = estimatedRows;
+        this.estimatedCost = estimatedCost;
+    }
+
+    public PlanNode add(PlanNode child) {
+        children.add(child);
+        return this;
+    }
+
+    /**
+     * 逐行（或逐批）执行的过滤、投影、聚合步骤的计时，可被多个扫描线程并发调用
+     */
+    static class StepTimer {
+        final LongAdder filterNanos = new LongAdder();
+        final LongAdder outputNanos = new LongAdder();
+        final LongAdder rowsPassed = new LongAdder();
+
+        void record(long start, long filtered, long end, int passed) {
+            filterNanos.add(filtered - start);
+            outputNanos.add(end - filtered);
+            rowsPassed.add(passed);
+        }
+    }
+
+    /**
+     * 估计一组结果行占用的内存（字节），按每个字符串约40字节的对象开销加字符数据估算
+     */
+    static long estimateRowBytes(List<List<String>> rows) {
+        long bytes = 16;
+        for (List<String> row : rows) {
+            bytes += 24;
+            for (String value : row) {
+                bytes += value == null ? 8 : 48 + value.length();
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * 估计一组字段数组占用的内存（字节）
+     */
+    static long estimateArrayBytes(List<String[]> rows) {
+        long bytes = 16;
+        for (String[] row : rows) {
+            bytes += 16;
+            for (String value : row) {
+                bytes += value == null ? 8 : 48 + value.length();
+            }
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,224 @@
+package myDatabase;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * 基于统计信息（见TableStatistics，由ANALYZE收集）的查询规划
+ * 单表查询：按估计的选择率排列WHERE条件，决定是否用区块摘要/布隆过滤器跳过区块、是否并行扫描。
+ * 两表JOIN：按两表的估计行数在嵌套循环和哈希连接之间选择，哈希表建在较小的表上。
+ * 没有统计信息的表按数据文件大小估计行数，条件按默认选择率估计。
+ */
+public class QueryPlanner {
+    // 没有统计信息时按每行的平均字节数估计行数
+    private static final int DEFAULT_ROW_BYTES = 32;
+    // 估计行数少于此值的表顺序扫描，线程调度的开销比扫描本身大
+    private static final long MIN_PARALLEL_ROWS = 20_000;
+    // 估计选择率高于此值时几乎每个区块都有命中行，不再检查区块摘要和读取布隆过滤器
+    private static final double MAX_PRUNING_SELECTIVITY = 0.5;
+    // 两表估计行数之积不超过此值时直接嵌套循环，省去建哈希表
+    private static final long MAX_NESTED_LOOP_PAIRS = 10_000;
+
+    // 代价模型：顺序读取并解码一行的代价记为1
+    private static final double CONDITION_COST = 0.1;
+    private static final double OUTPUT_ROW_COST = 0.1;
+    private static final double HASH_BUILD_ROW_COST = 1.5;
+    private static final double HASH_PROBE_ROW_COST = 1.0;
+    private static final double NESTED_LOOP_PAIR_COST = 0.1;
+
+    /**
+     * 单表扫描计划
+     */
+    public static class ScanPlan {
+        // 按选择率排好序的WHERE条件
+        public final VectorPredicate predicate;
+        // 表的统计信息，没有时为null
+        public final TableStatistics stats;
+        public final long estimatedRows;
+        public final double selectivity;
+        // 是否按区块摘要和布隆过滤器跳过区块
+        public final boolean pruneBlocks;
+        public final int parallelism;
+
+        ScanPlan(VectorPredicate predicate, TableStatistics stats, long estimatedRows, double selectivity,
+                 boolean pruneBlocks, int parallelism) {
+            this.predicate = predicate;
+            this.stats = stats;
+            this.estimatedRows = estimatedRows;
+            this.selectivity = selectivity;
+            this.pruneBlocks = pruneBlocks;
+            this.parallelism = parallelism;
+        }
+
+        /**
+         * 估计的结果行数
+         */
+        public long estimatedResultRows() {
+            return Math.round(estimatedRows * selectivity);
+        }
+
+        public double scanCost() {
+            return estimatedRows;
+        }
+
+        /**
+         * 扫描加上逐行判断WHERE条件的代价
+         */
+        public double filterCost() {
+            return scanCost() + estimatedRows * predicate.size() * CONDITION_COST;
+        }
+
+        /**
+         * 再加上输出结果行的代价
+         */
+        public double outputCost(long outputRows) {
+            return filterCost() + outputRows * OUTPUT_ROW_COST;
+        }
+
+        /**
+         * 计划的一行摘要，用于慢查询日志
+         */
+        public String summary(String tableName) {
+            return String.format("scan %s rows=%d sel=%.3f prune=%s parallel=%d", tableName, estimatedRows,
+                    selectivity, pruneBlocks ? "on" : "off", parallelism);
+        }
+
+        /**
+         * 按计划设置扫描器
+         */
+        public void apply(TableScanner scanner) {
+            scanner.setBlockFilter(pruneBlocks ? predicate : null);
+        }
+    }
+
+    public enum JoinStrategy {
+        NESTED_LOOP, HASH
+    }
+
+    /**
+     * 两表等值连接的计划
+     */
+    public static class JoinPlan {
+        public final JoinStrategy strategy;
+        // 哈希连接时是否在左表上建哈希表
+        public final boolean buildLeft;
+        public final long leftRows;
+        public final long rightRows;
+        public final long estimatedRows;
+
+        JoinPlan(JoinStrategy strategy, boolean buildLeft, long leftRows, long rightRows, long estimatedRows) {
+            this.strategy = strategy;
+            this.buildLeft = buildLeft;
+            this.leftRows = leftRows;
+            this.rightRows = rightRows;
+            this.estimatedRows = estimatedRows;
+        }
+
+        /**
+         * 读入两表并连接的总代价
+         */
+        public double cost() {
+            double cost = leftRows + rightRows + estimatedRows * OUTPUT_ROW_COST;
+            if (strategy == JoinStrategy.HASH) {
+                long build = buildLeft ? leftRows : rightRows;
+                long probe = buildLeft ? rightRows : leftRows;
+                return cost + build * HASH_BUILD_ROW_COST + probe * HASH_PROBE_ROW_COST;
+            }
+            return cost + (double) leftRows * rightRows * NESTED_LOOP_PAIR_COST;
+        }
+
+        /**
+         * 计划的一行摘要，用于慢查询日志
+         */
+        public String summary(String leftTable, String rightTable) {
+            String join = strategy == JoinStrategy.HASH
+                    ? "hash join build=" + (buildLeft ? leftTable : rightTable) : "nested loop join";
+            return String.format("%s %s(%d) x %s(%d) rows=%d", join, leftTable, leftRows, rightTable, rightRows,
+                    estimatedRows);
+        }
+    }
+
+    /**
+     * 规划单表扫描
+     * @param parallelism 会话设置的并行度
+     */
+    public static ScanPlan planScan(String dbName, String tableName, TableScanner scanner, String whereClause,
+                                    int parallelism) {
+        EngineEvents.PlanEvent event = new EngineEvents.PlanEvent();
+        event.begin();
+        String[] headers = scanner.getHeaders();
+        TableStatistics stats = TableStatistics.get(dbName, tableName);
+        VectorPredicate predicate = VectorPredicate.compile(whereClause, headers).orderedBy(stats, headers);
+        long rows = stats != null ? stats.getRowCount() : scanner.getDataBytes() / DEFAULT_ROW_BYTES;
+        double selectivity = predicate.selectivity(stats, headers);
+        // 没有统计信息时无法判断，总是尝试跳过区块
+        boolean pruneBlocks = !predicate.isEmpty() && (stats == null || selectivity <= MAX_PRUNING_SELECTIVITY);
+        int scanParallelism = rows < MIN_PARALLEL_ROWS ? 1 : parallelism;
+        ScanPlan plan = new ScanPlan(predicate, stats, rows, selectivity, pruneBlocks, scanParallelism);
+        event.end();
+        if (event.shouldCommit()) {
+            event.table = dbName + "." + tableName;
+            event.plan = plan.summary(tableName);
+            event.commit();
+        }
+        return plan;
+    }
+
+    /**
+     * 规划两表等值连接 left.leftColumn = right.rightColumn
+     */
+    public static JoinPlan planJoin(String dbName, String leftTable, String leftColumn,
+                                    String rightTable, String rightColumn) {
+        EngineEvents.PlanEvent event = new EngineEvents.PlanEvent();
+        event.begin();
+        TableStatistics leftStats = TableStatistics.get(dbName, leftTable);
+        TableStatistics rightStats = TableStatistics.get(dbName, rightTable);
+        long leftRows = estimateRows(dbName, leftTable, leftStats);
+        long rightRows = estimateRows(dbName, rightTable, rightStats);
+
+        // 等值连接的结果行数约为 |L|·|R| / max(NDV(L.a), NDV(R.b))
+        long distinct = Math.max(distinct(leftStats, leftColumn), distinct(rightStats, rightColumn));
+        long estimated = distinct > 0 ? Math.round((double) leftRows * rightRows / distinct)
+                : Math.max(leftRows, rightRows);
+
+        JoinStrategy strategy = (double) leftRows * rightRows <= MAX_NESTED_LOOP_PAIRS
+                ? JoinStrategy.NESTED_LOOP : JoinStrategy.HASH;
+        JoinPlan plan = new JoinPlan(strategy, leftRows < rightRows, leftRows, rightRows, estimated);
+        event.end();
+        if (event.shouldCommit()) {
+            event.table = dbName + "." + leftTable + "," + rightTable;
+            event.plan = plan.summary(leftTable, rightTable);
+            event.commit();
+        }
+        return plan;
+    }
+
+    /**
+     * UPDATE/DELETE整表改写的代价：读两遍（加锁前的快照和闩锁内的重读）、逐行判断条件、写回整表
+     */
+    public static double rewriteCost(long rows, int conditionCount) {
+        return rows * 3 + rows * conditionCount * CONDITION_COST;
+    }
+
+    /**
+     * 表的估计行数：有统计信息时用统计的行数，否则按数据文件大小估计
+     */
+    public static long estimateRows(String dbName, String tableName, TableStatistics stats) {
+        if (stats != null) {
+            return stats.getRowCount();
+        }
+        Path path = Paths.get(SQLConstant.getTableRecordPath(dbName, tableName));
+        try {
+            return Files.exists(path) ? Files.size(path) / DEFAULT_ROW_BYTES : 0;
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static long distinct(TableStatistics stats, String column) {
+        TableStatistics.ColumnStatistics columnStats = stats == null ? null : stats.column(column);
+        return columnStats == null ? 0 : columnStats.getDistinct();
+    }
+}
@@ -0,0 +1,112 @@
+package myDatabase;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 结构化的语句执行结果
+ * SELECT返回表头、列类型与数据行；其他语句只有提示信息和受影响行数。
+ * 供不需要表格文本的调用方（网络服务、驱动等）直接使用，避免格式化后再解析。
+ */
+public class QueryResult {
+    private static final Pattern AFFECTED_ROWS = Pattern.compile("(\\d+)\\s*(?:row|条)");
+
+    List<String> headers = new ArrayList<>();
+    List<ColumnType> columnTypes = new ArrayList<>();
+    List<List<String>> rows = new ArrayList<>();
+    private String message;
+    private boolean error;
+    private long updateCount = -1;
+
+    /**
+     * 由非查询语句的返回信息构造结果，从信息中提取受影响行数
+     * @param defaultCount 信息中没有行数时使用的值
+     */
+    public static QueryResult fromMessage(String message, long defaultCount) {
+        QueryResult result = new QueryResult();
+        result.message = message;
+        result.error = message == null || message.startsWith("ERROR");
+        if (!result.error) {
+            Matcher matcher = AFFECTED_ROWS.matcher(message);
+            result.updateCount = matcher.find() ? Long.parseLong(matcher.group(1)) : defaultCount;
+        }
+        return result;
+    }
+
+    /**
+     * 由已有的表头、列类型和数据行构造查询结果，列表直接引用不复制
+     */
+    public static QueryResult resultSet(List<String> headers, List<ColumnType> columnTypes, List<List<String>> rows) {
+        QueryResult result = new QueryResult();
+        result.headers = headers;
+        result.columnTypes = columnTypes;
+        result.rows = rows;
+        return result;
+    }
+
+    /**
+     * 由全部是文本列的表头和数据行构造查询结果，用于SHOW、DESCRIBE等系统信息
+     */
+    static QueryResult textResultSet(List<String> headers, List<List<String>> rows) {
+        List<ColumnType> columnTypes = new ArrayList<>();
+        for (int i = 0; i < headers.size(); i++) {
+            columnTypes.add(ColumnType.VARCHAR);
+        }
+        return resultSet(headers, columnTypes, rows);
+    }
+
+    public static QueryResult error(String message) {
+        QueryResult result = new QueryResult();
+        result.message = message;
+        result.error = true;
+        return result;
+    }
+
+    /**
+     * 是否为带数据行的查询结果
+     */
+    public boolean isResultSet() {
+        return !error && updateCount < 0;
+    }
+
+    public boolean isError() {
+        return error;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    // 带数据行的结果附带的提示信息（如EXPLAIN ANALYZE的执行时间）
+    void setMessage(String message) {
+        this.message = message;
+    }
+
+    public long getUpdateCount() {
+        return updateCount;
+    }
+
+    public List<String> getHeaders() {
+        return headers;
+    }
+
+    public List<ColumnType> getColumnTypes() {
+        return columnTypes;
+    }
+
+    public List<List<String>> getRows() {
+        return rows;
+    }
+
+    /**
+     * 按列类型取出某个值，"null"返回null
+     */
+    public Object getValue(int row, int column) {
+        List<String> values = rows.get(row);
+        String text = column < values.size() ? values.get(column) : null;
+        ColumnType type = column < columnTypes.size() ? columnTypes.get(column) : ColumnType.VARCHAR;
+        return type.decode(text);
+    }
+}
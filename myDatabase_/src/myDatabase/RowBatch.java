@@ -0,0 +1,213 @@
+package myDatabase;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 向量化执行使用的行批
+ * 一批最多CAPACITY行，按列只记录每个字段在扫描缓冲区中的起止位置和编码标记，不预先创建字符串：
+ * INTEGER/DOUBLE/BOOL列在第一次用到时直接从字节解码成基本类型向量（见ColumnVector），
+ * 其他列和最终输出的字段在用到时才转换成字符串。文本格式与二进制格式（见RowCodec）的表都可以装入。
+ * 选择向量记录当前仍满足条件的行号，过滤只收缩选择向量而不移动数据。
+ */
+public class RowBatch {
+    public static final int CAPACITY = 1024;
+    private static final byte SEPARATOR = (byte) SQLConstant.getFieldSeparator().charAt(0);
+
+    private final ColumnType[] types;
+    private final boolean binary;
+    // codes[列][行]：RowCodec中的编码标记，文本格式为CODE_TEXT，行缺少该字段时为CODE_MISSING
+    private final byte[][] codes;
+    // starts[列][行]、ends[列][行]：字段（二进制格式为字段值）在data中的位置
+    private final int[][] starts;
+    private final int[][] ends;
+    // 已转换的字符串，按需填充
+    private final String[][] texts;
+    private final boolean[] textsUsed;
+    // 基本类型列的向量，本批已解码时decoded为true
+    private final ColumnVector[] vectors;
+    private final boolean[] decoded;
+    private final int[] selection = new int[CAPACITY];
+    // 本批各行所在的扫描缓冲区
+    private byte[] data;
+    private int size;
+    private int selectedCount;
+
+    public RowBatch(ColumnType[] types, boolean binary) {
+        int columnCount = types.length;
+        this.types = types;
+        this.binary = binary;
+        codes = new byte[columnCount][CAPACITY];
+        starts = new int[columnCount][CAPACITY];
+        ends = new int[columnCount][CAPACITY];
+        texts = new String[columnCount][];
+        textsUsed = new boolean[columnCount];
+        vectors = new ColumnVector[columnCount];
+        decoded = new boolean[columnCount];
+        for (int c = 0; c < columnCount; c++) {
+            vectors[c] = ColumnVector.create(types[c]);
+        }
+    }
+
+    /**
+     * 追加一行：bytes中[start, end)是一行数据（不含换行符，二进制格式已反转义）
+     * 同一批的行必须来自同一个数组，调用前应确认批未满
+     */
+    public void addRow(byte[] bytes, int start, int end) {
+        data = bytes;
+        int col = binary ? addBinaryFields(bytes, start) : addTextFields(bytes, start, end);
+        for (; col < types.length; col++) {
+            codes[col][size] = RowCodec.CODE_MISSING;
+        }
+        selection[size] = size;
+        size++;
+        selectedCount = size;
+    }
+
+    // 按分隔符记录各字段的位置，返回记录到的字段数
+    private int addTextFields(byte[] bytes, int start, int end) {
+        int columnCount = types.length;
+        int col = 0;
+        int fieldStart = start;
+        for (int i = start; i <= end && col < columnCount; i++) {
+            if (i == end || bytes[i] == SEPARATOR) {
+                codes[col][size] = RowCodec.CODE_TEXT;
+                starts[col][size] = fieldStart;
+                ends[col][size] = i;
+                col++;
+                fieldStart = i + 1;
+            }
+        }
+        return col;
+    }
+
+    // 按编码标记逐个跳过字段值，记录各字段值的位置，返回记录到的字段数
+    private int addBinaryFields(byte[] bytes, int start) {
+        int fieldCount = 0;
+        int position = start;
+        int shift = 0;
+        byte b;
+        do {
+            b = bytes[position++];
+            fieldCount |= (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        int codeStart = position;
+        position += (fieldCount + 3) / 4;
+        int count = Math.min(fieldCount, types.length);
+        for (int col = 0; col < count; col++) {
+            int code = RowCodec.fieldCode(bytes, codeStart, col);
+            int valueEnd = RowCodec.valueEnd(bytes, position, code, types[col]);
+            codes[col][size] = (byte) code;
+            starts[col][size] = position;
+            ends[col][size] = valueEnd;
+            position = valueEnd;
+        }
+        return count;
+    }
+
+    public boolean isFull() {
+        return size == CAPACITY;
+    }
+
+    public void reset() {
+        for (int c = 0; c < types.length; c++) {
+            if (textsUsed[c]) {
+                Arrays.fill(texts[c], 0, size, null);
+                textsUsed[c] = false;
+            }
+            decoded[c] = false;
+        }
+        size = 0;
+        selectedCount = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int columnCount() {
+        return types.length;
+    }
+
+    public ColumnType columnType(int col) {
+        return types[col];
+    }
+
+    /**
+     * 取得字段的字符串值，行缺少该字段时返回null
+     */
+    public String text(int col, int row) {
+        byte code = codes[col][row];
+        if (code == RowCodec.CODE_MISSING) {
+            return null;
+        }
+        String[] column = texts[col];
+        if (column == null) {
+            column = texts[col] = new String[CAPACITY];
+        }
+        textsUsed[col] = true;
+        String value = column[row];
+        if (value == null) {
+            int start = starts[col][row];
+            value = code == RowCodec.CODE_TEXT
+                    ? new String(data, start, ends[col][row] - start, StandardCharsets.UTF_8)
+                    : RowCodec.valueText(data, start, ends[col][row], code, types[col]);
+            column[row] = value;
+        }
+        return value;
+    }
+
+    /**
+     * 取得基本类型列（INTEGER/DOUBLE/BOOL）的向量，第一次调用时解码整批；其他类型返回null
+     */
+    public ColumnVector vector(int col) {
+        ColumnVector vector = vectors[col];
+        if (vector != null && !decoded[col]) {
+            vector.decode(data, codes[col], starts[col], ends[col], size);
+            decoded[col] = true;
+        }
+        return vector;
+    }
+
+    /**
+     * 选择向量，前getSelectedCount()个元素是被选中的行号（升序）
+     */
+    public int[] selection() {
+        return selection;
+    }
+
+    public int getSelectedCount() {
+        return selectedCount;
+    }
+
+    public void setSelectedCount(int selectedCount) {
+        this.selectedCount = selectedCount;
+    }
+
+    /**
+     * 清空选择向量，整批都不满足条件时使用
+     */
+    public void selectNone() {
+        selectedCount = 0;
+    }
+
+    /**
+     * 按列号投影被选中的行，超出列数的列和缺少的字段输出为 NULL
+     */
+    public List<List<String>> project(int[] projection) {
+        List<List<String>> rows = new ArrayList<>(selectedCount);
+        for (int k = 0; k < selectedCount; k++) {
+            int row = selection[k];
+            List<String> values = new ArrayList<>(projection.length);
+            for (int col : projection) {
+                String value = col < types.length ? text(col, row) : null;
+                values.add(value != null ? value : "NULL");
+            }
+            rows.add(values);
+        }
+        return rows;
+    }
+}
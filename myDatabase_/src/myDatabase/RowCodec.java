@@ -0,0 +1,305 @@
+package myDatabase;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+
+/**
+ * 二进制表文件中一行记录的编码
+ * 记录格式：字段数(varint) + 每字段2位的编码标记 + 各字段的值，值按列类型编码：
+ * INTEGER -> zigzag varint，DOUBLE -> 8字节IEEE754，BOOL -> 1字节，DATE -> 纪元日的zigzag varint，
+ * 其他类型 -> 长度(varint) + UTF-8。
+ * 只有解码后能还原出完全相同文本的值才按类型编码，其他值（如INTEGER列中的 "6.0"）原样保存为文本，
+ * 因此文本格式与二进制格式之间可以无损转换。
+ * 编码后的记录中 \n、\r 和转义字节本身都被转义，记录之间仍用换行分隔，表文件仍可按行切分。
+ */
+public class RowCodec {
+    // 字段编码标记
+    public static final byte CODE_TYPED = 0;
+    public static final byte CODE_NULL = 1;
+    // 按文本保存的值
+    public static final byte CODE_RAW = 2;
+    // DOUBLE列中写成整数形式的值（如 "5"），按zigzag varint保存
+    public static final byte CODE_INTEGRAL = 3;
+    // 以下两个标记不出现在文件中，供RowBatch标记文本格式的字段和缺失的字段
+    public static final byte CODE_TEXT = 4;
+    public static final byte CODE_MISSING = 5;
+
+    private static final byte ESCAPE = 0x1B;
+    private static final int ESCAPE_MASK = 0x40;
+    // 能精确表示为double的整数范围
+    private static final long MAX_EXACT_LONG = 1L << 53;
+    // 与ColumnVector一致，只有不超过18位的整数按类型保存
+    private static final long MAX_TYPED_INTEGER = 1_000_000_000_000_000_000L;
+
+    /**
+     * 编码一行记录并追加到out（已转义，不含换行符）
+     */
+    public static void encode(String[] values, ColumnType[] types, ByteArrayOutputStream out) {
+        ByteArrayOutputStream record = new ByteArrayOutputStream(64);
+        writeVarLong(record, values.length);
+        byte[] codes = new byte[(values.length + 3) / 4];
+        ByteArrayOutputStream body = new ByteArrayOutputStream(64);
+        for (int i = 0; i < values.length; i++) {
+            ColumnType type = i < types.length ? types[i] : ColumnType.VARCHAR;
+            int code = encodeValue(values[i], type, body);
+            codes[i >>> 2] |= (byte) (code << ((i & 3) * 2));
+        }
+        record.write(codes, 0, codes.length);
+        record.writeBytes(body.toByteArray());
+
+        byte[] bytes = record.toByteArray();
+        for (byte b : bytes) {
+            if (b == '\n' || b == '\r' || b == ESCAPE) {
+                out.write(ESCAPE);
+                out.write(b ^ ESCAPE_MASK);
+            } else {
+                out.write(b);
+            }
+        }
+    }
+
+    private static int encodeValue(String value, ColumnType type, ByteArrayOutputStream out) {
+        if (value == null || value.equals("null")) {
+            return CODE_NULL;
+        }
+        switch (type) {
+            case INTEGER: {
+                Long number = parseCanonicalLong(value);
+                if (number != null && Math.abs(number) < MAX_TYPED_INTEGER) {
+                    writeVarLong(out, zigzag(number));
+                    return CODE_TYPED;
+                }
+                break;
+            }
+            case DOUBLE: {
+                Long integral = parseCanonicalLong(value);
+                if (integral != null && Math.abs(integral) <= MAX_EXACT_LONG) {
+                    writeVarLong(out, zigzag(integral));
+                    return CODE_INTEGRAL;
+                }
+                // 只接受普通小数写法，"1.0E10"、"NaN" 在查询中按文本比较，不能当作数值保存
+                try {
+                    double number = Double.parseDouble(value);
+                    if (VectorPredicate.isNumeric(value) && Double.toString(number).equals(value)) {
+                        long bits = Double.doubleToRawLongBits(number);
+                        for (int shift = 56; shift >= 0; shift -= 8) {
+                            out.write((int) (bits >>> shift));
+                        }
+                        return CODE_TYPED;
+                    }
+                } catch (NumberFormatException ignored) {
+                }
+                break;
+            }
+            case BOOL:
+                if (value.equals("true") || value.equals("false")) {
+                    out.write(value.equals("true") ? 1 : 0);
+                    return CODE_TYPED;
+                }
+                break;
+            case DATE:
+                if (value.length() == 10) {
+                    try {
+                        LocalDate date = LocalDate.parse(value);
+                        if (date.toString().equals(value)) {
+                            writeVarLong(out, zigzag(date.toEpochDay()));
+                            return CODE_TYPED;
+                        }
+                    } catch (RuntimeException ignored) {
+                    }
+                }
+                break;
+            default:
+                writeText(out, value);
+                return CODE_TYPED;
+        }
+        writeText(out, value);
+        return CODE_RAW;
+    }
+
+    /**
+     * 解码一行记录，bytes中[start, end)是已经反转义的记录
+     * @return 各字段的文本，与文本格式的表文件中保存的值相同
+     */
+    public static String[] decode(byte[] bytes, int start, int end, ColumnType[] types) {
+        int fieldCount = (int) readVarLong(bytes, start);
+        int codeStart = skipVarLong(bytes, start);
+        int position = codeStart + (fieldCount + 3) / 4;
+        String[] values = new String[fieldCount];
+        for (int i = 0; i < fieldCount; i++) {
+            int code = fieldCode(bytes, codeStart, i);
+            ColumnType type = i < types.length ? types[i] : ColumnType.VARCHAR;
+            int valueEnd = valueEnd(bytes, position, code, type);
+            values[i] = valueText(bytes, position, valueEnd, code, type);
+            position = valueEnd;
+        }
+        return values;
+    }
+
+    /**
+     * 取得第index个字段的编码标记
+     */
+    public static int fieldCode(byte[] bytes, int codeStart, int index) {
+        return (bytes[codeStart + (index >>> 2)] >>> ((index & 3) * 2)) & 3;
+    }
+
+    /**
+     * 计算从position开始的字段值的结束位置
+     */
+    public static int valueEnd(byte[] bytes, int position, int code, ColumnType type) {
+        switch (code) {
+            case CODE_NULL:
+                return position;
+            case CODE_INTEGRAL:
+                return skipVarLong(bytes, position);
+            case CODE_RAW:
+                return textEnd(bytes, position);
+            default:
+                switch (type) {
+                    case INTEGER:
+                    case DATE:
+                        return skipVarLong(bytes, position);
+                    case DOUBLE:
+                        return position + 8;
+                    case BOOL:
+                        return position + 1;
+                    default:
+                        return textEnd(bytes, position);
+                }
+        }
+    }
+
+    /**
+     * 把[start, end)中的字段值还原成文本，NULL还原为 "null"
+     */
+    public static String valueText(byte[] bytes, int start, int end, int code, ColumnType type) {
+        switch (code) {
+            case CODE_NULL:
+                return "null";
+            case CODE_INTEGRAL:
+                return Long.toString(readZigzag(bytes, start));
+            case CODE_RAW:
+                return readText(bytes, start);
+            default:
+                switch (type) {
+                    case INTEGER:
+                        return Long.toString(readZigzag(bytes, start));
+                    case DOUBLE:
+                        return Double.toString(readDouble(bytes, start));
+                    case BOOL:
+                        return bytes[start] != 0 ? "true" : "false";
+                    case DATE:
+                        return LocalDate.ofEpochDay(readZigzag(bytes, start)).toString();
+                    default:
+                        return readText(bytes, start);
+                }
+        }
+    }
+
+    /**
+     * 就地反转义[start, end)中的记录，返回反转义后的结束位置
+     */
+    public static int unescape(byte[] bytes, int start, int end) {
+        int out = start;
+        for (int i = start; i < end; i++) {
+            byte b = bytes[i];
+            if (b == ESCAPE && i + 1 < end) {
+                b = (byte) (bytes[++i] ^ ESCAPE_MASK);
+            }
+            bytes[out++] = b;
+        }
+        return out;
+    }
+
+    public static long readZigzag(byte[] bytes, int position) {
+        long value = readVarLong(bytes, position);
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    public static double readDouble(byte[] bytes, int position) {
+        long bits = 0;
+        for (int i = 0; i < 8; i++) {
+            bits = (bits << 8) | (bytes[position + i] & 0xFF);
+        }
+        return Double.longBitsToDouble(bits);
+    }
+
+    /**
+     * 文本值中UTF-8字节的起始位置（跳过长度前缀）
+     */
+    public static int textStart(byte[] bytes, int position) {
+        return skipVarLong(bytes, position);
+    }
+
+    private static String readText(byte[] bytes, int position) {
+        int length = (int) readVarLong(bytes, position);
+        return new String(bytes, skipVarLong(bytes, position), length, StandardCharsets.UTF_8);
+    }
+
+    private static int textEnd(byte[] bytes, int position) {
+        int length = (int) readVarLong(bytes, position);
+        return skipVarLong(bytes, position) + length;
+    }
+
+    private static void writeText(ByteArrayOutputStream out, String value) {
+        byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(out, utf8.length);
+        out.write(utf8, 0, utf8.length);
+    }
+
+    // 只接受Long.toString能原样还原的写法（无前导零、无正号、非 "-0"）
+    private static Long parseCanonicalLong(String value) {
+        int length = value.length();
+        if (length == 0 || length > 20) {
+            return null;
+        }
+        int i = value.charAt(0) == '-' ? 1 : 0;
+        if (i == length) {
+            return null;
+        }
+        for (int j = i; j < length; j++) {
+            char c = value.charAt(j);
+            if (c < '0' || c > '9') {
+                return null;
+            }
+        }
+        try {
+            long number = Long.parseLong(value);
+            return Long.toString(number).equals(value) ? number : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static void writeVarLong(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static long readVarLong(byte[] bytes, int position) {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = bytes[position++];
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return value;
+    }
+
+    private static int skipVarLong(byte[] bytes, int position) {
+        while (bytes[position++] < 0) {
+            // 最高位为1表示后面还有字节
+        }
+        return position;
+    }
+}
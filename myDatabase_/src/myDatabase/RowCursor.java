@@ -0,0 +1,438 @@
+package myDatabase;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+/**
+ * 查询结果的游标：按行号分段取出结果行，调用方（图形界面的结果表格等）只取需要显示的行
+ * 单表、没有聚合和ORDER BY的查询由后台线程顺序扫描表文件，只记下满足条件的行在文件中的位置（每行12字节），
+ * 取行时再按位置读取和解码；扫描完成前已找到的行就可以取出。其他查询先完整执行，从内存中的结果分段取出。
+ * 游标打开期间一直持有表文件，表被改写（先写临时文件再改名替换）后游标看到的仍是打开时的数据。使用完毕必须close。
+ * 只向前读取的调用方（DECLARE/FETCH、iterator）用release释放已读过的行，扫描线程只领先读取位置一个窗口，内存占用与结果大小无关。
+ */
+public abstract class RowCursor implements AutoCloseable {
+    final List<String> headers;
+    final List<ColumnType> columnTypes;
+
+    RowCursor(List<String> headers, List<ColumnType> columnTypes) {
+        this.headers = headers;
+        this.columnTypes = columnTypes;
+    }
+
+    public List<String> getHeaders() {
+        return headers;
+    }
+
+    public List<ColumnType> getColumnTypes() {
+        return columnTypes;
+    }
+
+    /**
+     * 目前已找到的结果行数，isComplete()之前还会增长
+     */
+    public abstract int getRowCount();
+
+    /**
+     * 结果行数是否已经确定
+     */
+    public abstract boolean isComplete();
+
+    /**
+     * 取出第from行起最多count行（行号从0开始），需要的行还没有找到时等待；结果不足时返回的行数少于count
+     */
+    public abstract List<List<String>> fetch(int from, int count) throws IOException;
+
+    /**
+     * 等待结果行数确定后返回
+     */
+    public int awaitRowCount() throws IOException {
+        fetch(Integer.MAX_VALUE - 1, 0);
+        return getRowCount();
+    }
+
+    /**
+     * 声明第before行之前的行不再读取，游标可以释放它们占用的内存，之后不能再fetch这些行
+     * 调用后游标进入只向前读取的模式，后台扫描不再领先读取位置太多
+     */
+    public abstract void release(int before);
+
+    /**
+     * 按行遍历结果，每次从游标取fetchSize行，取下一批时释放上一批；读取失败时抛出UncheckedIOException
+     */
+    public Iterator<List<String>> iterator(int fetchSize) {
+        if (fetchSize <= 0) {
+            throw new IllegalArgumentException("fetch size必须大于0");
+        }
+        return new Iterator<List<String>>() {
+            private List<List<String>> batch = new ArrayList<>();
+            private int index;
+            // 下一批的起始行号
+            private int next;
+            private boolean exhausted;
+
+            @Override
+            public boolean hasNext() {
+                if (index < batch.size()) {
+                    return true;
+                }
+                if (exhausted) {
+                    return false;
+                }
+                release(next);
+                try {
+                    batch = fetch(next, fetchSize);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                index = 0;
+                next += batch.size();
+                // 不足一批说明结果已经取完
+                exhausted = batch.size() < fetchSize;
+                return !batch.isEmpty();
+            }
+
+            @Override
+            public List<String> next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return batch.get(index++);
+            }
+        };
+    }
+
+    @Override
+    public abstract void close();
+
+    static RowCursor of(QueryResult result) {
+        return new Materialized(result);
+    }
+
+    // 已完整执行的结果
+    private static class Materialized extends RowCursor {
+        private volatile List<List<String>> rows;
+
+        Materialized(QueryResult result) {
+            super(result.headers, result.columnTypes);
+            this.rows = result.rows;
+        }
+
+        @Override
+        public int getRowCount() {
+            return rows.size();
+        }
+
+        @Override
+        public boolean isComplete() {
+            return true;
+        }
+
+        @Override
+        public List<List<String>> fetch(int from, int count) throws IOException {
+            List<List<String>> current = rows;
+            if (from >= current.size() || count <= 0) {
+                return new ArrayList<>();
+            }
+            return new ArrayList<>(current.subList(from, (int) Math.min(current.size(), (long) from + count)));
+        }
+
+        @Override
+        public void release(int before) {
+            List<List<String>> current = rows;
+            try {
+                for (int i = Math.min(before, current.size()) - 1; i >= 0 && current.get(i) != null; i--) {
+                    current.set(i, null);
+                }
+            } catch (UnsupportedOperationException e) {
+                // 不可修改的结果保持原样
+            }
+        }
+
+        @Override
+        public void close() {
+            rows = new ArrayList<>();
+        }
+    }
+
+    /**
+     * 按行位置索引取行的单表游标
+     */
+    static class TableScan extends RowCursor {
+        // 建立索引时每次读入的字节数
+        private static final int CHUNK_BYTES = 1 << 20;
+        // 一次取行时连续读取的最大字节数，满足条件的行稀疏时改为逐行读取
+        private static final long MAX_SPAN_BYTES = 4L << 20;
+        // 只向前读取时扫描线程最多领先已释放位置的行数
+        private static final int WINDOW_ROWS = 64 * 1024;
+
+        private final FileChannel channel;
+        private final boolean binary;
+        private final ColumnType[] tableTypes;
+        private final int[] projection;
+        // WHERE条件，没有时为null
+        private final Predicate<String[]> filter;
+        private final long dataStart;
+        private final long dataEnd;
+        private final Pattern splitter = Pattern.compile(Pattern.quote(SQLConstant.getFieldSeparator()));
+
+        // 满足条件的行在文件中的起始位置和字节数，由扫描线程追加；positions[0]是第base行
+        private long[] positions = new long[1024];
+        private int[] lengths = new int[1024];
+        private int base;
+        private int count;
+        // 只向前读取时：已释放到的行号，以及读取方正在等待的行号上界
+        private boolean forwardOnly;
+        private int released;
+        private long wanted;
+        private boolean complete;
+        private IOException failure;
+        private volatile boolean closed;
+
+        TableScan(TableScanner scanner, List<String> headers, List<ColumnType> columnTypes, int[] projection,
+                  Predicate<String[]> filter) throws IOException {
+            super(headers, columnTypes);
+            this.channel = FileChannel.open(scanner.getPath(), StandardOpenOption.READ);
+            this.binary = scanner.isBinary();
+            this.tableTypes = scanner.getColumnTypes();
+            this.projection = projection;
+            this.filter = filter;
+            this.dataStart = scanner.getDataStart();
+            this.dataEnd = scanner.getDataEnd();
+            Thread.ofVirtual().name("row-cursor").start(this::index);
+        }
+
+        @Override
+        public synchronized int getRowCount() {
+            return count;
+        }
+
+        @Override
+        public synchronized boolean isComplete() {
+            return complete;
+        }
+
+        @Override
+        public List<List<String>> fetch(int from, int count) throws IOException {
+            long[] rowPositions;
+            int[] rowLengths;
+            synchronized (this) {
+                if (forwardOnly && (long) from + count > wanted) {
+                    wanted = (long) from + count;
+                    notifyAll();
+                }
+                try {
+                    while (this.count < (long) from + count && !complete) {
+                        wait();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("等待游标结果时被中断");
+                }
+                if (failure != null) {
+                    throw failure;
+                }
+                if (closed) {
+                    throw new IOException("游标已关闭");
+                }
+                int to = (int) Math.min(this.count, (long) from + count);
+                if (from >= to) {
+                    return new ArrayList<>();
+                }
+                if (from < released) {
+                    throw new IOException("第 " + from + " 行已被释放");
+                }
+                rowPositions = Arrays.copyOfRange(positions, from - base, to - base);
+                rowLengths = Arrays.copyOfRange(lengths, from - base, to - base);
+            }
+
+            List<List<String>> rows = new ArrayList<>(rowPositions.length);
+            int last = rowPositions.length - 1;
+            long spanStart = rowPositions[0];
+            long spanEnd = rowPositions[last] + rowLengths[last];
+            if (spanEnd - spanStart <= MAX_SPAN_BYTES) {
+                byte[] span = read(spanStart, (int) (spanEnd - spanStart));
+                for (int i = 0; i <= last; i++) {
+                    int start = (int) (rowPositions[i] - spanStart);
+                    rows.add(project(decode(span, start, start + rowLengths[i])));
+                }
+            } else {
+                for (int i = 0; i <= last; i++) {
+                    byte[] line = read(rowPositions[i], rowLengths[i]);
+                    rows.add(project(decode(line, 0, line.length)));
+                }
+            }
+            return rows;
+        }
+
+        @Override
+        public synchronized void release(int before) {
+            forwardOnly = true;
+            released = Math.max(released, Math.min(before, count));
+            // 已释放的部分超过数组一半时才整体前移，每行摊销的复制量为常数
+            if (released - base > positions.length / 2) {
+                compact();
+            }
+            notifyAll();
+        }
+
+        private void compact() {
+            int drop = released - base;
+            System.arraycopy(positions, drop, positions, 0, count - released);
+            System.arraycopy(lengths, drop, lengths, 0, count - released);
+            base = released;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+            }
+            synchronized (this) {
+                notifyAll();
+            }
+        }
+
+        // 扫描线程：顺序读取数据区，记下满足条件的行的位置，每读完一块发布一次
+        private void index() {
+            try {
+                byte[] chunk = new byte[CHUNK_BYTES];
+                long position = dataStart;
+                while (position < dataEnd && !closed) {
+                    awaitWindow();
+                    int length = (int) Math.min(chunk.length, dataEnd - position);
+                    ByteBuffer buffer = ByteBuffer.wrap(chunk, 0, length);
+                    while (buffer.hasRemaining()) {
+                        if (channel.read(buffer, position + buffer.position()) < 0) {
+                            break;
+                        }
+                    }
+                    length = buffer.position();
+                    if (length == 0) {
+                        break;
+                    }
+                    boolean last = position + length >= dataEnd;
+                    List<long[]> found = new ArrayList<>();
+                    int lineStart = 0;
+                    for (int i = 0; i < length; i++) {
+                        if (chunk[i] == '\n') {
+                            accept(chunk, lineStart, i, position, found);
+                            lineStart = i + 1;
+                        }
+                    }
+                    if (last && lineStart < length) {
+                        accept(chunk, lineStart, length, position, found);
+                        lineStart = length;
+                    }
+                    if (lineStart == 0) {
+                        // 一行比读入的块还长，加大块后重读
+                        chunk = new byte[chunk.length * 2];
+                        continue;
+                    }
+                    publish(found);
+                    position += lineStart;
+                }
+            } catch (ClosedChannelException e) {
+                // 游标已关闭
+            } catch (IOException e) {
+                synchronized (this) {
+                    failure = e;
+                }
+            } finally {
+                synchronized (this) {
+                    complete = true;
+                    notifyAll();
+                }
+            }
+        }
+
+        // 一行数据[start, end)，base为块在文件中的起始位置
+        private void accept(byte[] bytes, int start, int end, long base, List<long[]> found) {
+            int lineEnd = end;
+            if (lineEnd > start && bytes[lineEnd - 1] == '\r') {
+                lineEnd--;
+            }
+            if (lineEnd <= start) {
+                return;
+            }
+            // 二进制记录解码时会就地反转义，先记下原始长度
+            int length = lineEnd - start;
+            if (filter == null || filter.test(decode(bytes, start, lineEnd))) {
+                found.add(new long[]{base + start, length});
+            }
+        }
+
+        // 只向前读取时，已找到而未释放的行达到窗口大小且读取方不需要更多行，就等待读取方释放
+        private synchronized void awaitWindow() throws InterruptedIOException {
+            try {
+                while (forwardOnly && !closed && count - released >= WINDOW_ROWS && count >= wanted) {
+                    wait();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("游标扫描被中断");
+            }
+        }
+
+        private synchronized void publish(List<long[]> found) {
+            if (found.isEmpty()) {
+                return;
+            }
+            if (count - base + found.size() > positions.length && released > base) {
+                compact();
+            }
+            if (count - base + found.size() > positions.length) {
+                int capacity = Math.max(positions.length * 2, count - base + found.size());
+                positions = Arrays.copyOf(positions, capacity);
+                lengths = Arrays.copyOf(lengths, capacity);
+            }
+            for (long[] row : found) {
+                positions[count - base] = row[0];
+                lengths[count - base] = (int) row[1];
+                count++;
+            }
+            notifyAll();
+        }
+
+        private byte[] read(long position, int length) throws IOException {
+            byte[] bytes = new byte[length];
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, position + buffer.position()) < 0) {
+                    throw new IOException("表文件在游标打开期间被截断");
+                }
+            }
+            return bytes;
+        }
+
+        // 拆分（或解码）一行的字段；二进制记录会在bytes中就地反转义
+        private String[] decode(byte[] bytes, int start, int end) {
+            if (binary) {
+                return RowCodec.decode(bytes, start, RowCodec.unescape(bytes, start, end), tableTypes);
+            }
+            return splitter.split(new String(bytes, start, end - start, StandardCharsets.UTF_8), -1);
+        }
+
+        private List<String> project(String[] values) {
+            List<String> row = new ArrayList<>(projection.length);
+            for (int col : projection) {
+                row.add(col < values.length ? values[col] : "NULL");
+            }
+            return row;
+        }
+    }
+}
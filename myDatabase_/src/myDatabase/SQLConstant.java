@@ -9,10 +9,8 @@ import java.nio.file.Paths;
  * 数据库系统常量配置类
  */
 public class SQLConstant {
-    // 数据库根目录路径
-    private static final String ROOT_PATH = "D:\\desktop\\DBMS\\DATA";
-    // 当前使用的数据库路径
-    private static String currentDbPath = ROOT_PATH;
+    // 数据库根目录路径，可通过系统属性myDatabase.root或启动参数--data覆盖
+    private static String rootPath = System.getProperty("myDatabase.root", "D:\\desktop\\DBMS\\DATA");
 
     // 系统文件配置
     private static final String SYSTEM_DIR_NAME = "system";
@@ -29,9 +27,40 @@ public class SQLConstant {
     private static final String TABLE_INTEGRITY_EXTENSION = ".tic";
     private static final String TABLE_INDEX_EXTENSION = ".tid";
 
+    // 行锁等待超时（毫秒）
+    private static final long LOCK_TIMEOUT_MILLIS = 5000;
+
+    // 新建的表是否使用二进制记录格式（已有的表保持原格式，可用MIGRATE语句转换）
+    private static final boolean BINARY_STORAGE_DEFAULT = true;
+
+    // 上次ANALYZE以来变化的行数超过统计行数的这一比例时自动重新收集统计信息，可通过系统属性myDatabase.statsRefreshFraction覆盖
+    private static final double STATS_REFRESH_FRACTION =
+            Double.parseDouble(System.getProperty("myDatabase.statsRefreshFraction", "0.2"));
+
+    // 执行时间超过此值（毫秒）的语句记入慢查询日志，负数表示不记录，可通过系统属性myDatabase.slowQueryMillis覆盖
+    private static final long SLOW_QUERY_MILLIS = Long.parseLong(System.getProperty("myDatabase.slowQueryMillis", "1000"));
+
+    // 慢查询日志中是否把SQL里的字面量替换为?，可通过系统属性myDatabase.slowQueryMaskLiterals覆盖
+    private static final boolean SLOW_QUERY_MASK_LITERALS =
+            Boolean.parseBoolean(System.getProperty("myDatabase.slowQueryMaskLiterals", "false"));
+
+    // 图形界面中查询结果最多显示的行数，超出的行只计数，0或负数表示不限，可通过系统属性myDatabase.resultDisplayRows覆盖
+    private static final int RESULT_DISPLAY_ROWS = Integer.getInteger("myDatabase.resultDisplayRows", 1000);
+
+    // DECLARE声明的游标空闲超过此值（毫秒）后自动关闭，可通过系统属性myDatabase.cursorIdleTimeoutMillis覆盖
+    private static final long CURSOR_IDLE_TIMEOUT_MILLIS =
+            Long.getLong("myDatabase.cursorIdleTimeoutMillis", 10 * 60 * 1000L);
+
+    // 备份时并行压缩的线程数，默认为处理器数，可通过系统属性myDatabase.backupThreads覆盖
+    private static final int BACKUP_THREADS =
+            Math.max(1, Integer.getInteger("myDatabase.backupThreads", Runtime.getRuntime().availableProcessors()));
+
+    // 备份取快照时等待正在执行的写入语句结束的最长时间（毫秒），可通过系统属性myDatabase.backupPauseTimeoutMillis覆盖
+    private static final long BACKUP_PAUSE_TIMEOUT_MILLIS = Long.getLong("myDatabase.backupPauseTimeoutMillis", 60 * 1000L);
+
     // 新增方法：获取用户数据文件路径
     public static String getUserDataPath() {
-        return getRootPath() + "\\" + USER_DATA_FILE;
+        return getRootPath() + File.separator + USER_DATA_FILE;
     }
 
     // 新增方法：获取系统表文件名
@@ -40,29 +69,65 @@ public class SQLConstant {
     }
 
     public static String getRootPath() {
-        return ROOT_PATH;
+        return rootPath;
     }
 
+    // 设置数据库根目录（需在初始化数据库之前调用）
+    public static void setRootPath(String path) {
+        rootPath = path;
+    }
 
-
-    public static String getCurrentDbPath() {
-        return currentDbPath;
+    // 获取数据库目录路径
+    public static String getDatabasePath(String dbName) {
+        return rootPath + File.separator + dbName;
     }
 
-    public static void setCurrentDbPath(String dbName) {
-        currentDbPath = ROOT_PATH + "\\" + dbName;
+    public static long getLockTimeoutMillis() {
+        return LOCK_TIMEOUT_MILLIS;
     }
 
     public static String getFieldSeparator() {
         return "\u0001"; // 使用不可见字符作为分隔符
     }
 
+    public static boolean isBinaryStorageDefault() {
+        return BINARY_STORAGE_DEFAULT;
+    }
+
+    public static double getStatsRefreshFraction() {
+        return STATS_REFRESH_FRACTION;
+    }
+
+    public static int getResultDisplayRows() {
+        return RESULT_DISPLAY_ROWS;
+    }
+
+    public static long getCursorIdleTimeoutMillis() {
+        return CURSOR_IDLE_TIMEOUT_MILLIS;
+    }
+
+    public static int getBackupThreads() {
+        return BACKUP_THREADS;
+    }
+
+    public static long getBackupPauseTimeoutMillis() {
+        return BACKUP_PAUSE_TIMEOUT_MILLIS;
+    }
+
+    public static long getSlowQueryMillis() {
+        return SLOW_QUERY_MILLIS;
+    }
+
+    public static boolean isSlowQueryMaskLiterals() {
+        return SLOW_QUERY_MASK_LITERALS;
+    }
+
     public static String getSystemDirName() {
         return SYSTEM_DIR_NAME;
     }
 
     public static String getDbDescriptionFilePath() {
-        return ROOT_PATH + "\\" + DB_DESCRIPTION_FILE;
+        return rootPath + File.separator + DB_DESCRIPTION_FILE;
     }
 
     public static String getBackupDirPath() {
@@ -94,33 +159,27 @@ public class SQLConstant {
 
     // 路径构建方法
     public static String getTableDefinitionPath(String dbName, String tableName) {
-        return ROOT_PATH + "\\" + dbName + "\\" + tableName + TABLE_DEFINITION_EXTENSION;
+        return rootPath + File.separator + dbName + File.separator + tableName + TABLE_DEFINITION_EXTENSION;
     }
 
     public static String getTableRecordPath(String dbName, String tableName) {
-        return ROOT_PATH + "\\" + dbName + "\\" + tableName + TABLE_RECORD_EXTENSION;
+        return rootPath + File.separator + dbName + File.separator + tableName + TABLE_RECORD_EXTENSION;
     }
 
     public static String getTableIntegrityPath(String dbName, String tableName) {
-        return ROOT_PATH + "\\" + dbName + "\\" + tableName + TABLE_INTEGRITY_EXTENSION;
+        return rootPath + File.separator + dbName + File.separator + tableName + TABLE_INTEGRITY_EXTENSION;
     }
 
     public static String getTableIndexPath(String dbName, String tableName) {
-        return ROOT_PATH + "\\" + dbName + "\\" + tableName + TABLE_INDEX_EXTENSION;
+        return rootPath + File.separator + dbName + File.separator + tableName + TABLE_INDEX_EXTENSION;
     }
 
     public static String getTableDescPath(String dbName) {
-        return ROOT_PATH + "\\" + dbName + "\\" + dbName + TABLE_DESC_EXTENSION;
+        return rootPath + File.separator + dbName + File.separator + dbName + TABLE_DESC_EXTENSION;
     }
 
     public static String getLogFilePath(String dbName) {
-        return ROOT_PATH + "\\" + dbName + "\\" + dbName + LOG_FILE_EXTENSION;
-    }
-
-
-    // 获取当前数据库的表记录文件路径
-    public static String getCurrentTableRecordPath(String tableName) {
-        return getCurrentDbPath() + "\\" + tableName + TABLE_RECORD_EXTENSION;
+        return rootPath + File.separator + dbName + File.separator + dbName + LOG_FILE_EXTENSION;
     }
 
 
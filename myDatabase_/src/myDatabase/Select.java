@@ -1,36 +1,148 @@
 package myDatabase;
 
+import model.Session;
+
 import java.io.*;
 import java.nio.file.*;
 import java.util.*;
 import java.util.regex.*;
 import java.util.stream.*;
 
-
+/**
+ * SELECT 字段 FROM 表 [JOIN ...] [WHERE 条件] [ORDER BY 列 [ASC|DESC], ...]
+ * ORDER BY 是为图形界面结果表格按列头排序加入的：点击列头时在去掉原ORDER BY的语句后加上该列重新查询（见MainController）。
+ */
 public class Select {
-    public static String processSelect(String sql) {
-        try {
-            sql = sql.replaceAll(";\\s*$", "").trim();
+    // 会话中选择执行方式的设置名：vectorized（默认，按批执行）或 row（逐行执行）
+    public static final String EXECUTION_MODE_SETTING = "execution_mode";
+    public static final String EXECUTION_MODE_VECTORIZED = "vectorized";
+    public static final String EXECUTION_MODE_ROW = "row";
+
+    public static String processSelect(String sql, Session session) {
+        QueryResult result = executeSelect(sql, session);
+        if (result.isError()) {
+            return result.getMessage();
+        }
+
+        // 返回格式化结果
+        return formatResult(result);
+    }
 
+    /**
+     * 执行SELECT并返回结构化结果（不做表格格式化），出错时返回错误结果
+     */
+    public static QueryResult executeSelect(String sql, Session session) {
+        try {
             // 解析SELECT语句
-            SelectQuery query = parseSelectQuery(sql);
+            SelectQuery query = prepareQuery(sql, session);
 
             // 验证表是否存在
             if (!validateTablesExist(query)) {
-                return "ERROR: 表不存在";
+                return QueryResult.error("ERROR: 表不存在");
             }
 
             // 执行查询
             QueryResult result = executeQuery(query);
+            ExecutionMonitor.current().rowsReturned(result.rows.size());
+            return result;
+        } catch (InvalidQueryException e) {
+            return QueryResult.error("ERROR: " + e.getMessage());
+        } catch (Exception e) {
+            return QueryResult.error("ERROR: 查询失败 - " + e.getMessage());
+        }
+    }
 
-            // 返回格式化结果
-            return formatResult(result);
+    /**
+     * 打开SELECT的结果游标（见RowCursor）：单表、没有聚合和ORDER BY的查询只在后台记下满足条件的行的位置，
+     * 其余查询先完整执行
+     * @return 游标，语句有错时抛出IllegalArgumentException（信息以ERROR开头）
+     */
+    public static RowCursor openCursor(String sql, Session session) {
+        try {
+            SelectQuery query = prepareQuery(sql, session);
+            if (!validateTablesExist(query)) {
+                throw new IllegalArgumentException("ERROR: 表不存在");
+            }
+            if (query.tables.size() == 1 && query.orderBy.isEmpty()) {
+                String tableName = query.tables.get(0).tableName;
+                TableScanner scanner = TableScanner.open(SQLConstant.getTableRecordPath(query.dbName, tableName));
+                if (scanner != null && !isAggregateQuery(query, scanner)) {
+                    String[] headers = scanner.getHeaders();
+                    String[] types = scanner.getTypes();
+                    List<Integer> selectedColumns = getSelectedColumns(query.columns, headers);
+                    List<String> resultHeaders = new ArrayList<>();
+                    List<ColumnType> resultTypes = new ArrayList<>();
+                    for (int col : selectedColumns) {
+                        resultHeaders.add(headers[col]);
+                        resultTypes.add(ColumnType.of(col < types.length ? types[col] : null));
+                    }
+                    String where = query.whereClause;
+                    ExecutionMonitor.current().planSummary("cursor " + tableName + (where == null ? "" : " filter=row"));
+                    // WHERE只编译一次，扫描线程逐行判断
+                    VectorPredicate predicate = where == null ? null : VectorPredicate.compile(where, headers);
+                    return new RowCursor.TableScan(scanner, resultHeaders, resultTypes,
+                            selectedColumns.stream().mapToInt(Integer::intValue).toArray(),
+                            predicate == null ? null : predicate::test);
+                }
+            }
+            QueryResult result = executeQuery(query);
+            ExecutionMonitor.current().rowsReturned(result.rows.size());
+            return RowCursor.of(result);
+        } catch (InvalidQueryException e) {
+            throw new IllegalArgumentException("ERROR: " + e.getMessage());
+        } catch (IOException e) {
+            throw new IllegalArgumentException("ERROR: 查询失败 - " + e.getMessage());
+        }
+    }
+
+    // 查询列中是否有聚合函数；聚合写法有错时也按聚合查询处理，由完整执行报告错误
+    private static boolean isAggregateQuery(SelectQuery query, TableScanner scanner) {
+        try {
+            return !Aggregate.parseAll(query.columns, scanner.getHeaders(), scanner.getColumnTypes()).isEmpty();
+        } catch (IllegalArgumentException e) {
+            return true;
+        }
+    }
 
+    /**
+     * 生成SELECT的执行计划（EXPLAIN），不读取数据；analyze为true时（EXPLAIN ANALYZE）执行语句并在计划上记下实际值
+     * @return 计划的根节点，语句有错时抛出IllegalArgumentException（信息以ERROR开头）
+     */
+    public static PlanNode explainSelect(String sql, Session session, boolean analyze) {
+        try {
+            SelectQuery query = prepareQuery(sql, session);
+            query.explain = true;
+            query.analyze = analyze;
+            if (!validateTablesExist(query)) {
+                throw new IllegalArgumentException("ERROR: 表不存在");
+            }
+            executeQuery(query);
+            if (query.plan == null) {
+                throw new IllegalArgumentException("ERROR: 无法生成执行计划");
+            }
+            return query.plan;
         } catch (InvalidQueryException e) {
-            return "ERROR: " + e.getMessage();
-        } catch (Exception e) {
-            return "ERROR: 查询失败 - " + e.getMessage();
+            throw new IllegalArgumentException("ERROR: " + e.getMessage());
+        } catch (IOException e) {
+            throw new IllegalArgumentException("ERROR: 查询失败 - " + e.getMessage());
+        }
+    }
+
+    // 解析语句，并从会话中取得当前数据库和执行设置
+    private static SelectQuery prepareQuery(String sql, Session session) throws InvalidQueryException {
+        EngineEvents.ParseEvent event = new EngineEvents.ParseEvent();
+        event.begin();
+        SelectQuery query = parseSelectQuery(sql.replaceAll(";\\s*$", "").trim());
+        event.end();
+        if (event.shouldCommit()) {
+            event.statementType = "select";
+            event.table = query.tables.isEmpty() ? null : query.tables.get(0).tableName;
+            event.commit();
         }
+        query.dbName = session.getCurrentDatabase();
+        query.parallelism = TableScanner.getParallelism(session);
+        query.vectorized = !EXECUTION_MODE_ROW.equalsIgnoreCase(session.getSetting(EXECUTION_MODE_SETTING));
+        return query;
     }
 
     // 解析SELECT查询
@@ -39,11 +151,11 @@ public class Select {
 
         // 解析SELECT部分
         Matcher selectMatcher = Pattern.compile(
-                "(?i)^SELECT\\s+(.+?)\\s+FROM\\s+(.+?)(?:\\s+WHERE\\s+(.+?))?(?:\\s*;?\\s*)$"
+                "(?i)^SELECT\\s+(.+?)\\s+FROM\\s+(.+?)(?:\\s+WHERE\\s+(.+?))?(?:\\s+ORDER\\s+BY\\s+(.+?))?(?:\\s*;?\\s*)$"
         ).matcher(sql);
 
         if (!selectMatcher.find()) {
-            throw new InvalidQueryException("语法错误，正确格式：SELECT 字段 FROM 表 [WHERE 条件]");
+            throw new InvalidQueryException("语法错误，正确格式：SELECT 字段 FROM 表 [WHERE 条件] [ORDER BY 列 [ASC|DESC], ...]");
         }
 
         // 解析字段列表
@@ -57,6 +169,18 @@ public class Select {
             query.whereClause = selectMatcher.group(3).trim();
         }
 
+        // 解析ORDER BY（如果有）
+        if (selectMatcher.group(4) != null) {
+            for (String part : selectMatcher.group(4).trim().split("\\s*,\\s*")) {
+                String[] tokens = part.trim().split("\\s+");
+                if (tokens.length > 2 || (tokens.length == 2 && !tokens[1].equalsIgnoreCase("asc")
+                        && !tokens[1].equalsIgnoreCase("desc"))) {
+                    throw new InvalidQueryException("ORDER BY语法错误: " + part);
+                }
+                query.orderBy.add(new OrderItem(tokens[0], tokens.length == 2 && tokens[1].equalsIgnoreCase("desc")));
+            }
+        }
+
         return query;
     }
 
@@ -123,7 +247,7 @@ public class Select {
     // 验证表是否存在
     private static boolean validateTablesExist(SelectQuery query) {
         for (QueryTable table : query.tables) {
-            String tablePath = SQLConstant.getCurrentTableRecordPath(table.tableName);
+            String tablePath = SQLConstant.getTableRecordPath(query.dbName, table.tableName);
             if (!Files.exists(Paths.get(tablePath))) {
                 return false;
             }
@@ -132,7 +256,7 @@ public class Select {
     }
 
     // 执行查询
-    private static QueryResult executeQuery(SelectQuery query) throws IOException {
+    private static QueryResult executeQuery(SelectQuery query) throws IOException, InvalidQueryException {
         QueryResult result = new QueryResult();
 
         if (query.tables.size() == 1) {
@@ -143,20 +267,121 @@ public class Select {
             result = executeJoinQuery(query);
         }
 
+        if (!query.orderBy.isEmpty()) {
+            sortRows(query, result);
+        }
         return result;
     }
 
+    // ORDER BY：按列类型比较（数值按大小，NULL最小），排序是稳定的
+    private static void sortRows(SelectQuery query, QueryResult result) throws InvalidQueryException {
+        int[] columns = new int[query.orderBy.size()];
+        ColumnType[] types = new ColumnType[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = resolveResultColumn(result.headers, query.orderBy.get(i).column);
+            types[i] = columns[i] < result.columnTypes.size() ? result.columnTypes.get(columns[i]) : ColumnType.VARCHAR;
+        }
+        if (query.plan != null) {
+            List<String> keys = new ArrayList<>();
+            for (OrderItem item : query.orderBy) {
+                keys.add(item.column + (item.descending ? " DESC" : ""));
+            }
+            PlanNode top = query.plan;
+            query.plan = new PlanNode("Sort", String.join(", ", keys), top.estimatedRows,
+                    top.estimatedCost + top.estimatedRows * Math.log(Math.max(2, top.estimatedRows)) * 0.01).add(top);
+        }
+
+        // 先把排序键转换为Java值，比较时不再重复解析
+        List<Object[]> keyed = new ArrayList<>(result.rows.size());
+        for (List<String> row : result.rows) {
+            Object[] entry = new Object[columns.length + 1];
+            for (int i = 0; i < columns.length; i++) {
+                entry[i] = types[i].decode(columns[i] < row.size() ? row.get(columns[i]) : null);
+            }
+            entry[columns.length] = row;
+            keyed.add(entry);
+        }
+        keyed.sort((a, b) -> {
+            for (int i = 0; i < columns.length; i++) {
+                int compared = compareValues(a[i], b[i]);
+                if (compared != 0) {
+                    return query.orderBy.get(i).descending ? -compared : compared;
+                }
+            }
+            return 0;
+        });
+        List<List<String>> sorted = new ArrayList<>(keyed.size());
+        for (Object[] entry : keyed) {
+            @SuppressWarnings("unchecked")
+            List<String> row = (List<String>) entry[columns.length];
+            sorted.add(row);
+        }
+        result.rows = sorted;
+    }
+
+    // 在结果表头中查找ORDER BY的列：先按全名匹配，再按去掉表名（别名）前缀后的列名匹配
+    private static int resolveResultColumn(List<String> headers, String column) throws InvalidQueryException {
+        for (int i = 0; i < headers.size(); i++) {
+            if (headers.get(i).equalsIgnoreCase(column)) {
+                return i;
+            }
+        }
+        String name = column.replaceAll(".*\\.", "");
+        int found = -1;
+        for (int i = 0; i < headers.size(); i++) {
+            if (headers.get(i).replaceAll(".*\\.", "").equalsIgnoreCase(name)) {
+                if (found >= 0) {
+                    throw new InvalidQueryException("ORDER BY中的列不明确: " + column);
+                }
+                found = i;
+            }
+        }
+        if (found < 0) {
+            throw new InvalidQueryException("ORDER BY中的列不在结果中: " + column);
+        }
+        return found;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static int compareValues(Object a, Object b) {
+        if (a == null || b == null) {
+            return a == null ? (b == null ? 0 : -1) : 1;
+        }
+        if (a instanceof Number && b instanceof Number) {
+            return Double.compare(((Number) a).doubleValue(), ((Number) b).doubleValue());
+        }
+        if (a.getClass() == b.getClass() && a instanceof Comparable) {
+            return ((Comparable) a).compareTo(b);
+        }
+        return a.toString().compareTo(b.toString());
+    }
+
     // 执行单表查询
-    private static QueryResult executeSingleTableQuery(SelectQuery query) throws IOException {
+    private static QueryResult executeSingleTableQuery(SelectQuery query) throws IOException, InvalidQueryException {
         QueryResult result = new QueryResult();
-        String tablePath = SQLConstant.getCurrentTableRecordPath(query.tables.get(0).tableName);
+        String tablePath = SQLConstant.getTableRecordPath(query.dbName, query.tables.get(0).tableName);
+
+        // 读取表头
+        TableScanner scanner = TableScanner.open(tablePath);
+        if (scanner == null) return result;
 
-        // 读取表数据
-        List<String> lines = Files.readAllLines(Paths.get(tablePath));
-        if (lines.size() < 4) return result;
+        // 获取表头和列类型
+        String[] headers = scanner.getHeaders();
+        String[] types = scanner.getTypes();
 
-        // 获取表头
-        String[] headers = lines.get(0).split(Pattern.quote(SQLConstant.getFieldSeparator()));
+        // 聚合查询总是按批执行，在基本类型向量上累加
+        List<Aggregate> aggregates;
+        try {
+            aggregates = Aggregate.parseAll(query.columns, headers, scanner.getColumnTypes());
+        } catch (IllegalArgumentException e) {
+            throw new InvalidQueryException(e.getMessage());
+        }
+        if (!aggregates.isEmpty()) {
+            if (aggregates.size() != query.columns.size()) {
+                throw new InvalidQueryException("聚合函数不能与普通列一起查询（不支持GROUP BY）");
+            }
+            return executeAggregateQuery(query, scanner, headers, aggregates);
+        }
 
         // 确定要选择的列
         List<Integer> selectedColumns = getSelectedColumns(query.columns, headers);
@@ -165,27 +390,184 @@ public class Select {
         result.headers = new ArrayList<>();
         for (int col : selectedColumns) {
             result.headers.add(headers[col]);
+            result.columnTypes.add(ColumnType.of(col < types.length ? types[col] : null));
         }
 
-        // 处理数据行
-        for (int i = 3; i < lines.size(); i++) {
-            String[] values = lines.get(i).split(Pattern.quote(SQLConstant.getFieldSeparator()), -1);
-
-            // 添加WHERE条件判断
-            if (query.whereClause == null || matchesCondition(query.whereClause, headers, values)) {
+        // 按字节范围并行扫描数据行，各块内做WHERE过滤和列投影，结果按原行序合并
+        // 规划器按统计信息排列WHERE条件，并决定是否用它按区块摘要跳过区块、是否并行
+        QueryPlanner.ScanPlan plan = QueryPlanner.planScan(query.dbName, query.tables.get(0).tableName, scanner,
+                query.whereClause, query.parallelism);
+        plan.apply(scanner);
+        ExecutionMonitor.current().planSummary(plan.summary(query.tables.get(0).tableName));
+        VectorPredicate predicate = plan.predicate;
+        PlanNode[] nodes = null;
+        if (query.explain) {
+            long resultRows = plan.estimatedResultRows();
+            nodes = explainScan(query, plan, headers, new PlanNode("Project", String.join(", ", result.headers),
+                    resultRows, plan.outputCost(resultRows)));
+            if (!query.analyze) {
+                return result;
+            }
+        }
+        // EXPLAIN ANALYZE时对过滤和投影分别计时
+        PlanNode.StepTimer timer = query.analyze ? new PlanNode.StepTimer() : null;
+        ExecutionMonitor monitor = ExecutionMonitor.current();
+        long[] before = monitorSnapshot(monitor);
+        if (query.vectorized) {
+            // 向量化执行：WHERE只编译一次，按批过滤选择向量后再投影
+            int[] projection = selectedColumns.stream().mapToInt(Integer::intValue).toArray();
+            result.rows = scanner.scanBatches(plan.parallelism, batch -> {
+                if (timer == null) {
+                    predicate.filter(batch);
+                    return batch.project(projection);
+                }
+                long start = System.nanoTime();
+                predicate.filter(batch);
+                long filtered = System.nanoTime();
+                List<List<String>> rows = batch.project(projection);
+                timer.record(start, filtered, System.nanoTime(), rows.size());
+                return rows;
+            });
+        } else {
+            result.rows = scanner.scan(plan.parallelism, values -> {
+                long start = timer != null ? System.nanoTime() : 0;
+                if (query.whereClause != null && !matchesCondition(query.whereClause, headers, values)) {
+                    if (timer != null) {
+                        long now = System.nanoTime();
+                        timer.record(start, now, now, 0);
+                    }
+                    return null;
+                }
+                long filtered = timer != null ? System.nanoTime() : 0;
                 List<String> row = new ArrayList<>();
                 for (int col : selectedColumns) {
                     row.add(col < values.length ? values[col] : "NULL");
                 }
-                result.rows.add(row);
+                if (timer != null) {
+                    timer.record(start, filtered, System.nanoTime(), 1);
+                }
+                return row;
+            });
+        }
+        if (timer != null) {
+            recordScan(nodes, monitor, before, timer, result.rows.size(), PlanNode.estimateRowBytes(result.rows));
+        }
+        return result;
+    }
+
+    // EXPLAIN：单表查询的计划为 扫描 -> 过滤（有WHERE时） -> top，返回 [扫描, 过滤或null, top]
+    private static PlanNode[] explainScan(SelectQuery query, QueryPlanner.ScanPlan plan, String[] headers,
+                                          PlanNode top) {
+        String scanDetail = String.format("%s parallel=%d prune=%s stats=%s", query.tables.get(0).tableName,
+                plan.parallelism, plan.pruneBlocks ? "on" : "off",
+                plan.stats != null ? plan.stats.getAnalyzedAt() : "none");
+        PlanNode scan = new PlanNode("TableScan", scanDetail, plan.estimatedRows, plan.scanCost());
+        PlanNode filter = null;
+        if (!plan.predicate.isEmpty()) {
+            filter = new PlanNode("Filter", plan.predicate.describe(headers),
+                    plan.estimatedResultRows(), plan.filterCost()).add(scan);
+        }
+        top.add(filter != null ? filter : scan);
+        query.plan = top;
+        return new PlanNode[]{scan, filter, top};
+    }
+
+    // 监视器当前的 扫描行数、读取字节数、扫描耗时
+    private static long[] monitorSnapshot(ExecutionMonitor monitor) {
+        return new long[]{monitor.getRowsScanned(), monitor.getBytesRead(), monitor.getScanNanos()};
+    }
+
+    // EXPLAIN ANALYZE：把扫描期间的计数记到 扫描/过滤/top 节点上；扫描的耗时不含过滤和top的耗时
+    private static void recordScan(PlanNode[] nodes, ExecutionMonitor monitor, long[] before,
+                                   PlanNode.StepTimer timer, long outputRows, long outputBytes) {
+        long scanned = monitor.getRowsScanned() - before[0];
+        long passed = timer.rowsPassed.sum();
+        long filterNanos = timer.filterNanos.sum();
+        long outputNanos = timer.outputNanos.sum();
+        PlanNode scan = nodes[0];
+        scan.actualRows = scanned;
+        scan.bytesRead = monitor.getBytesRead() - before[1];
+        scan.timeNanos = Math.max(0, monitor.getScanNanos() - before[2] - filterNanos - outputNanos);
+        scan.memoryPeak = monitor.getBufferPeak();
+        scan.spillBytes = 0;
+        PlanNode filter = nodes[1];
+        if (filter != null) {
+            filter.actualRows = passed;
+            filter.rowsFiltered = scanned - passed;
+            filter.timeNanos = filterNanos;
+            filter.spillBytes = 0;
+        }
+        PlanNode top = nodes[2];
+        top.actualRows = outputRows;
+        top.timeNanos = outputNanos;
+        top.memoryPeak = outputBytes;
+        top.spillBytes = 0;
+    }
+
+    // 执行不分组的聚合查询，结果只有一行
+    private static QueryResult executeAggregateQuery(SelectQuery query, TableScanner scanner, String[] headers,
+                                                     List<Aggregate> aggregates) throws IOException {
+        QueryPlanner.ScanPlan plan = QueryPlanner.planScan(query.dbName, query.tables.get(0).tableName, scanner,
+                query.whereClause, query.parallelism);
+        plan.apply(scanner);
+        ExecutionMonitor.current().planSummary("aggregate " + plan.summary(query.tables.get(0).tableName));
+        VectorPredicate predicate = plan.predicate;
+        PlanNode[] nodes = null;
+        if (query.explain) {
+            List<String> labels = new ArrayList<>();
+            for (Aggregate aggregate : aggregates) {
+                labels.add(aggregate.getLabel());
+            }
+            nodes = explainScan(query, plan, headers,
+                    new PlanNode("Aggregate", String.join(", ", labels), 1, plan.outputCost(1)));
+            if (!query.analyze) {
+                return new QueryResult();
+            }
+        }
+        PlanNode.StepTimer timer = query.analyze ? new PlanNode.StepTimer() : null;
+        ExecutionMonitor monitor = ExecutionMonitor.current();
+        long[] before = monitorSnapshot(monitor);
+        // 每批得到一组中间结果，最后按顺序合并
+        List<Aggregate.State[]> partials = scanner.scanBatches(plan.parallelism, batch -> {
+            long start = timer != null ? System.nanoTime() : 0;
+            predicate.filter(batch);
+            long filtered = timer != null ? System.nanoTime() : 0;
+            Aggregate.State[] states = new Aggregate.State[aggregates.size()];
+            for (int i = 0; i < states.length; i++) {
+                states[i] = aggregates.get(i).newState();
+                aggregates.get(i).accumulate(batch, states[i]);
+            }
+            if (timer != null) {
+                timer.record(start, filtered, System.nanoTime(), batch.getSelectedCount());
             }
+            return Collections.singletonList(states);
+        });
+        if (timer != null) {
+            // 中间结果每批一组，按每组每个聚合约64字节估计
+            recordScan(nodes, monitor, before, timer, 1, (long) partials.size() * aggregates.size() * 64);
         }
 
+        QueryResult result = new QueryResult();
+
+        result.headers = new ArrayList<>();
+        List<String> row = new ArrayList<>();
+        for (int i = 0; i < aggregates.size(); i++) {
+            Aggregate aggregate = aggregates.get(i);
+            Aggregate.State total = aggregate.newState();
+            for (Aggregate.State[] states : partials) {
+                total.merge(states[i]);
+            }
+            result.headers.add(aggregate.getLabel());
+            result.columnTypes.add(aggregate.getResultType());
+            row.add(aggregate.result(total));
+        }
+        result.rows.add(row);
         return result;
     }
 
     // 在 Select.java 中添加
-    private static boolean matchesCondition(String where, String[] columns, String[] values) {
+    private static boolean matchesCondition(
+String where, String[] columns, String[] values) {
         if (where == null || where.trim().isEmpty()) {
             return true;
         }
@@ -256,17 +638,41 @@ public class Select {
             return result;
         }
 
-        // 读取左表数据
         QueryTable leftTable = query.tables.get(0);
-        List<String[]> leftData = readTableData(leftTable.tableName);
+        QueryTable rightTable = query.tables.get(1);
+        PlanNode[] nodes = null;
+        if (query.explain) {
+            // JOIN条件只按名字解析，不需要先读表
+            String[] joinParts = parseJoinCondition(query.joinConditions.get(0), null, null);
+            if (joinParts.length < 4) {
+                return result;
+            }
+            nodes = explainJoin(query, joinParts);
+            if (!query.analyze) {
+                return result;
+            }
+        }
+        ExecutionMonitor monitor = ExecutionMonitor.current();
+
+        // 读取左表数据
+        long started = System.nanoTime();
+        long bytesBefore = monitor.getBytesRead();
+        List<String[]> leftData = readTableData(query.dbName, leftTable.tableName);
+        if (nodes != null) {
+            recordTableRead(nodes[0], leftData, System.nanoTime() - started, monitor.getBytesRead() - bytesBefore);
+        }
         if (leftData.isEmpty()) {
             return result;
         }
         String[] leftHeaders = leftData.get(0);
 
         // 读取右表数据
-        QueryTable rightTable = query.tables.get(1);
-        List<String[]> rightData = readTableData(rightTable.tableName);
+        started = System.nanoTime();
+        bytesBefore = monitor.getBytesRead();
+        List<String[]> rightData = readTableData(query.dbName, rightTable.tableName);
+        if (nodes != null) {
+            recordTableRead(nodes[1], rightData, System.nanoTime() - started, monitor.getBytesRead() - bytesBefore);
+        }
         if (rightData.isEmpty()) {
             return result;
         }
@@ -281,63 +687,202 @@ public class Select {
             return result;
         }
 
-        // 执行嵌套循环连接
-        for (int i = 1; i < leftData.size(); i++) { // 跳过表头
-            String[] leftRow = leftData.get(i);
-            for (int j = 1; j < rightData.size(); j++) {
-                String[] rightRow = rightData.get(j);
+        // 按估计行数选择连接方式，两种方式的结果和行序相同
+        QueryPlanner.JoinPlan plan = QueryPlanner.planJoin(query.dbName, leftTable.tableName, joinParts[1],
+                rightTable.tableName, joinParts[3]);
+        monitor.planSummary(plan.summary(leftTable.tableName, rightTable.tableName));
+        started = System.nanoTime();
 
-                if (matchesJoinCondition(joinParts, leftRow, leftHeaders, rightRow, rightHeaders)) {
-                    List<String> combinedRow = new ArrayList<>();
-                    // 添加左表所有列
-                    Collections.addAll(combinedRow, leftRow);
-                    // 添加右表所有列
-                    Collections.addAll(combinedRow, rightRow);
-                    result.rows.add(combinedRow);
+        if (plan.strategy == QueryPlanner.JoinStrategy.HASH) {
+            hashJoin(leftData, columnIndex(leftHeaders, joinParts[1]), rightData,
+                    columnIndex(rightHeaders, joinParts[3]), plan.buildLeft, result.rows);
+        } else {
+            // 执行嵌套循环连接
+            for (int i = 1; i < leftData.size(); i++) { // 跳过表头
+                monitor.checkCancelled();
+                String[] leftRow = leftData.get(i);
+                for (int j = 1; j < rightData.size(); j++) {
+                    String[] rightRow = rightData.get(j);
+
+                    if (matchesJoinCondition(joinParts, leftRow, leftHeaders, rightRow, rightHeaders)) {
+                        result.rows.add(combineRows(leftRow, rightRow));
+                    }
                 }
             }
         }
+        if (nodes != null) {
+            PlanNode join = nodes[2];
+            join.actualRows = result.rows.size();
+            join.timeNanos = System.nanoTime() - started;
+            join.spillBytes = 0;
+            // 输出行加上哈希表的条目（每个建表行约48字节）
+            long buildRows = plan.strategy == QueryPlanner.JoinStrategy.HASH
+                    ? (plan.buildLeft ? leftData.size() : rightData.size()) - 1 : 0;
+            join.memoryPeak = PlanNode.estimateRowBytes(result.rows) + buildRows * 48;
+        }
 
-        // 设置表头
+        // 设置表头和列类型
         for (String h : leftHeaders) {
             result.headers.add(leftTable.alias != null ? leftTable.alias + "." + h : leftTable.tableName + "." + h);
         }
         for (String h : rightHeaders) {
             result.headers.add(rightTable.alias != null ? rightTable.alias + "." + h : rightTable.tableName + "." + h);
         }
+        result.columnTypes.addAll(readColumnTypes(query.dbName, leftTable.tableName, leftHeaders.length));
+        result.columnTypes.addAll(readColumnTypes(query.dbName, rightTable.tableName, rightHeaders.length));
 
         return result;
     }
 
+    // EXPLAIN：两表JOIN的计划为 连接 <- (左表读取, 右表读取)，返回 [左表, 右表, 连接]
+    private static PlanNode[] explainJoin(SelectQuery query, String[] joinParts) {
+        String leftName = query.tables.get(0).tableName;
+        String rightName = query.tables.get(1).tableName;
+        QueryPlanner.JoinPlan plan = QueryPlanner.planJoin(query.dbName, leftName, joinParts[1],
+                rightName, joinParts[3]);
+        PlanNode left = new PlanNode("TableRead", leftName, plan.leftRows, plan.leftRows);
+        PlanNode right = new PlanNode("TableRead", rightName, plan.rightRows, plan.rightRows);
+        String detail = query.joinConditions.get(0);
+        PlanNode join;
+        if (plan.strategy == QueryPlanner.JoinStrategy.HASH) {
+            join = new PlanNode("HashJoin", detail + " build=" + (plan.buildLeft ? leftName : rightName),
+                    plan.estimatedRows, plan.cost());
+        } else {
+            join = new PlanNode("NestedLoopJoin", detail, plan.estimatedRows, plan.cost());
+        }
+        join.add(left).add(right);
+        query.plan = join;
+        return new PlanNode[]{left, right, join};
+    }
+
+    // EXPLAIN ANALYZE：记下整表读入的行数、耗时、字节数和占用的内存
+    private static void recordTableRead(PlanNode node, List<String[]> data, long nanos, long bytes) {
+        node.actualRows = Math.max(0, data.size() - 1);
+        node.timeNanos = nanos;
+        node.bytesRead = bytes;
+        node.memoryPeak = PlanNode.estimateArrayBytes(data);
+        node.spillBytes = 0;
+    }
+
+    /**
+     * 哈希连接：在一侧的连接列上建哈希表，另一侧逐行探测；输出按左表行序、再按右表行序排列，与嵌套循环一致
+     * 缺少连接列的行不参与连接
+     */
+    private static void hashJoin(List<String[]> leftData, int leftIndex, List<String[]> rightData, int rightIndex,
+                                 boolean buildLeft, List<List<String>> rows) {
+        if (leftIndex < 0 || rightIndex < 0) {
+            return;
+        }
+        ExecutionMonitor monitor = ExecutionMonitor.current();
+        List<String[]> buildData = buildLeft ? leftData : rightData;
+        int buildIndex = buildLeft ? leftIndex : rightIndex;
+        Map<String, List<Integer>> table = new HashMap<>();
+        for (int i = 1; i < buildData.size(); i++) {
+            String[] row = buildData.get(i);
+            if (buildIndex < row.length) {
+                table.computeIfAbsent(row[buildIndex], key -> new ArrayList<>(1)).add(i);
+            }
+        }
+
+        if (!buildLeft) {
+            // 探测左表，同一左行的匹配按右表行序加入
+            for (int i = 1; i < leftData.size(); i++) {
+                monitor.checkCancelled();
+                String[] leftRow = leftData.get(i);
+                List<Integer> matches = leftIndex < leftRow.length ? table.get(leftRow[leftIndex]) : null;
+                if (matches != null) {
+                    for (int j : matches) {
+                        rows.add(combineRows(leftRow, rightData.get(j)));
+                    }
+                }
+            }
+            return;
+        }
+
+        // 探测右表，得到的(左行, 右行)对按左行排序后输出
+        List<long[]> pairs = new ArrayList<>();
+        for (int j = 1; j < rightData.size(); j++) {
+            monitor.checkCancelled();
+            String[] rightRow = rightData.get(j);
+            List<Integer> matches = rightIndex < rightRow.length ? table.get(rightRow[rightIndex]) : null;
+            if (matches != null) {
+                for (int i : matches) {
+                    pairs.add(new long[]{i, j});
+                }
+            }
+        }
+        pairs.sort((a, b) -> a[0] != b[0] ? Long.compare(a[0], b[0]) : Long.compare(a[1], b[1]));
+        for (long[] pair : pairs) {
+            rows.add(combineRows(leftData.get((int) pair[0]), rightData.get((int) pair[1])));
+        }
+    }
+
+    // 连接后的一行：左表所有列在前，右表所有列在后
+    private static List<String> combineRows(String[] leftRow, String[] rightRow) {
+        List<String> combinedRow = new ArrayList<>(leftRow.length + rightRow.length);
+        Collections.addAll(combinedRow, leftRow);
+        Collections.addAll(combinedRow, rightRow);
+        return combinedRow;
+    }
+
+    // 按列名（不区分大小写）找第一个匹配的列，没有时返回-1
+    private static int columnIndex(String[] headers, String column) {
+        for (int i = 0; i < headers.length; i++) {
+            if (headers[i].equalsIgnoreCase(column)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
     /**
      * 读取表数据，返回包含表头和数据行的列表
+     * @param dbName 数据库名
      * @param tableName 表名
      * @return List<String[]> 第一项是表头，后续项是数据行
      */
-    private static List<String[]> readTableData(String tableName) throws IOException {
+    private static List<String[]> readTableData(String dbName, String tableName) throws IOException {
         List<String[]> result = new ArrayList<>();
-        String tablePath = SQLConstant.getCurrentTableRecordPath(tableName);
+        String tablePath = SQLConstant.getTableRecordPath(dbName, tableName);
 
         if (!Files.exists(Paths.get(tablePath))) {
             return result;
         }
 
-        List<String> lines = Files.readAllLines(Paths.get(tablePath));
-        if (lines.size() < 3) {
+        TableFile.Records records = TableFile.readRecords(Paths.get(tablePath));
+        if (records.header.size() < 3) {
             return result;
         }
 
         // 添加表头行（列名）
-        result.add(lines.get(0).split(Pattern.quote(SQLConstant.getFieldSeparator())));
+        result.add(records.header.get(0).split(Pattern.quote(SQLConstant.getFieldSeparator())));
 
-        // 添加数据行（跳过表结构的前3行）
-        for (int i = 3; i < lines.size(); i++) {
-            result.add(lines.get(i).split(Pattern.quote(SQLConstant.getFieldSeparator())));
+        // 添加数据行，记录已按字段读出
+        ExecutionMonitor monitor = ExecutionMonitor.current();
+        for (String[] values : records.rows) {
+            monitor.rowScanned();
+            result.add(values);
         }
 
         return result;
     }
 
+    /**
+     * 读取表的列类型（.trd第二行）
+     */
+    private static List<ColumnType> readColumnTypes(String dbName, String tableName, int columnCount) throws IOException {
+        List<ColumnType> columnTypes = new ArrayList<>();
+        String[] types = new String[0];
+        TableFile.Header header = TableFile.readHeader(Paths.get(SQLConstant.getTableRecordPath(dbName, tableName)));
+        if (header != null) {
+            types = header.lines[1].split(Pattern.quote(SQLConstant.getFieldSeparator()));
+        }
+        for (int i = 0; i < columnCount; i++) {
+            columnTypes.add(ColumnType.of(i < types.length ? types[i] : null));
+        }
+        return columnTypes;
+    }
+
     /**
      * 解析JOIN条件，返回[leftTable, leftColumn, rightTable, rightColumn]
      */
@@ -414,21 +959,54 @@ public class Select {
     }
 
     // 格式化结果
-    private static String formatResult(QueryResult result) {
+    static String formatResult(QueryResult result) {
         if (result.rows.isEmpty()) {
             return "Query OK: 0 rows returned";
         }
 
-        return TableGenerator.generateTable(result.headers, result.rows) +
+        EngineEvents.ResultFormatEvent event = new EngineEvents.ResultFormatEvent();
+        event.begin();
+        String formatted = TableGenerator.generateTable(result.headers, result.rows) +
                 "\nQuery OK: " + result.rows.size() + " rows returned";
+        event.end();
+        if (event.shouldCommit()) {
+            event.rows = result.rows.size();
+            event.columns = result.headers.size();
+            event.characters = formatted.length();
+            event.commit();
+        }
+        return formatted;
     }
 
     // 辅助类：表示查询信息
     private static class SelectQuery {
+        // 查询所在的数据库，取自会话
+        String dbName;
+        // 扫描并行度，取自会话设置
+        int parallelism = 1;
+        // 是否按批向量化执行，取自会话设置
+        boolean vectorized = true;
         List<String> columns = new ArrayList<>();
+
         List<QueryTable> tables = new ArrayList<>();
         List<String> joinConditions = new ArrayList<>();
         String whereClause;
+        List<OrderItem> orderBy = new ArrayList<>();
+        // EXPLAIN时生成计划（plan），analyze为true时还要执行并记下实际值
+        boolean explain;
+        boolean analyze;
+        PlanNode plan;
+    }
+
+    // 辅助类：ORDER BY中的一列
+    private static class OrderItem {
+        String column;
+        boolean descending;
+
+        OrderItem(String column, boolean descending) {
+            this.column = column;
+            this.descending = descending;
+        }
     }
 
     // 辅助类：表示查询表
@@ -442,12 +1020,6 @@ public class Select {
         }
     }
 
-    // 辅助类：表示查询结果
-    private static class QueryResult {
-        List<String> headers = new ArrayList<>();
-        List<List<String>> rows = new ArrayList<>();
-    }
-
     // 自定义异常类
     private static class InvalidQueryException extends Exception {
         InvalidQueryException(String message) {
@@ -0,0 +1,63 @@
+package myDatabase;
+
+import model.Session;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 实现SET语句：SET 名称 = 值; 修改当前会话的设置，只影响本会话
+ */
+public class SetVariable {
+    private static final Pattern SET_PATTERN =
+            Pattern.compile("(?i)^SET\\s+(\\w+)\\s*=\\s*(.+?)\\s*;?\\s*$");
+    // 并行度上限，防止误设过大的值
+    private static final int MAX_PARALLELISM = 256;
+
+    public static String processSet(String sql, Session session) {
+        Matcher matcher = SET_PATTERN.matcher(sql.trim());
+        if (!matcher.find()) {
+            return "ERROR: 语法错误，正确格式：SET 名称 = 值";
+        }
+        String name = matcher.group(1).toLowerCase();
+        String value = matcher.group(2).replaceAll("^['\"]|['\"]$", "");
+
+        if (name.equals(TableScanner.PARALLELISM_SETTING)) {
+            if (value.equalsIgnoreCase("default")) {
+                session.setSetting(name, String.valueOf(Runtime.getRuntime().availableProcessors()));
+                return "Query OK: " + name + " = " + session.getSetting(name);
+            }
+            int parallelism;
+            try {
+                parallelism = Integer.parseInt(value);
+            } catch (NumberFormatException e) {
+                return "ERROR: " + name + " 必须是整数";
+            }
+            if (parallelism < 1 || parallelism > MAX_PARALLELISM) {
+                return "ERROR: " + name + " 的取值范围是 1 到 " + MAX_PARALLELISM;
+            }
+            value = String.valueOf(parallelism);
+        } else if (name.equals(Select.EXECUTION_MODE_SETTING)) {
+            value = value.toLowerCase();
+            if (!value.equals(Select.EXECUTION_MODE_VECTORIZED) && !value.equals(Select.EXECUTION_MODE_ROW)) {
+                return "ERROR: " + name + " 只能是 " + Select.EXECUTION_MODE_VECTORIZED + " 或 " + Select.EXECUTION_MODE_ROW;
+            }
+        } else if (name.equals(Cursors.FETCH_SIZE_SETTING)) {
+            int fetchSize;
+            try {
+                fetchSize = Integer.parseInt(value);
+            } catch (NumberFormatException e) {
+                return "ERROR: " + name + " 必须是整数";
+            }
+            if (fetchSize < 1 || fetchSize > Cursors.MAX_FETCH_SIZE) {
+                return "ERROR: " + name + " 的取值范围是 1 到 " + Cursors.MAX_FETCH_SIZE;
+            }
+            value = String.valueOf(fetchSize);
+        } else {
+            return "ERROR: 未知的设置项 " + name;
+        }
+
+        session.setSetting(name, value);
+        return "Query OK: " + name + " = " + value;
+    }
+}
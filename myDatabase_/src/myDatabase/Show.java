@@ -1,43 +1,75 @@
 package myDatabase;
 
+import model.Session;
+
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
  * 实现SHOW命令 - 修改版
- * 返回字符串结果而不是直接打印到控制台
+ * 返回字符串结果而不是直接打印到控制台；executeShow返回结构化结果，供命令行和驱动按各自的格式输出
  */
 public class Show {
+    private static final List<String> STATEMENT_HEADERS = Arrays.asList("Statement", "Count", "Errors",
+            "Rows_scanned", "Rows_returned", "Rows_affected", "Avg_ms", "P50_ms", "P95_ms", "P99_ms", "Max_ms");
 
     /**
      * 处理SHOW语句并返回执行结果字符串
      */
-    public static String processShow(String sql) {
+    public static String processShow(String sql, Session session) {
+        // SHOW STATUS在图形界面中分两张表显示
+        if (sql.toLowerCase().trim().matches("show\\s+status\\s*;?")) {
+            return showStatus();
+        }
+        QueryResult result = executeShow(sql, session);
+        if (!result.isResultSet()) {
+            return result.getMessage();
+        }
+        String table = TableGenerator.generateTable(result.headers, result.rows);
+        return result.getMessage() == null ? table : table + "\n" + result.getMessage();
+    }
+
+    /**
+     * 执行SHOW语句并返回结构化结果，没有数据时返回提示信息
+     * SHOW STATUS的按语句类型统计展开成"语句类型.指标"的行，与总体指标放在同一个结果中
+     */
+    public static QueryResult executeShow(String sql, Session session) {
         String normalized = sql.toLowerCase().trim();
         if (normalized.matches("show\\s+databases\\s*;?")) {
             return showDatabases();
         } else if (normalized.matches("show\\s+tables\\s*;?")) {
-            return showTables();
+            return showTables(session.getCurrentDatabase());
+        } else if (normalized.matches("show\\s+lock\\s+status\\s*;?")) {
+            return showLockStatus();
+        } else if (normalized.matches("show\\s+settings\\s*;?")) {
+            return showSettings(session);
+        } else if (normalized.matches("show\\s+status\\s*;?")) {
+            return statusResult();
+        } else if (normalized.matches("show\\s+table\\s+status\\s*;?")) {
+            return showTableStatus(session.getCurrentDatabase());
+        } else if (normalized.matches("show\\s+slow\\s+queries\\s*;?")) {
+            return SlowQueryLog.executeShowSlowQueries();
         }
-        return "ERROR: 无法识别的SHOW语句";
+        return QueryResult.error("ERROR: 无法识别的SHOW语句");
     }
 
     /**
      * 保留原有方法供兼容使用
      */
-    public static void showSql(String sql) {
-        System.out.println(processShow(sql));
+    public static void showSql(String sql, Session session) {
+        System.out.println(processShow(sql, session));
     }
 
     /**
      * 显示所有数据库
      */
-    private static String showDatabases() {
+    private static QueryResult showDatabases() {
         String path = SQLConstant.getRootPath();
         List<String> dbList = Utils.getAllDatabase(path);
 
         if (dbList.isEmpty()) {
-            return "没有可用的数据库";
+            return QueryResult.fromMessage("没有可用的数据库", 0);
         }
 
         List<String> headers = new ArrayList<>();
@@ -50,24 +82,22 @@ public class Show {
             rows.add(row);
         }
 
-        return TableGenerator.generateTable(headers, rows);
+        return QueryResult.textResultSet(headers, rows);
     }
 
     /**
      * 显示当前数据库所有表
      */
-    private static String showTables() {
-        String nowPath = SQLConstant.getCurrentDbPath();
-        List<String> tableList = Utils.getAllTables(nowPath);
+    private static QueryResult showTables(String dbName) {
+        if (dbName == null) {
+            return QueryResult.error("ERROR: 未选择数据库，请先执行 USE 数据库名");
+        }
+        List<String> tableList = Utils.getAllTables(SQLConstant.getDatabasePath(dbName));
 
         if (tableList.isEmpty()) {
-            return "当前数据库中没有表";
+            return QueryResult.fromMessage("当前数据库中没有表", 0);
         }
 
-        // 获取数据库名
-        int index = nowPath.lastIndexOf("\\");
-        String dbName = nowPath.substring(index + 1);
-
         List<String> headers = new ArrayList<>();
         headers.add(dbName);
 
@@ -78,6 +108,69 @@ public class Show {
             rows.add(row);
         }
 
-        return TableGenerator.generateTable(headers, rows);
+        return QueryResult.textResultSet(headers, rows);
+    }
+
+    /**
+     * 显示各表的行锁竞争统计
+     */
+    private static QueryResult showLockStatus() {
+        List<List<String>> rows = LockManager.getLockStatistics();
+        if (rows.isEmpty()) {
+            return QueryResult.fromMessage("暂无行锁统计", 0);
+        }
+
+        List<String> headers = Arrays.asList("Table", "Acquired", "Waits", "Avg_wait_ms",
+                "Timeouts", "Deadlocks", "Held");
+        return QueryResult.textResultSet(headers, rows);
+    }
+
+    /**
+     * 显示引擎的总体运行指标，以及按语句类型的次数、扫描/返回/影响行数和延迟分位数
+     */
+    private static String showStatus() {
+        String status = TableGenerator.generateTable(Arrays.asList("Variable_name", "Value"), Metrics.getStatus());
+        List<List<String>> statements = Metrics.getStatementStatus();
+        if (statements.isEmpty()) {
+            return status;
+        }
+        return status + "\n" + TableGenerator.generateTable(STATEMENT_HEADERS, statements);
+    }
+
+    // SHOW STATUS的单表形式：按语句类型的统计逐项展开，如select.P99_ms
+    private static QueryResult statusResult() {
+        List<List<String>> rows = new ArrayList<>(Metrics.getStatus());
+        for (List<String> statement : Metrics.getStatementStatus()) {
+            for (int i = 1; i < statement.size(); i++) {
+                rows.add(Arrays.asList(statement.get(0) + "." + STATEMENT_HEADERS.get(i), statement.get(i)));
+            }
+        }
+        return QueryResult.textResultSet(Arrays.asList("Variable_name", "Value"), rows);
+    }
+
+    /**
+     * 显示各表的读写指标，选择了数据库时只显示该库的表
+     */
+    private static QueryResult showTableStatus(String dbName) {
+        List<List<String>> rows = Metrics.getTableStatus(dbName);
+        if (rows.isEmpty()) {
+            return QueryResult.fromMessage("暂无表指标", 0);
+        }
+        List<String> headers = Arrays.asList("Table", "Statements", "Reads", "Rows_read", "Bytes_read",
+                "Rows_written", "Bytes_written", "Blocks_skipped", "Lock_waits", "P50_ms", "P99_ms");
+        return QueryResult.textResultSet(headers, rows);
+    }
+
+    /**
+     * 显示当前会话的设置，未设置的项显示默认值
+     */
+    private static QueryResult showSettings(Session session) {
+        List<List<String>> rows = new ArrayList<>();
+        rows.add(Arrays.asList(TableScanner.PARALLELISM_SETTING,
+                String.valueOf(TableScanner.getParallelism(session))));
+        rows.add(Arrays.asList(Select.EXECUTION_MODE_SETTING,
+                session.getSetting(Select.EXECUTION_MODE_SETTING, Select.EXECUTION_MODE_VECTORIZED)));
+        rows.add(Arrays.asList(Cursors.FETCH_SIZE_SETTING, String.valueOf(Cursors.getFetchSize(session))));
+        return QueryResult.textResultSet(Arrays.asList("Setting", "Value"), rows);
     }
-}
\ No newline at end of file
+}
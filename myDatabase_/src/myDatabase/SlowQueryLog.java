@@ -0,0 +1,239 @@
+package myDatabase;
+
+import model.Session;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * 慢查询日志：执行时间超过阈值（SQLConstant.getSlowQueryMillis）的语句记入系统库的日志文件(system.log)
+ * 执行线程只把记录放入队列，由后台线程批量追加到文件；队列满时丢弃记录并计数，不阻塞语句执行。
+ * 每条记录一行，字段以制表符分隔：时间、用户、数据库、耗时(ms)、扫描行数、返回行数、执行计划摘要、SQL。
+ * SHOW SLOW QUERIES 按规范化后的语句（字面量替换为?）汇总日志。
+ */
+public class SlowQueryLog {
+    private static final int QUEUE_CAPACITY = 10_000;
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS");
+
+    private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'|\"(?:[^\"]|\"\")*\"");
+    private static final Pattern NUMBER_LITERAL = Pattern.compile("(?<![\\w.])-?\\d+(?:\\.\\d+)?(?![\\w.])");
+    private static final Pattern VALUE_LIST = Pattern.compile("\\(\\s*\\?(?:\\s*,\\s*\\?)+\\s*\\)");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private static final BlockingQueue<String> QUEUE = new LinkedBlockingQueue<>(QUEUE_CAPACITY);
+    private static final LongAdder DROPPED = new LongAdder();
+
+    static {
+        Thread writer = new Thread(SlowQueryLog::writeLoop, "slow-query-log");
+        writer.setDaemon(true);
+        writer.start();
+        // 进程退出前写出队列中剩余的记录
+        Runtime.getRuntime().addShutdownHook(new Thread(SlowQueryLog::flush, "slow-query-log-flush"));
+    }
+
+    /**
+     * 语句结束后调用，超过阈值时记录
+     * @param timer 已经结束的语句计时器，提供耗时、扫描/返回行数和计划摘要
+     */
+    public static void log(String sql, Session session, Metrics.StatementTimer timer) {
+        long threshold = SQLConstant.getSlowQueryMillis();
+        if (threshold < 0 || timer.getElapsedNanos() < threshold * 1_000_000L) {
+            return;
+        }
+        String statement = sql.trim();
+        if (SQLConstant.isSlowQueryMaskLiterals()) {
+            statement = maskLiterals(statement);
+        }
+        String entry = String.join("\t",
+                LocalDateTime.now().format(TIME_FORMAT),
+                escape(session == null ? "" : session.getUsername()),
+                escape(session == null || session.getCurrentDatabase() == null ? "" : session.getCurrentDatabase()),
+                String.format("%.3f", timer.getElapsedNanos() / 1e6),
+                Long.toString(timer.getRowsExamined()),
+                Long.toString(timer.getRowsReturned()),
+                escape(timer.getPlanSummary() == null ? "-" : timer.getPlanSummary()),
+                escape(statement));
+        if (!QUEUE.offer(entry)) {
+            DROPPED.increment();
+        }
+    }
+
+    /**
+     * 把SQL中的字符串和数字字面量替换为?，值列表合并为一个
+     */
+    public static String maskLiterals(String sql) {
+        String masked = STRING_LITERAL.matcher(sql).replaceAll("?");
+        masked = NUMBER_LITERAL.matcher(masked).replaceAll("?");
+        return VALUE_LIST.matcher(masked).replaceAll("(?, ...)");
+    }
+
+    /**
+     * 规范化语句：替换字面量、合并空白、转为小写并去掉末尾的分号，只有字面量不同的语句规范化后相同
+     */
+    public static String normalize(String sql) {
+        String normalized = WHITESPACE.matcher(maskLiterals(sql.trim())).replaceAll(" ").toLowerCase();
+        return normalized.endsWith(";") ? normalized.substring(0, normalized.length() - 1).trim() : normalized;
+    }
+
+    /**
+     * SHOW SLOW QUERIES：按规范化语句汇总日志，按总耗时降序排列
+     */
+    public static String processShowSlowQueries() {
+        QueryResult result = executeShowSlowQueries();
+        if (!result.isResultSet()) {
+            return result.getMessage();
+        }
+        String table = TableGenerator.generateTable(result.headers, result.rows);
+        return result.getMessage() == null ? table : table + "\n" + result.getMessage();
+    }
+
+    /**
+     * SHOW SLOW QUERIES的结构化结果，日志队列丢弃过记录时在结果信息中说明
+     */
+    public static QueryResult executeShowSlowQueries() {
+        flush();
+        Path logPath = logPath();
+        if (!Files.exists(logPath)) {
+            return QueryResult.fromMessage("暂无慢查询记录", 0);
+        }
+        Map<String, Summary> summaries = new HashMap<>();
+        try {
+            for (String line : Files.readAllLines(logPath, StandardCharsets.UTF_8)) {
+                String[] fields = line.split("\t", -1);
+                if (fields.length < 8) {
+                    continue;
+                }
+                try {
+                    summaries.computeIfAbsent(normalize(unescape(fields[7])), Summary::new).add(fields);
+                } catch (NumberFormatException e) {
+                    // 不是慢查询记录的行
+                }
+            }
+        } catch (IOException e) {
+            return QueryResult.error("ERROR: 读取慢查询日志失败: " + e.getMessage());
+        }
+        if (summaries.isEmpty()) {
+            return QueryResult.fromMessage("暂无慢查询记录", 0);
+        }
+
+        List<Summary> sorted = new ArrayList<>(summaries.values());
+        sorted.sort(Comparator.comparingDouble((Summary summary) -> summary.totalMillis).reversed());
+        List<List<String>> rows = new ArrayList<>();
+        for (Summary summary : sorted) {
+            rows.add(Arrays.asList(summary.statement,
+                    String.valueOf(summary.count),
+                    String.format("%.3f", summary.totalMillis),
+                    String.format("%.3f", summary.totalMillis / summary.count),
+                    String.format("%.3f", summary.maxMillis),
+                    String.valueOf(summary.rowsExamined / summary.count),
+                    String.valueOf(summary.rowsReturned / summary.count),
+                    summary.plan,
+                    summary.lastSeen));
+        }
+        List<String> headers = Arrays.asList("Statement", "Count", "Total_ms", "Avg_ms", "Max_ms",
+                "Avg_rows_examined", "Avg_rows_returned", "Last_plan", "Last_seen");
+        QueryResult result = QueryResult.textResultSet(headers, rows);
+        long dropped = DROPPED.sum();
+        if (dropped > 0) {
+            result.setMessage("日志队列已满，丢弃了 " + dropped + " 条记录");
+        }
+        return result;
+    }
+
+    // 一类规范化语句的汇总
+    private static class Summary {
+        final String statement;
+        long count;
+        double totalMillis;
+        double maxMillis;
+        long rowsExamined;
+        long rowsReturned;
+        String plan = "-";
+        String lastSeen = "";
+
+        Summary(String statement) {
+            this.statement = statement;
+        }
+
+        void add(String[] fields) {
+            double millis = Double.parseDouble(fields[3]);
+            long examined = Long.parseLong(fields[4]);
+            long returned = Long.parseLong(fields[5]);
+            count++;
+            totalMillis += millis;
+            maxMillis = Math.max(maxMillis, millis);
+            rowsExamined += examined;
+            rowsReturned += returned;
+            plan = unescape(fields[6]);
+            lastSeen = fields[0];
+        }
+    }
+
+    private static void writeLoop() {
+        while (true) {
+            try {
+                String first = QUEUE.take();
+                List<String> batch = new ArrayList<>();
+                batch.add(first);
+                QUEUE.drainTo(batch);
+                write(batch);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    // 写出队列中已有的记录
+    private static void flush() {
+        List<String> batch = new ArrayList<>();
+        QUEUE.drainTo(batch);
+        if (!batch.isEmpty()) {
+            write(batch);
+        }
+    }
+
+    // 后台线程与flush可能同时写，追加操作串行化以免两批记录的行交错
+    private static synchronized void write(List<String> entries) {
+        try {
+            Path logPath = logPath();
+            Files.createDirectories(logPath.getParent());
+            Files.write(logPath, entries, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            System.err.println("写入慢查询日志失败: " + e.getMessage());
+        }
+    }
+
+    private static Path logPath() {
+        return Paths.get(SQLConstant.getLogFilePath(SQLConstant.getSystemDirName()));
+    }
+
+    // 字段中的反斜杠、制表符和换行转义，保证一条记录占一行
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\t", "\\t").replace("\r", "\\r").replace("\n", "\\n");
+    }
+
+    private static String unescape(String value) {
+        StringBuilder sb = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c != '\\' || i + 1 == value.length()) {
+                sb.append(c);
+                continue;
+            }
+            char next = value.charAt(++i);
+            sb.append(next == 't' ? '\t' : next == 'r' ? '\r' : next == 'n' ? '\n' : next);
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,475 @@
+package myDatabase;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.StampedLock;
+import java.util.regex.Pattern;
+
+/**
+ * 表数据文件(.trd)的读写
+ * 文本格式：3行表头（列名、类型、约束）后每行一条记录，字段以分隔符连接。
+ * 二进制格式：第一行是格式标记，其后是同样的3行文本表头，再后每行一条按RowCodec编码的记录。
+ * 处理类通过本类按文本行或按字段读写记录，不必关心文件格式；改写文件时保持原有格式。
+ * 改写大量记录的调用方（如LockManager）应使用readRecords/writeRecords，记录不必先拼成文本行再拆开。
+ */
+public class TableFile {
+    // 二进制格式的第一行，以0字节开头，文本表头不可能以此开头
+    public static final String BINARY_MAGIC = "\u0000TRD1";
+    public static final int HEADER_LINES = 3;
+    // 各表文件的替换锁：替换数据文件时持有写锁，读取方用乐观读的戳记判断其间文件是否被替换（见replaceStamp）
+    private static final Map<Path, StampedLock> REPLACE_LOCKS = new ConcurrentHashMap<>();
+
+    /**
+     * 表头信息
+     */
+    public static class Header {
+        // 列名、类型、约束三行
+        public final String[] lines;
+        // 第一条记录在文件中的字节位置
+        public final long dataStart;
+        public final boolean binary;
+
+        Header(String[] lines, long dataStart, boolean binary) {
+            this.lines = lines;
+            this.dataStart = dataStart;
+            this.binary = binary;
+        }
+
+        public ColumnType[] columnTypes() {
+            return TableFile.columnTypes(lines[1]);
+        }
+    }
+
+    /**
+     * 整个表的内容：表头各行和已拆分（二进制格式为已解码）成字段的记录，空行不算记录
+     */
+    public static class Records {
+        // 列名、类型、约束三行，文件不完整时可能不足3行
+        public final List<String> header;
+        public final List<String[]> rows;
+
+        Records(List<String> header, List<String[]> rows) {
+            this.header = header;
+            this.rows = rows;
+        }
+    }
+
+    /**
+     * 读取表头，文件不足3行表头时返回null
+     */
+    public static Header readHeader(Path path) throws IOException {
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(path))) {
+            List<String> lines = new ArrayList<>();
+            ByteArrayOutputStream line = new ByteArrayOutputStream();
+            long position = 0;
+            boolean binary = false;
+            int b;
+            while (lines.size() < HEADER_LINES && (b = in.read()) >= 0) {
+                position++;
+                if (b != '\n') {
+                    line.write(b);
+                    continue;
+                }
+                String text = line.toString(StandardCharsets.UTF_8).replaceAll("\r$", "");
+                line.reset();
+                if (position == BINARY_MAGIC.length() + 1 && text.equals(BINARY_MAGIC)) {
+                    binary = true;
+                } else {
+                    lines.add(text);
+                }
+            }
+            if (lines.size() < HEADER_LINES) {
+                return null;
+            }
+            return new Header(lines.toArray(new String[0]), position, binary);
+        }
+    }
+
+    public static boolean isBinary(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return false;
+        }
+        try (InputStream in = Files.newInputStream(path)) {
+            return in.read() == 0;
+        }
+    }
+
+    /**
+     * 按文本行读取整个表：前3行是表头，其后每行是一条以分隔符连接字段的记录
+     */
+    public static List<String> readLines(Path path) throws IOException {
+        Records records = readRecords(path);
+        List<String> lines = new ArrayList<>(records.header.size() + records.rows.size());
+        lines.addAll(records.header);
+        String separator = SQLConstant.getFieldSeparator();
+        for (String[] values : records.rows) {
+            lines.add(String.join(separator, values));
+        }
+        return lines;
+    }
+
+    /**
+     * 读取整个表，记录直接拆分（或解码）成字段，不拼接成文本行
+     */
+    public static Records readRecords(Path path) throws IOException {
+        EngineEvents.ScanEvent event = new EngineEvents.ScanEvent();
+        event.begin();
+        Records records = decodeRecords(path);
+        long size = Files.size(path);
+        long rows = records.rows.size();
+        ExecutionMonitor.current().bytesRead(size);
+        Metrics.TableMetrics table = Metrics.table(path);
+        table.reads.increment();
+        table.read(rows, size);
+        event.end();
+        if (event.shouldCommit()) {
+            event.table = table.name;
+            event.rows = rows;
+            event.bytes = size;
+            event.parallelism = 1;
+            event.commit();
+        }
+        return records;
+    }
+
+    private static Records decodeRecords(Path path) throws IOException {
+        List<String> header = new ArrayList<>();
+        List<String[]> rows = new ArrayList<>();
+        if (!isBinary(path)) {
+            Pattern splitter = Pattern.compile(Pattern.quote(SQLConstant.getFieldSeparator()));
+            for (String line : Files.readAllLines(path)) {
+                if (header.size() < HEADER_LINES) {
+                    header.add(line);
+                } else if (!line.isEmpty()) {
+                    rows.add(splitter.split(line, -1));
+                }
+            }
+            return new Records(header, rows);
+        }
+        byte[] bytes = Files.readAllBytes(path);
+
+        ColumnType[] types = null;
+        boolean magicSkipped = false;
+        int lineStart = 0;
+        for (int i = 0; i <= bytes.length; i++) {
+            if (i < bytes.length && bytes[i] != '\n') {
+                continue;
+            }
+            int lineEnd = i;
+            if (lineEnd > lineStart && bytes[lineEnd - 1] == '\r') {
+                lineEnd--;
+            }
+            if (!magicSkipped) {
+                magicSkipped = true;
+            } else if (header.size() < HEADER_LINES) {
+                header.add(new String(bytes, lineStart, lineEnd - lineStart, StandardCharsets.UTF_8));
+            } else if (lineEnd > lineStart) {
+                if (types == null) {
+                    types = columnTypes(header.get(1));
+                }
+                int end = RowCodec.unescape(bytes, lineStart, lineEnd);
+                rows.add(RowCodec.decode(bytes, lineStart, end, types));
+            }
+            lineStart = i + 1;
+        }
+        return new Records(header, rows);
+    }
+
+    /**
+     * 用lines（3行表头 + 记录）替换整个表文件，保持文件原有格式；文件不存在时按默认格式创建
+     * 先写临时文件再替换，写入过程中出错不会损坏原文件
+     */
+    public static void writeLines(Path path, List<String> lines) throws IOException {
+        boolean binary = Files.exists(path) ? isBinary(path) : SQLConstant.isBinaryStorageDefault();
+        writeLines(path, lines, binary);
+    }
+
+    /**
+     * 按指定格式写入整个表文件，同时重新生成区块摘要（见ZoneMap）；空行不写入
+     */
+    public static void writeLines(Path path, List<String> lines, boolean binary) throws IOException {
+        Pattern splitter = Pattern.compile(Pattern.quote(SQLConstant.getFieldSeparator()));
+        List<String[]> rows = new ArrayList<>();
+        for (int i = HEADER_LINES; i < lines.size(); i++) {
+            if (!lines.get(i).isEmpty()) {
+                rows.add(splitter.split(lines.get(i), -1));
+            }
+        }
+        writeRecords(path, lines.subList(0, Math.min(HEADER_LINES, lines.size())), rows, binary);
+    }
+
+    /**
+     * 用表头和按字段给出的记录替换整个表文件，保持文件原有格式；文件不存在时按默认格式创建
+     */
+    public static void writeRecords(Path path, List<String> header, List<String[]> rows) throws IOException {
+        boolean binary = Files.exists(path) ? isBinary(path) : SQLConstant.isBinaryStorageDefault();
+        writeRecords(path, header, rows, binary);
+    }
+
+    /**
+     * 按指定格式写入整个表文件，同时重新生成区块摘要（见ZoneMap）
+     */
+    public static void writeRecords(Path path, List<String> header, List<String[]> rows, boolean binary)
+            throws IOException {
+        EngineEvents.WriteEvent event = new EngineEvents.WriteEvent();
+        event.begin();
+        Path tempPath = Paths.get(path + ".tmp");
+        String separator = Pattern.quote(SQLConstant.getFieldSeparator());
+        String[] names = header.isEmpty() ? new String[0] : header.get(0).split(separator);
+        ZoneMap zoneMap = new ZoneMap(names.length);
+        BloomIndex bloomIndex = BloomIndex.forRewrite(path, names);
+        long position = 0;
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(tempPath), 1 << 16)) {
+            byte[] lineSeparator = (binary ? "\n" : System.lineSeparator()).getBytes(StandardCharsets.UTF_8);
+            if (binary) {
+                byte[] magic = (BINARY_MAGIC + "\n").getBytes(StandardCharsets.UTF_8);
+                out.write(magic);
+                position += magic.length;
+            }
+            for (int i = 0; i < Math.min(HEADER_LINES, header.size()); i++) {
+                byte[] line = header.get(i).getBytes(StandardCharsets.UTF_8);
+                out.write(line);
+                out.write(lineSeparator);
+                position += line.length + lineSeparator.length;
+            }
+            ColumnType[] types = header.size() > 1 ? columnTypes(header.get(1)) : new ColumnType[0];
+            ByteArrayOutputStream record = new ByteArrayOutputStream(256);
+            for (String[] values : rows) {
+                long start = position;
+                if (binary) {
+                    record.reset();
+                    RowCodec.encode(values, types, record);
+                    record.write('\n');
+                    record.writeTo(out);
+                    position += record.size();
+                } else {
+                    byte[] bytes = String.join(SQLConstant.getFieldSeparator(), values).getBytes(StandardCharsets.UTF_8);
+                    out.write(bytes);
+                    out.write(lineSeparator);
+                    position += bytes.length + lineSeparator.length;
+                }
+                zoneMap.add(values, start, position);
+                if (bloomIndex != null) {
+                    bloomIndex.add(values, start, position);
+                }
+            }
+        }
+        // 先使旧的摘要和过滤器失效再替换数据文件，任何时刻都不会有与数据不符的有效摘要
+        ZoneMap.invalidate(path);
+        BloomIndex.invalidate(path);
+        // 摘要按数据文件的大小和修改时间校验，不会配错文件，所以替换锁只需在改名时持有
+        StampedLock replaceLock = replaceLock(path);
+        long stamp = replaceLock.writeLock();
+        try {
+            // REPLACE_EXISTING在Unix上是先删除再改名，并发的读取会短暂看到表不存在；ATOMIC_MOVE直接rename覆盖
+            Files.move(tempPath, path, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            replaceLock.unlockWrite(stamp);
+        }
+
+        zoneMap.save(path);
+        if (bloomIndex != null) {
+            bloomIndex.save(path);
+        }
+        // 改写的行数由调用方（如LockManager.rewriteMatchingRows）记录
+        ExecutionMonitor.current().bytesWritten(position);
+        Metrics.TableMetrics table = Metrics.table(path);
+        table.written(0, position);
+        event.end();
+        if (event.shouldCommit()) {
+            event.table = table.name;
+            event.rows = rows.size();
+            event.bytes = position;
+            event.fullRewrite = true;
+            event.commit();
+        }
+    }
+
+    /**
+     * 替换表定义文件(.tdf)：先写临时文件再原子改名，并发的语句不会读到写了一半的表结构；调用方应持有表闩锁
+     */
+    public static void writeDefinition(Path path, List<String> lines) throws IOException {
+        Path tempPath = Paths.get(path + ".tmp");
+        Files.write(tempPath, lines);
+        Files.move(tempPath, path, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * 顺序读一遍表，重新生成区块摘要和布隆过滤器，数据文件不变；调用方应持有表闩锁
+     */
+    public static void rebuildIndexes(Path path) throws IOException {
+        Header header = readHeader(path);
+        if (header == null) {
+            return;
+        }
+        String separator = Pattern.quote(SQLConstant.getFieldSeparator());
+        String[] names = header.lines[0].split(separator);
+        ColumnType[] types = header.columnTypes();
+        ZoneMap zoneMap = new ZoneMap(names.length);
+        BloomIndex bloomIndex = BloomIndex.forRewrite(path, names);
+        try (InputStream in = Files.newInputStream(path)) {
+            in.skipNBytes(header.dataStart);
+            byte[] buffer = new byte[1 << 16];
+            byte[] line = new byte[256];
+            int length = 0;
+            long position = header.dataStart;
+            long lineStart = position;
+            int read;
+            while ((read = in.read(buffer)) >= 0) {
+                for (int i = 0; i < read; i++) {
+                    position++;
+                    if (buffer[i] != '\n') {
+                        if (length == line.length) {
+                            line = Arrays.copyOf(line, length * 2);
+                        }
+                        line[length++] = buffer[i];
+                        continue;
+                    }
+                    addRecord(zoneMap, bloomIndex, recordValues(line, length, header.binary, types, separator),
+                            lineStart, position);
+                    length = 0;
+                    lineStart = position;
+                }
+            }
+            // 文件末尾没有换行符的最后一行
+            addRecord(zoneMap, bloomIndex, recordValues(line, length, header.binary, types, separator),
+                    lineStart, position);
+        }
+        zoneMap.save(path);
+        if (bloomIndex != null) {
+            bloomIndex.save(path);
+        }
+    }
+
+    private static void addRecord(ZoneMap zoneMap, BloomIndex bloomIndex, String[] values, long start, long end) {
+        if (values != null) {
+            zoneMap.add(values, start, end);
+            if (bloomIndex != null) {
+                bloomIndex.add(values, start, end);
+            }
+        }
+    }
+
+    // 把一行数据（不含换行符）还原成各字段的文本，空行返回null
+    private static String[] recordValues(byte[] line, int length, boolean binary, ColumnType[] types,
+                                         String separator) {
+        if (length > 0 && line[length - 1] == '\r') {
+            length--;
+        }
+        if (length == 0) {
+            return null;
+        }
+        if (binary) {
+            int end = RowCodec.unescape(line, 0, length);
+            return RowCodec.decode(line, 0, end, types);
+        }
+        return new String(line, 0, length, StandardCharsets.UTF_8).split(separator, -1);
+    }
+
+    /**
+     * 创建只有表头的表文件，使用默认格式
+     */
+    public static void create(Path path, String namesLine, String typesLine, String constraintsLine)
+            throws IOException {
+        writeLines(path, Arrays.asList(namesLine, typesLine, constraintsLine), SQLConstant.isBinaryStorageDefault());
+    }
+
+    /**
+     * 在表末尾追加一条记录，表有有效的区块摘要时一并更新
+     */
+    public static void appendRow(Path path, String[] record) throws IOException {
+        EngineEvents.WriteEvent event = new EngineEvents.WriteEvent();
+        event.begin();
+        Header header = readHeader(path);
+        ZoneMap zoneMap = ZoneMap.load(path);
+        long oldSize = Files.size(path);
+        long oldModified = lastModified(path);
+        byte[] bytes;
+        if (header != null && header.binary) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(128);
+            RowCodec.encode(record, header.columnTypes(), out);
+            out.write('\n');
+            bytes = out.toByteArray();
+        } else {
+            bytes = (String.join(SQLConstant.getFieldSeparator(), record) + System.lineSeparator())
+                    .getBytes(StandardCharsets.UTF_8);
+        }
+        Files.write(path, bytes, StandardOpenOption.APPEND);
+        ExecutionMonitor.current().bytesWritten(bytes.length);
+        Metrics.TableMetrics table = Metrics.table(path);
+        table.written(1, bytes.length);
+
+        if (zoneMap != null) {
+            zoneMap.add(record, oldSize, oldSize + bytes.length);
+            zoneMap.save(path);
+        }
+        if (header != null) {
+            String[] names = header.lines[0].split(Pattern.quote(SQLConstant.getFieldSeparator()));
+            BloomIndex.appendRow(path, names, oldSize, oldModified, record, oldSize, oldSize + bytes.length);
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.table = table.name;
+            event.rows = 1;
+            event.bytes = bytes.length;
+            event.commit();
+        }
+    }
+
+    /**
+     * 把表文件转换为指定格式，已是该格式时返回false
+     */
+    public static boolean convert(Path path, boolean binary) throws IOException {
+        if (isBinary(path) == binary) {
+            return false;
+        }
+        Records records = readRecords(path);
+        writeRecords(path, records.header, records.rows, binary);
+        return true;
+    }
+
+    /**
+     * 文件的修改时间（纳秒），与文件大小一起用来判断区块摘要和布隆过滤器是否与数据文件一致
+     */
+    static long lastModified(Path path) throws IOException {
+        return Files.getLastModifiedTime(path).to(TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 开始读取表文件前取得戳记，正在替换文件时等替换完成；之后用isUnchanged判断其间文件是否在本进程中被替换过。
+     * 被删除的文件的inode号会被新文件重用，只比较文件标识不能发现先后两次替换
+     */
+    static long replaceStamp(Path path) {
+        StampedLock lock = replaceLock(path);
+        long stamp = lock.tryOptimisticRead();
+        while (stamp == 0) {
+            lock.unlockRead(lock.readLock());
+            stamp = lock.tryOptimisticRead();
+        }
+        return stamp;
+    }
+
+    static boolean isUnchanged(Path path, long stamp) {
+        return replaceLock(path).validate(stamp);
+    }
+
+    private static StampedLock replaceLock(Path path) {
+        return REPLACE_LOCKS.computeIfAbsent(path.toAbsolutePath().normalize(), key -> new StampedLock());
+    }
+
+    static ColumnType[] columnTypes(String typesLine) {
+        String[] types = typesLine.split(Pattern.quote(SQLConstant.getFieldSeparator()));
+        ColumnType[] columnTypes = new ColumnType[types.length];
+        for (int i = 0; i < types.length; i++) {
+            columnTypes[i] = ColumnType.of(types[i]);
+        }
+        return columnTypes;
+    }
+}
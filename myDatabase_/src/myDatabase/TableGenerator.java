@@ -1,10 +1,12 @@
 package myDatabase;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.*;
-import java.util.function.Function;
 
 /**
  * 生成表格的类, 仅对英文的表格有效
+ * generateTable生成完整的表格字符串；writeTable流式写出，可限制输出行数，用于很大的结果。
  */
 public class TableGenerator {
 
@@ -14,6 +16,12 @@ public class TableGenerator {
     private static String TABLE_V_SPLIT_SYMBOL = "|";
     private static String TABLE_H_SPLIT_SYMBOL = "-";
 
+    // 流式输出时用于计算列宽的行数
+    public static final int SAMPLE_ROWS = 1000;
+    // 流式输出时每批写出的字符数
+    private static final int BATCH_CHARS = 1 << 16;
+    private static final String SPACES = " ".repeat(256);
+
     /**
      *
      * @param headersList
@@ -28,107 +36,161 @@ public class TableGenerator {
 
         int rowHeight = overRiddenHeaderHeight.length > 0 ? overRiddenHeaderHeight[0] : 1;
 
-        Map<Integer, Integer> columnMaxWidthMapping = getMaximumWidhtofTable(headersList, rowsList);
+        try {
+            render(stringBuilder, headersList, rowsList.iterator(), columnWidths(headersList, rowsList), rowHeight, -1);
+        } catch (IOException e) {
+            // 写入StringBuilder不会出错
+            throw new UncheckedIOException(e);
+        }
+        return stringBuilder.toString();
+    }
 
-        createRowLine(stringBuilder, headersList.size(), columnMaxWidthMapping);
-        stringBuilder.append(NEW_LINE);
+    /**
+     * 流式输出表格：列宽取自前SAMPLE_ROWS行（不超过maxRows），之后更宽的值截断并以...结尾
+     * 输出按批写入out，占用的内存与结果行数无关；out是Writer时由调用方负责flush。
+     * @param maxRows 最多输出的行数，超出的行只计数，在表格之后输出"... N more rows"；负数表示不限
+     * @return 结果的总行数（包括没有输出的行）
+     */
+    public static long writeTable(Appendable out, List<String> headers, Iterator<? extends List<String>> rows,
+                                  int maxRows) throws IOException {
+        int sampleSize = maxRows < 0 ? SAMPLE_ROWS : Math.min(SAMPLE_ROWS, maxRows);
+        List<List<String>> sample = new ArrayList<>();
+        while (sample.size() < sampleSize && rows.hasNext()) {
+            sample.add(rows.next());
+        }
+        Iterator<List<String>> sampled = sample.iterator();
+        Iterator<List<String>> all = new Iterator<List<String>>() {
+            @Override
+            public boolean hasNext() {
+                return sampled.hasNext() || rows.hasNext();
+            }
+
+            @Override
+            public List<String> next() {
+                return sampled.hasNext() ? sampled.next() : rows.next();
+            }
+        };
+        return render(out, headers, all, columnWidths(headers, sample), 1, maxRows);
+    }
 
-        for (int headerIndex = 0; headerIndex < headersList.size(); headerIndex++) {
-            fillCell(stringBuilder, headersList.get(headerIndex), headerIndex, columnMaxWidthMapping);
+    /**
+     * 按给定列宽（如由表结构中的varchar长度得到）流式输出表格，不需要先读取数据
+     * @param columnWidths 每列内容的最大显示宽度，更宽的值截断
+     */
+    public static long writeTable(Appendable out, List<String> headers, Iterator<? extends List<String>> rows,
+                                  int[] columnWidths, int maxRows) throws IOException {
+        return render(out, headers, rows, columnWidths, 1, maxRows);
+    }
+
+    /**
+     * 每列内容（表头和各行的值）的最大显示宽度，中文字符算2个宽度
+     */
+    public static int[] columnWidths(List<String> headers, Iterable<? extends List<String>> rows) {
+        int[] widths = new int[headers.size()];
+        for (int i = 0; i < headers.size(); i++) {
+            widths[i] = displayWidth(headers.get(i));
         }
-        stringBuilder.append(NEW_LINE);
-        createRowLine(stringBuilder, headersList.size(), columnMaxWidthMapping);
+        for (List<String> row : rows) {
+            for (int i = 0; i < Math.min(row.size(), widths.length); i++) {
+                widths[i] = Math.max(widths[i], displayWidth(row.get(i)));
+            }
+        }
+        return widths;
+    }
+
+    private static long render(Appendable out, List<String> headers, Iterator<? extends List<String>> rows,
+                               int[] contentWidths, int rowHeight, int maxRows) throws IOException {
+        // 写入StringBuilder时直接使用它，否则先在缓冲区中拼接，每满一批写出一次
+        StringBuilder stringBuilder = out instanceof StringBuilder ? (StringBuilder) out : new StringBuilder(BATCH_CHARS * 2);
+        int[] widths = new int[contentWidths.length];
+        for (int i = 0; i < widths.length; i++) {
+            widths[i] = contentWidths[i] + 2; // 增加额外间距
+        }
+        String rowLine = createRowLine(widths);
 
-        for (List<String> row : rowsList) {
+        stringBuilder.append(rowLine);
+        stringBuilder.append(NEW_LINE);
+        for (int headerIndex = 0; headerIndex < headers.size(); headerIndex++) {
+            fillCell(stringBuilder, headers.get(headerIndex), headerIndex, widths);
+        }
+        stringBuilder.append(NEW_LINE);
+        stringBuilder.append(rowLine);
+
+        long rendered = 0;
+        long skipped = 0;
+        while (rows.hasNext()) {
+            List<String> row = rows.next();
+            if (maxRows >= 0 && rendered >= maxRows) {
+                skipped++;
+                continue;
+            }
             for (int i = 0; i < rowHeight; i++) {
                 stringBuilder.append(NEW_LINE);
             }
-
-            for (int cellIndex = 0; cellIndex < row.size(); cellIndex++) {
-                fillCell(stringBuilder, row.get(cellIndex), cellIndex, columnMaxWidthMapping);
+            for (int cellIndex = 0; cellIndex < Math.min(row.size(), widths.length); cellIndex++) {
+                fillCell(stringBuilder, row.get(cellIndex), cellIndex, widths);
+            }
+            rendered++;
+            if (stringBuilder != out && stringBuilder.length() >= BATCH_CHARS) {
+                out.append(stringBuilder);
+                stringBuilder.setLength(0);
             }
         }
 
         stringBuilder.append(NEW_LINE);
-        createRowLine(stringBuilder, headersList.size(), columnMaxWidthMapping);
-        return stringBuilder.toString();
+        stringBuilder.append(rowLine);
+        if (skipped > 0) {
+            stringBuilder.append(NEW_LINE).append("... ").append(skipped).append(" more rows");
+        }
+        if (stringBuilder != out) {
+            out.append(stringBuilder);
+        }
+        return rendered + skipped;
     }
 
-
-
     private static void fillSpace(StringBuilder stringBuilder, int length) {
-        for (int i = 0; i < length - 1; i++) {
-            stringBuilder.append(" ");
+        for (int remaining = length; remaining > 0; remaining -= SPACES.length()) {
+            stringBuilder.append(SPACES, 0, Math.min(remaining, SPACES.length()));
         }
     }
 
-    private static void createRowLine(StringBuilder stringBuilder, int headersListSize,
-                                      Map<Integer, Integer> columnMaxWidthMapping) {
-        for (int i = 0; i < headersListSize; i++) {
+    private static String createRowLine(int[] widths) {
+        StringBuilder stringBuilder = new StringBuilder();
+        for (int i = 0; i < widths.length; i++) {
             if (i == 0) {
                 stringBuilder.append(TABLE_JOINT_SYMBOL);
             }
-
-            for (int j = 0; j < columnMaxWidthMapping.get(i) + PADDING_SIZE * 2; j++) {
+            for (int j = 0; j < widths[i] + PADDING_SIZE * 2; j++) {
                 stringBuilder.append(TABLE_H_SPLIT_SYMBOL);
             }
             stringBuilder.append(TABLE_JOINT_SYMBOL);
         }
+        return stringBuilder.toString();
     }
 
-    private static Map<Integer, Integer> getMaximumWidhtofTable(List<String> headers, List<List<String>> rows) {
-        Map<Integer, Integer> columnMaxWidthMapping = new HashMap<>();
-
-        // 处理中英文字符宽度
-        Function<String, Integer> strWidth = s -> {
-            int width = 0;
-            for (char c : s.toCharArray()) {
-                width += (c >= '\u4e00' && c <= '\u9fa5') ? 2 : 1; // 中文算2个宽度
-            }
-            return width;
-        };
-
-        // 计算每列最大宽度
-        for (int i = 0; i < headers.size(); i++) {
-            int max = strWidth.apply(headers.get(i));
-            for (List<String> row : rows) {
-                if (i < row.size()) {
-                    max = Math.max(max, strWidth.apply(row.get(i)));
-                }
-            }
-            columnMaxWidthMapping.put(i, max + 2); // 增加额外间距
-        }
-        return columnMaxWidthMapping;
-    }
-
-    private static int getOptimumCellPadding(int cellIndex, int datalength, Map<Integer, Integer> columnMaxWidthMapping,
-                                             int cellPaddingSize) {
-        if (datalength % 2 != 0) {
-            datalength++;
+    // 处理中英文字符宽度
+    private static int displayWidth(String s) {
+        int width = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            width += (c >= '\u4e00' && c <= '\u9fa5') ? 2 : 1; // 中文算2个宽度
         }
-
-        if (datalength < columnMaxWidthMapping.get(cellIndex)) {
-            cellPaddingSize = cellPaddingSize + (columnMaxWidthMapping.get(cellIndex) - datalength) / 2;
-        }
-
-        return cellPaddingSize;
+        return width;
     }
 
-    private static void fillCell(StringBuilder stringBuilder, String cell, int cellIndex,
-                                 Map<Integer, Integer> columnMaxWidthMapping) {
-        int cellPaddingSize = getOptimumCellPadding(cellIndex, cell.length(), columnMaxWidthMapping, PADDING_SIZE);
+    private static void fillCell(StringBuilder stringBuilder, String cell, int cellIndex, int[] widths) {
+        int width = widths[cellIndex];
 
         if (cellIndex == 0) {
             stringBuilder.append(TABLE_V_SPLIT_SYMBOL);
         }
 
-        // 处理长文本换行
-        if (cell.length() > columnMaxWidthMapping.get(cellIndex)) {
-            String truncated = cell.substring(0, columnMaxWidthMapping.get(cellIndex)-3) + "...";
-            stringBuilder.append(" ").append(truncated).append(" ");
+        // 超出列宽的文本截断
+        if (cell.length() > width) {
+            stringBuilder.append(" ").append(cell, 0, Math.max(0, width - 3)).append("...");
         } else {
             stringBuilder.append(" ").append(cell);
-            fillSpace(stringBuilder, columnMaxWidthMapping.get(cellIndex) - cell.length() + 1);
+            fillSpace(stringBuilder, width - cell.length());
         }
 
         stringBuilder.append(TABLE_V_SPLIT_SYMBOL);
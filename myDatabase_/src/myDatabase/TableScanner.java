@@ -0,0 +1,550 @@
+package myDatabase;
+
+import model.Session;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+/**
+ * 表数据文件(.trd)的并行扫描器
+ * 数据区（前3行表头之后）按字节范围切分成若干块，块边界对齐到换行符之后，
+ * 各块在所有扫描共享的ForkJoinPool中并行地解析、过滤和投影，结果按块的顺序合并，与顺序扫描的行序一致。
+ * 并行度取自会话设置 parallelism，即一次扫描同时执行的任务数（不超过共享线程池的线程数，即处理器数），
+ * 数据量较小时直接在调用线程中扫描。
+ * 设置了WHERE条件且表有有效的区块摘要（ZoneMap）或布隆过滤器（BloomIndex）时，先跳过不可能有结果的区块，只切分剩下的范围。
+ * 改写表时整个文件被替换（见TableFile.writeLines），扫描器记下打开时的文件标识和替换戳记（见TableFile.replaceStamp），
+ * 扫描前发现文件已被替换就重新读取表头，保证表头、数据区范围、区块摘要和读取的数据都来自同一个文件。
+ */
+public class TableScanner {
+    // 会话中控制扫描并行度的设置名
+    public static final String PARALLELISM_SETTING = "parallelism";
+    // 并行扫描时每块的最小字节数，数据区小于该值时不拆分
+    private static final long MIN_CHUNK_BYTES = 1L << 20;
+    // 单块上限，限制每个任务一次读入的内存
+    private static final long MAX_CHUNK_BYTES = 32L << 20;
+    // 每个工作线程平均分到的块数，块多一些便于负载均衡
+    private static final int CHUNKS_PER_THREAD = 4;
+    // 所有并行扫描共享的线程池，每次扫描的并行度由提交的任务数限制
+    private static final ForkJoinPool SCAN_POOL = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+
+    private final Path path;
+    private final String[] headers;
+    private final String[] types;
+    private final String[] constraints;
+    // 数据区在文件中的起止字节位置
+    private final long dataStart;
+    private final long dataEnd;
+    // 记录是否按RowCodec编码
+    private final boolean binary;
+    // 区块摘要，没有有效摘要时为null
+    private final ZoneMap zoneMap;
+    // 打开时的文件标识（Unix上是设备号和inode），文件系统不提供时为null
+    private final Object fileKey;
+    // 打开时的替换戳记
+    private final long replaceStamp;
+    // 用于跳过区块的WHERE条件
+    private VectorPredicate blockFilter;
+
+    private TableScanner(Path path, TableFile.Header header, long dataEnd, ZoneMap zoneMap, Object fileKey,
+                         long replaceStamp) {
+        this.path = path;
+        String separator = Pattern.quote(SQLConstant.getFieldSeparator());
+        this.headers = header.lines[0].split(separator);
+        this.types = header.lines[1].split(separator);
+        this.constraints = header.lines[2].split(separator, -1);
+        this.dataStart = header.dataStart;
+        this.dataEnd = dataEnd;
+        this.binary = header.binary;
+        this.zoneMap = zoneMap;
+        this.fileKey = fileKey;
+        this.replaceStamp = replaceStamp;
+    }
+
+    /**
+     * 打开表数据文件并读取表头，文件不足3行表头时返回null
+     */
+    public static TableScanner open(String tablePath) throws IOException {
+        Path path = Paths.get(tablePath);
+        while (true) {
+            long replaceStamp = TableFile.replaceStamp(path);
+            Object fileKey = fileKey(path);
+            TableFile.Header header = TableFile.readHeader(path);
+            if (header == null) {
+                return null;
+            }
+            TableScanner scanner = new TableScanner(path, header, Files.size(path), ZoneMap.load(path), fileKey,
+                    replaceStamp);
+            // 读取期间文件被替换时重新读取
+            if (scanner.isCurrent()) {
+                return scanner;
+            }
+        }
+    }
+
+    // 打开之后文件没有被替换
+    private boolean isCurrent() throws IOException {
+        return TableFile.isUnchanged(path, replaceStamp) && Objects.equals(fileKey, fileKey(path));
+    }
+
+    private static Object fileKey(Path path) throws IOException {
+        return Files.readAttributes(path, BasicFileAttributes.class).fileKey();
+    }
+
+    /**
+     * 按会话设置取得扫描并行度，未设置时使用处理器核数
+     */
+    public static int getParallelism(Session session) {
+        String value = session == null ? null : session.getSetting(PARALLELISM_SETTING);
+        if (value != null) {
+            try {
+                return Math.max(1, Integer.parseInt(value.trim()));
+            } catch (NumberFormatException ignored) {
+            }
+        }
+        return Runtime.getRuntime().availableProcessors();
+    }
+
+    public String[] getHeaders() {
+        return headers;
+    }
+
+    public String[] getTypes() {
+        return types;
+    }
+
+    public String[] getConstraints() {
+        return constraints;
+    }
+
+    public boolean isBinary() {
+        return binary;
+    }
+
+    /**
+     * 数据区的字节数
+     */
+    public long getDataBytes() {
+        return dataEnd - dataStart;
+    }
+
+    Path getPath() {
+        return path;
+    }
+
+    // 数据区在文件中的起止字节位置
+    long getDataStart() {
+        return dataStart;
+    }
+
+    long getDataEnd() {
+        return dataEnd;
+    }
+
+    public ZoneMap getZoneMap() {
+        return zoneMap;
+    }
+
+    /**
+     * 设置WHERE条件，扫描时跳过区块摘要表明不可能有满足条件的行的区块；条件本身仍由调用方逐行判断
+     */
+    public void setBlockFilter(VectorPredicate blockFilter) {
+        this.blockFilter = blockFilter;
+    }
+
+    /**
+     * 每列的类型，类型行缺少的列按VARCHAR处理
+     */
+    public ColumnType[] getColumnTypes() {
+        ColumnType[] columnTypes = new ColumnType[headers.length];
+        for (int i = 0; i < headers.length; i++) {
+            columnTypes[i] = ColumnType.of(i < types.length ? types[i] : null);
+        }
+        return columnTypes;
+    }
+
+    /**
+     * 扫描所有数据行
+     * @param parallelism 并行度，1表示在调用线程中顺序扫描
+     * @param rowMapper 对每行拆分后的字段做过滤和投影，返回null表示该行不在结果中；会在多个线程中并发调用
+     * @return 按文件中的行序排列的结果
+     */
+    public <T> List<T> scan(int parallelism, Function<String[], T> rowMapper) throws IOException {
+        return scanRanges(parallelism, scanner -> {
+            ColumnType[] columnTypes = scanner.getColumnTypes();
+            return () -> new RowHandler<>(rowMapper, scanner.binary ? columnTypes : null);
+        });
+    }
+
+    /**
+     * 按批扫描所有数据行：每个范围内的行依次装入最多RowBatch.CAPACITY行的批，装满后交给batchMapper处理
+     * @param batchMapper 对一批行做过滤和投影，返回该批的结果；同一个批对象会被复用，不要保留对它的引用
+     * @return 按文件中的行序排列的结果
+     */
+    public <T> List<T> scanBatches(int parallelism, Function<RowBatch, List<T>> batchMapper) throws IOException {
+        return scanRanges(parallelism, scanner -> {
+            ColumnType[] columnTypes = scanner.getColumnTypes();
+            return () -> new BatchHandler<>(columnTypes, scanner.binary, batchMapper);
+        });
+    }
+
+    // handlers按扫描器（文件被替换后是重新打开的扫描器）的列类型和格式创建各范围的处理器
+    private <T> List<T> scanRanges(int parallelism, Function<TableScanner, Supplier<RangeHandler<T>>> handlers)
+            throws IOException {
+        TableScanner scanner = this;
+        while (true) {
+            List<T> results = scanner.scanFile(parallelism, handlers.apply(scanner));
+            if (results != null) {
+                return results;
+            }
+            TableScanner reopened = open(path.toString());
+            if (reopened == null) {
+                return new ArrayList<>();
+            }
+            reopened.blockFilter = blockFilter;
+            scanner = reopened;
+        }
+    }
+
+    // 扫描本扫描器打开的文件，文件已被替换时返回null
+    private <T> List<T> scanFile(int parallelism, Supplier<RangeHandler<T>> handlers) throws IOException {
+        // 监视器绑定在调用线程上，先取出来交给各个扫描任务
+        ExecutionMonitor monitor = ExecutionMonitor.current();
+        ScanCounts counts = new ScanCounts(Metrics.table(path));
+        EngineEvents.ScanEvent event = new EngineEvents.ScanEvent();
+        event.begin();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            List<long[]> ranges = splitRanges(channel, parallelism, monitor, counts);
+            // 通道和布隆过滤器都在打开扫描器之后才读取，此时文件标识未变才说明它们与表头属于同一个文件；
+            // 之后文件再被替换也不影响，已打开的通道仍读取原来的文件
+            if (!isCurrent()) {
+                return null;
+            }
+            if (parallelism <= 1 || ranges.size() <= 1) {
+                List<T> results = new ArrayList<>();
+                for (long[] range : ranges) {
+                    results.addAll(scanRange(channel, range[0], range[1], binary, handlers.get(), monitor, counts));
+                }
+                return results;
+            }
+            try {
+                return scanParallel(channel, ranges, parallelism, binary, handlers, monitor, counts);
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        } finally {
+            event.end();
+            if (event.shouldCommit()) {
+                event.table = counts.table.name;
+                event.rows = counts.rows.sum();
+                event.bytes = counts.bytes.sum();
+                event.blocksSkipped = counts.blocksSkipped;
+                event.parallelism = parallelism;
+                event.commit();
+            }
+        }
+    }
+
+    // 一次扫描读取的行数和字节数，同时累加到表的指标上；各扫描线程并发累加
+    private static class ScanCounts {
+        final Metrics.TableMetrics table;
+        final LongAdder rows = new LongAdder();
+        final LongAdder bytes = new LongAdder();
+        int blocksSkipped;
+
+        ScanCounts(Metrics.TableMetrics table) {
+            this.table = table;
+            table.reads.increment();
+        }
+
+        void read(long rowCount, long byteCount) {
+            rows.add(rowCount);
+            bytes.add(byteCount);
+            table.read(rowCount, byteCount);
+        }
+
+        void blocksSkipped(int count) {
+            blocksSkipped = count;
+            table.blocksSkipped.add(count);
+        }
+    }
+
+    // 需要扫描的字节范围：从数据区中去掉区块摘要或布隆过滤器表明不可能有结果的区块，剩下的相邻部分连成一个范围
+    private List<long[]> candidateRanges(ExecutionMonitor monitor, ScanCounts counts) {
+        List<long[]> skipped = new ArrayList<>();
+        if (blockFilter != null && zoneMap != null) {
+            for (ZoneMap.Block block : zoneMap.getBlocks()) {
+                if (!blockFilter.mayMatch(block)) {
+                    skipped.add(new long[]{block.start, block.getEnd()});
+                }
+            }
+        }
+        Set<Integer> equalityColumns = blockFilter == null ? Collections.emptySet() : blockFilter.equalityColumns();
+        BloomIndex bloomIndex = equalityColumns.isEmpty() ? null : BloomIndex.load(path, headers, equalityColumns);
+        if (bloomIndex != null) {
+            for (BloomIndex.Segment segment : bloomIndex.getSegments()) {
+                if (!blockFilter.mayContain(bloomIndex, segment)) {
+                    skipped.add(new long[]{segment.start, segment.getEnd()});
+                }
+            }
+        }
+        skipped.sort(Comparator.comparingLong(range -> range[0]));
+
+        List<long[]> ranges = new ArrayList<>();
+        long position = dataStart;
+        int skippedCount = 0;
+        for (long[] skip : skipped) {
+            if (skip[1] <= position) {
+                // 已被前面的区块覆盖（摘要和过滤器跳过了同一个区块）
+                continue;
+            }
+            if (skip[0] > position) {
+                ranges.add(new long[]{position, Math.min(skip[0], dataEnd)});
+            }
+            position = skip[1];
+            skippedCount++;
+        }
+        if (position < dataEnd) {
+            ranges.add(new long[]{position, dataEnd});
+        }
+        monitor.blocksSkipped(skippedCount);
+        counts.blocksSkipped(skippedCount);
+        return ranges;
+    }
+
+    // 把要扫描的范围切成块：每块的起点都是行首，顺序扫描也按块读取，避免把整个数据区读入内存
+    private List<long[]> splitRanges(FileChannel channel, int parallelism, ExecutionMonitor monitor,
+                                     ScanCounts counts)
+            throws IOException {
+        List<long[]> candidates = candidateRanges(monitor, counts);
+        long totalBytes = 0;
+        for (long[] range : candidates) {
+            totalBytes += range[1] - range[0];
+        }
+        long chunkBytes = MAX_CHUNK_BYTES;
+        if (parallelism > 1) {
+            chunkBytes = totalBytes / ((long) parallelism * CHUNKS_PER_THREAD);
+            chunkBytes = Math.min(MAX_CHUNK_BYTES, Math.max(MIN_CHUNK_BYTES, chunkBytes));
+        }
+        List<long[]> ranges = new ArrayList<>();
+        for (long[] range : candidates) {
+            long start = range[0];
+            long end = range[1];
+            while (end - start > chunkBytes) {
+                long next = nextLineStart(channel, start + chunkBytes, end);
+                if (next >= end) {
+                    break;
+                }
+                ranges.add(new long[]{start, next});
+                start = next;
+            }
+            if (end > start) {
+                ranges.add(new long[]{start, end});
+            }
+        }
+        return ranges;
+    }
+
+    // 从position开始向后找第一个换行符，返回其后一个字节的位置，找不到时返回limit
+    private static long nextLineStart(FileChannel channel, long position, long limit) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(4096);
+        while (position < limit) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+        return limit;
+    }
+
+    // 扫描[start, end)范围内的行，范围的起点总是行首，UTF-8多字节字符不会被截断
+    // 二进制格式的记录先在缓冲区中就地反转义，再交给handler
+    private static <T> List<T> scanRange(FileChannel channel, long start, long end, boolean binary,
+                                         RangeHandler<T> handler, ExecutionMonitor monitor,
+                                         ScanCounts counts) throws IOException {
+        long started = System.nanoTime();
+        byte[] bytes = new byte[(int) (end - start)];
+        monitor.bufferAllocated(bytes.length);
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, start + buffer.position()) < 0) {
+                break;
+            }
+        }
+        monitor.bytesRead(buffer.position());
+
+        int lineStart = 0;
+        int length = buffer.position();
+        int rows = 0;
+        for (int i = 0; i <= length; i++) {
+            if (i < length && bytes[i] != '\n') {
+                continue;
+            }
+            int lineEnd = i;
+            if (lineEnd > lineStart && bytes[lineEnd - 1] == '\r') {
+                lineEnd--;
+            }
+            if (lineEnd > lineStart) {
+                rows++;
+                monitor.rowScanned();
+                if (binary) {
+                    lineEnd = RowCodec.unescape(bytes, lineStart, lineEnd);
+                }
+                handler.accept(bytes, lineStart, lineEnd);
+            }
+            lineStart = i + 1;
+        }
+        List<T> results = handler.finish();
+        monitor.rangeScanned(bytes.length, System.nanoTime() - started);
+        counts.read(rows, length);
+        return results;
+    }
+
+    /**
+     * 在共享线程池中提交parallelism个任务（不超过块数），各任务依次领取下一个未扫描的块，结果按块的顺序合并
+     * 某个块扫描出错（或语句被取消）时其余任务不再领取新块，等所有任务结束后抛出第一个异常。
+     */
+    private static <T> List<T> scanParallel(FileChannel channel, List<long[]> ranges, int parallelism, boolean binary,
+                                            Supplier<RangeHandler<T>> handlers, ExecutionMonitor monitor,
+                                            ScanCounts counts) {
+        List<List<T>> parts = new ArrayList<>(Collections.nCopies(ranges.size(), null));
+        AtomicInteger next = new AtomicInteger();
+        List<ForkJoinTask<?>> workers = new ArrayList<>();
+        for (int i = 0; i < Math.min(parallelism, ranges.size()); i++) {
+            workers.add(SCAN_POOL.submit(() -> {
+                int index;
+                while ((index = next.getAndIncrement()) < ranges.size()) {
+                    long[] range = ranges.get(index);
+                    try {
+                        parts.set(index, scanRange(channel, range[0], range[1], binary, handlers.get(), monitor, counts));
+                    } catch (IOException e) {
+                        next.set(ranges.size());
+                        throw new UncheckedIOException(e);
+                    } catch (RuntimeException e) {
+                        next.set(ranges.size());
+                        throw e;
+                    }
+                }
+            }));
+        }
+        RuntimeException failure = null;
+        for (ForkJoinTask<?> worker : workers) {
+            try {
+                worker.join();
+            } catch (RuntimeException e) {
+                if (failure == null) {
+                    failure = e;
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        List<T> results = new ArrayList<>();
+        for (List<T> part : parts) {
+            results.addAll(part);
+        }
+        return results;
+    }
+
+    // 处理一个字节范围内的各行，每个范围使用一个新实例，不会被多个线程共享
+    private interface RangeHandler<T> {
+        // 一行数据在bytes中的位置[start, end)，不含换行符；同一范围内的行都在同一个数组中
+        void accept(byte[] bytes, int start, int end);
+
+        List<T> finish();
+    }
+
+    // 逐行拆分（或解码）字段后过滤和投影
+    private static class RowHandler<T> implements RangeHandler<T> {
+        private final Function<String[], T> rowMapper;
+        // 二进制格式时的列类型，文本格式为null
+        private final ColumnType[] binaryTypes;
+        private final Pattern splitter = Pattern.compile(Pattern.quote(SQLConstant.getFieldSeparator()));
+        private final List<T> results = new ArrayList<>();
+
+        RowHandler(Function<String[], T> rowMapper, ColumnType[] binaryTypes) {
+            this.rowMapper = rowMapper;
+            this.binaryTypes = binaryTypes;
+        }
+
+        @Override
+        public void accept(byte[] bytes, int start, int end) {
+            String[] values;
+            if (binaryTypes != null) {
+                values = RowCodec.decode(bytes, start, end, binaryTypes);
+            } else {
+                values = splitter.split(new String(bytes, start, end - start, StandardCharsets.UTF_8), -1);
+            }
+            T mapped = rowMapper.apply(values);
+            if (mapped != null) {
+                results.add(mapped);
+            }
+        }
+
+        @Override
+        public List<T> finish() {
+            return results;
+        }
+    }
+
+    // 把行装入批（只记录字段位置，不创建字符串），批满时整批处理
+    private static class BatchHandler<T> implements RangeHandler<T> {
+        private final RowBatch batch;
+        private final Function<RowBatch, List<T>> batchMapper;
+        private final List<T> results = new ArrayList<>();
+
+        BatchHandler(ColumnType[] columnTypes, boolean binary, Function<RowBatch, List<T>> batchMapper) {
+            this.batch = new RowBatch(columnTypes, binary);
+            this.batchMapper = batchMapper;
+        }
+
+        @Override
+        public void accept(byte[] bytes, int start, int end) {
+            batch.addRow(bytes, start, end);
+            if (batch.isFull()) {
+                flush();
+            }
+        }
+
+        @Override
+        public List<T> finish() {
+            if (batch.size() > 0) {
+                flush();
+            }
+            return results;
+        }
+
+        private void flush() {
+            results.addAll(batchMapper.apply(batch));
+            batch.reset();
+        }
+    }
+}
@@ -0,0 +1,327 @@
+package myDatabase;
+
+import model.Database;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Pattern;
+
+/**
+ * 表和列的统计信息，由ANALYZE收集，保存在系统数据库的 statistics 表中（每列一行，column_name为 * 的行是表级信息）
+ * 列的统计：不同值个数（HyperLogLog估计）、null比例、数值比例、数值的最小/最大值和等深直方图的边界。
+ * 选择率的估计与WHERE条件的求值规则一致：数字常量只与数值比较大小，其他值只支持 = 和 !=。
+ */
+public class TableStatistics {
+    public static final String STATS_TABLE = "statistics";
+    private static final String[] STATS_COLUMNS = {
+            "db_name", "table_name", "column_name", "row_count", "distinct_count", "null_fraction",
+            "numeric_fraction", "min_value", "max_value", "histogram", "analyzed_at"
+    };
+    private static final String[] STATS_TYPES = {
+            "VARCHAR(64)", "VARCHAR(64)", "VARCHAR(64)", "INTEGER", "INTEGER", "DOUBLE",
+            "DOUBLE", "DOUBLE", "DOUBLE", "VARCHAR(4096)", "VARCHAR(32)"
+    };
+    private static final String TABLE_ROW = "*";
+    // 按 库名.表名 缓存已读取的统计信息，没有统计信息的表缓存为空
+    private static final Map<String, Optional<TableStatistics>> CACHE = new ConcurrentHashMap<>();
+
+    private final long rowCount;
+    private final String analyzedAt;
+    // 列名（小写） -> 列的统计
+    private final Map<String, ColumnStatistics> columns = new LinkedHashMap<>();
+
+    public TableStatistics(long rowCount, String analyzedAt) {
+        this.rowCount = rowCount;
+        this.analyzedAt = analyzedAt;
+    }
+
+    /**
+     * 一列的统计信息
+     */
+    public static class ColumnStatistics {
+        final String name;
+        final long distinct;
+        final double nullFraction;
+        final double numericFraction;
+        final double min;
+        final double max;
+        // 等深直方图的边界：histogram[0]为最小值，histogram[n]为最大值，相邻边界之间的数值个数大致相同
+        final double[] histogram;
+
+        public ColumnStatistics(String name, long distinct, double nullFraction, double numericFraction,
+                                double min, double max, double[] histogram) {
+            this.name = name;
+            this.distinct = distinct;
+            this.nullFraction = nullFraction;
+            this.numericFraction = numericFraction;
+            this.min = min;
+            this.max = max;
+            this.histogram = histogram;
+        }
+
+        public long getDistinct() {
+            return distinct;
+        }
+
+        public double getNullFraction() {
+            return nullFraction;
+        }
+
+        /**
+         * 等于常量的行的比例
+         */
+        public double equalSelectivity(boolean numeric, double number) {
+            if (numeric) {
+                if (numericFraction == 0 || number < min || number > max) {
+                    return 0;
+                }
+                return numericFraction / Math.max(1, distinct);
+            }
+            return Math.max(0, 1 - nullFraction - numericFraction) / Math.max(1, distinct);
+        }
+
+        /**
+         * 大于（greater为true）或小于数字常量的行的比例，按直方图线性插值
+         */
+        public double rangeSelectivity(boolean greater, double number) {
+            double below = cumulativeFraction(number);
+            return numericFraction * (greater ? 1 - below : below);
+        }
+
+        // 数值中不超过number的比例
+        private double cumulativeFraction(double number) {
+            if (histogram.length < 2) {
+                return number >= max ? 1 : 0;
+            }
+            int buckets = histogram.length - 1;
+            if (number < histogram[0]) {
+                return 0;
+            }
+            if (number >= histogram[buckets]) {
+                return 1;
+            }
+            int bucket = 0;
+            while (bucket + 1 < buckets && histogram[bucket + 1] <= number) {
+                bucket++;
+            }
+            double low = histogram[bucket];
+            double high = histogram[bucket + 1];
+            double within = high > low ? (number - low) / (high - low) : 1;
+            return (bucket + within) / buckets;
+        }
+    }
+
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    public String getAnalyzedAt() {
+        return analyzedAt;
+    }
+
+    public void addColumn(ColumnStatistics column) {
+        columns.put(column.name.toLowerCase(), column);
+    }
+
+    /**
+     * 按列名取得列的统计，没有时返回null
+     */
+    public ColumnStatistics column(String name) {
+        return columns.get(name.toLowerCase());
+    }
+
+    /**
+     * 读取表的统计信息（带缓存），没有分析过的表返回null
+     */
+    public static TableStatistics get(String dbName, String tableName) {
+        Optional<TableStatistics> cached = CACHE.get(cacheKey(dbName, tableName));
+        if (cached != null) {
+            Metrics.statsCacheHit();
+            return cached.orElse(null);
+        }
+        Metrics.statsCacheMiss();
+        return CACHE.computeIfAbsent(cacheKey(dbName, tableName),
+                key -> Optional.ofNullable(read(dbName, tableName))).orElse(null);
+    }
+
+    private static TableStatistics read(String dbName, String tableName) {
+        Path statsPath = statsTablePath();
+        if (!Files.exists(statsPath)) {
+            return null;
+        }
+        try {
+            List<String> lines = TableFile.readLines(statsPath);
+            String separator = Pattern.quote(SQLConstant.getFieldSeparator());
+            TableStatistics stats = null;
+            List<String[]> columnRows = new ArrayList<>();
+            for (int i = TableFile.HEADER_LINES; i < lines.size(); i++) {
+                String[] values = lines.get(i).split(separator, -1);
+                if (values.length < STATS_COLUMNS.length
+                        || !values[0].equalsIgnoreCase(dbName) || !values[1].equalsIgnoreCase(tableName)) {
+                    continue;
+                }
+                if (values[2].equals(TABLE_ROW)) {
+                    stats = new TableStatistics(Long.parseLong(values[3]), values[10]);
+                } else {
+                    columnRows.add(values);
+                }
+            }
+            if (stats == null) {
+                return null;
+            }
+            for (String[] values : columnRows) {
+                stats.addColumn(new ColumnStatistics(values[2], Long.parseLong(values[4]),
+                        Double.parseDouble(values[5]), Double.parseDouble(values[6]),
+                        parseNumber(values[7]), parseNumber(values[8]), parseHistogram(values[9])));
+            }
+            return stats;
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 保存表的统计信息，替换该表原有的统计行；系统库中还没有统计表时先创建（database为null时直接登记到表描述文件）
+     */
+    public void save(String dbName, String tableName, Database database) throws IOException {
+        String systemDb = SQLConstant.getSystemDirName();
+        ReentrantLock latch = LockManager.getTableLatch(systemDb, STATS_TABLE);
+        latch.lock();
+        try {
+            // 后台重新统计期间表被删除时不再保存（删除表时已在同一把闩锁下清除了统计行）
+            if (!Files.exists(Paths.get(SQLConstant.getTableRecordPath(dbName, tableName)))) {
+                return;
+            }
+            Path statsPath = statsTablePath();
+            if (!Files.exists(statsPath)) {
+                createStatsTable(database);
+            }
+            List<String> lines = TableFile.readLines(statsPath);
+            String separator = Pattern.quote(SQLConstant.getFieldSeparator());
+            List<String> kept = new ArrayList<>(lines.subList(0, TableFile.HEADER_LINES));
+            for (int i = TableFile.HEADER_LINES; i < lines.size(); i++) {
+                String[] values = lines.get(i).split(separator, -1);
+                if (values.length >= 2 && values[0].equalsIgnoreCase(dbName) && values[1].equalsIgnoreCase(tableName)) {
+                    continue;
+                }
+                kept.add(lines.get(i));
+            }
+            kept.add(row(dbName, tableName, TABLE_ROW, Long.toString(rowCount), "", "", "", "", "", "", analyzedAt));
+            for (ColumnStatistics column : columns.values()) {
+                kept.add(row(dbName, tableName, column.name, Long.toString(rowCount), Long.toString(column.distinct),
+                        Double.toString(column.nullFraction), Double.toString(column.numericFraction),
+                        formatNumber(column.min), formatNumber(column.max), formatHistogram(column.histogram),
+                        analyzedAt));
+            }
+            TableFile.writeLines(statsPath, kept);
+            CACHE.put(cacheKey(dbName, tableName), Optional.of(this));
+        } finally {
+            latch.unlock();
+        }
+    }
+
+    /**
+     * 删除表的统计行并清除缓存；tableName为null时删除整个库的统计信息。用于DROP TABLE和DROP DATABASE
+     */
+    public static void remove(String dbName, String tableName) throws IOException {
+        String prefix = tableName == null ? (dbName + ".").toLowerCase() : cacheKey(dbName, tableName);
+        ReentrantLock latch = LockManager.getTableLatch(SQLConstant.getSystemDirName(), STATS_TABLE);
+        latch.lock();
+        try {
+            Path statsPath = statsTablePath();
+            if (Files.exists(statsPath)) {
+                TableFile.Records records = TableFile.readRecords(statsPath);
+                List<String[]> kept = new ArrayList<>(records.rows.size());
+                for (String[] values : records.rows) {
+                    if (values.length < 2 || !values[0].equalsIgnoreCase(dbName)
+                            || (tableName != null && !values[1].equalsIgnoreCase(tableName))) {
+                        kept.add(values);
+                    }
+                }
+                if (kept.size() < records.rows.size()) {
+                    TableFile.writeRecords(statsPath, records.header, kept);
+                }
+            }
+        } finally {
+            CACHE.keySet().removeIf(key -> tableName == null ? key.startsWith(prefix) : key.equals(prefix));
+            latch.unlock();
+        }
+    }
+
+    private static void createStatsTable(Database database) throws IOException {
+        String systemDb = SQLConstant.getSystemDirName();
+        String separator = SQLConstant.getFieldSeparator();
+        String names = String.join(separator, STATS_COLUMNS);
+        String types = String.join(separator, STATS_TYPES);
+        String constraints = String.join(separator, Collections.nCopies(STATS_COLUMNS.length, ""));
+        Files.createDirectories(Paths.get(SQLConstant.getDatabasePath(systemDb)));
+        Files.write(Paths.get(SQLConstant.getTableDefinitionPath(systemDb, STATS_TABLE)),
+                Arrays.asList(names, types, constraints));
+        for (String path : new String[]{SQLConstant.getTableIntegrityPath(systemDb, STATS_TABLE),
+                SQLConstant.getTableIndexPath(systemDb, STATS_TABLE)}) {
+            if (!Files.exists(Paths.get(path))) {
+                Files.createFile(Paths.get(path));
+            }
+        }
+        TableFile.create(statsTablePath(), names, types, constraints);
+        if (database != null) {
+            database.addTable(systemDb, STATS_TABLE);
+        } else {
+            String line = String.format("%s|%s|%s|%s|%s\n", STATS_TABLE,
+                    SQLConstant.getTableDefinitionPath(systemDb, STATS_TABLE), statsTablePath(),
+                    SQLConstant.getTableIntegrityPath(systemDb, STATS_TABLE),
+                    SQLConstant.getTableIndexPath(systemDb, STATS_TABLE));
+            Files.write(Paths.get(SQLConstant.getTableDescPath(systemDb)), line.getBytes(),
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        }
+    }
+
+    private static Path statsTablePath() {
+        return Paths.get(SQLConstant.getTableRecordPath(SQLConstant.getSystemDirName(), STATS_TABLE));
+    }
+
+    private static String cacheKey(String dbName, String tableName) {
+        return (dbName + "." + tableName).toLowerCase();
+    }
+
+    private static String row(String... values) {
+        return String.join(SQLConstant.getFieldSeparator(), values);
+    }
+
+    private static String formatNumber(double number) {
+        return Double.isNaN(number) ? "null" : Double.toString(number);
+    }
+
+    private static double parseNumber(String text) {
+        return text.isEmpty() || text.equalsIgnoreCase("null") ? Double.NaN : Double.parseDouble(text);
+    }
+
+    private static String formatHistogram(double[] histogram) {
+        StringBuilder sb = new StringBuilder();
+        for (double bound : histogram) {
+            if (sb.length() > 0) {
+                sb.append(',');
+            }
+            sb.append(bound);
+        }
+        return sb.toString();
+    }
+
+    private static double[] parseHistogram(String text) {
+        if (text.isEmpty()) {
+            return new double[0];
+        }
+        String[] parts = text.split(",");
+        double[] histogram = new double[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            histogram[i] = Double.parseDouble(parts[i]);
+        }
+        return histogram;
+    }
+}
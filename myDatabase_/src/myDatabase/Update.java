@@ -1,13 +1,16 @@
 package myDatabase;
 
-import model.Database;
+import model.Session;
 import java.nio.file.*;
 import java.util.*;
 import java.util.regex.*;
 
 public class Update {
-    public static String processUpdate(String sql, Database database) {
+    public static String processUpdate(String sql, Session session) {
+        Object owner = session;
         try {
+            EngineEvents.ParseEvent parseEvent = new EngineEvents.ParseEvent();
+            parseEvent.begin();
             String[] parts = sql.split("(?i)\\bwhere\\b");
             if (parts.length < 1) {
                 return "ERROR: Invalid UPDATE syntax";
@@ -17,45 +20,43 @@ public class Update {
             String wherePart = parts.length > 1 ? parts[1].replaceAll(";\\s*$", "").trim() : "";
 
             String tableName = sql.replaceAll("(?i)^update\\s+(\\w+).*", "$1").trim();
-            String tablePath = SQLConstant.getCurrentTableRecordPath(tableName);
+            parseEvent.end();
+            if (parseEvent.shouldCommit()) {
+                parseEvent.statementType = "update";
+                parseEvent.table = tableName;
+                parseEvent.commit();
+            }
+
+            String dbName = session.getCurrentDatabase();
+            String tablePath = SQLConstant.getTableRecordPath(dbName, tableName);
 
             if (!Files.exists(Paths.get(tablePath))) {
                 return "ERROR: Table '" + tableName + "' does not exist";
             }
 
-            // 读取所有记录
-            List<String> lines = Files.readAllLines(Paths.get(tablePath));
-            if (lines.size() < 4) { // 3行表结构 + 至少1行数据
+            // 这里只读取表头，记录由rewriteMatchingRows在表闩锁内读取
+            TableFile.Header header = TableFile.readHeader(Paths.get(tablePath));
+            if (header == null || Files.size(Paths.get(tablePath)) <= header.dataStart) { // 表头之后没有数据
                 return "ERROR: No records found (empty table)";
             }
 
-            String[] columns = lines.get(0).split(Pattern.quote(SQLConstant.getFieldSeparator()));
-            List<String> updatedLines = new ArrayList<>(lines.subList(0, 3)); // 保留表结构
-
-            int updatedCount = 0;
-            for (int i = 3; i < lines.size(); i++) {
-                String line = lines.get(i);
-                String[] values = line.split(Pattern.quote(SQLConstant.getFieldSeparator()), -1);
+            String[] columns = header.lines[0].split(Pattern.quote(SQLConstant.getFieldSeparator()));
 
-                if (matchesCondition(wherePart, columns, values)) {
-                    String[] updatedValues = applyUpdates(setPart, columns, Arrays.copyOf(values, values.length));
-                    updatedLines.add(String.join(SQLConstant.getFieldSeparator(), updatedValues));
-                    updatedCount++;
-                } else {
-                    updatedLines.add(line);
-                }
-            }
+            // 对命中行加行锁后改写，只有最后写回表文件时按表串行
+            int updatedCount = LockManager.rewriteMatchingRows(owner, dbName, tableName,
+                    Paths.get(tablePath),
+                    values -> matchesCondition(wherePart, columns, values),
+                    values -> applyUpdates(setPart, columns, Arrays.copyOf(values, values.length)));
 
             if (updatedCount > 0) {
-                Files.write(Paths.get(tablePath), updatedLines,
-                        StandardOpenOption.WRITE,
-                        StandardOpenOption.TRUNCATE_EXISTING);
                 return "Query OK: " + updatedCount + " row(s) affected";
             } else {
                 return "Query OK: 0 rows affected (no matching records)";
             }
         } catch (Exception e) {
             return "ERROR: " + e.getMessage();
+        } finally {
+            LockManager.releaseAll(owner);
         }
     }
 
@@ -1,10 +1,11 @@
 package myDatabase;
 
 import model.Database;
+import model.Session;
 import java.io.File;
 
 public class Use {
-    public static String useSql(String sql, Database database) {
+    public static String useSql(String sql, Database database, Session session) {
         try {
 
             String dbName = sql.replaceAll("(?i)^use\\s+(\\w+)\\s*;?\\s*$", "$1").trim();
@@ -13,7 +14,7 @@ public class Use {
                 return "ERROR: 语法错误，正确格式：USE 数据库名";
             }
 
-            File dbDir = new File(SQLConstant.getRootPath() + "\\" + dbName);
+            File dbDir = new File(SQLConstant.getDatabasePath(dbName));
             if (!dbDir.exists() || !dbDir.isDirectory()) {
                 return "ERROR: 数据库 '" + dbName + "' 不存在";
             }
@@ -23,7 +24,8 @@ public class Use {
                 return "ERROR: 数据库 '" + dbName + "' 结构不完整";
             }
 
-            if (database.setCurrentDatabase(dbName)) {
+            if (database.canUseDatabase(dbName)) {
+                session.setCurrentDatabase(dbName);
                 return "切换到数据库" + dbName;
             } else {
                 return "ERROR: 无法切换到数据库 '" + dbName + "'";
@@ -0,0 +1,458 @@
+package myDatabase;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 向量化执行中的WHERE条件
+ * 语句开始时把WHERE子句编译一次（列号、运算符、常量都预先解析好），
+ * 执行时对整批数据逐个条件做紧凑的数组循环，只收缩批的选择向量。
+ * 数值列与数字常量比较时直接比较解码好的long/double，不解析也不创建字符串。
+ * 判断规则与Select的逐行比较一致：多个条件用AND连接，两边都是数字时按数值比较，否则只支持 = 和 !=。
+ */
+public class VectorPredicate {
+    private static final Pattern CONDITION_PATTERN = Pattern.compile("(\\w+)\\s*([=!<>]+)\\s*(.+)");
+
+    private final List<Condition> conditions;
+    // 条件引用了不存在的列，任何行都不满足
+    private final boolean alwaysFalse;
+
+    private VectorPredicate(List<Condition> conditions, boolean alwaysFalse) {
+        this.conditions = conditions;
+        this.alwaysFalse = alwaysFalse;
+    }
+
+    /**
+     * 编译WHERE子句，where为空时得到不过滤任何行的条件
+     */
+    public static VectorPredicate compile(String where, String[] headers) {
+        List<Condition> conditions = new ArrayList<>();
+        if (where == null || where.trim().isEmpty()) {
+            return new VectorPredicate(conditions, false);
+        }
+        for (String cond : where.split("(?i)\\s+and\\s+")) {
+            Matcher matcher = CONDITION_PATTERN.matcher(cond.trim());
+            if (!matcher.find()) continue;
+
+            String column = matcher.group(1).trim();
+            int colIndex = -1;
+            for (int i = 0; i < headers.length; i++) {
+                if (headers[i].equalsIgnoreCase(column)) {
+                    colIndex = i;
+                    break;
+                }
+            }
+            if (colIndex < 0) {
+                return new VectorPredicate(conditions, true);
+            }
+            String expected = stripQuotes(matcher.group(3).trim());
+            conditions.add(new Condition(colIndex, matcher.group(2).trim(), expected));
+        }
+        return new VectorPredicate(conditions, false);
+    }
+
+    /**
+     * 单个等值条件：第column列 = value，用于主键、外键检查时跳过区块（比较规则比原样相等宽松，只用来排除区块）
+     */
+    public static VectorPredicate equalTo(int column, String value) {
+        List<Condition> conditions = new ArrayList<>();
+        conditions.add(new Condition(column, "=", stripQuotes(value)));
+        return new VectorPredicate(conditions, false);
+    }
+
+    /**
+     * 按统计信息把条件按估计的选择率从小到大重新排列，过滤时先用最能缩小选择向量的条件；结果不变
+     */
+    public VectorPredicate orderedBy(TableStatistics stats, String[] headers) {
+        if (stats == null || conditions.size() < 2) {
+            return this;
+        }
+        List<Condition> ordered = new ArrayList<>(conditions);
+        ordered.sort(Comparator.comparingDouble(condition -> condition.selectivity(stats, headers)));
+        return new VectorPredicate(ordered, alwaysFalse);
+    }
+
+    /**
+     * 估计满足所有条件的行的比例（假设各条件相互独立），没有统计信息的列按默认选择率估计
+     */
+    public double selectivity(TableStatistics stats, String[] headers) {
+        if (alwaysFalse) {
+            return 0;
+        }
+        double selectivity = 1;
+        for (Condition condition : conditions) {
+            selectivity *= condition.selectivity(stats, headers);
+        }
+        return selectivity;
+    }
+
+    public boolean isEmpty() {
+        return conditions.isEmpty() && !alwaysFalse;
+    }
+
+    public int size() {
+        return conditions.size();
+    }
+
+    /**
+     * 按求值顺序列出条件，用于EXPLAIN
+     */
+    public String describe(String[] headers) {
+        if (alwaysFalse) {
+            return "false";
+        }
+        StringBuilder sb = new StringBuilder();
+        for (Condition condition : conditions) {
+            if (sb.length() > 0) {
+                sb.append(" AND ");
+            }
+            sb.append(condition.column < headers.length ? headers[condition.column] : "#" + condition.column)
+                    .append(' ').append(condition.symbol).append(' ')
+                    .append(condition.expectedNumeric ? condition.expected : "'" + condition.expected + "'");
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 有等值条件的列号，这些列上的布隆过滤器可以用来跳过数据段
+     */
+    public Set<Integer> equalityColumns() {
+        Set<Integer> columns = new HashSet<>();
+        for (Condition condition : conditions) {
+            if (condition.operator == Condition.EQ) {
+                columns.add(condition.column);
+            }
+        }
+        return columns;
+    }
+
+    /**
+     * 按布隆过滤器判断数据段中是否可能有满足条件的行，等值条件的常量肯定不在段中时返回false
+     */
+    public boolean mayContain(BloomIndex index, BloomIndex.Segment segment) {
+        if (alwaysFalse) {
+            return false;
+        }
+        for (Condition condition : conditions) {
+            if (condition.operator == Condition.EQ
+                    && !index.mightContain(segment, condition.column, condition.bloomKey)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 按区块摘要判断区块中是否可能有满足条件的行，返回false的区块可以整块跳过
+     */
+    public boolean mayMatch(ZoneMap.Block block) {
+        if (alwaysFalse) {
+            return false;
+        }
+        for (Condition condition : conditions) {
+            ZoneMap.ColumnStats stats = block.column(condition.column);
+            if (stats != null && !condition.mayMatch(stats)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 过滤一批数据：只保留满足所有条件的行
+     */
+    public void filter(RowBatch batch) {
+        if (alwaysFalse) {
+            batch.selectNone();
+            return;
+        }
+        for (Condition condition : conditions) {
+            if (batch.getSelectedCount() == 0) {
+                return;
+            }
+            condition.filter(batch);
+        }
+    }
+
+    /**
+     * 逐行判断一行的各字段是否满足所有条件，供不按批执行的调用方（如游标）使用
+     */
+    public boolean test(String[] values) {
+        if (alwaysFalse) {
+            return false;
+        }
+        for (Condition condition : conditions) {
+            if (condition.column >= values.length) {
+                return false;
+            }
+            String value = values[condition.column];
+            if (!condition.test(value == null ? "" : value)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // 单个比较条件：列 运算符 常量
+    private static class Condition {
+        private static final int EQ = 0;
+        private static final int NE = 1;
+        private static final int GT = 2;
+        private static final int LT = 3;
+        // 其他运算符（如 >=、<>）与逐行执行一样视为不满足
+        private static final int UNSUPPORTED = 4;
+        // 没有统计信息时的默认选择率
+        private static final double DEFAULT_EQ_SELECTIVITY = 0.1;
+        private static final double DEFAULT_RANGE_SELECTIVITY = 1.0 / 3;
+
+        private final int column;
+        private final int operator;
+        // 原样的运算符，用于EXPLAIN
+        private final String symbol;
+        private final String expected;
+        private final boolean expectedNumeric;
+        private final double expectedNumber;
+        // 等值条件的常量在布隆过滤器中的形式
+        private final String bloomKey;
+
+        Condition(int column, String operator, String expected) {
+            this.column = column;
+            this.operator = operatorCode(operator);
+            this.symbol = operator;
+            this.expected = expected;
+            this.expectedNumeric = isNumeric(expected);
+            this.expectedNumber = expectedNumeric ? Double.parseDouble(expected) : 0;
+            this.bloomKey = this.operator == EQ ? BloomIndex.key(expected) : null;
+        }
+
+        private static int operatorCode(String operator) {
+            switch (operator) {
+                case "=": return EQ;
+                case "!=": return NE;
+                case ">": return GT;
+                case "<": return LT;
+                default: return UNSUPPORTED;
+            }
+        }
+
+        double selectivity(TableStatistics stats, String[] headers) {
+            TableStatistics.ColumnStatistics columnStats = stats == null || column >= headers.length
+                    ? null : stats.column(headers[column]);
+            if (columnStats == null) {
+                switch (operator) {
+                    case EQ: return DEFAULT_EQ_SELECTIVITY;
+                    case NE: return 1 - DEFAULT_EQ_SELECTIVITY;
+                    case GT:
+                    case LT: return expectedNumeric ? DEFAULT_RANGE_SELECTIVITY : 0;
+                    default: return 0;
+                }
+            }
+            switch (operator) {
+                case EQ: return columnStats.equalSelectivity(expectedNumeric, expectedNumber);
+                case NE: return Math.max(0, 1 - columnStats.getNullFraction()
+                        - columnStats.equalSelectivity(expectedNumeric, expectedNumber));
+                case GT: return expectedNumeric ? columnStats.rangeSelectivity(true, expectedNumber) : 0;
+                case LT: return expectedNumeric ? columnStats.rangeSelectivity(false, expectedNumber) : 0;
+                default: return 0;
+            }
+        }
+
+        // 与test的规则对应：缺失的字段不满足任何条件，数字常量只与数值比较大小（= 和 != 时非数值按文本比较）
+        boolean mayMatch(ZoneMap.ColumnStats stats) {
+            if (stats.getNumericCount() + stats.getOtherCount() == 0) {
+                return false;
+            }
+            if (expectedNumeric) {
+                boolean hasNumbers = stats.getNumericCount() > 0;
+                switch (operator) {
+                    case EQ: return hasNumbers && stats.getMin() <= expectedNumber && expectedNumber <= stats.getMax();
+                    case NE: return stats.getOtherCount() > 0
+                            || (hasNumbers && !(stats.getMin() == expectedNumber && stats.getMax() == expectedNumber));
+                    case GT: return hasNumbers && stats.getMax() > expectedNumber;
+                    case LT: return hasNumbers && stats.getMin() < expectedNumber;
+                    default: return false;
+                }
+            }
+            String min = stats.getTextMin();
+            String max = stats.getTextMax();
+            switch (operator) {
+                case EQ: return min == null || (expected.compareTo(min) >= 0 && expected.compareTo(max) <= 0);
+                case NE: return min == null || !(min.equals(expected) && max.equals(expected));
+                default: return false;
+            }
+        }
+
+        void filter(RowBatch batch) {
+            ColumnVector vector = batch.vector(column);
+            if (expectedNumeric && vector instanceof ColumnVector.LongVector) {
+                filterLong(batch, (ColumnVector.LongVector) vector);
+            } else if (expectedNumeric && vector instanceof ColumnVector.DoubleVector) {
+                filterDouble(batch, (ColumnVector.DoubleVector) vector);
+            } else if (vector instanceof ColumnVector.BoolVector && (operator == EQ || operator == NE)
+                    && (expected.equals("true") || expected.equals("false"))) {
+                filterBool(batch, (ColumnVector.BoolVector) vector);
+            } else {
+                filterText(batch);
+            }
+        }
+
+        // INTEGER列与数字常量比较：规范写法的行直接比较long值，其余行按文本比较
+        private void filterLong(RowBatch batch, ColumnVector.LongVector vector) {
+            long[] values = vector.values();
+            int[] selection = batch.selection();
+            int count = batch.getSelectedCount();
+            int kept = 0;
+            if (!vector.hasExceptions()) {
+                for (int k = 0; k < count; k++) {
+                    int row = selection[k];
+                    if (compare(values[row], operator, expectedNumber)) {
+                        selection[kept++] = row;
+                    }
+                }
+            } else {
+                for (int k = 0; k < count; k++) {
+                    int row = selection[k];
+                    if (vector.isException(row) ? test(batch.text(column, row))
+                            : compare(values[row], operator, expectedNumber)) {
+                        selection[kept++] = row;
+                    }
+                }
+            }
+            batch.setSelectedCount(kept);
+        }
+
+        private void filterDouble(RowBatch batch, ColumnVector.DoubleVector vector) {
+            double[] values = vector.values();
+            int[] selection = batch.selection();
+            int count = batch.getSelectedCount();
+            int kept = 0;
+            if (!vector.hasExceptions()) {
+                for (int k = 0; k < count; k++) {
+                    int row = selection[k];
+                    if (compare(values[row], operator, expectedNumber)) {
+                        selection[kept++] = row;
+                    }
+                }
+            } else {
+                for (int k = 0; k < count; k++) {
+                    int row = selection[k];
+                    if (vector.isException(row) ? test(batch.text(column, row))
+                            : compare(values[row], operator, expectedNumber)) {
+                        selection[kept++] = row;
+                    }
+                }
+            }
+            batch.setSelectedCount(kept);
+        }
+
+        // BOOL列与 true/false 比较等价于比较位图中的值
+        private void filterBool(RowBatch batch, ColumnVector.BoolVector vector) {
+            boolean wanted = expected.equals("true") == (operator == EQ);
+            int[] selection = batch.selection();
+            int count = batch.getSelectedCount();
+            int kept = 0;
+            for (int k = 0; k < count; k++) {
+                int row = selection[k];
+                if (vector.isException(row) ? test(batch.text(column, row)) : vector.get(row) == wanted) {
+                    selection[kept++] = row;
+                }
+            }
+            batch.setSelectedCount(kept);
+        }
+
+        private void filterText(RowBatch batch) {
+            int[] selection = batch.selection();
+            int count = batch.getSelectedCount();
+            int kept = 0;
+            for (int k = 0; k < count; k++) {
+                int row = selection[k];
+                if (test(batch.text(column, row))) {
+                    selection[kept++] = row;
+                }
+            }
+            batch.setSelectedCount(kept);
+        }
+
+        private static boolean compare(double actual, int operator, double expected) {
+            switch (operator) {
+                case EQ: return actual == expected;
+                case NE: return actual != expected;
+                case GT: return actual > expected;
+                case LT: return actual < expected;
+                default: return false;
+            }
+        }
+
+        // 按文本判断一个值，与Select.matchesCondition的规则相同
+        private boolean test(String value) {
+            if (value == null) {
+                return false;
+            }
+            String actual = stripQuotes(value);
+            if (expectedNumeric && isNumeric(actual)) {
+                return compare(Double.parseDouble(actual), operator, expectedNumber);
+            }
+            switch (operator) {
+                case EQ: return actual.equals(expected);
+                case NE: return !actual.equals(expected);
+                default: return false;
+            }
+        }
+    }
+
+    // 去掉首尾的引号，与Select中的 replaceAll("^['\"]|['\"]$", "") 等价
+    static String stripQuotes(String value) {
+        int start = 0;
+        int end = value.length();
+        if (end > 0 && isQuote(value.charAt(0))) {
+            start = 1;
+        }
+        if (end > start && isQuote(value.charAt(end - 1))) {
+            end--;
+        }
+        return start == 0 && end == value.length() ? value : value.substring(start, end);
+    }
+
+    private static boolean isQuote(char c) {
+        return c == '\'' || c == '"';
+    }
+
+    // 与正则 -?\d+(\.\d+)? 等价的数字判断，不创建Matcher
+    static boolean isNumeric(String str) {
+        int length = str.length();
+        int i = 0;
+        if (i < length && str.charAt(i) == '-') {
+            i++;
+        }
+        int digits = 0;
+        while (i < length && isDigit(str.charAt(i))) {
+            i++;
+            digits++;
+        }
+        if (digits == 0) {
+            return false;
+        }
+        if (i == length) {
+            return true;
+        }
+        if (str.charAt(i) != '.') {
+            return false;
+        }
+        i++;
+        int fraction = 0;
+        while (i < length && isDigit(str.charAt(i))) {
+            i++;
+            fraction++;
+        }
+        return fraction > 0 && i == length;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+}
@@ -0,0 +1,210 @@
+package myDatabase;
+
+import model.Session;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 语句捕获：把执行过的每条语句连同开始时间、会话、耗时记入二进制捕获文件，供重放工具（benchmarks中的Replay）重新执行
+ * 文件为gzip压缩，开头是魔数、版本和捕获开始的时间，之后每条语句一条记录，数值用变长编码：
+ * 开始时间（相对捕获开始，微秒）、会话编号、用户、开始时的当前数据库、耗时（微秒）、是否出错、是否打开游标、SQL。
+ * 打开游标的SELECT（见DatabaseProcessor.openCursor）记录的是打开游标的耗时，重放时也只打开游标。
+ * 记录按语句结束的顺序写入，重放时按开始时间排序。执行线程同步写入缓冲区，捕获打开期间每条语句多一次加锁。
+ */
+public class WorkloadCapture {
+    private static final byte[] MAGIC = "MDBCAP".getBytes(StandardCharsets.US_ASCII);
+    private static final int VERSION = 2;
+
+    private static DataOutputStream out;
+    private static Path capturePath;
+    private static long startNanos;
+    private static long recorded;
+
+    static {
+        // 进程退出前写出缓冲区并写完gzip尾部
+        Runtime.getRuntime().addShutdownHook(new Thread(WorkloadCapture::stop, "workload-capture-close"));
+    }
+
+    /**
+     * 一条捕获的语句
+     */
+    public static class Entry {
+        // 相对捕获开始的开始时间和耗时，微秒
+        public final long startMicros;
+        public final long sessionId;
+        public final String user;
+        // 语句开始时会话的当前数据库，没有时为null
+        public final String database;
+        public final long durationMicros;
+        public final boolean error;
+        // 语句是打开游标执行的，耗时不含取结果
+        public final boolean cursor;
+        public final String sql;
+
+        Entry(long startMicros, long sessionId, String user, String database, long durationMicros, boolean error,
+              boolean cursor, String sql) {
+            this.startMicros = startMicros;
+            this.sessionId = sessionId;
+            this.user = user;
+            this.database = database;
+            this.durationMicros = durationMicros;
+            this.error = error;
+            this.cursor = cursor;
+            this.sql = sql;
+        }
+    }
+
+    /**
+     * 开始捕获到指定文件（覆盖已有文件），已在捕获时先结束原来的捕获
+     */
+    public static synchronized void start(Path path) throws IOException {
+        stop();
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        DataOutputStream stream = new DataOutputStream(new GZIPOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(path), 1 << 16), 1 << 16));
+        stream.write(MAGIC);
+        stream.writeByte(VERSION);
+        stream.writeLong(System.currentTimeMillis());
+        out = stream;
+        capturePath = path;
+        startNanos = System.nanoTime();
+        recorded = 0;
+    }
+
+    /**
+     * 结束捕获并关闭文件，返回捕获的语句数；没有在捕获时返回0
+     */
+    public static synchronized long stop() {
+        if (out == null) {
+            return 0;
+        }
+        try {
+            out.close();
+        } catch (IOException e) {
+            System.err.println("关闭语句捕获文件失败: " + e.getMessage());
+        }
+        out = null;
+        capturePath = null;
+        return recorded;
+    }
+
+    public static synchronized boolean isActive() {
+        return out != null;
+    }
+
+    public static synchronized Path getCapturePath() {
+        return capturePath;
+    }
+
+    /**
+     * 语句结束后调用，没有在捕获时直接返回
+     * @param database 语句开始时会话的当前数据库
+     * @param elapsedNanos 语句耗时
+     * @param cursor 语句是打开游标执行的
+     */
+    public static synchronized void record(String sql, Session session, String database, long elapsedNanos,
+                                           boolean error, boolean cursor) {
+        if (out == null) {
+            return;
+        }
+        long now = System.nanoTime();
+        try {
+            writeVarLong(out, Math.max(0, now - elapsedNanos - startNanos) / 1000);
+            writeVarLong(out, session == null ? 0 : session.getId());
+            writeString(out, session == null ? "" : session.getUsername());
+            writeString(out, database == null ? "" : database);
+            writeVarLong(out, elapsedNanos / 1000);
+            out.writeBoolean(error);
+            out.writeBoolean(cursor);
+            writeString(out, sql);
+            recorded++;
+        } catch (IOException e) {
+            // 写入失败时停止捕获，不影响语句执行
+            System.err.println("写入语句捕获文件失败，停止捕获: " + e.getMessage());
+            stop();
+        }
+    }
+
+    /**
+     * 读取捕获文件，按文件中的顺序返回；文件末尾不完整（进程异常退出）时返回已读到的完整记录
+     * 版本1的文件没有游标标记，所有语句都按普通语句处理
+     */
+    public static List<Entry> read(Path path) throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        try (DataInputStream in = new DataInputStream(new GZIPInputStream(
+                new BufferedInputStream(Files.newInputStream(path), 1 << 16), 1 << 16))) {
+            byte[] magic = new byte[MAGIC.length];
+            in.readFully(magic);
+            if (!Arrays.equals(magic, MAGIC)) {
+                throw new IOException("不是语句捕获文件: " + path);
+            }
+            int version = in.readUnsignedByte();
+            if (version < 1 || version > VERSION) {
+                throw new IOException("不支持的捕获文件版本: " + version);
+            }
+            in.readLong();
+            while (true) {
+                long startMicros;
+                try {
+                    startMicros = readVarLong(in);
+                } catch (EOFException e) {
+                    break;
+                }
+                long sessionId = readVarLong(in);
+                String user = readString(in);
+                String database = readString(in);
+                long durationMicros = readVarLong(in);
+                boolean error = in.readBoolean();
+                boolean cursor = version >= 2 && in.readBoolean();
+                String sql = readString(in);
+                entries.add(new Entry(startMicros, sessionId, user, database.isEmpty() ? null : database,
+                        durationMicros, error, cursor, sql));
+            }
+        } catch (EOFException e) {
+            // 最后一条记录不完整
+        }
+        return entries;
+    }
+
+    private static void writeVarLong(DataOutput output, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            output.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        output.writeByte((int) value);
+    }
+
+    private static long readVarLong(DataInput input) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = input.readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("捕获文件中的变长整数格式错误");
+    }
+
+    private static void writeString(DataOutput output, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(output, bytes.length);
+        output.write(bytes);
+    }
+
+    private static String readString(DataInput input) throws IOException {
+        byte[] bytes = new byte[(int) readVarLong(input)];
+        input.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,34 @@
+package myDatabase;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 写入闸门：修改数据文件的语句在执行期间持有共享锁，热备份取快照时持有排他锁
+ * 取快照时先等已在执行的写入语句结束，期间新的写入语句排队等待；快照取完立即放行。查询不经过闸门，不受影响。
+ */
+public class WriteGate {
+    private static final ReentrantReadWriteLock LOCK = new ReentrantReadWriteLock();
+
+    /**
+     * 写入语句开始前调用，与exit成对使用
+     */
+    public static void enter() {
+        LOCK.readLock().lock();
+    }
+
+    public static void exit() {
+        LOCK.readLock().unlock();
+    }
+
+    /**
+     * 暂停所有写入语句，等待超过timeoutMillis仍有写入语句未结束时返回false
+     */
+    static boolean pause(long timeoutMillis) throws InterruptedException {
+        return LOCK.writeLock().tryLock(timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    static void resume() {
+        LOCK.writeLock().unlock();
+    }
+}
@@ -0,0 +1,294 @@
+package myDatabase;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 表数据文件的区块摘要（zone map），保存在表的 .tic 文件中
+ * 数据区按行数切成最多BLOCK_ROWS行的区块，每块记录字节范围、行数以及每列的摘要：
+ * 数值的最小/最大值、非数值个数、null个数、缺失个数和（值不太长时的）文本最小/最大值。
+ * 摘要记录了生成时 .trd 文件的大小和修改时间，不一致（文件已被其他方式改写）时视为无效，扫描不跳过任何块。
+ * 整表改写时重新生成，追加记录时更新最后一块；扫描时用VectorPredicate.mayMatch跳过不可能有结果的块。
+ */
+public class ZoneMap {
+    public static final int BLOCK_ROWS = 4096;
+    // 超过此长度的文本不记录文本范围
+    private static final int MAX_TEXT_LENGTH = 64;
+    private static final int MAGIC = 0x5A4D5031; // "ZMP1"
+
+    private final int columnCount;
+    private final List<Block> blocks;
+
+    private ZoneMap(int columnCount, List<Block> blocks) {
+        this.columnCount = columnCount;
+        this.blocks = blocks;
+    }
+
+    public ZoneMap(int columnCount) {
+        this(columnCount, new ArrayList<>());
+    }
+
+    public List<Block> getBlocks() {
+        return blocks;
+    }
+
+    /**
+     * 一个区块：数据文件中[start, end)范围内的rows行
+     */
+    public static class Block {
+        public final long start;
+        long end;
+        int rows;
+        final ColumnStats[] columns;
+
+        Block(long start, long end, int rows, ColumnStats[] columns) {
+            this.start = start;
+            this.end = end;
+            this.rows = rows;
+            this.columns = columns;
+        }
+
+        public long getEnd() {
+            return end;
+        }
+
+        public int getRows() {
+            return rows;
+        }
+
+        /**
+         * 第col列的摘要，列不在摘要中时返回null
+         */
+        public ColumnStats column(int col) {
+            return col < columns.length ? columns[col] : null;
+        }
+    }
+
+    /**
+     * 一个区块中一列的摘要，数值与文本的判断规则与WHERE条件的求值（VectorPredicate）相同
+     */
+    public static class ColumnStats {
+        // 去掉引号后是数字的值的个数和范围
+        int numericCount;
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        // 存在但不是数字的值的个数（含null）
+        int otherCount;
+        int nullCount;
+        // 记录缺少该字段的行数
+        int missingCount;
+        // 所有存在的值去掉引号后的文本范围，有过长的值时为null
+        String textMin;
+        String textMax;
+        boolean textBounded = true;
+
+        void add(String value) {
+            if (value == null) {
+                missingCount++;
+                return;
+            }
+            if (value.equalsIgnoreCase("null")) {
+                nullCount++;
+            }
+            String text = VectorPredicate.stripQuotes(value);
+            if (VectorPredicate.isNumeric(text)) {
+                double number = Double.parseDouble(text);
+                if (numericCount++ == 0 || number < min) {
+                    min = number;
+                }
+                if (numericCount == 1 || number > max) {
+                    max = number;
+                }
+            } else {
+                otherCount++;
+            }
+            if (!textBounded) {
+                return;
+            }
+            if (text.length() > MAX_TEXT_LENGTH) {
+                textBounded = false;
+                textMin = textMax = null;
+            } else {
+                if (textMin == null || text.compareTo(textMin) < 0) {
+                    textMin = text;
+                }
+                if (textMax == null || text.compareTo(textMax) > 0) {
+                    textMax = text;
+                }
+            }
+        }
+
+        public int getNumericCount() {
+            return numericCount;
+        }
+
+        public double getMin() {
+            return min;
+        }
+
+        public double getMax() {
+            return max;
+        }
+
+        public int getOtherCount() {
+            return otherCount;
+        }
+
+        public int getNullCount() {
+            return nullCount;
+        }
+
+        public int getMissingCount() {
+            return missingCount;
+        }
+
+        public String getTextMin() {
+            return textMin;
+        }
+
+        public String getTextMax() {
+            return textMax;
+        }
+    }
+
+    /**
+     * 追加一行的摘要，行在数据文件中占[start, end)（含换行符）
+     */
+    public void add(String[] values, long start, long end) {
+        Block block = blocks.isEmpty() ? null : blocks.get(blocks.size() - 1);
+        if (block == null || block.rows >= BLOCK_ROWS || block.end != start) {
+            ColumnStats[] columns = new ColumnStats[columnCount];
+            for (int c = 0; c < columnCount; c++) {
+                columns[c] = new ColumnStats();
+            }
+            block = new Block(start, start, 0, columns);
+            blocks.add(block);
+        }
+        for (int c = 0; c < columnCount; c++) {
+            block.columns[c].add(c < values.length ? values[c] : null);
+        }
+        block.rows++;
+        block.end = end;
+    }
+
+    /**
+     * 表数据文件对应的摘要文件（同名的 .tic 文件）
+     */
+    public static Path pathFor(Path tablePath) {
+        String name = tablePath.toString();
+        String extension = SQLConstant.getTableRecordExtension();
+        if (name.endsWith(extension)) {
+            name = name.substring(0, name.length() - extension.length());
+        }
+        return Paths.get(name + SQLConstant.getTableIntegrityExtension());
+    }
+
+    /**
+     * 读取表的区块摘要，摘要不存在、已损坏或与数据文件当前状态不一致时返回null
+     */
+    public static ZoneMap load(Path tablePath) {
+        Path mapPath = pathFor(tablePath);
+        try {
+            if (!Files.exists(mapPath) || Files.size(mapPath) == 0) {
+                return null;
+            }
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(mapPath)))) {
+                if (in.readInt() != MAGIC) {
+                    return null;
+                }
+                long size = in.readLong();
+                long modified = in.readLong();
+                if (size != Files.size(tablePath) || modified != TableFile.lastModified(tablePath)) {
+                    return null;
+                }
+                int columnCount = in.readInt();
+                int blockCount = in.readInt();
+                List<Block> blocks = new ArrayList<>(blockCount);
+                for (int b = 0; b < blockCount; b++) {
+                    long start = in.readLong();
+                    long end = in.readLong();
+                    int rows = in.readInt();
+                    ColumnStats[] columns = new ColumnStats[columnCount];
+                    for (int c = 0; c < columnCount; c++) {
+                        columns[c] = readStats(in);
+                    }
+                    blocks.add(new Block(start, end, rows, columns));
+                }
+                return new ZoneMap(columnCount, blocks);
+            }
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 保存摘要，并记下数据文件当前的大小和修改时间；应在数据文件写完后、仍持有表闩锁时调用
+     */
+    public void save(Path tablePath) throws IOException {
+        Path mapPath = pathFor(tablePath);
+        Path tempPath = Paths.get(mapPath + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempPath)))) {
+            out.writeInt(MAGIC);
+            out.writeLong(Files.size(tablePath));
+            out.writeLong(TableFile.lastModified(tablePath));
+            out.writeInt(columnCount);
+            out.writeInt(blocks.size());
+            for (Block block : blocks) {
+                out.writeLong(block.start);
+                out.writeLong(block.end);
+                out.writeInt(block.rows);
+                for (ColumnStats stats : block.columns) {
+                    writeStats(out, stats);
+                }
+            }
+        }
+        Files.move(tempPath, mapPath, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * 清空摘要文件，之后的扫描不再跳过区块
+     */
+    public static void invalidate(Path tablePath) throws IOException {
+        Path mapPath = pathFor(tablePath);
+        if (Files.exists(mapPath)) {
+            Files.write(mapPath, new byte[0]);
+        }
+    }
+
+    private static void writeStats(DataOutputStream out, ColumnStats stats) throws IOException {
+        out.writeInt(stats.numericCount);
+        out.writeDouble(stats.min);
+        out.writeDouble(stats.max);
+        out.writeInt(stats.otherCount);
+        out.writeInt(stats.nullCount);
+        out.writeInt(stats.missingCount);
+        boolean hasText = stats.textBounded && stats.textMin != null;
+        out.writeBoolean(hasText);
+        if (hasText) {
+            out.writeUTF(stats.textMin);
+            out.writeUTF(stats.textMax);
+        }
+        out.writeBoolean(stats.textBounded);
+    }
+
+    private static ColumnStats readStats(DataInputStream in) throws IOException {
+        ColumnStats stats = new ColumnStats();
+        stats.numericCount = in.readInt();
+        stats.min = in.readDouble();
+        stats.max = in.readDouble();
+        stats.otherCount = in.readInt();
+        stats.nullCount = in.readInt();
+        stats.missingCount = in.readInt();
+        if (in.readBoolean()) {
+            stats.textMin = in.readUTF();
+            stats.textMax = in.readUTF();
+        }
+        stats.textBounded = in.readBoolean();
+        return stats;
+    }
+}
@@ -0,0 +1,86 @@
+package server;
+
+import model.Session;
+import model.User;
+import myDatabase.QueryResult;
+
+import java.io.*;
+import java.net.Socket;
+
+/**
+ * 处理一个客户端连接：先认证，再按顺序执行收到的语句
+ */
+public class ClientConnection implements Runnable {
+    private final Socket socket;
+    private final DatabaseServer server;
+    private Session session;
+
+    public ClientConnection(Socket socket, DatabaseServer server) {
+        this.socket = socket;
+        this.server = server;
+    }
+
+    @Override
+    public void run() {
+        server.connectionOpened();
+        try (Socket s = socket;
+             DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream()));
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream()))) {
+            WireProtocol.Frame frame;
+            while ((frame = WireProtocol.readFrame(in)) != null) {
+                if (frame.type == WireProtocol.QUIT) {
+                    break;
+                }
+                handle(frame, out);
+                // 流水线：客户端已发出的后续请求处理完再统一刷出响应
+                if (in.available() == 0) {
+                    out.flush();
+                }
+            }
+            out.flush();
+        } catch (IOException e) {
+            System.err.println("[Server] 连接异常断开: " + e.getMessage());
+        } finally {
+            // 连接断开即会话结束，释放客户端没有关闭的游标
+            if (session != null) {
+                session.close();
+            }
+            server.connectionClosed();
+        }
+    }
+
+    private void handle(WireProtocol.Frame frame, DataOutputStream out) throws IOException {
+        DataInputStream payload = frame.payloadStream();
+        switch (frame.type) {
+            case WireProtocol.AUTH:
+                String username = WireProtocol.readString(payload);
+                String password = WireProtocol.readString(payload);
+                User user = server.getDatabase().authenticateUser(username, password);
+                if (user == null) {
+                    writeError(out, "ERROR: 用户名或密码错误");
+                } else {
+                    if (session != null) {
+                        session.close();
+                    }
+                    session = new Session(user.getUsername());
+                    WireProtocol.writeFrame(out, WireProtocol.AUTH_OK, new byte[0]);
+                }
+                break;
+            case WireProtocol.QUERY:
+                String sql = WireProtocol.readString(payload);
+                if (session == null) {
+                    writeError(out, "ERROR: 请先登录");
+                    break;
+                }
+                QueryResult result = server.execute(session, sql);
+                WireProtocol.writeResult(out, result);
+                break;
+            default:
+                writeError(out, "ERROR: 未知的消息类型 " + frame.type);
+        }
+    }
+
+    private void writeError(DataOutputStream out, String message) throws IOException {
+        WireProtocol.writeResult(out, QueryResult.error(message));
+    }
+}
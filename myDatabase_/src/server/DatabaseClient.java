@@ -0,0 +1,241 @@
+package server;
+
+import myDatabase.ColumnType;
+
+import java.io.*;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * 服务端协议的Java客户端
+ * query为发送后等待响应；send与receive分开调用即可流水线地发送多条语句。
+ * 结果很大的查询用openCursor分批取回，客户端只保留当前一批。
+ */
+public class DatabaseClient implements Closeable {
+    private int nextCursor = 1;
+    private final Socket socket;
+    private final DataInputStream in;
+    private final DataOutputStream out;
+
+    public DatabaseClient(String host, int port, String username, String password) throws IOException {
+        socket = new Socket(host, port);
+        socket.setTcpNoDelay(true);
+        in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        DataOutputStream payload = new DataOutputStream(buffer);
+        WireProtocol.writeString(payload, username);
+        WireProtocol.writeString(payload, password);
+        WireProtocol.writeFrame(out, WireProtocol.AUTH, buffer.toByteArray());
+        out.flush();
+
+        Response response = readResponse(in);
+        if (response.isError()) {
+            socket.close();
+            throw new IOException(response.getMessage());
+        }
+    }
+
+    public Response query(String sql) throws IOException {
+        send(sql);
+        flush();
+        return receive();
+    }
+
+    /**
+     * 在服务端声明游标（DECLARE）执行查询，返回每次FETCH fetchSize行的迭代器，用完须close
+     */
+    public RemoteCursor openCursor(String sql, int fetchSize) throws IOException {
+        if (fetchSize <= 0) {
+            throw new IllegalArgumentException("fetch size必须大于0");
+        }
+        String name = "client_cursor_" + nextCursor++;
+        Response declared = query("DECLARE " + name + " CURSOR FOR " + sql);
+        if (declared.isError()) {
+            throw new IOException(declared.getMessage());
+        }
+        RemoteCursor cursor = new RemoteCursor(name, fetchSize);
+        try {
+            cursor.fetchBatch();
+        } catch (IOException e) {
+            cursor.close();
+            throw e;
+        }
+        return cursor;
+    }
+
+    /**
+     * 发送语句但不等待响应，调用flush后请求才会真正发出
+     */
+    public void send(String sql) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        WireProtocol.writeString(new DataOutputStream(buffer), sql);
+        WireProtocol.writeFrame(out, WireProtocol.QUERY, buffer.toByteArray());
+    }
+
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    /**
+     * 按发送顺序读取下一条响应
+     */
+    public Response receive() throws IOException {
+        return readResponse(in);
+    }
+
+    // 构造函数中读取认证响应也用这个方法，不调用可被子类覆盖的receive
+    private static Response readResponse(DataInputStream in) throws IOException {
+        WireProtocol.Frame frame = WireProtocol.readFrame(in);
+        if (frame == null) {
+            throw new EOFException("服务端已关闭连接");
+        }
+        DataInputStream payload = frame.payloadStream();
+        Response response = new Response(frame.type);
+        switch (frame.type) {
+            case WireProtocol.AUTH_OK:
+                break;
+            case WireProtocol.OK:
+                response.updateCount = payload.readLong();
+                response.message = WireProtocol.readString(payload);
+                break;
+            case WireProtocol.ERROR:
+                response.message = WireProtocol.readString(payload);
+                break;
+            case WireProtocol.RESULT_SET:
+                List<Object[]> rows = WireProtocol.readResultSet(payload, response.columnTypes);
+                response.headers = (String[]) rows.remove(0);
+                response.rows = rows;
+                break;
+            default:
+                throw new IOException("未知的响应类型: " + frame.type);
+        }
+        return response;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            WireProtocol.writeFrame(out, WireProtocol.QUIT, new byte[0]);
+            out.flush();
+        } finally {
+            socket.close();
+        }
+    }
+
+    /**
+     * 服务端游标的迭代器，每行为按列类型解码的值；取下一批失败时抛出UncheckedIOException
+     */
+    public class RemoteCursor implements Iterator<Object[]>, Closeable {
+        private final String name;
+        private final int fetchSize;
+        private Response batch;
+        private int index;
+        private boolean exhausted;
+        private boolean closed;
+
+        RemoteCursor(String name, int fetchSize) {
+            this.name = name;
+            this.fetchSize = fetchSize;
+        }
+
+        private void fetchBatch() throws IOException {
+            Response response = query("FETCH " + fetchSize + " FROM " + name);
+            if (response.isError()) {
+                throw new IOException(response.getMessage());
+            }
+            batch = response;
+            index = 0;
+            exhausted = response.getRows().size() < fetchSize;
+        }
+
+        public String[] getHeaders() {
+            return batch.getHeaders();
+        }
+
+        public List<ColumnType> getColumnTypes() {
+            return batch.getColumnTypes();
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (index >= batch.getRows().size()) {
+                if (exhausted || closed) {
+                    return false;
+                }
+                try {
+                    fetchBatch();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public Object[] next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return batch.getRows().get(index++);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            Response response = query("CLOSE " + name);
+            if (response.isError()) {
+                throw new IOException(response.getMessage());
+            }
+        }
+    }
+
+    // 辅助类：一条响应
+    public static class Response {
+        private final byte type;
+        private String message;
+        private long updateCount = -1;
+        private String[] headers = new String[0];
+        private final List<ColumnType> columnTypes = new ArrayList<>();
+        private List<Object[]> rows = new ArrayList<>();
+
+        Response(byte type) {
+            this.type = type;
+        }
+
+        public boolean isError() {
+            return type == WireProtocol.ERROR;
+        }
+
+        public boolean isResultSet() {
+            return type == WireProtocol.RESULT_SET;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+
+        public long getUpdateCount() {
+            return updateCount;
+        }
+
+        public String[] getHeaders() {
+            return headers;
+        }
+
+        public List<ColumnType> getColumnTypes() {
+            return columnTypes;
+        }
+
+        public List<Object[]> getRows() {
+            return rows;
+        }
+    }
+}
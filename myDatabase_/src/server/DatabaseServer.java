@@ -0,0 +1,68 @@
+package server;
+
+import controller.DatabaseProcessor;
+import model.Database;
+import model.Session;
+import myDatabase.QueryResult;
+import myDatabase.SQLConstant;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 无界面的TCP服务端，每个连接由一个虚拟线程处理，协议见WireProtocol
+ */
+public class DatabaseServer {
+    public static final int DEFAULT_PORT = 9527;
+
+    private final Database database;
+    private final int port;
+    private final AtomicInteger activeConnections = new AtomicInteger();
+
+    public DatabaseServer(Database database, int port) {
+        this.database = database;
+        this.port = port;
+    }
+
+    /**
+     * 启动服务并阻塞接受连接
+     */
+    public void start() throws IOException {
+        try (ServerSocket serverSocket = new ServerSocket(port);
+             ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            System.out.println("[Server] 监听端口 " + port + ", 数据目录 " + SQLConstant.getRootPath());
+            while (!serverSocket.isClosed()) {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                executor.execute(new ClientConnection(socket, this));
+            }
+        }
+    }
+
+    /**
+     * 以会话的身份执行一条语句
+     */
+    QueryResult execute(Session session, String sql) {
+        return DatabaseProcessor.execute(sql, database, session);
+    }
+
+    Database getDatabase() {
+        return database;
+    }
+
+    public int getActiveConnections() {
+        return activeConnections.get();
+    }
+
+    void connectionOpened() {
+        activeConnections.incrementAndGet();
+    }
+
+    void connectionClosed() {
+        activeConnections.decrementAndGet();
+    }
+}
@@ -0,0 +1,202 @@
+package server;
+
+import myDatabase.ColumnType;
+import myDatabase.QueryResult;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 服务端与客户端之间的二进制协议
+ * 帧格式：4字节负载长度 + 1字节消息类型 + 负载。字符串编码为4字节长度 + UTF-8字节。
+ * 客户端可以连续发送多条QUERY而不等待响应（流水线），服务端严格按接收顺序逐条返回。
+ *
+ * 客户端消息：AUTH(用户名, 密码)、QUERY(sql)、QUIT
+ * 服务端消息：AUTH_OK、OK(8字节受影响行数, 信息)、ERROR(信息)、
+ *           RESULT_SET(列数, 每列[列名, 1字节类型编号], 行数, 每个值[1字节类型编号(0为NULL), 值])
+ * 值编码：INTEGER为8字节long，DOUBLE为8字节double，BOOL为1字节，DATE为4字节epoch day，VARCHAR为字符串
+ */
+public class WireProtocol {
+    public static final byte AUTH = 1;
+    public static final byte QUERY = 2;
+    public static final byte QUIT = 3;
+
+    public static final byte AUTH_OK = 16;
+    public static final byte OK = 17;
+    public static final byte ERROR = 18;
+    public static final byte RESULT_SET = 19;
+
+    // 单帧最大长度，防止恶意或损坏的长度字段导致分配过大内存
+    public static final int MAX_FRAME_SIZE = 64 * 1024 * 1024;
+
+    private static final byte NULL_VALUE = 0;
+
+    /**
+     * 读取一帧，连接正常关闭时返回null
+     */
+    public static Frame readFrame(DataInputStream in) throws IOException {
+        int length;
+        try {
+            length = in.readInt();
+        } catch (EOFException e) {
+            return null;
+        }
+        if (length < 0 || length > MAX_FRAME_SIZE) {
+            throw new IOException("帧长度非法: " + length);
+        }
+        byte type = in.readByte();
+        byte[] payload = new byte[length];
+        in.readFully(payload);
+        return new Frame(type, payload);
+    }
+
+    public static void writeFrame(DataOutputStream out, byte type, byte[] payload) throws IOException {
+        out.writeInt(payload.length);
+        out.writeByte(type);
+        out.write(payload);
+    }
+
+    public static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * 从帧负载中读取字符串，长度字段为负数或超出负载剩余字节数时抛出IOException
+     */
+    public static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        // 负载已完整读入内存，available()即剩余字节数
+        if (length < 0 || length > in.available()) {
+            throw new IOException("字符串长度非法: " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 把执行结果编码为一帧；结果超过MAX_FRAME_SIZE时改为返回ERROR，客户端应改用游标分批取回
+     */
+    public static void writeResult(DataOutputStream out, QueryResult result) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        DataOutputStream payload = new DataOutputStream(buffer);
+        byte type;
+        if (result.isError()) {
+            type = ERROR;
+            writeString(payload, result.getMessage());
+        } else if (!result.isResultSet()) {
+            type = OK;
+            payload.writeLong(result.getUpdateCount());
+            writeString(payload, result.getMessage());
+        } else {
+            type = RESULT_SET;
+            List<String> headers = result.getHeaders();
+            payload.writeInt(headers.size());
+            for (int i = 0; i < headers.size(); i++) {
+                writeString(payload, headers.get(i));
+                payload.writeByte(result.getColumnTypes().get(i).getCode());
+            }
+            payload.writeInt(result.getRows().size());
+            for (int row = 0; row < result.getRows().size(); row++) {
+                for (int col = 0; col < headers.size(); col++) {
+                    writeValue(payload, result.getValue(row, col));
+                }
+                if (buffer.size() > MAX_FRAME_SIZE) {
+                    writeResult(out, QueryResult.error("ERROR: 结果超过单帧上限(" + (MAX_FRAME_SIZE >> 20)
+                            + "MB)，请用DECLARE/FETCH游标分批取回"));
+                    return;
+                }
+            }
+        }
+        payload.flush();
+        writeFrame(out, type, buffer.toByteArray());
+    }
+
+    /**
+     * 解码RESULT_SET负载，返回的结果集第一项为列名数组
+     */
+    public static List<Object[]> readResultSet(DataInputStream in, List<ColumnType> columnTypes) throws IOException {
+        List<Object[]> rows = new ArrayList<>();
+        int columnCount = in.readInt();
+        if (columnCount < 0 || columnCount > in.available()) {
+            throw new IOException("列数非法: " + columnCount);
+        }
+        String[] headers = new String[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            headers[i] = readString(in);
+            columnTypes.add(ColumnType.fromCode(in.readByte()));
+        }
+        rows.add(headers);
+
+        int rowCount = in.readInt();
+        for (int r = 0; r < rowCount; r++) {
+            Object[] row = new Object[columnCount];
+            for (int c = 0; c < columnCount; c++) {
+                row[c] = readValue(in);
+            }
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    // 每个值带自己的类型编号，文件中与声明类型不符的值会以字符串形式传输
+    private static void writeValue(DataOutputStream out, Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(NULL_VALUE);
+        } else if (value instanceof Long) {
+            out.writeByte(ColumnType.INTEGER.getCode());
+            out.writeLong((Long) value);
+        } else if (value instanceof Double) {
+            out.writeByte(ColumnType.DOUBLE.getCode());
+            out.writeDouble((Double) value);
+        } else if (value instanceof Boolean) {
+            out.writeByte(ColumnType.BOOL.getCode());
+            out.writeBoolean((Boolean) value);
+        } else if (value instanceof LocalDate) {
+            out.writeByte(ColumnType.DATE.getCode());
+            out.writeInt((int) ((LocalDate) value).toEpochDay());
+        } else {
+            out.writeByte(ColumnType.VARCHAR.getCode());
+            writeString(out, value.toString());
+        }
+    }
+
+    private static Object readValue(DataInputStream in) throws IOException {
+        byte code = in.readByte();
+        if (code == NULL_VALUE) {
+            return null;
+        }
+        switch (ColumnType.fromCode(code)) {
+            case INTEGER:
+                return in.readLong();
+            case DOUBLE:
+                return in.readDouble();
+            case BOOL:
+                return in.readBoolean();
+            case DATE:
+                return LocalDate.ofEpochDay(in.readInt());
+            default:
+                return readString(in);
+        }
+    }
+
+    // 辅助类：表示一帧
+    public static class Frame {
+        public final byte type;
+        public final byte[] payload;
+
+        Frame(byte type, byte[] payload) {
+            this.type = type;
+            this.payload = payload;
+        }
+
+        public DataInputStream payloadStream() {
+            return new DataInputStream(new ByteArrayInputStream(payload));
+        }
+    }
+}
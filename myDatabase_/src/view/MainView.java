@@ -1,18 +1,37 @@
 package view;
 
+import myDatabase.SQLConstant;
+import myDatabase.TableGenerator;
+
 import javax.swing.*;
 import javax.swing.event.ListSelectionListener;
 import javax.swing.tree.DefaultMutableTreeNode;
 import javax.swing.tree.DefaultTreeModel;
 import java.awt.*;
 import java.awt.event.ActionListener;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
 import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
 import java.util.List;
+import java.util.function.Consumer;
 
 public class MainView extends JFrame {
     private JTextArea queryTextArea;
+    // 消息区保留的最大字符数
+    private static final int MAX_RESULT_CHARS = 1 << 20;
+    private static final int RESULT_COLUMN_WIDTH = 120;
+
     private JTextArea resultTextArea;
+    private JTabbedPane resultTabs;
+    private JTable resultTable;
+    private ResultTableModel resultTableModel;
     private JButton executeButton;
+    private JButton cancelButton;
+    private JProgressBar progressBar;
+    private JLabel progressLabel;
     private JButton logoutButton;
     private JButton helpButton;
     private JLabel welcomeLabel;
@@ -153,7 +172,19 @@ public class MainView extends JFrame {
         // 添加固定大小的滚动面板
         JScrollPane resultScrollPane = new JScrollPane(resultTextArea);
         resultScrollPane.setPreferredSize(new Dimension(900, 400));
-        resultPanel.add(resultScrollPane, BorderLayout.CENTER);
+
+        // SELECT的结果表格，行按需从游标中读取
+        resultTable = new JTable();
+        resultTable.setFont(new Font("Monospaced", Font.PLAIN, 14));
+        resultTable.setAutoResizeMode(JTable.AUTO_RESIZE_OFF);
+        resultTable.setFillsViewportHeight(true);
+        JScrollPane tableScrollPane = new JScrollPane(resultTable);
+        tableScrollPane.setPreferredSize(new Dimension(900, 400));
+
+        resultTabs = new JTabbedPane();
+        resultTabs.addTab("消息", resultScrollPane);
+        resultTabs.addTab("结果表格", tableScrollPane);
+        resultPanel.add(resultTabs, BorderLayout.CENTER);
 
         // 组装右侧面板
         rightPanel.add(topPanel, BorderLayout.NORTH);
@@ -177,12 +208,27 @@ public class MainView extends JFrame {
         executeButton.setFont(new Font("微软雅黑", Font.PLAIN, 14));
         executeButton.setPreferredSize(new Dimension(120, 35));
 
+        cancelButton = new JButton("取消执行");
+        cancelButton.setFont(new Font("微软雅黑", Font.PLAIN, 14));
+        cancelButton.setPreferredSize(new Dimension(120, 35));
+        cancelButton.setEnabled(false);
+
+        // 执行进度：运行中显示不确定进度条和已扫描行数
+        progressLabel = new JLabel(" ");
+        progressLabel.setFont(new Font("微软雅黑", Font.PLAIN, 14));
+        progressBar = new JProgressBar();
+        progressBar.setPreferredSize(new Dimension(160, 20));
+        progressBar.setVisible(false);
+
         logoutButton = new JButton("退出登录");
         logoutButton.setFont(new Font("微软雅黑", Font.PLAIN, 14));
         logoutButton.setPreferredSize(new Dimension(120, 35));
 
+        bottomButtonPanel.add(progressLabel);
+        bottomButtonPanel.add(progressBar);
         bottomButtonPanel.add(helpButton);
         bottomButtonPanel.add(executeButton);
+        bottomButtonPanel.add(cancelButton);
         bottomButtonPanel.add(logoutButton);
 
         // 组装主面板
@@ -199,7 +245,7 @@ public class MainView extends JFrame {
         DefaultMutableTreeNode root = new DefaultMutableTreeNode("数据库文件");
 
         // 获取数据库根目录
-        File dbRoot = new File("D:\\desktop\\DBMS\\DATA"); // 根据您的SQLConstant调整
+        File dbRoot = new File(SQLConstant.getRootPath());
 
         if (dbRoot.exists() && dbRoot.isDirectory()) {
             // 添加数据库文件夹
@@ -283,7 +329,76 @@ public class MainView extends JFrame {
 
     public void appendResult(String result) {
         resultTextArea.append(result + "\n");
-        resultTextArea.setCaretPosition(resultTextArea.getText().length());
+        // 只保留最近的输出，文档不随执行的语句无限增长
+        int excess = resultTextArea.getDocument().getLength() - MAX_RESULT_CHARS;
+        if (excess > 0) {
+            resultTextArea.replaceRange("", 0, excess);
+        }
+        resultTextArea.setCaretPosition(resultTextArea.getDocument().getLength());
+    }
+
+    /**
+     * 在结果表格中显示游标的结果并切换到表格页，关闭之前显示的结果的游标
+     */
+    public void showResultTable(ResultTableModel model) {
+        if (resultTableModel != null) {
+            resultTableModel.close();
+        }
+        resultTableModel = model;
+        resultTable.setModel(model);
+        for (int i = 0; i < resultTable.getColumnCount(); i++) {
+            resultTable.getColumnModel().getColumn(i).setPreferredWidth(RESULT_COLUMN_WIDTH);
+        }
+        resultTabs.setSelectedIndex(1);
+    }
+
+    /**
+     * 点击结果表格的列头时调用，参数为列名
+     */
+    public void addResultSortListener(Consumer<String> listener) {
+        resultTable.getTableHeader().addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                int column = resultTable.columnAtPoint(e.getPoint());
+                if (column >= 0 && resultTableModel != null) {
+                    listener.accept(resultTableModel.getColumnName(resultTable.convertColumnIndexToModel(column)));
+                }
+            }
+        });
+    }
+
+    /**
+     * 把结果表分批写入结果区，最多显示SQLConstant.getResultDisplayRows()行，不生成完整的表格字符串
+     * @param footer 表格之后的提示信息，可为null
+     */
+    public void appendResultSet(List<String> headers, List<List<String>> rows, String footer) {
+        int maxRows = SQLConstant.getResultDisplayRows() > 0 ? SQLConstant.getResultDisplayRows() : -1;
+        try {
+            TableGenerator.writeTable(new ResultAreaAppender(), headers, rows.iterator(), maxRows);
+        } catch (IOException e) {
+            // 写入文本区不会出错
+            throw new UncheckedIOException(e);
+        }
+        appendResult(footer == null ? "" : "\n" + footer);
+    }
+
+    // 把TableGenerator分批写出的文本追加到结果区
+    private class ResultAreaAppender implements Appendable {
+        @Override
+        public Appendable append(CharSequence text) {
+            resultTextArea.append(text.toString());
+            return this;
+        }
+
+        @Override
+        public Appendable append(CharSequence text, int start, int end) {
+            return append(text.subSequence(start, end));
+        }
+
+        @Override
+        public Appendable append(char c) {
+            return append(String.valueOf(c));
+        }
     }
 
     public void clearResult() {
@@ -294,6 +409,25 @@ public class MainView extends JFrame {
         executeButton.addActionListener(listener);
     }
 
+    public void addCancelListener(ActionListener listener) {
+        cancelButton.addActionListener(listener);
+    }
+
+    /**
+     * 切换执行中/空闲状态：执行中禁用执行按钮、启用取消按钮并显示进度
+     */
+    public void setExecuting(boolean executing) {
+        executeButton.setEnabled(!executing);
+        cancelButton.setEnabled(executing);
+        progressBar.setIndeterminate(executing);
+        progressBar.setVisible(executing);
+        progressLabel.setText(executing ? "正在执行..." : " ");
+    }
+
+    public void updateProgress(long rowsScanned) {
+        progressLabel.setText("已扫描 " + rowsScanned + " 行");
+    }
+
     public void addLogoutListener(ActionListener listener) {
         logoutButton.addActionListener(listener);
     }
@@ -311,10 +445,16 @@ public class MainView extends JFrame {
     }
 
     public void appendQueryToResult(String query) {
-        if (!resultTextArea.getText().isEmpty()) {
+        if (resultTextArea.getDocument().getLength() > 0) {
             resultTextArea.append("\n----------------\n");
         }
-        resultTextArea.append("> " + query + "\n");
-        resultTextArea.setCaretPosition(resultTextArea.getText().length());
+        appendResult("> " + query);
+    }
+
+    /**
+     * 切换到消息页
+     */
+    public void showMessages() {
+        resultTabs.setSelectedIndex(0);
     }
 }
\ No newline at end of file
@@ -0,0 +1,101 @@
+package view;
+
+import myDatabase.RowCursor;
+
+import javax.swing.table.AbstractTableModel;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 结果表格的数据模型：行数据按页从游标（RowCursor）中取出，只缓存最近显示过的若干页
+ * 滚动时表格只请求可见的行，百万行的结果也只读取和解码看得到的部分。
+ * 游标还在查找结果时行数会增长，由调用方定时调用refreshRowCount同步到表格。
+ */
+public class ResultTableModel extends AbstractTableModel {
+    private static final long serialVersionUID = 1L;
+    private static final int PAGE_ROWS = 200;
+    private static final int CACHED_PAGES = 20;
+
+    // 游标和缓存的页只在界面中使用，不随表格模型序列化
+    private final transient RowCursor cursor;
+    private int rowCount;
+    // 页号 -> 该页的行，按访问顺序淘汰
+    private final transient Map<Integer, List<List<String>>> pages = new PageCache();
+
+    public ResultTableModel(RowCursor cursor) {
+        this.cursor = cursor;
+        this.rowCount = cursor.getRowCount();
+    }
+
+    /**
+     * 把游标目前找到的行数同步到表格，返回结果是否已经完整
+     */
+    public boolean refreshRowCount() {
+        boolean complete = cursor.isComplete();
+        int current = cursor.getRowCount();
+        if (current > rowCount) {
+            int previous = rowCount;
+            rowCount = current;
+            // 原来最后一页可能不满，重新读取
+            pages.remove(previous / PAGE_ROWS);
+            fireTableRowsInserted(previous, current - 1);
+        }
+        return complete;
+    }
+
+    public void close() {
+        cursor.close();
+        pages.clear();
+    }
+
+    @Override
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return cursor.getHeaders().size();
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return cursor.getHeaders().get(column);
+    }
+
+    @Override
+    public Object getValueAt(int rowIndex, int columnIndex) {
+        int page = rowIndex / PAGE_ROWS;
+        List<List<String>> rows = pages.get(page);
+        if (rows == null) {
+            try {
+                rows = cursor.fetch(page * PAGE_ROWS, PAGE_ROWS);
+            } catch (IOException e) {
+                return "ERROR: " + e.getMessage();
+            }
+            pages.put(page, rows);
+        }
+        int offset = rowIndex - page * PAGE_ROWS;
+        if (offset >= rows.size()) {
+            return null;
+        }
+        List<String> row = rows.get(offset);
+        return columnIndex < row.size() ? row.get(columnIndex) : null;
+    }
+
+    // 按访问顺序淘汰的页缓存，最多保留CACHED_PAGES页
+    private static class PageCache extends LinkedHashMap<Integer, List<List<String>>> {
+        private static final long serialVersionUID = 1L;
+
+        PageCache() {
+            super(16, 0.75f, true);
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, List<List<String>>> eldest) {
+            return size() > CACHED_PAGES;
+        }
+    }
+}